@@ -1,3 +1,10 @@
 package care.smith.fts.api;
 
-public interface TransferProcessStep {}
+import reactor.core.Disposable;
+
+/** A step of a transfer process, steps holding resources release them when disposed. */
+public interface TransferProcessStep extends Disposable {
+
+  @Override
+  default void dispose() {}
+}
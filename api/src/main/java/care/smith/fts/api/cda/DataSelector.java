@@ -15,5 +15,14 @@ public interface DataSelector extends TransferProcessStep {
 
   record Config(boolean ignoreConsent, @NotNull AdditionalFilterConfig additionalFilter) {}
 
-  record AdditionalFilterConfig(Object none, Object clinicalDate, Object encounter) {}
+  record AdditionalFilterConfig(
+      /* Select the resources of the consented period the server returns */
+      Object none,
+
+      /* Select only resources whose clinical date lies within the consented period */
+      Object clinicalDate,
+
+      /* Select only encounters overlapping the consented period and the resources of these
+       * encounters, other resources by their clinical date */
+      Object encounter) {}
 }
@@ -0,0 +1,56 @@
+package care.smith.fts.benchmarks;
+
+import static care.smith.fts.test.FhirGenerators.gicsResponse;
+import static care.smith.fts.test.FhirGenerators.patient;
+import static care.smith.fts.test.FhirGenerators.randomUuid;
+import static care.smith.fts.util.FhirUtils.resourceStream;
+import static care.smith.fts.util.FhirUtils.toBundle;
+import static java.util.Comparator.comparing;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+
+/** Input data shared by the benchmarks, generated from the templates of the test-util module. */
+public interface BenchmarkBundles {
+  String IDENTIFIER_SYSTEM = "http://fts.smith.care";
+  String POLICY_SYSTEM = "https://ths-greifswald.de/fhir/CodeSystem/gics/Policy";
+  String PATIENT_IDENTIFIER_SYSTEM = "https://ths-greifswald.de/fhir/gics/identifiers/Pseudonym";
+
+  /**
+   * Generates the bundle of a single patient holding <code>size</code> resources, wrapped in an
+   * outer bundle like the bundles received from the data selector. The Patient resource is always
+   * part of the bundle.
+   */
+  static Bundle patientBundle(String patientId, int size) throws IOException {
+    var template = patient(() -> patientId, () -> IDENTIFIER_SYSTEM, () -> "2023");
+    var resources =
+        resourceStream(template.generateResource())
+            .sorted(comparing(r -> !(r instanceof Patient)))
+            .limit(size)
+            .collect(toBundle());
+    return Stream.of(resources).collect(toBundle()).setTotal(1);
+  }
+
+  /** Generates a page of gICS consents holding the consents of <code>size</code> patients. */
+  static Bundle consentBundle(int size) throws IOException {
+    return gicsResponse(randomUuid(), randomUuid())
+        .generateResources()
+        .limit(size)
+        .collect(toBundle())
+        .setTotal(size);
+  }
+
+  /**
+   * Loads a deidentifhir profile from the directory given in the system property <code>
+   * fts.benchmarks.deidentifhir</code>, defaults to the profiles used in the e2e tests.
+   */
+  static Config profile(String name) {
+    var directory = System.getProperty("fts.benchmarks.deidentifhir", ".github/test/deidentifhir");
+    return ConfigFactory.parseFile(Path.of(directory, name).toFile());
+  }
+}
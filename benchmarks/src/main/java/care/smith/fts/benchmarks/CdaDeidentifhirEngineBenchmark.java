@@ -0,0 +1,69 @@
+package care.smith.fts.benchmarks;
+
+import static care.smith.fts.benchmarks.BenchmarkBundles.patientBundle;
+import static care.smith.fts.benchmarks.BenchmarkBundles.profile;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toMap;
+
+import care.smith.fts.api.ConsentedPatient;
+import care.smith.fts.cda.services.deidentifhir.DeidentifhirEngine;
+import care.smith.fts.cda.services.deidentifhir.IDATScraper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CdaDeidentifhirEngineBenchmark {
+
+  /** Number of resources in the patient's bundle */
+  @Param({"10", "100", "400"})
+  int size;
+
+  private final ConsentedPatient patient = new ConsentedPatient("patient-1");
+  private final Duration dateShift = Duration.ofDays(7);
+  private DeidentifhirEngine engine;
+  private Map<String, String> transportIds;
+  private Bundle bundle;
+
+  @Setup
+  public void setUp() throws IOException {
+    engine = new DeidentifhirEngine(profile("CDtoTransport.profile"), new SimpleMeterRegistry());
+    bundle = patientBundle(patient.id(), size);
+
+    // every gathered ID is mapped to a transport ID, as the TCA would
+    var ids = new IDATScraper(profile("IDScraper.profile")).gatherIDs(patient, bundle);
+    var next = new AtomicInteger();
+    transportIds = ids.stream().collect(toMap(identity(), id -> "tid-" + next.incrementAndGet()));
+  }
+
+  @Benchmark
+  public Bundle deidentify() {
+    return engine.deidentify(bundle, patient.id(), transportIds, dateShift);
+  }
+
+  /** Deidentifies before the transport IDs are known, then fills them in. */
+  @Benchmark
+  public Bundle deidentifyDeferred() {
+    return engine.deidentifyDeferred(bundle, patient.id()).apply(transportIds, dateShift);
+  }
+}
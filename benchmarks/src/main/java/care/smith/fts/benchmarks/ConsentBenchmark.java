@@ -0,0 +1,63 @@
+package care.smith.fts.benchmarks;
+
+import static care.smith.fts.benchmarks.BenchmarkBundles.PATIENT_IDENTIFIER_SYSTEM;
+import static care.smith.fts.benchmarks.BenchmarkBundles.POLICY_SYSTEM;
+import static care.smith.fts.benchmarks.BenchmarkBundles.consentBundle;
+
+import care.smith.fts.api.ConsentedPatient;
+import care.smith.fts.tca.consent.GicsFhirUtil;
+import care.smith.fts.util.ConsentedPatientExtractor;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConsentBenchmark {
+  private static final Set<String> POLICIES =
+      Set.of("IDAT_erheben", "IDAT_speichern_verarbeiten", "MDAT_erheben");
+
+  /** Number of patients in the page of consents */
+  @Param({"10", "100", "1000"})
+  int size;
+
+  private Bundle gicsPage;
+  private Bundle filteredPage;
+
+  @Setup
+  public void setUp() throws IOException {
+    gicsPage = consentBundle(size);
+    filteredPage = GicsFhirUtil.filterOuterBundle(POLICY_SYSTEM, POLICIES, gicsPage);
+  }
+
+  /** Filters the consents received from gICS in the TCA. */
+  @Benchmark
+  public Bundle filterOuterBundle() {
+    return GicsFhirUtil.filterOuterBundle(POLICY_SYSTEM, POLICIES, gicsPage);
+  }
+
+  /** Extracts the consented patients from the consents received from the TCA in the CDA. */
+  @Benchmark
+  public List<ConsentedPatient> extractConsentedPatients() {
+    return ConsentedPatientExtractor.extractConsentedPatients(
+            PATIENT_IDENTIFIER_SYSTEM, POLICY_SYSTEM, filteredPage, POLICIES)
+        .toList();
+  }
+}
@@ -0,0 +1,102 @@
+package care.smith.fts.benchmarks;
+
+import static care.smith.fts.benchmarks.BenchmarkBundles.patientBundle;
+import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
+
+import ca.uhn.fhir.context.FhirContext;
+import care.smith.fts.util.FhirDecoder;
+import care.smith.fts.util.FhirEncoder;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FhirCodecBenchmark {
+  private static final ResolvableType BUNDLE = ResolvableType.forClass(Bundle.class);
+
+  /** Number of resources in the patient's bundle */
+  @Param({"10", "100", "400"})
+  int size;
+
+  private final DataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+  private FhirEncoder encoder;
+  private FhirDecoder decoder;
+  private Bundle bundle;
+  private byte[] encoded;
+
+  @Setup
+  public void setUp() throws IOException {
+    var fhir = FhirContext.forR4();
+    encoder = new FhirEncoder(fhir);
+    decoder = new FhirDecoder(fhir);
+    bundle = patientBundle("patient-1", size);
+
+    var buffer = encoder.encodeValue(bundle, bufferFactory, BUNDLE, APPLICATION_FHIR_JSON, null);
+    encoded = new byte[buffer.readableByteCount()];
+    buffer.read(encoded);
+    DataBufferUtils.release(buffer);
+  }
+
+  /** Encodes the bundle into a single buffer, as done for a single response body. */
+  @Benchmark
+  public int encodeValue() {
+    var buffer = encoder.encodeValue(bundle, bufferFactory, BUNDLE, APPLICATION_FHIR_JSON, null);
+    var size = buffer.readableByteCount();
+    DataBufferUtils.release(buffer);
+    return size;
+  }
+
+  /** Encodes the bundle entry by entry, as done for streamed request bodies. */
+  @Benchmark
+  public Integer encodeEntries() {
+    return encoder
+        .encode(Flux.just(bundle), bufferFactory, BUNDLE, APPLICATION_FHIR_JSON, null)
+        .map(FhirCodecBenchmark::releaseAndCount)
+        .reduce(0, Integer::sum)
+        .block();
+  }
+
+  /** Decodes the bundle from a single buffer. */
+  @Benchmark
+  public IBaseResource decodeValue() {
+    return decoder
+        .decodeToMono(Mono.just(bufferFactory.wrap(encoded)), BUNDLE, APPLICATION_FHIR_JSON, null)
+        .block();
+  }
+
+  /** Decodes the bundle's entries as they arrive, as done for streamed response bodies. */
+  @Benchmark
+  public Long decodeEntries() {
+    return decoder.decodeEntries(Flux.just(bufferFactory.wrap(encoded))).count().block();
+  }
+
+  private static int releaseAndCount(DataBuffer buffer) {
+    var size = buffer.readableByteCount();
+    DataBufferUtils.release(buffer);
+    return size;
+  }
+}
@@ -0,0 +1,50 @@
+package care.smith.fts.benchmarks;
+
+import static care.smith.fts.benchmarks.BenchmarkBundles.patientBundle;
+import static care.smith.fts.benchmarks.BenchmarkBundles.profile;
+
+import care.smith.fts.api.ConsentedPatient;
+import care.smith.fts.cda.services.deidentifhir.IDATScraper;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IDATScraperBenchmark {
+
+  /** Number of resources in the patient's bundle */
+  @Param({"10", "100", "400"})
+  int size;
+
+  private final ConsentedPatient patient = new ConsentedPatient("patient-1");
+  private IDATScraper scraper;
+  private Bundle bundle;
+
+  @Setup
+  public void setUp() throws IOException {
+    scraper = new IDATScraper(profile("IDScraper.profile"));
+    bundle = patientBundle(patient.id(), size);
+  }
+
+  @Benchmark
+  public Set<String> gatherIDs() {
+    return scraper.gatherIDs(patient, bundle);
+  }
+}
@@ -0,0 +1,72 @@
+package care.smith.fts.benchmarks;
+
+import static care.smith.fts.util.deidentifhir.NamespacingReplacementProvider.withNamespacing;
+import static care.smith.fts.util.deidentifhir.NamespacingReplacementProvider.withoutNamespacing;
+
+import care.smith.fts.util.deidentifhir.NamespacingReplacementProvider;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NamespacingReplacementProviderBenchmark {
+  private static final String PATIENT_ID = "patient-1";
+  private static final String SYSTEM = BenchmarkBundles.IDENTIFIER_SYSTEM;
+
+  /** Number of IDs that are looked up, each one once per invocation */
+  @Param({"10", "100", "1000"})
+  int size;
+
+  private String[] ids;
+  private NamespacingReplacementProvider namespaced;
+  private NamespacingReplacementProvider plain;
+
+  @Setup
+  public void setUp() {
+    ids = new String[size];
+    var namespacedIds = new HashMap<String, String>();
+    var plainIds = new HashMap<String, String>();
+    var keyCreator = withNamespacing(PATIENT_ID);
+    for (int i = 0; i < size; i++) {
+      ids[i] = "resource-" + i;
+      namespacedIds.put(keyCreator.getKeyForResourceTypeAndID("Observation", ids[i]), "tid-" + i);
+      namespacedIds.put(keyCreator.getKeyForSystemAndValue(SYSTEM, ids[i]), "tid-" + i);
+      plainIds.put(ids[i], "pid-" + i);
+    }
+    namespaced = NamespacingReplacementProvider.of(keyCreator, namespacedIds);
+    plain = NamespacingReplacementProvider.of(withoutNamespacing(), plainIds);
+  }
+
+  /** Lookups of the CDA, keys are prefixed with the patient ID and resource type or system. */
+  @Benchmark
+  public void namespacedLookups(Blackhole bh) {
+    for (var id : ids) {
+      bh.consume(namespaced.getIDReplacement("Observation", id));
+      bh.consume(namespaced.getValueReplacement(SYSTEM, id));
+    }
+  }
+
+  /** Lookups of the RDA, transport IDs are used as keys. */
+  @Benchmark
+  public void plainLookups(Blackhole bh) {
+    for (var id : ids) {
+      bh.consume(plain.getIDReplacement("Observation", id));
+    }
+  }
+}
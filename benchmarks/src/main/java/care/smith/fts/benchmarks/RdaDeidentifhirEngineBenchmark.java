@@ -0,0 +1,71 @@
+package care.smith.fts.benchmarks;
+
+import static care.smith.fts.benchmarks.BenchmarkBundles.patientBundle;
+import static care.smith.fts.benchmarks.BenchmarkBundles.profile;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toMap;
+
+import care.smith.fts.api.ConsentedPatient;
+import care.smith.fts.cda.services.deidentifhir.IDATScraper;
+import care.smith.fts.rda.services.deidentifhir.DeidentifhirEngine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RdaDeidentifhirEngineBenchmark {
+
+  /** Number of resources in the patient's bundle */
+  @Param({"10", "100", "400"})
+  int size;
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private DeidentifhirEngine engine;
+  private Map<String, String> pseudonyms;
+  private Bundle transportBundle;
+
+  @Setup
+  public void setUp() throws IOException {
+    var patient = new ConsentedPatient("patient-1");
+    var bundle = patientBundle(patient.id(), size);
+
+    // the transport bundle is created by the CDA, every transport ID is mapped to a pseudonym
+    var ids = new IDATScraper(profile("IDScraper.profile")).gatherIDs(patient, bundle);
+    var next = new AtomicInteger();
+    var transportIds =
+        ids.stream().collect(toMap(identity(), id -> "tid-" + next.incrementAndGet()));
+    var cdaEngine =
+        new care.smith.fts.cda.services.deidentifhir.DeidentifhirEngine(
+            profile("CDtoTransport.profile"), meterRegistry);
+    transportBundle = cdaEngine.deidentify(bundle, patient.id(), transportIds, Duration.ofDays(7));
+
+    pseudonyms = transportIds.values().stream().collect(toMap(identity(), tid -> "p" + tid));
+    engine = new DeidentifhirEngine(profile("TransportToRD.profile"), meterRegistry);
+  }
+
+  @Benchmark
+  public Bundle replaceIDs() {
+    return engine.replaceIDs(transportBundle, pseudonyms);
+  }
+}
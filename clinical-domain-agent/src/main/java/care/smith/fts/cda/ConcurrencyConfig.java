@@ -0,0 +1,46 @@
+package care.smith.fts.cda;
+
+/**
+ * Limits the number of patients a transfer process works on concurrently. The stage limits apply to
+ * all patients of a process together and default to {@code maxConcurrentPatients}. Processes of all
+ * projects share the patient slots of the {@link PatientScheduler} by their {@code weight}.
+ */
+public record ConcurrencyConfig(
+    /* Patients processed at the same time */
+    int maxConcurrentPatients,
+
+    /* Patients whose data is fetched from the HDS at the same time */
+    int dataSelection,
+
+    /* Bundles that are deidentified, i.e. sent to the TCA, at the same time */
+    int deidentification,
+
+    /* Bundles that are sent to the RDA at the same time */
+    int sending,
+
+    /* Share of the CDA's patient slots, relative to the other projects that are running */
+    int weight) {
+
+  public static final int DEFAULT_MAX_CONCURRENT_PATIENTS = 32;
+
+  public static final ConcurrencyConfig DEFAULT = new ConcurrencyConfig(0, 0, 0, 0);
+
+  public ConcurrencyConfig {
+    if (maxConcurrentPatients <= 0) {
+      maxConcurrentPatients = DEFAULT_MAX_CONCURRENT_PATIENTS;
+    }
+    dataSelection = orDefault(dataSelection, maxConcurrentPatients);
+    deidentification = orDefault(deidentification, maxConcurrentPatients);
+    sending = orDefault(sending, maxConcurrentPatients);
+    weight = orDefault(weight, 1);
+  }
+
+  public ConcurrencyConfig(
+      int maxConcurrentPatients, int dataSelection, int deidentification, int sending) {
+    this(maxConcurrentPatients, dataSelection, deidentification, sending, 0);
+  }
+
+  private static int orDefault(int limit, int defaultLimit) {
+    return limit > 0 ? limit : defaultLimit;
+  }
+}
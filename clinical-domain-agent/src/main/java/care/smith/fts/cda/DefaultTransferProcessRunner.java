@@ -6,30 +6,108 @@ import care.smith.fts.api.cda.BundleSender.Result;
 import care.smith.fts.api.cda.CohortSelector;
 import care.smith.fts.api.cda.DataSelector;
 import care.smith.fts.api.cda.Deidentificator;
+import care.smith.fts.util.ConcurrencyLimiter;
+import care.smith.fts.util.FinishedProcesses;
+import care.smith.fts.util.FinishedProcesses.Summary;
+import care.smith.fts.util.TransferProcessMetrics;
+import care.smith.fts.util.TransferProcessRetention;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
 @Slf4j
 @Component
 public class DefaultTransferProcessRunner implements TransferProcessRunner {
 
   private final Map<String, TransferProcessInstance> instances = new ConcurrentHashMap<>();
+  private final FinishedProcesses<Phase> finished;
+  private final ProcessStateStore stateStore;
+  private final TransferProcessMetrics metrics;
+  private final PatientScheduler scheduler;
+
+  public DefaultTransferProcessRunner(ProcessStateStore stateStore, MeterRegistry meterRegistry) {
+    this(stateStore, meterRegistry, new TransferProcessRetention());
+  }
+
+  public DefaultTransferProcessRunner(
+      ProcessStateStore stateStore,
+      MeterRegistry meterRegistry,
+      TransferProcessRetention retention) {
+    this(stateStore, meterRegistry, retention, new PatientScheduler(meterRegistry));
+  }
+
+  @Autowired
+  public DefaultTransferProcessRunner(
+      ProcessStateStore stateStore,
+      MeterRegistry meterRegistry,
+      TransferProcessRetention retention,
+      PatientScheduler scheduler) {
+    this.stateStore = stateStore;
+    this.metrics = new TransferProcessMetrics(meterRegistry);
+    this.finished = new FinishedProcesses<>(Phase.class, retention);
+    this.scheduler = scheduler;
+  }
 
   @Override
   public String start(TransferProcessDefinition process, List<String> pids) {
     var processId = UUID.randomUUID().toString();
     log.info("Run process with processId: {}", processId);
-    TransferProcessInstance transferProcessInstance = new TransferProcessInstance(process, pids);
+    return run(
+        new TransferProcessInstance(
+            processId, process, pids, stateStore, metrics, scheduler, Set.of(), 0));
+  }
+
+  @Override
+  public String resume(TransferProcessDefinition process, List<String> pids) {
+    return stateStore
+        .findInterrupted(process.project())
+        .filter(state -> !instances.containsKey(state.processId()))
+        .map(
+            state -> {
+              log.info(
+                  "Resume process with processId: {}, skipping {} patients already sent",
+                  state.processId(),
+                  state.sentPatients().size());
+              return run(
+                  new TransferProcessInstance(
+                      state.processId(),
+                      process,
+                      pids,
+                      stateStore,
+                      metrics,
+                      scheduler,
+                      state.sentPatients(),
+                      state.bundlesSentCount()));
+            })
+        .orElseGet(() -> start(process, pids));
+  }
+
+  private String run(TransferProcessInstance transferProcessInstance) {
+    instances.put(transferProcessInstance.processId, transferProcessInstance);
+    transferProcessInstance.statusUpdates().last().subscribe(this::evict);
     transferProcessInstance.execute();
-    instances.put(processId, transferProcessInstance);
-    return processId;
+    return transferProcessInstance.processId;
+  }
+
+  /** Replaces a finished instance by the summary of its status. */
+  private void evict(Status status) {
+    finished.add(
+        status.processId(),
+        status.phase(),
+        status.bundlesSentCount(),
+        status.patientsSkippedCount());
+    instances.remove(status.processId());
   }
 
   @Override
@@ -38,12 +116,36 @@ public class DefaultTransferProcessRunner implements TransferProcessRunner {
     if (transferProcessInstance != null) {
       return Mono.just(transferProcessInstance.status(processId));
     } else {
-      return Mono.error(new IllegalArgumentException());
+      return finished
+          .get(processId)
+          .map(s -> Mono.just(fromSummary(processId, s)))
+          .orElseGet(() -> Mono.error(new IllegalArgumentException()));
+    }
+  }
+
+  @Override
+  public Flux<Status> statusUpdates(String processId) {
+    TransferProcessInstance transferProcessInstance = instances.get(processId);
+    if (transferProcessInstance != null) {
+      return transferProcessInstance.statusUpdates();
+    } else {
+      return status(processId).flux();
     }
   }
 
+  private static Status fromSummary(String processId, Summary<Phase> summary) {
+    return new Status(processId, summary.phase(), summary.first(), summary.second());
+  }
+
   public static class TransferProcessInstance {
 
+    private final String processId;
+    private final String project;
+    private final ProcessStateStore stateStore;
+    private final TransferProcessMetrics metrics;
+    private final PatientScheduler scheduler;
+    private final Set<String> sentPatients;
+
     private final CohortSelector cohortSelector;
     private final DataSelector dataSelector;
     private final Deidentificator deidentificator;
@@ -52,43 +154,119 @@ public class DefaultTransferProcessRunner implements TransferProcessRunner {
     private final List<String> pids;
     private final AtomicLong sentBundles;
     private final AtomicReference<Phase> phase;
+    private final Sinks.Many<Status> statusUpdates;
+    private final int maxConcurrentPatients;
+    private final int weight;
+    private final ConcurrencyLimiter dataSelectionLimit;
+    private final ConcurrencyLimiter deidentificationLimit;
+    private final ConcurrencyLimiter sendingLimit;
 
-    public TransferProcessInstance(TransferProcessDefinition process, List<String> pids) {
+    public TransferProcessInstance(
+        String processId,
+        TransferProcessDefinition process,
+        List<String> pids,
+        ProcessStateStore stateStore,
+        TransferProcessMetrics metrics,
+        PatientScheduler scheduler,
+        Set<String> sentPatients,
+        long sentBundles) {
+      this.processId = processId;
+      this.project = process.project();
+      this.stateStore = stateStore;
+      this.metrics = metrics;
+      this.scheduler = scheduler;
+      this.sentPatients = sentPatients;
       cohortSelector = process.cohortSelector();
       dataSelector = process.dataSelector();
       deidentificator = process.deidentificator();
       bundleSender = process.bundleSender();
       this.pids = pids;
 
+      var concurrency = process.concurrency();
+      maxConcurrentPatients = concurrency.maxConcurrentPatients();
+      weight = concurrency.weight();
+      dataSelectionLimit = new ConcurrencyLimiter(concurrency.dataSelection());
+      deidentificationLimit = new ConcurrencyLimiter(concurrency.deidentification());
+      sendingLimit = new ConcurrencyLimiter(concurrency.sending());
+
       skippedPatients = new AtomicLong();
-      sentBundles = new AtomicLong();
+      this.sentBundles = new AtomicLong(sentBundles);
       phase = new AtomicReference<>(Phase.QUEUED);
+      statusUpdates = Sinks.many().replay().latest();
+      publishStatus();
     }
 
     public void execute() {
       phase.set(Phase.RUNNING);
-      cohortSelector
-          .selectCohort(pids)
-          .doOnError(e -> phase.set(Phase.ERROR))
-          .flatMap(this::executePatient)
-          .doOnComplete(() -> phase.set(Phase.COMPLETED))
+      publishStatus();
+      stateStore.started(processId, project);
+      metrics
+          .untilFirst(project, "selectCohort", cohortSelector.selectCohort(pids))
+          .doOnError(e -> finish(Phase.ERROR))
+          .filter(patient -> !sentPatients.contains(patient.id()))
+          .flatMap(
+              patient -> scheduler.schedule(project, weight, executePatient(patient)),
+              maxConcurrentPatients)
+          .doOnComplete(() -> finish(Phase.COMPLETED))
           .onErrorComplete()
           .subscribe();
     }
 
+    private synchronized void finish(Phase phase) {
+      this.phase.set(phase);
+      stateStore.finished(processId, phase);
+      publishStatus();
+      statusUpdates.tryEmitComplete();
+    }
+
+    /** Emissions are serialized, as patients are processed concurrently. */
+    private synchronized void publishStatus() {
+      statusUpdates.tryEmitNext(status(processId));
+    }
+
     private Mono<Result> executePatient(ConsentedPatient patient) {
-      return dataSelector
-          .select(patient)
-          .flatMap(deidentificator::deidentify)
-          .as(bundleSender::send)
+      var resources = new AtomicLong();
+      var selected =
+          metrics.stage(
+              project, "selectData", dataSelectionLimit.limit(dataSelector.select(patient)));
+      return metrics
+          .patient(
+              project,
+              selected
+                  .doOnNext(
+                      b -> metrics.bundle(project, "selectData", b.bundle().getEntry().size()))
+                  // one page at a time, the data selector fetches the next pages meanwhile
+                  .concatMap(
+                      b ->
+                          metrics.stage(
+                              project,
+                              "deidentify",
+                              deidentificationLimit.limit(deidentificator.deidentify(b))),
+                      0)
+                  .doOnNext(b -> resources.getAndAdd(b.bundle().getEntry().size()))
+                  .flatMap(
+                      b ->
+                          metrics.stage(
+                              project, "send", sendingLimit.limit(bundleSender.send(Flux.just(b)))))
+                  .reduce(new Result(0), (a, b) -> new Result(a.bundleCount() + b.bundleCount())))
+          .doOnNext(r -> metrics.patientResources(project, resources.get()))
           .doOnNext(r -> sentBundles.getAndAdd(r.bundleCount()))
+          .doOnNext(r -> stateStore.patientSent(processId, patient.id(), r.bundleCount()))
+          .doOnNext(r -> publishStatus())
           .doOnError(e -> skippedPatients.incrementAndGet())
+          .doOnError(e -> stateStore.patientSkipped(processId, patient.id()))
           .doOnError(e -> log.error("Skipping patient: {}", e.getMessage()))
+          .doOnError(e -> publishStatus())
           .onErrorResume(e -> Mono.just(new Result(0)));
     }
 
     public Status status(String processId) {
       return new Status(processId, phase.get(), sentBundles.get(), skippedPatients.get());
     }
+
+    /** Slow subscribers skip intermediate updates, but always receive the latest status. */
+    public Flux<Status> statusUpdates() {
+      return statusUpdates.asFlux().onBackpressureLatest();
+    }
   }
 }
@@ -0,0 +1,280 @@
+package care.smith.fts.cda;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+
+import care.smith.fts.cda.TransferProcessRunner.Phase;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps an append-only journal per process at {@code <directory>/<project>/<processId>.journal}.
+ * Each line holds one event, tab separated:
+ *
+ * <pre>
+ * STARTED   project
+ * SENT      bundleCount  patientId
+ * SKIPPED   patientId
+ * COMPLETED | ERROR
+ * </pre>
+ *
+ * <p>The events are written by a single writer thread in the order they occur, so that processes
+ * never wait for the file system. The journals are flushed whenever the writer has caught up. The
+ * journal of a completed process is deleted, journals of failed and interrupted processes remain so
+ * they can be resumed.
+ */
+@Slf4j
+@Component
+public class FileProcessStateStore implements ProcessStateStore, DisposableBean {
+
+  private static final String JOURNAL_SUFFIX = ".journal";
+
+  private final Path directory;
+  private final Map<String, Journal> journals = new ConcurrentHashMap<>();
+  private final ExecutorService writer =
+      Executors.newSingleThreadExecutor(
+          r -> {
+            var thread = new Thread(r, "process-state-writer");
+            thread.setDaemon(true);
+            return thread;
+          });
+  private final AtomicInteger pending = new AtomicInteger();
+
+  public FileProcessStateStore(@Value("${processState.directory:state}") String directory)
+      throws IOException {
+    this.directory = Files.createDirectories(Paths.get(directory));
+  }
+
+  @Override
+  public void started(String processId, String project) {
+    var journal = new Journal(directory.resolve(project).resolve(processId + JOURNAL_SUFFIX));
+    journals.put(processId, journal);
+    write(
+        () -> {
+          journal.open();
+          journal.append("STARTED", project);
+        });
+  }
+
+  @Override
+  public void patientSent(String processId, String patientId, int bundleCount) {
+    append(processId, "SENT", String.valueOf(bundleCount), patientId);
+  }
+
+  @Override
+  public void patientSkipped(String processId, String patientId) {
+    append(processId, "SKIPPED", patientId);
+  }
+
+  /* The journal stays registered until it is closed, so it is never replayed half written */
+  @Override
+  public void finished(String processId, Phase phase) {
+    var journal = journals.get(processId);
+    if (journal != null) {
+      write(
+          () -> {
+            journal.append(phase.name());
+            journal.close();
+            if (phase == Phase.COMPLETED) {
+              journal.delete();
+            }
+            journals.remove(processId, journal);
+          });
+    }
+  }
+
+  private void append(String processId, String... fields) {
+    var journal = journals.get(processId);
+    if (journal != null) {
+      write(() -> journal.append(fields));
+    }
+  }
+
+  private void write(Runnable event) {
+    pending.incrementAndGet();
+    try {
+      writer.execute(
+          () -> {
+            try {
+              event.run();
+            } finally {
+              if (pending.decrementAndGet() == 0) {
+                journals.values().forEach(Journal::flush);
+              }
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      pending.decrementAndGet();
+      log.warn("Process state store is closed, event dropped");
+    }
+  }
+
+  /** Writes the pending events and closes the journals. */
+  @Override
+  public void destroy() throws InterruptedException {
+    writer.shutdown();
+    if (writer.awaitTermination(10, TimeUnit.SECONDS)) {
+      journals.values().forEach(Journal::close);
+    } else {
+      log.warn("Unable to write all pending process events");
+    }
+  }
+
+  @Override
+  public Optional<ProcessState> findInterrupted(String project) {
+    var projectDir = directory.resolve(project);
+    if (!Files.isDirectory(projectDir)) {
+      return Optional.empty();
+    }
+    try (var files = Files.list(projectDir)) {
+      return files
+          .filter(f -> f.getFileName().toString().endsWith(JOURNAL_SUFFIX))
+          .sorted(Comparator.comparing(FileProcessStateStore::lastModified).reversed())
+          .map(f -> readJournal(f, project))
+          .flatMap(Optional::stream)
+          .findFirst();
+    } catch (IOException e) {
+      log.warn("Unable to list journals of project {}", project, e);
+      return Optional.empty();
+    }
+  }
+
+  private static FileTime lastModified(Path file) {
+    try {
+      return Files.getLastModifiedTime(file);
+    } catch (IOException e) {
+      return FileTime.fromMillis(0);
+    }
+  }
+
+  /** Replays the journal, yields a state if the last run of the process did not complete. */
+  private Optional<ProcessState> readJournal(Path file, String project) {
+    var fileName = file.getFileName().toString();
+    var processId = fileName.substring(0, fileName.length() - JOURNAL_SUFFIX.length());
+    if (journals.containsKey(processId)) {
+      return Optional.empty();
+    }
+
+    var sentPatients = new HashSet<String>();
+    var bundlesSent = 0L;
+    var finished = true;
+    try (BufferedReader reader = Files.newBufferedReader(file, UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        var fields = line.split("\t", 3);
+        switch (fields[0]) {
+          case "STARTED" -> finished = false;
+          case "SENT" -> {
+            if (fields.length == 3 && sentPatients.add(fields[2])) {
+              bundlesSent += Long.parseLong(fields[1]);
+            }
+          }
+          case "COMPLETED" -> finished = true;
+          default -> {}
+        }
+      }
+    } catch (IOException | NumberFormatException e) {
+      log.warn("Unable to read journal {}", file, e);
+      return Optional.empty();
+    }
+    if (finished) {
+      deleteFinished(file);
+      return Optional.empty();
+    }
+    return Optional.of(new ProcessState(processId, project, sentPatients, bundlesSent));
+  }
+
+  /* Journals of completed processes are only left over if deleting them failed before */
+  private static void deleteFinished(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      log.warn("Unable to delete journal {}", file, e);
+    }
+  }
+
+  /** Journal of a process, only accessed by the writer thread. */
+  private static final class Journal {
+    private final Path file;
+    private Writer writer;
+    private boolean dirty;
+
+    private Journal(Path file) {
+      this.file = file;
+    }
+
+    private void open() {
+      try {
+        Files.createDirectories(file.getParent());
+        writer = Files.newBufferedWriter(file, UTF_8, CREATE, APPEND);
+      } catch (IOException e) {
+        log.error("Unable to open journal {}", file, e);
+      }
+    }
+
+    private void append(String... fields) {
+      if (writer == null) {
+        return;
+      }
+      try {
+        writer.write(String.join("\t", fields));
+        writer.write('\n');
+        dirty = true;
+      } catch (IOException e) {
+        log.error("Unable to append to journal {}", file, e);
+      }
+    }
+
+    private void flush() {
+      if (writer == null || !dirty) {
+        return;
+      }
+      try {
+        writer.flush();
+        dirty = false;
+      } catch (IOException e) {
+        log.error("Unable to flush journal {}", file, e);
+      }
+    }
+
+    private void close() {
+      if (writer == null) {
+        return;
+      }
+      try {
+        writer.close();
+      } catch (IOException e) {
+        log.warn("Unable to close journal {}", file, e);
+      }
+      writer = null;
+    }
+
+    private void delete() {
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        log.warn("Unable to delete journal {}", file, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,227 @@
+package care.smith.fts.cda;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Limits the number of patients all transfer processes of the CDA work on at the same time, so
+ * processes of different projects share the HDS, TCA and RDA. Free slots are handed to the waiting
+ * patients of the projects in proportion to their {@link ConcurrencyConfig#weight()}: each project
+ * has a virtual time that advances by <code>1 / weight</code> per granted patient, and the project
+ * with the lowest virtual time is served next. Patients of the same project are served in FIFO
+ * order.
+ *
+ * <p>Records per project:
+ *
+ * <ul>
+ *   <li>{@code transferProcess.scheduler.waiting}: number of patients waiting for a slot
+ *   <li>{@code transferProcess.scheduler.running}: number of patients holding a slot
+ *   <li>{@code transferProcess.scheduler.wait}: time a patient waited for a slot
+ * </ul>
+ */
+@Component
+public class PatientScheduler {
+  public static final int DEFAULT_MAX_CONCURRENT_PATIENTS = 64;
+
+  private final MeterRegistry meterRegistry;
+  private final int maxConcurrentPatients;
+
+  /* Guarded by this */
+  private final Map<String, ProjectQueue> projects = new HashMap<>();
+  private int running;
+  private double virtualTime;
+
+  @Autowired
+  public PatientScheduler(
+      MeterRegistry meterRegistry,
+      @Value("${scheduling.maxConcurrentPatients:" + DEFAULT_MAX_CONCURRENT_PATIENTS + "}")
+          int maxConcurrentPatients) {
+    if (maxConcurrentPatients < 1) {
+      throw new IllegalArgumentException(
+          "maxConcurrentPatients must be positive: " + maxConcurrentPatients);
+    }
+    this.meterRegistry = meterRegistry;
+    this.maxConcurrentPatients = maxConcurrentPatients;
+  }
+
+  public PatientScheduler(MeterRegistry meterRegistry) {
+    this(meterRegistry, DEFAULT_MAX_CONCURRENT_PATIENTS);
+  }
+
+  /** Subscribes to the work of a patient once the project is granted a slot. */
+  public <T> Mono<T> schedule(String project, int weight, Mono<T> work) {
+    return Mono.usingWhen(
+        acquire(project, weight),
+        slot -> work,
+        Slot::release,
+        (slot, e) -> slot.release(),
+        Slot::release);
+  }
+
+  public int maxConcurrentPatients() {
+    return maxConcurrentPatients;
+  }
+
+  public synchronized int running() {
+    return running;
+  }
+
+  private Mono<Slot> acquire(String project, int weight) {
+    return Mono.create(
+        sink -> {
+          Waiter waiter;
+          synchronized (this) {
+            var queue = projects.computeIfAbsent(project, ProjectQueue::new);
+            if (queue.isIdle()) {
+              queue.pass = Math.max(queue.pass, virtualTime);
+            }
+            queue.weight = Math.max(1, weight);
+            waiter = new Waiter(queue, sink, Timer.start(meterRegistry));
+            queue.waiters.add(waiter);
+          }
+          sink.onCancel(waiter::cancel);
+          drain();
+        });
+  }
+
+  /** Waiters are granted outside the lock, as granting subscribes to the work of the patient. */
+  private void drain() {
+    List<Waiter> granted = new ArrayList<>();
+    synchronized (this) {
+      ProjectQueue next;
+      while (running < maxConcurrentPatients && (next = nextProject()) != null) {
+        var waiter = next.waiters.poll();
+        virtualTime = next.pass;
+        next.pass += 1.0 / next.weight;
+        next.running++;
+        running++;
+        granted.add(waiter);
+      }
+    }
+    granted.forEach(Waiter::grant);
+  }
+
+  private ProjectQueue nextProject() {
+    ProjectQueue next = null;
+    for (var queue : projects.values()) {
+      if (!queue.waiters.isEmpty() && (next == null || queue.pass < next.pass)) {
+        next = queue;
+      }
+    }
+    return next;
+  }
+
+  private final class ProjectQueue {
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    private final Timer waitTime;
+    private int weight = 1;
+    private int running;
+    private double pass;
+
+    private ProjectQueue(String project) {
+      Gauge.builder("transferProcess.scheduler.waiting", this, ProjectQueue::waitingCount)
+          .tag("project", project)
+          .register(meterRegistry);
+      Gauge.builder("transferProcess.scheduler.running", this, ProjectQueue::runningCount)
+          .tag("project", project)
+          .register(meterRegistry);
+      waitTime =
+          Timer.builder("transferProcess.scheduler.wait")
+              .tag("project", project)
+              .publishPercentileHistogram()
+              .register(meterRegistry);
+    }
+
+    private boolean isIdle() {
+      return waiters.isEmpty() && running == 0;
+    }
+
+    private double waitingCount() {
+      synchronized (PatientScheduler.this) {
+        return waiters.size();
+      }
+    }
+
+    private double runningCount() {
+      synchronized (PatientScheduler.this) {
+        return running;
+      }
+    }
+  }
+
+  private final class Slot {
+    private final ProjectQueue queue;
+    private boolean released;
+
+    private Slot(ProjectQueue queue) {
+      this.queue = queue;
+    }
+
+    private Mono<Void> release() {
+      synchronized (PatientScheduler.this) {
+        if (released) {
+          return Mono.empty();
+        }
+        released = true;
+        queue.running--;
+        running--;
+      }
+      drain();
+      return Mono.empty();
+    }
+  }
+
+  private final class Waiter {
+    private final ProjectQueue queue;
+    private final MonoSink<Slot> sink;
+    private final Timer.Sample waiting;
+    private boolean cancelled;
+    private Slot slot;
+
+    private Waiter(ProjectQueue queue, MonoSink<Slot> sink, Timer.Sample waiting) {
+      this.queue = queue;
+      this.sink = sink;
+      this.waiting = waiting;
+    }
+
+    private void grant() {
+      boolean wasCancelled;
+      synchronized (PatientScheduler.this) {
+        slot = new Slot(queue);
+        wasCancelled = cancelled;
+      }
+      if (wasCancelled) {
+        slot.release();
+      } else {
+        waiting.stop(queue.waitTime);
+        sink.success(slot);
+      }
+    }
+
+    /** A slot granted concurrently to cancellation may never reach the subscriber. */
+    private void cancel() {
+      Slot granted;
+      synchronized (PatientScheduler.this) {
+        cancelled = true;
+        granted = slot;
+        if (granted == null) {
+          queue.waiters.remove(this);
+        }
+      }
+      if (granted != null) {
+        granted.release();
+      }
+    }
+  }
+}
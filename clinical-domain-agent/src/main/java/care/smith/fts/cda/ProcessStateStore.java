@@ -0,0 +1,25 @@
+package care.smith.fts.cda;
+
+import care.smith.fts.cda.TransferProcessRunner.Phase;
+import java.util.Optional;
+import java.util.Set;
+
+/** Persists the progress of transfer processes, so interrupted processes can be resumed. */
+public interface ProcessStateStore {
+
+  void started(String processId, String project);
+
+  void patientSent(String processId, String patientId, int bundleCount);
+
+  void patientSkipped(String processId, String patientId);
+
+  void finished(String processId, Phase phase);
+
+  /**
+   * @return the most recent process of the project that was started, but did not finish
+   */
+  Optional<ProcessState> findInterrupted(String project);
+
+  record ProcessState(
+      String processId, String project, Set<String> sentPatients, long bundlesSentCount) {}
+}
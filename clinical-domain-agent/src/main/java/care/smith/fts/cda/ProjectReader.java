@@ -11,22 +11,25 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.stereotype.Component;
 
 @Slf4j
 @Component
-public class ProjectReader {
+public class ProjectReader implements DisposableBean {
 
   private static final Pattern FILE_NAME_PATTERN = Pattern.compile("(?<name>.*)[.](?:ya?ml|json)$");
 
   private final TransferProcessFactory processFactory;
   private final ObjectMapper objectMapper;
   private final Path projectsDir;
+  private final List<TransferProcessDefinition> processes = new CopyOnWriteArrayList<>();
 
   public ProjectReader(
       TransferProcessFactory processFactory,
@@ -41,17 +44,27 @@ public class ProjectReader {
   public List<TransferProcessDefinition> createTransferProcesses() throws IOException {
     log.trace("Reading project files from {}", projectsDir);
     try (var files = Files.list(projectsDir)) {
-      return files
-          .filter(this::matchesFilePattern)
-          .filter(withWarning(Files::isRegularFile, "File %s is not a regular file"))
-          .filter(withWarning(Files::isReadable, "File %s is not readable"))
-          .map(this::createConfigAndProcess)
-          .filter(Optional::isPresent)
-          .map(Optional::get)
-          .toList();
+      var created =
+          files
+              .filter(this::matchesFilePattern)
+              .filter(withWarning(Files::isRegularFile, "File %s is not a regular file"))
+              .filter(withWarning(Files::isReadable, "File %s is not readable"))
+              .map(this::createConfigAndProcess)
+              .filter(Optional::isPresent)
+              .map(Optional::get)
+              .toList();
+      processes.addAll(created);
+      return created;
     }
   }
 
+  /** Disposes the steps of the created transfer processes. */
+  @Override
+  public void destroy() {
+    processes.forEach(TransferProcessDefinition::dispose);
+    processes.clear();
+  }
+
   private static <T> Predicate<T> withWarning(Predicate<T> predicate, String warnFormat) {
     return p -> {
       boolean test = predicate.test(p);
@@ -7,16 +7,30 @@ public record TransferProcessConfig(
     @NotNull Map<String, ?> cohortSelector,
     @NotNull Map<String, ?> dataSelector,
     @NotNull Map<String, ?> deidentificator,
-    @NotNull Map<String, ?> bundleSender) {
+    @NotNull Map<String, ?> bundleSender,
+    ConcurrencyConfig concurrency) {
+
+  public TransferProcessConfig {
+    concurrency = concurrency != null ? concurrency : ConcurrencyConfig.DEFAULT;
+  }
+
+  public TransferProcessConfig(
+      Map<String, ?> cohortSelector,
+      Map<String, ?> dataSelector,
+      Map<String, ?> deidentificator,
+      Map<String, ?> bundleSender) {
+    this(cohortSelector, dataSelector, deidentificator, bundleSender, null);
+  }
 
   @Override
   public String toString() {
-    return "TransferProcessConfig{cohortSelector=%s, dataSelector=%s, deidentificator=%s, bundleSender=%s}"
+    return "TransferProcessConfig{cohortSelector=%s, dataSelector=%s, deidentificator=%s, bundleSender=%s, concurrency=%s}"
         .formatted(
             printEntry(cohortSelector),
             printEntry(dataSelector),
             printEntry(deidentificator),
-            printEntry(bundleSender));
+            printEntry(bundleSender),
+            concurrency);
   }
 
   private Object printEntry(Map<String, ?> v) {
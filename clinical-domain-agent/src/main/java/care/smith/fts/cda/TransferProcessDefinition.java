@@ -7,13 +7,16 @@ import care.smith.fts.api.cda.BundleSender;
 import care.smith.fts.api.cda.CohortSelector;
 import care.smith.fts.api.cda.DataSelector;
 import care.smith.fts.api.cda.Deidentificator;
+import reactor.core.Disposable;
 
 public record TransferProcessDefinition(
     String project,
     CohortSelector cohortSelector,
     DataSelector dataSelector,
     Deidentificator deidentificator,
-    BundleSender bundleSender) {
+    BundleSender bundleSender,
+    ConcurrencyConfig concurrency)
+    implements Disposable {
 
   public TransferProcessDefinition {
     requireNonNull(emptyToNull(project));
@@ -21,5 +24,30 @@ public record TransferProcessDefinition(
     requireNonNull(dataSelector);
     requireNonNull(deidentificator);
     requireNonNull(bundleSender);
+    requireNonNull(concurrency);
+  }
+
+  public TransferProcessDefinition(
+      String project,
+      CohortSelector cohortSelector,
+      DataSelector dataSelector,
+      Deidentificator deidentificator,
+      BundleSender bundleSender) {
+    this(
+        project,
+        cohortSelector,
+        dataSelector,
+        deidentificator,
+        bundleSender,
+        ConcurrencyConfig.DEFAULT);
+  }
+
+  /** Releases the resources of the steps, e.g. their batchers. */
+  @Override
+  public void dispose() {
+    cohortSelector.dispose();
+    dataSelector.dispose();
+    deidentificator.dispose();
+    bundleSender.dispose();
   }
 }
@@ -65,7 +65,12 @@ public class TransferProcessFactory {
             BundleSender.Config.class,
             processDefinition.bundleSender());
     return new TransferProcessDefinition(
-        project, cohortSelector, dataSelector, deidentificator, bundleSender);
+        project,
+        cohortSelector,
+        dataSelector,
+        deidentificator,
+        bundleSender,
+        processDefinition.concurrency());
   }
 
   private <TYPE, CC, IC, FACTORY extends TransferProcessStepFactory<TYPE, CC, IC>>
@@ -1,20 +1,47 @@
 package care.smith.fts.cda;
 
 import jakarta.validation.constraints.NotNull;
+import java.time.Duration;
 import java.util.List;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface TransferProcessRunner {
   String start(TransferProcessDefinition process, @NotNull List<String> pids);
 
+  /**
+   * Resumes the project's most recent interrupted process, skipping patients that have already been
+   * sent, or starts a new process if there is none.
+   */
+  String resume(TransferProcessDefinition process, @NotNull List<String> pids);
+
   Mono<Status> status(String processId);
 
+  /**
+   * Emits the status of the process whenever its phase or counters change, starting with the
+   * current status and completing with the final one. Runners that cannot push the changes poll
+   * {@link #status(String)} every second.
+   */
+  default Flux<Status> statusUpdates(String processId) {
+    return status(processId)
+        .expand(
+            s ->
+                s.phase().isFinished()
+                    ? Mono.empty()
+                    : status(processId).delaySubscription(Duration.ofSeconds(1)))
+        .distinctUntilChanged();
+  }
+
   record Status(String processId, Phase phase, long bundlesSentCount, long patientsSkippedCount) {}
 
   enum Phase {
     QUEUED,
     RUNNING,
     COMPLETED,
-    ERROR
+    ERROR;
+
+    public boolean isFinished() {
+      return this == COMPLETED || this == ERROR;
+    }
   }
 }
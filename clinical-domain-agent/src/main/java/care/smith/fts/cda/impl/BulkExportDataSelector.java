@@ -0,0 +1,440 @@
+package care.smith.fts.cda.impl;
+
+import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
+import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_NDJSON;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Comparator.comparingInt;
+import static java.util.stream.Collectors.joining;
+
+import ca.uhn.fhir.context.FhirContext;
+import care.smith.fts.api.ConsentedPatient;
+import care.smith.fts.api.ConsentedPatientBundle;
+import care.smith.fts.api.cda.DataSelector;
+import care.smith.fts.cda.services.ClinicalDateFilter;
+import care.smith.fts.cda.services.PatientIdResolver;
+import care.smith.fts.util.FhirUtils;
+import care.smith.fts.util.RetryPolicy;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Selects patient data from a FHIR Bulk Data export. The export is started with the first selected
+ * patient and shared by all patients selected until it exceeds its max age. As the exported
+ * resources are split by type, not by patient, all files have to be downloaded before the first
+ * patient can be served. Each file is streamed line by line into a spool file, only the positions
+ * of the lines are kept in memory, indexed by patient compartment.
+ *
+ * <p>Unless consent is ignored, resources outside the consented period of the patient are dropped,
+ * see {@link ClinicalDateFilter}.
+ */
+@Slf4j
+public class BulkExportDataSelector implements DataSelector {
+  private final Config common;
+  private final BulkExportDataSelectorConfig config;
+  private final WebClient client;
+  private final PatientIdResolver pidResolver;
+  private final FhirContext fhir;
+  private final RetryPolicy retryPolicy;
+
+  private final Mono<Export> export;
+  private final AtomicReference<Export> current = new AtomicReference<>();
+  private volatile boolean disposed;
+
+  public BulkExportDataSelector(
+      Config common,
+      BulkExportDataSelectorConfig config,
+      WebClient client,
+      PatientIdResolver patientIdResolver,
+      FhirContext fhir,
+      RetryPolicy retryPolicy) {
+    this.common = common;
+    this.config = config;
+    this.client = client;
+    this.pidResolver = patientIdResolver;
+    this.fhir = fhir;
+    this.retryPolicy = retryPolicy;
+    this.export =
+        Mono.defer(this::runExport)
+            .doOnNext(this::replace)
+            .cache(e -> config.maxAge(), e -> Duration.ZERO, () -> Duration.ZERO);
+  }
+
+  @Override
+  public Flux<ConsentedPatientBundle> select(ConsentedPatient patient) {
+    if (!common.ignoreConsent() && patient.maxConsentedPeriod().isEmpty()) {
+      return Flux.error(
+          new IllegalArgumentException(
+              "Patient has no consent configured, and ignoreConsent is false."));
+    }
+    Predicate<Resource> consented =
+        common.ignoreConsent()
+            ? r -> true
+            : new ClinicalDateFilter(patient.maxConsentedPeriod().get());
+    return pidResolver
+        .resolve(patient.id())
+        .flatMap(fhirId -> patientBundle(fhirId, consented))
+        .map(b -> new ConsentedPatientBundle(b, patient))
+        .flux();
+  }
+
+  @Override
+  public void dispose() {
+    pidResolver.dispose();
+    disposed = true;
+    var last = current.getAndSet(null);
+    if (last != null) {
+      last.release();
+    }
+  }
+
+  private Mono<Bundle> patientBundle(IIdType fhirId, Predicate<Resource> consented) {
+    var parser = fhir.newJsonParser();
+    return Mono.usingWhen(
+            retainExport(),
+            e ->
+                Mono.fromCallable(() -> e.read(fhirId.getIdPart()))
+                    .subscribeOn(Schedulers.boundedElastic()),
+            e -> Mono.fromRunnable(e::release).subscribeOn(Schedulers.boundedElastic()))
+        .flatMap(
+            lines -> {
+              if (lines.isEmpty()) {
+                log.debug("No exported resources for patient {}", fhirId.getIdPart());
+                return Mono.empty();
+              }
+              var resources =
+                  lines.stream().map(line -> (Resource) parser.parseResource(line)).toList();
+              var bundle = resources.stream().filter(consented).collect(FhirUtils.toBundle());
+              log.trace(
+                  "Dropped {} resources of patient {} outside the consented period",
+                  resources.size() - bundle.getEntry().size(),
+                  fhirId.getIdPart());
+              return Mono.just(bundle);
+            });
+  }
+
+  private Mono<Export> runExport() {
+    return kickOff()
+        .flatMap(
+            statusUrl ->
+                awaitManifest(statusUrl)
+                    .flatMap(this::download)
+                    .flatMap(e -> deleteExport(statusUrl).thenReturn(e)))
+        .doOnError(e -> log.error("Unable to export patient data from HDS: {}", e.getMessage()));
+  }
+
+  /**
+   * Retains the current export while it is read. An export that was replaced since it was cached
+   * may already be released, the export is fetched once more to read the one replacing it.
+   */
+  private Mono<Export> retainExport() {
+    return export.filter(Export::retain).repeatWhenEmpty(1, repeat -> repeat);
+  }
+
+  /**
+   * The previous export is released once a new export is complete, its spool files are deleted
+   * after its last reader.
+   */
+  private void replace(Export next) {
+    var previous = current.getAndSet(next);
+    if (previous != null) {
+      Schedulers.boundedElastic().schedule(previous::release);
+    }
+    if (disposed && current.compareAndSet(next, null)) {
+      Schedulers.boundedElastic().schedule(next::release);
+    }
+  }
+
+  private Mono<String> kickOff() {
+    var uri = config.group() != null ? "/Group/{id}/$export" : "/Patient/$export";
+    log.info("Starting bulk export from HDS: {}", uri);
+    return client
+        .get()
+        .uri(uri, this::exportParams)
+        .headers(h -> h.setAccept(List.of(APPLICATION_FHIR_JSON)))
+        .header("Prefer", "respond-async")
+        .retrieve()
+        .toBodilessEntity()
+        .flatMap(
+            r ->
+                r.getStatusCode().isSameCodeAs(HttpStatus.ACCEPTED)
+                    ? Mono.justOrEmpty(r.getHeaders().getFirst("Content-Location"))
+                    : Mono.error(
+                        new IllegalStateException(
+                            "Unexpected bulk export response status " + r.getStatusCode())))
+        .switchIfEmpty(
+            Mono.error(new IllegalStateException("Bulk export response has no status location")))
+        .retryWhen(retryPolicy.retry("bulkExportKickOff"));
+  }
+
+  private URI exportParams(UriBuilder builder) {
+    var variables = new HashMap<String, Object>();
+    builder.queryParam("_outputFormat", APPLICATION_FHIR_NDJSON.toString());
+    if (config.group() != null) {
+      variables.put("id", config.group());
+    }
+    if (!config.types().isEmpty()) {
+      builder.queryParam("_type", String.join(",", config.types()));
+    }
+    if (!config.typeFilters().isEmpty()) {
+      builder.queryParam("_typeFilter", "{typeFilter}");
+      variables.put("typeFilter", String.join(",", config.typeFilters()));
+    }
+    return builder.build(variables);
+  }
+
+  private Mono<Manifest> awaitManifest(String statusUrl) {
+    return client
+        .get()
+        .uri(statusUrl)
+        .headers(h -> h.setAccept(List.of(APPLICATION_FHIR_JSON)))
+        .exchangeToMono(this::readManifest)
+        .repeatWhenEmpty(repeat -> repeat.delayElements(config.pollInterval()))
+        .timeout(config.timeout())
+        .doOnNext(m -> log.debug("Bulk export finished with {} files", m.output().size()));
+  }
+
+  private Mono<Manifest> readManifest(ClientResponse response) {
+    if (response.statusCode().isSameCodeAs(HttpStatus.ACCEPTED)) {
+      log.trace(
+          "Bulk export in progress: {}",
+          response.headers().header("X-Progress").stream().findFirst());
+      return response.releaseBody().then(Mono.empty());
+    } else if (response.statusCode().is2xxSuccessful()) {
+      return response.bodyToMono(Manifest.class);
+    } else {
+      return response.createError();
+    }
+  }
+
+  private Mono<Export> download(Manifest manifest) {
+    if (manifest.error() != null && !manifest.error().isEmpty()) {
+      log.warn(
+          "Bulk export reported errors: {}",
+          manifest.error().stream().map(Output::url).collect(joining(", ")));
+    }
+    return Mono.fromCallable(Export::create)
+        .subscribeOn(Schedulers.boundedElastic())
+        .flatMap(
+            export ->
+                Flux.fromIterable(manifest.output())
+                    .index()
+                    .flatMap(o -> downloadFile(export, o.getT1().intValue(), o.getT2()))
+                    .then(Mono.just(export))
+                    .doOnError(e -> export.delete())
+                    .doOnCancel(export::delete));
+  }
+
+  private Mono<Void> downloadFile(Export export, int file, Output output) {
+    log.debug("Downloading {} resources from {}", output.type(), output.url());
+    var parser = fhir.newJsonParser();
+    var terser = fhir.newTerser();
+    return Mono.usingWhen(
+        Mono.fromCallable(() -> export.spool(file)).subscribeOn(Schedulers.boundedElastic()),
+        spool ->
+            client
+                .get()
+                .uri(output.url())
+                .headers(h -> h.setAccept(List.of(APPLICATION_FHIR_NDJSON)))
+                .retrieve()
+                .bodyToFlux(String.class)
+                .filter(line -> !line.isBlank())
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(
+                    line -> {
+                      var resource = parser.parseResource(line);
+                      Stream<String> owners =
+                          resource.fhirType().equals("Patient")
+                              ? Stream.of(resource.getIdElement().getIdPart())
+                              : terser
+                                  .getCompartmentOwnersForResource("Patient", resource, Set.of())
+                                  .stream()
+                                  .map(IIdType::getIdPart);
+                      spool.append(line, owners);
+                    })
+                .then(),
+        spool -> Mono.fromRunnable(spool::close).subscribeOn(Schedulers.boundedElastic()));
+  }
+
+  private Mono<Void> deleteExport(String statusUrl) {
+    return client
+        .delete()
+        .uri(statusUrl)
+        .retrieve()
+        .toBodilessEntity()
+        .then()
+        .onErrorResume(
+            e -> {
+              log.warn("Unable to delete bulk export {}: {}", statusUrl, e.getMessage());
+              return Mono.empty();
+            });
+  }
+
+  record Manifest(List<Output> output, List<Output> error) {}
+
+  record Output(String type, String url) {}
+
+  /** Position of an exported resource in the spool files */
+  record Span(int file, long offset, int length) {}
+
+  /**
+   * Spool files of an export and the positions of the resources of each patient. The spool files
+   * are deleted once the export is released by the selector and by all of its readers.
+   */
+  static final class Export {
+    private final Path directory;
+    private final Map<String, Queue<Span>> index = new ConcurrentHashMap<>();
+
+    /* Readers of the export, plus one for the selector while it is the current export */
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private Export(Path directory) {
+      this.directory = directory;
+    }
+
+    static Export create() throws IOException {
+      var permissions =
+          PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------"));
+      var posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+      return new Export(
+          posix
+              ? Files.createTempDirectory("fts-bulk-export", permissions)
+              : Files.createTempDirectory("fts-bulk-export"));
+    }
+
+    Spool spool(int file) throws IOException {
+      return new Spool(file, FileChannel.open(path(file), CREATE_NEW, WRITE));
+    }
+
+    /**
+     * @return the exported resources of the patient, ordered by file and position in the file
+     */
+    List<String> read(String patientId) throws IOException {
+      var spans = index.get(patientId);
+      if (spans == null) {
+        return List.of();
+      }
+      var sorted =
+          spans.stream().sorted(comparingInt(Span::file).thenComparingLong(Span::offset)).toList();
+      var lines = new ArrayList<String>(sorted.size());
+      var channels = new HashMap<Integer, FileChannel>();
+      try {
+        for (var span : sorted) {
+          var channel = channels.get(span.file());
+          if (channel == null) {
+            channel = FileChannel.open(path(span.file()), READ);
+            channels.put(span.file(), channel);
+          }
+          var buffer = ByteBuffer.allocate(span.length());
+          while (buffer.hasRemaining()) {
+            if (channel.read(buffer, span.offset() + buffer.position()) < 0) {
+              throw new EOFException("Spool file %s truncated".formatted(path(span.file())));
+            }
+          }
+          lines.add(new String(buffer.array(), UTF_8));
+        }
+      } finally {
+        for (var channel : channels.values()) {
+          channel.close();
+        }
+      }
+      return lines;
+    }
+
+    /**
+     * @return whether the export was retained, an export that was released completely is deleted
+     */
+    boolean retain() {
+      return references.getAndUpdate(n -> n > 0 ? n + 1 : n) > 0;
+    }
+
+    void release() {
+      if (references.decrementAndGet() == 0) {
+        delete();
+      }
+    }
+
+    void delete() {
+      try (var files = Files.list(directory)) {
+        for (var file : (Iterable<Path>) files::iterator) {
+          Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(directory);
+      } catch (IOException e) {
+        log.warn("Unable to delete bulk export spool {}: {}", directory, e.getMessage());
+      }
+    }
+
+    private Path path(int file) {
+      return directory.resolve(file + ".ndjson");
+    }
+
+    /** Appends the lines of one exported file to its spool file. Not thread-safe. */
+    final class Spool {
+      private final int file;
+      private final FileChannel channel;
+      private long position;
+
+      private Spool(int file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+      }
+
+      void append(String line, Stream<String> owners) {
+        var buffer = ByteBuffer.wrap(line.getBytes(UTF_8));
+        var span = new Span(file, position, buffer.remaining());
+        try {
+          while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        owners.forEach(
+            id -> index.computeIfAbsent(id, k -> new ConcurrentLinkedQueue<>()).add(span));
+      }
+
+      void close() {
+        try {
+          channel.close();
+        } catch (IOException e) {
+          log.warn("Unable to close bulk export spool {}: {}", path(file), e.getMessage());
+        }
+      }
+    }
+  }
+}
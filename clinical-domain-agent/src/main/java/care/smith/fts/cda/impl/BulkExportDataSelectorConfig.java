@@ -0,0 +1,45 @@
+package care.smith.fts.cda.impl;
+
+import care.smith.fts.cda.services.FhirResolveConfig;
+import care.smith.fts.util.HttpClientConfig;
+import jakarta.validation.constraints.NotNull;
+import java.time.Duration;
+import java.util.List;
+
+public record BulkExportDataSelectorConfig(
+    /* Server to export data from */
+    @NotNull HttpClientConfig fhirServer,
+
+    /* */
+    FhirResolveConfig resolve,
+
+    /* ID of the Group whose patients are exported, all patients are exported if not set */
+    String group,
+
+    /* Resource types to export, all types are exported if not set */
+    List<String> types,
+
+    /* Search queries that restrict the exported resources, e.g. Observation?code=... */
+    List<String> typeFilters,
+
+    /* Time between two requests of the export status */
+    Duration pollInterval,
+
+    /* Maximum time to wait for the export to finish */
+    Duration timeout,
+
+    /* Time a finished export is used for selecting data, a new export is started afterwards */
+    Duration maxAge) {
+
+  public BulkExportDataSelectorConfig {
+    types = types != null ? types : List.of();
+    typeFilters = typeFilters != null ? typeFilters : List.of();
+    pollInterval = pollInterval != null ? pollInterval : Duration.ofSeconds(5);
+    timeout = timeout != null ? timeout : Duration.ofHours(1);
+    maxAge = maxAge != null ? maxAge : Duration.ofHours(1);
+  }
+
+  public BulkExportDataSelectorConfig(HttpClientConfig fhirServer, String group) {
+    this(fhirServer, null, group, null, null, null, null, null);
+  }
+}
@@ -0,0 +1,59 @@
+package care.smith.fts.cda.impl;
+
+import ca.uhn.fhir.context.FhirContext;
+import care.smith.fts.api.cda.DataSelector;
+import care.smith.fts.cda.services.PatientIdResolver;
+import care.smith.fts.util.RetryPolicies;
+import care.smith.fts.util.RetryPolicy;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hl7.fhir.r4.model.IdType;
+import org.springframework.boot.autoconfigure.web.reactive.function.client.WebClientSsl;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+@Component("bulkExportDataSelector")
+public class BulkExportDataSelectorFactory
+    implements DataSelector.Factory<BulkExportDataSelectorConfig> {
+
+  private final WebClient.Builder clientBuilder;
+  private final WebClientSsl ssl;
+  private final MeterRegistry meterRegistry;
+  private final RetryPolicies retryPolicies;
+  private final FhirContext fhir;
+
+  public BulkExportDataSelectorFactory(
+      WebClient.Builder clientBuilder,
+      WebClientSsl ssl,
+      MeterRegistry meterRegistry,
+      RetryPolicies retryPolicies,
+      FhirContext fhir) {
+    this.clientBuilder = clientBuilder;
+    this.ssl = ssl;
+    this.meterRegistry = meterRegistry;
+    this.retryPolicies = retryPolicies;
+    this.fhir = fhir;
+  }
+
+  @Override
+  public Class<BulkExportDataSelectorConfig> getConfigType() {
+    return BulkExportDataSelectorConfig.class;
+  }
+
+  @Override
+  public DataSelector create(DataSelector.Config common, BulkExportDataSelectorConfig config) {
+    var retryPolicy = retryPolicies.of(config.fhirServer());
+    var client = config.fhirServer().createClient(clientBuilder, ssl, retryPolicy);
+    PatientIdResolver resolver = createResolver(config, client, retryPolicy);
+    return new BulkExportDataSelector(common, config, client, resolver, fhir, retryPolicy);
+  }
+
+  private PatientIdResolver createResolver(
+      BulkExportDataSelectorConfig config, WebClient client, RetryPolicy retryPolicy) {
+    if (config.resolve() != null) {
+      return config.resolve().createService(client, meterRegistry, retryPolicy);
+    } else {
+      return pid -> Mono.just(new IdType("Patient", pid));
+    }
+  }
+}
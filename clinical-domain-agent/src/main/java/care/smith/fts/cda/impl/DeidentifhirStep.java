@@ -1,19 +1,21 @@
 package care.smith.fts.cda.impl;
 
-import static care.smith.fts.cda.services.deidentifhir.DeidentifhirUtils.generateRegistry;
-import static care.smith.fts.util.RetryStrategies.defaultRetryStrategy;
-
 import care.smith.fts.api.ConsentedPatientBundle;
 import care.smith.fts.api.TransportBundle;
 import care.smith.fts.api.cda.Deidentificator;
-import care.smith.fts.cda.services.deidentifhir.DeidentifhirUtils;
+import care.smith.fts.cda.impl.DeidentifhirStepConfig.BatchConfig;
+import care.smith.fts.cda.services.deidentifhir.DeidentifhirEngine;
 import care.smith.fts.cda.services.deidentifhir.IDATScraper;
+import care.smith.fts.util.MicroBatcher;
+import care.smith.fts.util.RetryPolicy;
 import care.smith.fts.util.error.TransferProcessException;
 import care.smith.fts.util.tca.*;
 import io.micrometer.core.instrument.MeterRegistry;
 import java.time.Duration;
+import java.util.List;
 import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ProblemDetail;
@@ -25,9 +27,10 @@ class DeidentifhirStep implements Deidentificator {
   private final WebClient httpClient;
   private final String domain;
   private final Duration dateShift;
-  private final com.typesafe.config.Config deidentifhirConfig;
-  private final com.typesafe.config.Config scraperConfig;
-  private final MeterRegistry meterRegistry;
+  private final DeidentifhirEngine deidentifhir;
+  private final IDATScraper idatScraper;
+  private final RetryPolicy retryPolicy;
+  private final MicroBatcher<PseudonymizeRequest, PseudonymizeResponse> batcher;
 
   public DeidentifhirStep(
       WebClient httpClient,
@@ -35,29 +38,56 @@ class DeidentifhirStep implements Deidentificator {
       Duration dateShift,
       com.typesafe.config.Config deidentifhirConfig,
       com.typesafe.config.Config scraperConfig,
-      MeterRegistry meterRegistry) {
+      MeterRegistry meterRegistry,
+      BatchConfig batch,
+      RetryPolicy retryPolicy) {
     this.httpClient = httpClient;
     this.domain = domain;
     this.dateShift = dateShift;
-    this.deidentifhirConfig = deidentifhirConfig;
-    this.scraperConfig = scraperConfig;
-    this.meterRegistry = meterRegistry;
+    this.deidentifhir = new DeidentifhirEngine(deidentifhirConfig, meterRegistry);
+    this.idatScraper = scraperConfig != null ? new IDATScraper(scraperConfig) : null;
+    this.retryPolicy = retryPolicy;
+    this.batcher =
+        batch != null
+            ? new MicroBatcher<>(batch.maxSize(), batch.maxWait(), this::fetchBatch)
+            : null;
   }
 
   @Override
   public Mono<TransportBundle> deidentify(ConsentedPatientBundle bundle) {
+    if (idatScraper == null) {
+      return deidentifySinglePass(bundle);
+    }
     var patient = bundle.consentedPatient();
-    var idatScraper = new IDATScraper(scraperConfig, patient);
-    var ids = idatScraper.gatherIDs(bundle.bundle());
+    var ids = idatScraper.gatherIDs(patient, bundle.bundle());
     return fetchTransportIdsAndDateShiftingValues(patient.id(), ids)
         .map(
             response -> {
               var transportIDs = response.originalToTransportIDMap();
               var dateShiftValue = response.dateShiftValue();
-              var registry = generateRegistry(patient.id(), transportIDs, dateShiftValue);
               var deidentified =
-                  DeidentifhirUtils.deidentify(
-                      deidentifhirConfig, registry, bundle.bundle(), patient.id(), meterRegistry);
+                  deidentifhir.deidentify(
+                      bundle.bundle(), patient.id(), transportIDs, dateShiftValue);
+              return new TransportBundle(deidentified, response.tIDMapName());
+            });
+  }
+
+  @Override
+  public void dispose() {
+    if (batcher != null) {
+      batcher.dispose();
+    }
+  }
+
+  /** Deidentifies the bundle while gathering its IDs, the transport IDs are filled in afterwards. */
+  private Mono<TransportBundle> deidentifySinglePass(ConsentedPatientBundle bundle) {
+    var patient = bundle.consentedPatient();
+    var sites = deidentifhir.deidentifyDeferred(bundle.bundle(), patient.id());
+    return fetchTransportIdsAndDateShiftingValues(patient.id(), sites.ids())
+        .map(
+            response -> {
+              var deidentified =
+                  sites.apply(response.originalToTransportIDMap(), response.dateShiftValue());
               return new TransportBundle(deidentified, response.tIDMapName());
             });
   }
@@ -65,6 +95,9 @@ class DeidentifhirStep implements Deidentificator {
   private Mono<PseudonymizeResponse> fetchTransportIdsAndDateShiftingValues(
       String patientId, Set<String> ids) {
     PseudonymizeRequest request = new PseudonymizeRequest(patientId, ids, domain, dateShift);
+    if (batcher != null) {
+      return batcher.submit(request);
+    }
 
     log.trace("Fetch TIDs and date shifting values for {} IDs", ids.size());
 
@@ -81,7 +114,30 @@ class DeidentifhirStep implements Deidentificator {
                     .flatMap(b -> Mono.error(new TransferProcessException(b.getDetail()))))
         .bodyToMono(PseudonymizeResponse.class)
         .timeout(Duration.ofSeconds(30))
-        .retryWhen(defaultRetryStrategy(meterRegistry, "transport-ids-and-date-shifting-values"))
+        .retryWhen(retryPolicy.retry("transport-ids-and-date-shifting-values"))
+        .doOnError(
+            e ->
+                log.error(
+                    "Cannot fetch transport deidentification data from TCA: {}", e.getMessage()));
+  }
+
+  private Mono<List<PseudonymizeResponse>> fetchBatch(List<PseudonymizeRequest> requests) {
+    log.trace("Fetch TIDs and date shifting values for {} patients", requests.size());
+
+    return httpClient
+        .post()
+        .uri("/api/v2/cd/transport-ids-and-date-shifting-values/batch")
+        .headers(h -> h.setContentType(MediaType.APPLICATION_JSON))
+        .bodyValue(requests)
+        .retrieve()
+        .onStatus(
+            r -> r.equals(HttpStatus.BAD_REQUEST),
+            s ->
+                s.bodyToMono(ProblemDetail.class)
+                    .flatMap(b -> Mono.error(new TransferProcessException(b.getDetail()))))
+        .bodyToMono(new ParameterizedTypeReference<List<PseudonymizeResponse>>() {})
+        .timeout(Duration.ofSeconds(30))
+        .retryWhen(retryPolicy.retry("transport-ids-and-date-shifting-values-batch"))
         .doOnError(
             e ->
                 log.error(
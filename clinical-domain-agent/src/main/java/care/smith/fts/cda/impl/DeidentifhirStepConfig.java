@@ -5,7 +5,41 @@ import java.io.File;
 import java.time.Duration;
 
 public record DeidentifhirStepConfig(
-    TCAConfig tca, Duration dateShift, File deidentifhirConfig, File scraperConfig) {
+    TCAConfig tca,
+    Duration dateShift,
+    File deidentifhirConfig,
+    File scraperConfig,
 
-  public record TCAConfig(HttpClientConfig server, String domain) {}
+    /* Gather IDs while deidentifying instead of scraping the bundle first, scraperConfig is unused */
+    boolean singlePass) {
+
+  public DeidentifhirStepConfig(
+      TCAConfig tca, Duration dateShift, File deidentifhirConfig, File scraperConfig) {
+    this(tca, dateShift, deidentifhirConfig, scraperConfig, false);
+  }
+
+  public record TCAConfig(
+      HttpClientConfig server,
+      String domain,
+
+      /* Fetch transport ids of multiple patients with a single request, disabled if not set */
+      BatchConfig batch) {
+
+    public TCAConfig(HttpClientConfig server, String domain) {
+      this(server, domain, null);
+    }
+  }
+
+  public record BatchConfig(
+      /* Maximum number of patients per request */
+      int maxSize,
+
+      /* Maximum time a patient waits for the batch to fill up */
+      Duration maxWait) {
+
+    public BatchConfig {
+      maxSize = maxSize > 0 ? maxSize : 32;
+      maxWait = maxWait != null ? maxWait : Duration.ofMillis(50);
+    }
+  }
 }
@@ -4,6 +4,7 @@ import static com.typesafe.config.ConfigFactory.parseFile;
 import static java.util.Objects.requireNonNull;
 
 import care.smith.fts.api.cda.Deidentificator;
+import care.smith.fts.util.RetryPolicies;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.boot.autoconfigure.web.reactive.function.client.WebClientSsl;
 import org.springframework.stereotype.Component;
@@ -15,12 +16,17 @@ public class DeidentifhirStepFactory implements Deidentificator.Factory<Deidenti
   private final WebClient.Builder builder;
   private final WebClientSsl ssl;
   private final MeterRegistry meterRegistry;
+  private final RetryPolicies retryPolicies;
 
   public DeidentifhirStepFactory(
-      WebClient.Builder builder, WebClientSsl ssl, MeterRegistry meterRegistry) {
+      WebClient.Builder builder,
+      WebClientSsl ssl,
+      MeterRegistry meterRegistry,
+      RetryPolicies retryPolicies) {
     this.builder = builder;
     this.ssl = ssl;
     this.meterRegistry = meterRegistry;
+    this.retryPolicies = retryPolicies;
   }
 
   @Override
@@ -31,14 +37,17 @@ public class DeidentifhirStepFactory implements Deidentificator.Factory<Deidenti
   @Override
   public Deidentificator create(
       Deidentificator.Config commonConfig, DeidentifhirStepConfig implConfig) {
-    var httpClient = implConfig.tca().server().createClient(builder, ssl);
+    var retryPolicy = retryPolicies.of(implConfig.tca().server());
+    var httpClient = implConfig.tca().server().createClient(builder, ssl, retryPolicy);
 
     return new DeidentifhirStep(
         httpClient,
         implConfig.tca().domain(),
         implConfig.dateShift(),
         parseFile(requireNonNull(implConfig.deidentifhirConfig())),
-        parseFile(requireNonNull(implConfig.scraperConfig())),
-        meterRegistry);
+        implConfig.singlePass() ? null : parseFile(requireNonNull(implConfig.scraperConfig())),
+        meterRegistry,
+        implConfig.tca().batch(),
+        retryPolicy);
   }
 }
@@ -1,26 +1,34 @@
 package care.smith.fts.cda.impl;
 
 import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
-import static care.smith.fts.util.RetryStrategies.defaultRetryStrategy;
 import static java.time.format.DateTimeFormatter.ISO_LOCAL_DATE;
 import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 
 import care.smith.fts.api.ConsentedPatient;
 import care.smith.fts.api.ConsentedPatientBundle;
+import care.smith.fts.api.Period;
 import care.smith.fts.api.cda.DataSelector;
+import care.smith.fts.cda.impl.EverythingDataSelectorConfig.PageConfig;
+import care.smith.fts.cda.services.ClinicalDateFilter;
+import care.smith.fts.cda.services.EncounterFilter;
 import care.smith.fts.cda.services.PatientIdResolver;
-import io.micrometer.core.instrument.MeterRegistry;
+import care.smith.fts.util.RetryPolicy;
 import java.net.URI;
 import java.time.Duration;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.Bundle.BundleLinkComponent;
+import org.hl7.fhir.r4.model.Resource;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.util.UriBuilder;
 import reactor.core.publisher.Flux;
@@ -31,18 +39,20 @@ public class EverythingDataSelector implements DataSelector {
   private final Config common;
   private final WebClient client;
   private final PatientIdResolver pidResolver;
-  private final MeterRegistry meterRegistry;
-  private final int defaultPageSize = 500;
+  private final PageConfig page;
+  private final RetryPolicy retryPolicy;
 
   public EverythingDataSelector(
       Config common,
       WebClient client,
       PatientIdResolver patientIdResolver,
-      MeterRegistry meterRegistry) {
+      RetryPolicy retryPolicy,
+      PageConfig page) {
     this.common = common;
     this.client = client;
     this.pidResolver = patientIdResolver;
-    this.meterRegistry = meterRegistry;
+    this.page = page;
+    this.retryPolicy = retryPolicy;
   }
 
   @Override
@@ -53,14 +63,90 @@ public class EverythingDataSelector implements DataSelector {
         .map(b -> new ConsentedPatientBundle(b, patient));
   }
 
+  @Override
+  public void dispose() {
+    pidResolver.dispose();
+  }
+
   private Flux<Bundle> fetchEverything(ConsentedPatient patient, IIdType fhirId) {
     var uriBuilder = common.ignoreConsent() ? withoutConsent(fhirId) : withConsent(patient, fhirId);
-    return fetchBundle("/Patient/{id}/$everything", uriBuilder)
-        .doOnError(e -> log.error("Unable to fetch patient data from HDS: {}", e.getMessage()))
-        .expand(this::fetchNextPage);
+    var pages =
+        fetchBundle("fetchEverything", "/Patient/{id}/$everything", uriBuilder)
+            .doOnError(e -> log.error("Unable to fetch patient data from HDS: {}", e.getMessage()))
+            .expand(b -> fetchNextPage("fetchEverything", b));
+    var ahead = lookAhead(pages);
+    return resourceFilter(patient, fhirId)
+        .map(f -> ahead.map(b -> filter(b, f)).filter(Bundle::hasEntry))
+        .defaultIfEmpty(ahead)
+        .flatMapMany(Function.identity());
+  }
+
+  /**
+   * Buffers up to <code>prefetch</code> pages that have not been requested downstream yet. As each
+   * next link is only known once its page arrives, the pages are fetched one after another, and the
+   * next one is requested whenever a buffered page is taken, so that the buffer stays full while
+   * the downstream processes a page. Downstream requests one page at a time, see {@link
+   * care.smith.fts.cda.DefaultTransferProcessRunner}.
+   */
+  private Flux<Bundle> lookAhead(Flux<Bundle> pages) {
+    if (page.prefetch() == 0) {
+      return pages;
+    }
+    // a queue of prefetch pages, replenished by one for every page taken
+    return pages.limitRate(page.prefetch(), 1);
   }
 
-  private Mono<Bundle> fetchBundle(String uri, Function<UriBuilder, URI> builder) {
+  /**
+   * Filters the resources by their clinical date or encounter as configured by <code>
+   * additionalFilter</code>, whether or not the server applied <code>start</code> and <code>end
+   * </code> of <code>$everything</code> to them.
+   */
+  private Mono<Predicate<Resource>> resourceFilter(ConsentedPatient patient, IIdType fhirId) {
+    var filter = common.additionalFilter();
+    if (common.ignoreConsent() || filter == null) {
+      return Mono.empty();
+    }
+    var period = patient.maxConsentedPeriod().orElseThrow();
+    if (filter.encounter() != null) {
+      return fetchEncounterIds(fhirId, period)
+          .map(ids -> new EncounterFilter(ids, new ClinicalDateFilter(period)));
+    } else if (filter.clinicalDate() != null) {
+      return Mono.just(new ClinicalDateFilter(period));
+    } else {
+      return Mono.empty();
+    }
+  }
+
+  /* Searches the encounters of the patient that overlap the consented period */
+  private Mono<Set<String>> fetchEncounterIds(IIdType fhirId, Period period) {
+    Function<UriBuilder, URI> uriBuilder =
+        b ->
+            b.queryParam("patient", fhirId.getIdPart())
+                .queryParam("date", "ge" + formatWithSystemTZ(period.start()))
+                .queryParam("date", "le" + formatWithSystemTZ(period.end()))
+                .queryParam("_elements", "id")
+                .queryParam("_count", page.count())
+                .build();
+    return fetchBundle("fetchEncounters", "/Encounter", uriBuilder)
+        .expand(b -> fetchNextPage("fetchEncounters", b))
+        .flatMapIterable(Bundle::getEntry)
+        .map(e -> e.getResource().getIdElement().getIdPart())
+        .collect(toSet())
+        .doOnNext(ids -> log.trace("Found {} encounters in consented period", ids.size()));
+  }
+
+  private static Bundle filter(Bundle bundle, Predicate<Resource> filter) {
+    var entries = bundle.getEntry();
+    var selected =
+        entries.stream()
+            .filter(e -> !e.hasResource() || filter.test(e.getResource()))
+            .collect(toList());
+    log.trace("Filtered {} of {} resources", entries.size() - selected.size(), entries.size());
+    return bundle.setEntry(selected);
+  }
+
+  private Mono<Bundle> fetchBundle(
+      String requestName, String uri, Function<UriBuilder, URI> builder) {
     log.debug("Fetching patient data from HDS: {}", uri);
     return client
         .get()
@@ -68,21 +154,20 @@ public class EverythingDataSelector implements DataSelector {
         .headers(h -> h.setAccept(List.of(APPLICATION_FHIR_JSON)))
         .retrieve()
         .bodyToMono(Bundle.class)
-        .retryWhen(defaultRetryStrategy(meterRegistry, "fetchEverything"))
+        .retryWhen(retryPolicy.retry(requestName))
         .timeout(Duration.ofSeconds(30))
         .doOnNext(b -> log.trace("Fetched Bundle with {} resources", b.getEntry().size()));
   }
 
-  private Mono<Bundle> fetchNextPage(Bundle bundle) {
+  private Mono<Bundle> fetchNextPage(String requestName, Bundle bundle) {
     return ofNullable(bundle.getLink("next"))
         .map(BundleLinkComponent::getUrl)
-        .map(uri -> fetchBundle(uri, UriBuilder::build))
+        .map(uri -> fetchBundle(requestName, uri, UriBuilder::build))
         .orElse(Mono.empty());
   }
 
   private Function<UriBuilder, URI> withoutConsent(IIdType fhirId) {
-    return (uriBuilder) ->
-        uriBuilder.queryParam("_count", defaultPageSize).build(fhirId.getIdPart());
+    return (uriBuilder) -> uriBuilder.queryParam("_count", page.count()).build(fhirId.getIdPart());
   }
 
   private Function<UriBuilder, URI> withConsent(ConsentedPatient patient, IIdType fhirId) {
@@ -93,7 +178,7 @@ public class EverythingDataSelector implements DataSelector {
     }
     return (uriBuilder) ->
         uriBuilder
-            .queryParam("_count", defaultPageSize)
+            .queryParam("_count", page.count())
             .queryParam("start", formatWithSystemTZ(period.get().start()))
             .queryParam("end", formatWithSystemTZ(period.get().end()))
             .build(Map.of("id", fhirId.getIdPart()));
@@ -9,9 +9,33 @@ public record EverythingDataSelectorConfig(
     @NotNull HttpClientConfig fhirServer,
 
     /* */
-    FhirResolveConfig resolve) {
+    FhirResolveConfig resolve,
+
+    /* Paging of $everything requests */
+    PageConfig page) {
+
+  public EverythingDataSelectorConfig {
+    page = page != null ? page : new PageConfig(0, null);
+  }
+
+  public EverythingDataSelectorConfig(HttpClientConfig fhirServer, FhirResolveConfig resolve) {
+    this(fhirServer, resolve, null);
+  }
 
   public EverythingDataSelectorConfig(HttpClientConfig fhirServer) {
-    this(fhirServer, null);
+    this(fhirServer, null, null);
+  }
+
+  public record PageConfig(
+      /* Number of resources per page, requested with _count */
+      int count,
+
+      /* Number of pages fetched ahead of the page that is processed */
+      Integer prefetch) {
+
+    public PageConfig {
+      count = count > 0 ? count : 500;
+      prefetch = prefetch != null && prefetch >= 0 ? prefetch : 1;
+    }
   }
 }
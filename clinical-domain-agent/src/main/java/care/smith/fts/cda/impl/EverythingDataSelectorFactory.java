@@ -2,9 +2,10 @@ package care.smith.fts.cda.impl;
 
 import care.smith.fts.api.cda.DataSelector;
 import care.smith.fts.cda.services.PatientIdResolver;
+import care.smith.fts.util.RetryPolicies;
+import care.smith.fts.util.RetryPolicy;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.hl7.fhir.r4.model.IdType;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.web.reactive.function.client.WebClientSsl;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -17,12 +18,17 @@ public class EverythingDataSelectorFactory
   private final WebClient.Builder clientBuilder;
   private final WebClientSsl ssl;
   private final MeterRegistry meterRegistry;
+  private final RetryPolicies retryPolicies;
 
   public EverythingDataSelectorFactory(
-      WebClient.Builder clientBuilder, WebClientSsl ssl, MeterRegistry meterRegistry) {
+      WebClient.Builder clientBuilder,
+      WebClientSsl ssl,
+      MeterRegistry meterRegistry,
+      RetryPolicies retryPolicies) {
     this.clientBuilder = clientBuilder;
     this.ssl = ssl;
     this.meterRegistry = meterRegistry;
+    this.retryPolicies = retryPolicies;
   }
 
   @Override
@@ -32,14 +38,16 @@ public class EverythingDataSelectorFactory
 
   @Override
   public DataSelector create(DataSelector.Config common, EverythingDataSelectorConfig config) {
-    var client = config.fhirServer().createClient(clientBuilder, ssl);
-    PatientIdResolver resolver = createResolver(config, client);
-    return new EverythingDataSelector(common, client, resolver, meterRegistry);
+    var retryPolicy = retryPolicies.of(config.fhirServer());
+    var client = config.fhirServer().createClient(clientBuilder, ssl, retryPolicy);
+    PatientIdResolver resolver = createResolver(config, client, retryPolicy);
+    return new EverythingDataSelector(common, client, resolver, retryPolicy, config.page());
   }
 
-  private PatientIdResolver createResolver(EverythingDataSelectorConfig config, WebClient client) {
+  private PatientIdResolver createResolver(
+      EverythingDataSelectorConfig config, WebClient client, RetryPolicy retryPolicy) {
     if (config.resolve() != null) {
-      return config.resolve().createService(client, meterRegistry);
+      return config.resolve().createService(client, meterRegistry, retryPolicy);
     } else {
       return pid -> Mono.just(new IdType("Patient", pid));
     }
@@ -2,7 +2,7 @@ package care.smith.fts.cda.impl;
 
 import static care.smith.fts.util.FhirUtils.resourceStream;
 import static care.smith.fts.util.FhirUtils.toBundle;
-import static care.smith.fts.util.RetryStrategies.defaultRetryStrategy;
+import static care.smith.fts.util.HeaderTypes.X_TRANSPORT_ID_MAP;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Stream.concat;
 import static java.util.stream.Stream.of;
@@ -10,44 +10,60 @@ import static org.springframework.http.HttpHeaders.CONTENT_LOCATION;
 import static org.springframework.http.HttpHeaders.RETRY_AFTER;
 import static org.springframework.http.HttpStatus.ACCEPTED;
 import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM;
 
+import ca.uhn.fhir.context.FhirContext;
 import care.smith.fts.api.TransportBundle;
 import care.smith.fts.api.cda.BundleSender;
+import care.smith.fts.cda.impl.RDABundleSenderConfig.Format;
+import care.smith.fts.cda.impl.RDABundleSenderConfig.StatusUpdates;
 import care.smith.fts.util.MediaTypes;
+import care.smith.fts.util.RetryPolicy;
 import care.smith.fts.util.error.TransferProcessException;
-import io.micrometer.core.instrument.MeterRegistry;
 import java.net.URI;
 import java.time.Duration;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.Parameters;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Slf4j
 final class RDABundleSender implements BundleSender {
+  private static final Set<String> FINAL_PHASES = Set.of("COMPLETED", "ERROR");
+
   private final RDABundleSenderConfig config;
   private final WebClient client;
-  private final MeterRegistry meterRegistry;
+  private final RetryPolicy retryPolicy;
+  private final FhirContext fhir;
+  private final AtomicBoolean statusStreamSupported;
 
   public RDABundleSender(
-      RDABundleSenderConfig config, WebClient client, MeterRegistry meterRegistry) {
+      RDABundleSenderConfig config, WebClient client, RetryPolicy retryPolicy, FhirContext fhir) {
     this.config = config;
     this.client = client;
-    this.meterRegistry = meterRegistry;
+    this.retryPolicy = retryPolicy;
+    this.fhir = fhir;
+    this.statusStreamSupported = new AtomicBoolean(config.statusUpdates() == StatusUpdates.STREAM);
   }
 
   @Override
   public Mono<Result> send(Flux<TransportBundle> bundles) {
-    return bundles
-        .map(RDABundleSender::toPlainBundle)
-        .flatMap(this::sendBundle)
-        .reduce(0, (res, resp) -> res + 1)
-        .map(Result::new);
+    var responses =
+        config.format() == Format.NDJSON
+            ? bundles.flatMap(this::sendNdjson)
+            : bundles.map(RDABundleSender::toPlainBundle).flatMap(this::sendBundle);
+    return responses.reduce(0, (res, resp) -> res + 1).map(Result::new);
   }
 
   private static Bundle toPlainBundle(TransportBundle transportBundle) {
@@ -62,14 +78,38 @@ final class RDABundleSender implements BundleSender {
         .post()
         .uri("/api/v2/process/{project}/patient", Map.of("project", config.project()))
         .headers(h -> h.setContentType(MediaTypes.APPLICATION_FHIR_JSON))
-        .bodyValue(requireNonNull(bundle))
+        .body(Flux.just(requireNonNull(bundle)), Bundle.class)
         .retrieve()
         .toBodilessEntity()
         .flatMap(this::processOrWaitForRDACompleted)
-        .retryWhen(defaultRetryStrategy(meterRegistry, "sendBundleToRda"))
+        .retryWhen(retryPolicy.retry("sendBundleToRda"))
         .doOnError(e -> log.error("Unable to send Bundle to RDA: {}", e.getMessage()));
   }
 
+  /**
+   * Streams the resources of the bundle one per line, each resource is encoded when it is written
+   * to the request, so the bundle is never encoded as a whole. The upload fails, if the RDA has not
+   * accepted it within <code>uploadTimeout</code>.
+   */
+  private Mono<ResponseEntity<Void>> sendNdjson(TransportBundle bundle) {
+    var parser = fhir.newJsonParser();
+    var lines =
+        Flux.fromIterable(bundle.bundle().getEntry())
+            .map(e -> parser.encodeResourceToString(e.getResource()) + "\n");
+    return client
+        .post()
+        .uri("/api/v2/process/{project}/patient", Map.of("project", config.project()))
+        .headers(h -> h.setContentType(MediaTypes.APPLICATION_FHIR_NDJSON))
+        .header(X_TRANSPORT_ID_MAP, bundle.tIDMapName())
+        .body(lines, String.class)
+        .retrieve()
+        .toBodilessEntity()
+        .timeout(config.uploadTimeout())
+        .flatMap(this::processOrWaitForRDACompleted)
+        .retryWhen(retryPolicy.retry("sendBundleToRda"))
+        .doOnError(e -> log.error("Unable to send NDJSON to RDA: {}", e.getMessage()));
+  }
+
   private Mono<ResponseEntity<Void>> processOrWaitForRDACompleted(ResponseEntity<Void> response) {
     if (response.getStatusCode() == OK) {
       return Mono.just(response);
@@ -82,14 +122,7 @@ final class RDABundleSender implements BundleSender {
     return Mono.just(response)
         .flatMap(this::extractStatusUri)
         .doOnNext(uri -> log.trace("Status Uri: {}", uri))
-        .flatMap(
-            uri ->
-                fetchStatus(uri)
-                    .expand(
-                        r -> fetchStatus(uri).delayElement(Duration.ofSeconds(getRetryAfter(r))))
-                    .takeUntil(r -> r.getStatusCode() != ACCEPTED)
-                    .take(10)
-                    .last())
+        .flatMap(uri -> statusStreamSupported.get() ? streamStatus(uri) : pollStatus(uri))
         .flatMap(
             r -> {
               if (r.getStatusCode() == OK) {
@@ -101,6 +134,64 @@ final class RDABundleSender implements BundleSender {
             });
   }
 
+  private Mono<ResponseEntity<Void>> pollStatus(URI uri) {
+    return fetchStatus(uri)
+        .expand(r -> fetchStatus(uri).delayElement(Duration.ofSeconds(getRetryAfter(r))))
+        .takeUntil(r -> r.getStatusCode() != ACCEPTED)
+        .take(10)
+        .last();
+  }
+
+  /**
+   * Waits for the final status event of the RDA process. The status is polled if the stream fails,
+   * ends early or exceeds <code>statusStreamTimeout</code>, and for all further processes if the
+   * RDA has no event stream.
+   */
+  private Mono<ResponseEntity<Void>> streamStatus(URI uri) {
+    var events = UriComponentsBuilder.fromUri(uri).path("/events").build().toUri();
+    return client
+        .get()
+        .uri(events.toString())
+        .accept(TEXT_EVENT_STREAM)
+        .retrieve()
+        .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<String>>() {})
+        .mapNotNull(ServerSentEvent::event)
+        .filter(FINAL_PHASES::contains)
+        .next()
+        .timeout(config.statusStreamTimeout())
+        .map(
+            phase ->
+                phase.equals("COMPLETED")
+                    ? ResponseEntity.ok().<Void>build()
+                    : ResponseEntity.internalServerError().<Void>build())
+        .onErrorResume(
+            WebClientResponseException.NotFound.class,
+            e -> disableStatusStreamIfMissing(uri).then(Mono.empty()))
+        .onErrorResume(
+            e -> {
+              log.debug("Status stream of RDA failed: {}", e.getMessage());
+              return Mono.empty();
+            })
+        .switchIfEmpty(Mono.defer(() -> pollStatus(uri)));
+  }
+
+  /* The event stream is missing, if the status of the process is found without it */
+  private Mono<Void> disableStatusStreamIfMissing(URI uri) {
+    return fetchStatus(uri)
+        .map(r -> true)
+        .onErrorResume(e -> Mono.just(!(e instanceof WebClientResponseException.NotFound)))
+        .doOnNext(
+            processFound -> {
+              if (processFound) {
+                log.info("RDA does not stream the status of its processes, polling instead");
+                statusStreamSupported.set(false);
+              } else {
+                log.debug("RDA does not know process {}", uri);
+              }
+            })
+        .then();
+  }
+
   private Mono<ResponseEntity<Void>> fetchStatus(URI uri) {
     return client.get().uri(uri.toString()).retrieve().toBodilessEntity();
   }
@@ -2,10 +2,50 @@ package care.smith.fts.cda.impl;
 
 import care.smith.fts.util.HttpClientConfig;
 import jakarta.validation.constraints.NotNull;
+import java.time.Duration;
 
 public record RDABundleSenderConfig(
     /* */
     @NotNull HttpClientConfig server,
 
     /* */
-    String project) {}
+    String project,
+
+    /* Whether bundles are sent as FHIR JSON Bundle or streamed as NDJSON, one resource per line */
+    Format format,
+
+    /* Whether the RDA pushes the status of its process as server-sent events or is polled, RDAs
+    without the event stream are polled */
+    StatusUpdates statusUpdates,
+
+    /* Time an NDJSON upload may take until the RDA accepted it */
+    Duration uploadTimeout,
+
+    /* Time to wait for the final status event, before the status is polled */
+    Duration statusStreamTimeout) {
+
+  public RDABundleSenderConfig {
+    format = format != null ? format : Format.BUNDLE;
+    statusUpdates = statusUpdates != null ? statusUpdates : StatusUpdates.STREAM;
+    uploadTimeout = uploadTimeout != null ? uploadTimeout : Duration.ofMinutes(1);
+    statusStreamTimeout = statusStreamTimeout != null ? statusStreamTimeout : Duration.ofMinutes(5);
+  }
+
+  public RDABundleSenderConfig(HttpClientConfig server, String project) {
+    this(server, project, null);
+  }
+
+  public RDABundleSenderConfig(HttpClientConfig server, String project, Format format) {
+    this(server, project, format, null, null, null);
+  }
+
+  public enum Format {
+    BUNDLE,
+    NDJSON
+  }
+
+  public enum StatusUpdates {
+    STREAM,
+    POLL
+  }
+}
@@ -1,8 +1,8 @@
 package care.smith.fts.cda.impl;
 
+import ca.uhn.fhir.context.FhirContext;
 import care.smith.fts.api.cda.BundleSender;
-import io.micrometer.core.instrument.MeterRegistry;
-import org.springframework.beans.factory.annotation.Autowired;
+import care.smith.fts.util.RetryPolicies;
 import org.springframework.boot.autoconfigure.web.reactive.function.client.WebClientSsl;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -12,12 +12,15 @@ public class RDABundleSenderFactory implements BundleSender.Factory<RDABundleSen
 
   private final WebClient.Builder builder;
   private final WebClientSsl ssl;
-  private final MeterRegistry meterRegistry;
+  private final RetryPolicies retryPolicies;
+  private final FhirContext fhir;
 
-  public RDABundleSenderFactory(WebClient.Builder builder, WebClientSsl ssl, MeterRegistry meterRegistry) {
+  public RDABundleSenderFactory(
+      WebClient.Builder builder, WebClientSsl ssl, RetryPolicies retryPolicies, FhirContext fhir) {
     this.builder = builder;
     this.ssl = ssl;
-    this.meterRegistry = meterRegistry;
+    this.retryPolicies = retryPolicies;
+    this.fhir = fhir;
   }
 
   @Override
@@ -27,7 +30,8 @@ public class RDABundleSenderFactory implements BundleSender.Factory<RDABundleSen
 
   @Override
   public BundleSender create(BundleSender.Config commonConfig, RDABundleSenderConfig implConfig) {
+    var retryPolicy = retryPolicies.of(implConfig.server());
     return new RDABundleSender(
-        implConfig, implConfig.server().createClient(builder, ssl), meterRegistry);
+        implConfig, implConfig.server().createClient(builder, ssl, retryPolicy), retryPolicy, fhir);
   }
 }
@@ -1,16 +1,16 @@
 package care.smith.fts.cda.impl;
 
 import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
-import static care.smith.fts.util.RetryStrategies.defaultRetryStrategy;
 import static java.util.Map.entry;
 import static java.util.Optional.ofNullable;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 
 import care.smith.fts.api.ConsentedPatient;
 import care.smith.fts.api.cda.CohortSelector;
+import care.smith.fts.cda.impl.TCACohortSelectorConfig.PagingConfig;
 import care.smith.fts.util.ConsentedPatientExtractor;
+import care.smith.fts.util.RetryPolicy;
 import care.smith.fts.util.error.TransferProcessException;
-import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.validation.constraints.NotNull;
 import java.time.Duration;
 import java.util.List;
@@ -24,6 +24,7 @@ import org.springframework.http.ProblemDetail;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientException;
+import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -31,13 +32,13 @@ import reactor.core.publisher.Mono;
 class TCACohortSelector implements CohortSelector {
   private final TCACohortSelectorConfig config;
   private final WebClient client;
-  private final MeterRegistry meterRegistry;
+  private final RetryPolicy retryPolicy;
 
   public TCACohortSelector(
-      TCACohortSelectorConfig config, WebClient client, MeterRegistry meterRegistry) {
+      TCACohortSelectorConfig config, WebClient client, RetryPolicy retryPolicy) {
     this.config = config;
     this.client = client;
-    this.meterRegistry = meterRegistry;
+    this.retryPolicy = retryPolicy;
   }
 
   @Override
@@ -47,8 +48,11 @@ class TCACohortSelector implements CohortSelector {
             ? "/api/v2/cd/consented-patients/fetch-all"
             : "/api/v2/cd/consented-patients/fetch";
 
-    return fetchBundle(url, pids)
-        .expand(bundle -> fetchNextPage(bundle, pids))
+    var pages =
+        config.paging() != null
+            ? fetchPagesConcurrently(url, pids, config.paging())
+            : fetchBundle(url, pids).expand(bundle -> fetchNextPage(bundle, pids));
+    return pages
         .timeout(Duration.ofSeconds(30))
         .doOnNext(b -> log.debug("Found {} consented patient bundles", b.getEntry().size()))
         .doOnError(e -> log.error("Error fetching cohort: {}", e.getMessage()))
@@ -56,6 +60,46 @@ class TCACohortSelector implements CohortSelector {
         .flatMap(this::extractConsentedPatients);
   }
 
+  /**
+   * Fetches the first page to learn the total number of consents, and the remaining pages by offset
+   * with up to {@code concurrency} requests at a time. If the TCA does not report a total, the next
+   * links are followed instead. The pages of a pid list hold the consents of {@code count} pids
+   * each, so their number follows from the pids, not from the total of a page.
+   */
+  private Flux<Bundle> fetchPagesConcurrently(String url, List<String> pids, PagingConfig paging) {
+    return fetchBundle(page(url, 0, paging.count()), pids)
+        .flatMapMany(
+            first -> {
+              if (pids.isEmpty() && !first.hasTotal()) {
+                return Flux.just(first).expand(bundle -> fetchNextPage(bundle, pids));
+              }
+              var total = pids.isEmpty() ? first.getTotal() : pids.size();
+              var pageCount = (total + paging.count() - 1) / paging.count();
+              log.debug(
+                  "Fetching {} pages of {} {}",
+                  pageCount,
+                  total,
+                  pids.isEmpty() ? "consents" : "pids");
+              var offsets = Flux.range(1, Math.max(pageCount - 1, 0)).map(i -> i * paging.count());
+              Flux<Bundle> rest =
+                  paging.ordered()
+                      ? offsets.flatMapSequential(
+                          from -> fetchBundle(page(url, from, paging.count()), pids),
+                          paging.concurrency())
+                      : offsets.flatMap(
+                          from -> fetchBundle(page(url, from, paging.count()), pids),
+                          paging.concurrency());
+              return Flux.just(first).concatWith(rest);
+            });
+  }
+
+  private static String page(String url, int from, int count) {
+    return UriComponentsBuilder.fromUriString(url)
+        .queryParam("from", from)
+        .queryParam("count", count)
+        .toUriString();
+  }
+
   private Mono<Bundle> fetchBundle(String uri, List<String> pids) {
     log.debug("fetchBundle URL: {}", uri);
     var body =
@@ -74,7 +118,7 @@ class TCACohortSelector implements CohortSelector {
         .retrieve()
         .onStatus(r -> r.equals(HttpStatus.BAD_REQUEST), TCACohortSelector::handleBadRequest)
         .bodyToMono(Bundle.class)
-        .retryWhen(defaultRetryStrategy(meterRegistry, "fetchBundle"));
+        .retryWhen(retryPolicy.retry("fetchBundle"));
   }
 
   private Mono<Bundle> fetchNextPage(Bundle bundle, List<String> pids) {
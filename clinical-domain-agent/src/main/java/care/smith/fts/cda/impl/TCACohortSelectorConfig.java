@@ -18,4 +18,33 @@ public record TCACohortSelectorConfig(
     Set<String> policies,
 
     /* */
-    String domain) {}
+    String domain,
+
+    /* Fetch the pages of the cohort concurrently, pages are fetched one after another if not set */
+    PagingConfig paging) {
+
+  public TCACohortSelectorConfig(
+      HttpClientConfig server,
+      String patientIdentifierSystem,
+      String policySystem,
+      Set<String> policies,
+      String domain) {
+    this(server, patientIdentifierSystem, policySystem, policies, domain, null);
+  }
+
+  public record PagingConfig(
+      /* Number of consents requested per page */
+      int count,
+
+      /* Maximum number of pages fetched at the same time */
+      int concurrency,
+
+      /* Emit the patients in the order of the pages, or as soon as their page arrives */
+      boolean ordered) {
+
+    public PagingConfig {
+      count = count > 0 ? count : 500;
+      concurrency = concurrency > 0 ? concurrency : 4;
+    }
+  }
+}
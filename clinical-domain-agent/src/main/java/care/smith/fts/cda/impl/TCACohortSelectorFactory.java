@@ -3,9 +3,8 @@ package care.smith.fts.cda.impl;
 import static java.util.Objects.requireNonNull;
 
 import care.smith.fts.api.cda.CohortSelector;
-import io.micrometer.core.instrument.MeterRegistry;
+import care.smith.fts.util.RetryPolicies;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.web.reactive.function.client.WebClientSsl;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -15,12 +14,12 @@ import org.springframework.web.reactive.function.client.WebClient;
 public class TCACohortSelectorFactory implements CohortSelector.Factory<TCACohortSelectorConfig> {
   private final WebClient.Builder clientBuilder;
   private final WebClientSsl ssl;
-  private final MeterRegistry meterRegistry;
+  private final RetryPolicies retryPolicies;
 
   public TCACohortSelectorFactory(
-      WebClient.Builder clientBuilder, WebClientSsl ssl, MeterRegistry meterRegistry) {
+      WebClient.Builder clientBuilder, WebClientSsl ssl, RetryPolicies retryPolicies) {
     this.ssl = ssl;
-    this.meterRegistry = meterRegistry;
+    this.retryPolicies = retryPolicies;
     log.info("Factory client {}", clientBuilder);
     this.clientBuilder = requireNonNull(clientBuilder);
   }
@@ -32,8 +31,9 @@ public class TCACohortSelectorFactory implements CohortSelector.Factory<TCACohor
 
   @Override
   public CohortSelector create(CohortSelector.Config ignored, TCACohortSelectorConfig config) {
-    var client = config.server().createClient(clientBuilder, ssl);
+    var retryPolicy = retryPolicies.of(config.server());
+    var client = config.server().createClient(clientBuilder, ssl, retryPolicy);
     log.info("Created Client {}", client);
-    return new TCACohortSelector(config, client, meterRegistry);
+    return new TCACohortSelector(config, client, retryPolicy);
   }
 }
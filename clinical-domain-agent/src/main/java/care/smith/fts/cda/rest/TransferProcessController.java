@@ -2,6 +2,7 @@ package care.smith.fts.cda.rest;
 
 import static care.smith.fts.util.HeaderTypes.X_PROGRESS;
 import static care.smith.fts.util.error.ErrorResponseUtil.notFound;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE;
 
 import care.smith.fts.cda.TransferProcessDefinition;
 import care.smith.fts.cda.TransferProcessRunner;
@@ -13,8 +14,10 @@ import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.ResponseEntity.BodyBuilder;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Slf4j
@@ -35,12 +38,17 @@ public class TransferProcessController {
   Mono<ResponseEntity<Object>> start(
       @PathVariable("project") String project,
       UriComponentsBuilder uriBuilder,
-      @RequestBody(required = false) List<String> pids) {
+      @RequestBody(required = false) List<String> pids,
+      @RequestParam(value = "resume", defaultValue = "false") boolean resume) {
     var process = findProcess(project);
     if (process.isPresent()) {
       log.debug("Running process: {}", process.get());
 
-      var id = processRunner.start(process.get(), Optional.ofNullable(pids).orElse(List.of()));
+      var cohort = Optional.ofNullable(pids).orElse(List.of());
+      var id =
+          resume
+              ? processRunner.resume(process.get(), cohort)
+              : processRunner.start(process.get(), cohort);
       var jobUri = generateJobUri(uriBuilder, id);
       return processRunner
           .status(id)
@@ -68,6 +76,25 @@ public class TransferProcessController {
         .onErrorResume(ErrorResponseUtil::notFound);
   }
 
+  /**
+   * Streams the status of the process as server-sent events, named after the phase. An event is
+   * sent whenever the phase or the counters change, the stream completes once the process is
+   * finished.
+   */
+  @GetMapping(value = "/status/{processId:[\\w-]+}/events", produces = TEXT_EVENT_STREAM_VALUE)
+  Mono<ResponseEntity<Flux<ServerSentEvent<Status>>>> statusEvents(
+      @PathVariable("processId") String processId) {
+    var events = processRunner.statusUpdates(processId).map(TransferProcessController::toEvent);
+    return processRunner
+        .status(processId)
+        .map(s -> ResponseEntity.ok().body(events))
+        .onErrorResume(ErrorResponseUtil::notFound);
+  }
+
+  private static ServerSentEvent<Status> toEvent(Status s) {
+    return ServerSentEvent.builder(s).event(s.phase().name()).build();
+  }
+
   private static BodyBuilder responseForStatus(Status s) {
     return switch (s.phase()) {
       case QUEUED -> ResponseEntity.accepted().headers(h -> h.add(X_PROGRESS, "Queued"));
@@ -0,0 +1,98 @@
+package care.smith.fts.cda.services;
+
+import care.smith.fts.api.Period;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import org.hl7.fhir.r4.model.AllergyIntolerance;
+import org.hl7.fhir.r4.model.BaseDateTimeType;
+import org.hl7.fhir.r4.model.Condition;
+import org.hl7.fhir.r4.model.DiagnosticReport;
+import org.hl7.fhir.r4.model.DocumentReference;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.ImagingStudy;
+import org.hl7.fhir.r4.model.Immunization;
+import org.hl7.fhir.r4.model.MedicationAdministration;
+import org.hl7.fhir.r4.model.MedicationRequest;
+import org.hl7.fhir.r4.model.MedicationStatement;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Procedure;
+import org.hl7.fhir.r4.model.Resource;
+import org.hl7.fhir.r4.model.ServiceRequest;
+import org.hl7.fhir.r4.model.Specimen;
+import org.hl7.fhir.r4.model.Type;
+
+/**
+ * Selects the resources whose clinical date lies within a period, e.g. the effective date of an
+ * Observation or the period of an Encounter. A date is compared with the precision it is given in,
+ * so a date of 2020 lies within a period that starts in mid-2020. Resources without a clinical
+ * date, like Patient, are always selected.
+ */
+public class ClinicalDateFilter implements Predicate<Resource> {
+
+  private final Instant start;
+  private final Instant end;
+
+  public ClinicalDateFilter(Period period) {
+    this.start = period.start().toInstant();
+    this.end = period.end().toInstant();
+  }
+
+  @Override
+  public boolean test(Resource resource) {
+    return clinicalDate(resource)
+        .map(d -> d.start().isBefore(end) && d.end().isAfter(start))
+        .orElse(true);
+  }
+
+  /* The clinical date of a resource, the end is exclusive */
+  record ClinicalDate(Instant start, Instant end) {}
+
+  static Optional<ClinicalDate> clinicalDate(Resource resource) {
+    return switch (resource) {
+      case Encounter e -> clinicalDate(e.getPeriod());
+      case Observation o -> clinicalDate(o.getEffective());
+      case Condition c -> clinicalDate(c.getOnset(), c.getRecordedDateElement());
+      case Procedure p -> clinicalDate(p.getPerformed());
+      case DiagnosticReport d -> clinicalDate(d.getEffective());
+      case MedicationAdministration m -> clinicalDate(m.getEffective());
+      case MedicationStatement m -> clinicalDate(m.getEffective());
+      case MedicationRequest m -> clinicalDate(m.getAuthoredOnElement());
+      case Immunization i -> clinicalDate(i.getOccurrence());
+      case Specimen s ->
+          s.hasCollection() ? clinicalDate(s.getCollection().getCollected()) : Optional.empty();
+      case ServiceRequest s -> clinicalDate(s.getAuthoredOnElement());
+      case DocumentReference d -> clinicalDate(d.getDateElement());
+      case AllergyIntolerance a -> clinicalDate(a.getOnset(), a.getRecordedDateElement());
+      case ImagingStudy i -> clinicalDate(i.getStartedElement());
+      default -> Optional.empty();
+    };
+  }
+
+  /* The first of the values that is a date or period */
+  private static Optional<ClinicalDate> clinicalDate(Type... values) {
+    return Stream.of(values).flatMap(v -> clinicalDate(v).stream()).findFirst();
+  }
+
+  private static Optional<ClinicalDate> clinicalDate(Type value) {
+    if (value instanceof BaseDateTimeType d && d.getValue() != null) {
+      return Optional.of(new ClinicalDate(start(d), end(d)));
+    } else if (value instanceof org.hl7.fhir.r4.model.Period p && (p.hasStart() || p.hasEnd())) {
+      return Optional.of(
+          new ClinicalDate(
+              p.hasStart() ? start(p.getStartElement()) : Instant.MIN,
+              p.hasEnd() ? end(p.getEndElement()) : Instant.MAX));
+    } else {
+      return Optional.empty();
+    }
+  }
+
+  private static Instant start(BaseDateTimeType date) {
+    return date.getValue().toInstant();
+  }
+
+  private static Instant end(BaseDateTimeType date) {
+    return date.getPrecision().add(date.getValue(), 1).toInstant();
+  }
+}
@@ -0,0 +1,55 @@
+package care.smith.fts.cda.services;
+
+import java.util.Set;
+import java.util.function.Predicate;
+import org.hl7.fhir.r4.model.Base;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Reference;
+import org.hl7.fhir.r4.model.Resource;
+
+/**
+ * Selects the encounters with the given IDs and the resources that reference any of them, e.g. via
+ * <code>Observation.encounter</code>. Resources that do not reference an encounter are selected by
+ * <code>otherwise</code>.
+ */
+public class EncounterFilter implements Predicate<Resource> {
+
+  private final Set<String> encounterIds;
+  private final Predicate<Resource> otherwise;
+
+  public EncounterFilter(Set<String> encounterIds, Predicate<Resource> otherwise) {
+    this.encounterIds = encounterIds;
+    this.otherwise = otherwise;
+  }
+
+  @Override
+  public boolean test(Resource resource) {
+    if (resource instanceof Encounter) {
+      return encounterIds.contains(resource.getIdElement().getIdPart());
+    }
+    var references = new EncounterReferences();
+    references.collect(resource);
+    return references.found ? references.selected : otherwise.test(resource);
+  }
+
+  private final class EncounterReferences {
+    private boolean found;
+    private boolean selected;
+
+    private void collect(Base element) {
+      if (element instanceof Reference reference) {
+        var id = reference.getReferenceElement();
+        if ("Encounter".equals(id.getResourceType())) {
+          found = true;
+          selected |= encounterIds.contains(id.getIdPart());
+        }
+        return;
+      }
+      for (var child : element.children()) {
+        for (var value : child.getValues()) {
+          collect(value);
+        }
+      }
+    }
+  }
+}
@@ -3,24 +3,67 @@ package care.smith.fts.cda.services;
 import static com.google.common.base.Strings.emptyToNull;
 import static java.util.Objects.requireNonNull;
 
+import care.smith.fts.util.RetryPolicy;
 import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.validation.constraints.NotBlank;
-import org.springframework.beans.factory.annotation.Autowired;
+import java.time.Duration;
 import org.springframework.web.reactive.function.client.WebClient;
 
 public record FhirResolveConfig(
     /* The system of the patient's identifier that is used to resolve a PID */
-    @NotBlank String patientIdentifierSystem) {
+    @NotBlank String patientIdentifierSystem,
 
-  public FhirResolveConfig(@NotBlank String patientIdentifierSystem) {
-    this.patientIdentifierSystem =
+    /* Resolve the PIDs of multiple patients with a single search, disabled if not set */
+    BatchConfig batch,
+
+    /* Cache resolved FHIR IDs, disabled if not set */
+    CacheConfig cache) {
+
+  public FhirResolveConfig {
+    patientIdentifierSystem =
         requireNonNull(
             emptyToNull(patientIdentifierSystem),
             "Patient identifier system must not be null or empty");
   }
 
+  public FhirResolveConfig(@NotBlank String patientIdentifierSystem) {
+    this(patientIdentifierSystem, null, null);
+  }
+
   public FhirResolveService createService(
-      WebClient client, @Autowired MeterRegistry meterRegistry) {
-    return new FhirResolveService(patientIdentifierSystem(), requireNonNull(client), meterRegistry);
+      WebClient client, MeterRegistry meterRegistry, RetryPolicy retryPolicy) {
+    return new FhirResolveService(
+        patientIdentifierSystem(),
+        requireNonNull(client),
+        meterRegistry,
+        batch(),
+        cache(),
+        retryPolicy);
+  }
+
+  public record BatchConfig(
+      /* Maximum number of PIDs per search */
+      int maxSize,
+
+      /* Maximum time a PID waits for the batch to fill up */
+      Duration maxWait) {
+
+    public BatchConfig {
+      maxSize = maxSize > 0 ? maxSize : 50;
+      maxWait = maxWait != null ? maxWait : Duration.ofMillis(50);
+    }
+  }
+
+  public record CacheConfig(
+      /* Maximum number of cached FHIR IDs */
+      long maxSize,
+
+      /* Time after which a cached FHIR ID is resolved again */
+      Duration ttl) {
+
+    public CacheConfig {
+      maxSize = maxSize > 0 ? maxSize : 100_000;
+      ttl = ttl != null ? ttl : Duration.ofHours(1);
+    }
   }
 }
@@ -1,34 +1,73 @@
 package care.smith.fts.cda.services;
 
 import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
-import static care.smith.fts.util.RetryStrategies.defaultRetryStrategy;
 import static com.google.common.base.Strings.emptyToNull;
 import static java.util.Objects.requireNonNull;
+import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.joining;
 
+import care.smith.fts.cda.services.FhirResolveConfig.BatchConfig;
+import care.smith.fts.cda.services.FhirResolveConfig.CacheConfig;
+import care.smith.fts.util.MicroBatcher;
+import care.smith.fts.util.RetryPolicy;
 import care.smith.fts.util.error.TransferProcessException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Bundle.BundleLinkComponent;
 import org.hl7.fhir.r4.model.Patient;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientException;
+import org.springframework.web.util.UriBuilder;
 import reactor.core.publisher.Mono;
 
 @Slf4j
 public class FhirResolveService implements PatientIdResolver {
 
   private final WebClient client;
-  private final MeterRegistry meterRegistry;
+  private final RetryPolicy retryPolicy;
   private final String identifierSystem;
+  private final MicroBatcher<String, List<IIdType>> batcher;
+  private final Cache<String, IIdType> cache;
 
   public FhirResolveService(
-      String identifierSystem, WebClient client, MeterRegistry meterRegistry) {
+      String identifierSystem,
+      WebClient client,
+      MeterRegistry meterRegistry,
+      BatchConfig batch,
+      CacheConfig cache,
+      RetryPolicy retryPolicy) {
     this.identifierSystem = identifierSystem;
     this.client = client;
-    this.meterRegistry = meterRegistry;
+    this.retryPolicy = retryPolicy;
+    this.batcher =
+        batch != null
+            ? new MicroBatcher<>(batch.maxSize(), batch.maxWait(), this::resolveBatch)
+            : null;
+    this.cache = cache != null ? createCache(cache, meterRegistry) : null;
+  }
+
+  private static Cache<String, IIdType> createCache(CacheConfig config, MeterRegistry registry) {
+    Cache<String, IIdType> cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(config.maxSize())
+            .expireAfterWrite(config.ttl())
+            .recordStats()
+            .build();
+    return GuavaCacheMetrics.monitor(registry, cache, "patientIds");
   }
 
   /**
@@ -40,11 +79,26 @@ public class FhirResolveService implements PatientIdResolver {
    */
   @Override
   public Mono<IIdType> resolve(String patientId) {
-    return this.resolveFromPatient(patientId).map(IBaseResource::getIdElement);
+    requireNonNull(emptyToNull(patientId), "patientId must not be null or empty");
+    var cached = cache != null ? cache.getIfPresent(patientId) : null;
+    if (cached != null) {
+      return Mono.just(cached);
+    }
+    var resolved =
+        batcher != null
+            ? batcher.submit(patientId).map(ids -> checkSinglePatient(ids, patientId))
+            : this.resolveFromPatient(patientId).map(IBaseResource::getIdElement);
+    return cache != null ? resolved.doOnNext(id -> cache.put(patientId, id)) : resolved;
+  }
+
+  @Override
+  public void dispose() {
+    if (batcher != null) {
+      batcher.dispose();
+    }
   }
 
   private Mono<IBaseResource> resolveFromPatient(String patientId) {
-    requireNonNull(emptyToNull(patientId), "patientId must not be null or empty");
     return fetchPatientBundle(patientId)
         .doOnNext(ps -> requireNonNull(ps, "Patient bundle must not be null"))
         .doOnNext(ps -> checkBundleNotEmpty(ps, patientId))
@@ -54,21 +108,94 @@ public class FhirResolveService implements PatientIdResolver {
 
   private Mono<Bundle> fetchPatientBundle(String patientId) {
     log.trace("fetchPatientBundle {}", patientId);
-    return client
-        .get()
-        .uri(
+    return fetchBundle(
             "/Patient",
             uri -> uri.queryParam("identifier", identifierSystem + "|" + patientId).build())
-        .headers(h -> h.setAccept(List.of(APPLICATION_FHIR_JSON)))
-        .retrieve()
-        .bodyToMono(Bundle.class)
-        .retryWhen(defaultRetryStrategy(meterRegistry, "fetchPatientBundleResolvePID"))
+        .retryWhen(retryPolicy.retry("fetchPatientBundleResolvePID"))
         .doOnError(e -> log.error("Unable to fetch patient ID from HDS: {}", e.getMessage()))
         .onErrorResume(
             WebClientException.class,
             e -> Mono.error(new TransferProcessException("Cannot resolve patient id", e)));
   }
 
+  /**
+   * Resolves multiple PIDs with a single search for all of their identifiers.
+   *
+   * @return the IDs of the patients matching each PID, in order of the PIDs
+   */
+  private Mono<List<List<IIdType>>> resolveBatch(List<String> patientIds) {
+    log.trace("Resolve {} patient IDs", patientIds.size());
+    var identifiers =
+        patientIds.stream().map(pid -> identifierSystem + "|" + escape(pid)).collect(joining(","));
+    var requested = new HashSet<>(patientIds);
+    // each page is retried on its own, retrying the expansion would emit the earlier pages again
+    return fetchBundle(
+            "/Patient",
+            uri ->
+                uri.queryParam("identifier", identifiers)
+                    .queryParam("_count", patientIds.size())
+                    .build())
+        .retryWhen(retryPolicy.retry("fetchPatientBundleResolvePIDs"))
+        .expand(
+            bundle ->
+                fetchNextPage(bundle).retryWhen(retryPolicy.retry("fetchPatientBundleResolvePIDs")))
+        .doOnError(e -> log.error("Unable to fetch patient IDs from HDS: {}", e.getMessage()))
+        .onErrorResume(
+            WebClientException.class,
+            e -> Mono.error(new TransferProcessException("Cannot resolve patient ids", e)))
+        .flatMapIterable(Bundle::getEntry)
+        .map(Bundle.BundleEntryComponent::getResource)
+        .ofType(Patient.class)
+        .<Map<String, List<IIdType>>>reduceWith(HashMap::new, (ids, p) -> addIds(ids, p, requested))
+        .map(ids -> patientIds.stream().map(pid -> ids.getOrDefault(pid, List.of())).toList());
+  }
+
+  private Map<String, List<IIdType>> addIds(
+      Map<String, List<IIdType>> ids, Patient patient, Set<String> requested) {
+    patient.getIdentifier().stream()
+        .filter(i -> identifierSystem.equals(i.getSystem()) && requested.contains(i.getValue()))
+        .forEach(
+            i ->
+                ids.computeIfAbsent(i.getValue(), k -> new ArrayList<>())
+                    .add(patient.getIdElement()));
+    return ids;
+  }
+
+  private Mono<Bundle> fetchBundle(String uri, Function<UriBuilder, URI> builder) {
+    return client
+        .get()
+        .uri(uri, builder)
+        .headers(h -> h.setAccept(List.of(APPLICATION_FHIR_JSON)))
+        .retrieve()
+        .bodyToMono(Bundle.class);
+  }
+
+  private Mono<Bundle> fetchNextPage(Bundle bundle) {
+    return ofNullable(bundle.getLink("next"))
+        .map(BundleLinkComponent::getUrl)
+        .map(uri -> fetchBundle(uri, UriBuilder::build))
+        .orElse(Mono.empty());
+  }
+
+  /** Escapes the search parameter separators contained in a PID. */
+  private static String escape(String patientId) {
+    return patientId
+        .replace("\\", "\\\\")
+        .replace(",", "\\,")
+        .replace("|", "\\|")
+        .replace("$", "\\$");
+  }
+
+  private static IIdType checkSinglePatient(List<IIdType> ids, String patientId) {
+    if (ids.isEmpty()) {
+      throw new IllegalStateException("Unable to resolve patient ID %s".formatted(patientId));
+    } else if (ids.size() != 1) {
+      throw new IllegalStateException(
+          "Received more then one result while resolving patient ID %s".formatted(patientId));
+    }
+    return ids.getFirst();
+  }
+
   private void checkSinglePatient(Bundle patients, String patientId) {
     if (patients.getEntry().size() != 1) {
       throw new IllegalStateException(
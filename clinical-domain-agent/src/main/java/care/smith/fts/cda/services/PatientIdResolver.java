@@ -1,8 +1,13 @@
 package care.smith.fts.cda.services;
 
 import org.hl7.fhir.instance.model.api.IIdType;
+import reactor.core.Disposable;
 import reactor.core.publisher.Mono;
 
-public interface PatientIdResolver {
+/** Resolves patient IDs, resolvers holding resources are disposed with their data selector. */
+public interface PatientIdResolver extends Disposable {
   Mono<IIdType> resolve(String patientId);
+
+  @Override
+  default void dispose() {}
 }
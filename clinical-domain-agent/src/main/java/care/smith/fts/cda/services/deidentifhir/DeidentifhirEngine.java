@@ -0,0 +1,87 @@
+package care.smith.fts.cda.services.deidentifhir;
+
+import static care.smith.fts.cda.services.deidentifhir.DeidentifhirUtils.generateRecordingRegistry;
+import static care.smith.fts.cda.services.deidentifhir.DeidentifhirUtils.generateRegistry;
+import static care.smith.fts.util.deidentifhir.NamespacingReplacementProvider.withNamespacing;
+
+import care.smith.fts.util.deidentifhir.DeidentifhirContext;
+import care.smith.fts.util.deidentifhir.DeidentifhirContext.Providers;
+import care.smith.fts.util.deidentifhir.NamespacingReplacementProvider;
+import com.typesafe.config.Config;
+import de.ume.deidentifhir.Deidentifhir;
+import de.ume.deidentifhir.util.Handlers;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import org.hl7.fhir.r4.model.Bundle;
+import scala.collection.immutable.Map;
+
+/**
+ * Deidentifies bundles with a Deidentifhir instance that is built once per configuration. The
+ * transport IDs and date shift of a patient are passed per invocation, so one engine can be shared
+ * by all patients of a transfer process.
+ */
+public class DeidentifhirEngine {
+  private final DeidentifhirContext context = new DeidentifhirContext();
+  private final ThreadLocal<ReplacementSites> sites = new ThreadLocal<>();
+  private final Deidentifhir deidentifhir;
+  private final Deidentifhir recording;
+  private final MeterRegistry meterRegistry;
+
+  public DeidentifhirEngine(Config config, MeterRegistry meterRegistry) {
+    this.deidentifhir = Deidentifhir.apply(config, generateRegistry(context, context));
+    this.recording = Deidentifhir.apply(config, generateRecordingRegistry(this::currentSites));
+    this.meterRegistry = meterRegistry;
+  }
+
+  public Bundle deidentify(
+      Bundle bundle,
+      String patientId,
+      java.util.Map<String, String> transportIds,
+      Duration dateShiftValue) {
+    var sample = Timer.start(meterRegistry);
+
+    var keyCreator = withNamespacing(patientId);
+    var providers =
+        Providers.of(
+            NamespacingReplacementProvider.of(keyCreator, transportIds),
+            new DateShiftingProvider(dateShiftValue));
+    var deidentified =
+        context.withProviders(
+            providers, () -> (Bundle) deidentifhir.deidentify(bundle, staticContext(patientId)));
+    sample.stop(meterRegistry.timer("deidentify"));
+    return deidentified;
+  }
+
+  /**
+   * Deidentifies the bundle before its transport IDs and date shift are known. The IDs to replace
+   * are gathered in the same pass, so the bundle does not have to be scraped beforehand.
+   *
+   * @return the sites that are filled in once the transport IDs and date shift are known
+   */
+  public ReplacementSites deidentifyDeferred(Bundle bundle, String patientId) {
+    var sample = Timer.start(meterRegistry);
+
+    var replacementSites = new ReplacementSites(withNamespacing(patientId));
+    sites.set(replacementSites);
+    try {
+      replacementSites.setBundle((Bundle) recording.deidentify(bundle, staticContext(patientId)));
+    } finally {
+      sites.remove();
+    }
+    sample.stop(meterRegistry.timer("deidentify"));
+    return replacementSites;
+  }
+
+  private ReplacementSites currentSites() {
+    var replacementSites = sites.get();
+    if (replacementSites == null) {
+      throw new IllegalStateException("Deidentifhir is used outside of its context");
+    }
+    return replacementSites;
+  }
+
+  private static Map<String, String> staticContext(String patientId) {
+    return new Map.Map1<>(Handlers.patientIdentifierKey(), patientId);
+  }
+}
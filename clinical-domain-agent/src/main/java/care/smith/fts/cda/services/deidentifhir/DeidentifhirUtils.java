@@ -1,28 +1,25 @@
 package care.smith.fts.cda.services.deidentifhir;
 
-import care.smith.fts.util.deidentifhir.NamespacingReplacementProvider;
-import com.typesafe.config.Config;
-import de.ume.deidentifhir.Deidentifhir;
 import de.ume.deidentifhir.Registry;
 import de.ume.deidentifhir.util.Handlers;
+import de.ume.deidentifhir.util.IDReplacementProvider;
+import de.ume.deidentifhir.util.IdentifierValueReplacementProvider;
 import de.ume.deidentifhir.util.JavaCompat;
-import io.micrometer.core.instrument.MeterRegistry;
-import io.micrometer.core.instrument.Timer;
-import java.time.Duration;
+import de.ume.deidentifhir.util.ShiftDateProvider;
+import java.util.function.Supplier;
 import org.hl7.fhir.r4.model.Base;
-import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.BaseDateTimeType;
 import org.hl7.fhir.r4.model.DateType;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Identifier;
+import org.hl7.fhir.r4.model.Reference;
 import scala.Function4;
 import scala.collection.immutable.Map;
 import scala.collection.immutable.Seq;
 
 public interface DeidentifhirUtils {
-  static Registry generateRegistry(
-      String patientId, java.util.Map<String, String> transportIds, Duration dateShiftValue) {
-    var keyCreator = NamespacingReplacementProvider.withNamespacing(patientId);
-    var replacementProvider = NamespacingReplacementProvider.of(keyCreator, transportIds);
-    DateShiftingProvider dsp = new DateShiftingProvider(dateShiftValue);
-
+  static <P extends IDReplacementProvider & IdentifierValueReplacementProvider>
+      Registry generateRegistry(P replacementProvider, ShiftDateProvider dsp) {
     Registry registry = new Registry();
     registry.addHander("postalCodeHandler", Handlers.generalizePostalCodeHandler().get());
     registry.addHander(
@@ -53,18 +50,46 @@ public interface DeidentifhirUtils {
     return registry;
   }
 
-  static Bundle deidentify(
-      Config config,
-      Registry registry,
-      Bundle bundle,
-      String patientId,
-      MeterRegistry meterRegistry) {
-    var sample = Timer.start(meterRegistry);
-
-    Map<String, String> staticContext = new Map.Map1<>(Handlers.patientIdentifierKey(), patientId);
-    Deidentifhir deidentifhir = Deidentifhir.apply(config, registry);
-    var deidentified = (Bundle) deidentifhir.deidentify(bundle, staticContext);
-    sample.stop(meterRegistry.timer("deidentify"));
-    return deidentified;
+  /**
+   * Generates a registry that replaces IDs with placeholders and records the replaced elements in
+   * the {@link ReplacementSites} of the running deidentification, see {@link
+   * ReplacementSites#apply}.
+   */
+  static Registry generateRecordingRegistry(Supplier<ReplacementSites> sites) {
+    Registry registry = new Registry();
+    registry.addHander("postalCodeHandler", Handlers.generalizePostalCodeHandler().get());
+    registry.addHander(
+        "generalizeDateHandler",
+        (Function4<Seq<String>, DateType, Seq<Base>, Map<String, String>, DateType>)
+            Handlers::generalizeDateHandler);
+    registry.addHander(
+        "PSEUDONYMISIERTstringReplacementHandler",
+        JavaCompat.partiallyApply("PSEUDONYMISIERT", Handlers::stringReplacementHandler));
+    registry.addHander(
+        "idReplacementHandler",
+        (Function4<Seq<String>, IdType, Seq<Base>, Map<String, String>, IdType>)
+            (path, id, context, staticContext) ->
+                sites.get().replaceId(path, id, context, staticContext));
+    registry.addHander(
+        "referenceReplacementHandler",
+        (Function4<Seq<String>, Reference, Seq<Base>, Map<String, String>, Reference>)
+            (path, reference, context, staticContext) ->
+                sites.get().replaceReference(path, reference, context, staticContext));
+    registry.addHander(
+        "identifierValueReplacementHandler",
+        (Function4<Seq<String>, Identifier, Seq<Base>, Map<String, String>, Identifier>)
+            (path, identifier, context, staticContext) ->
+                sites.get().replaceIdentifierValue(path, identifier, context, staticContext));
+    registry.addHander(
+        "conditionalReferencesReplacementHandler",
+        (Function4<Seq<String>, Reference, Seq<Base>, Map<String, String>, Reference>)
+            (path, reference, context, staticContext) ->
+                sites.get().replaceConditionalReference(path, reference, context, staticContext));
+    registry.addHander(
+        "shiftDateHandler",
+        (Function4<Seq<String>, BaseDateTimeType, Seq<Base>, Map<String, String>, BaseDateTimeType>)
+            (path, date, context, staticContext) ->
+                sites.get().shiftDate(path, date, context, staticContext));
+    return registry;
   }
 }
@@ -1,6 +1,8 @@
 package care.smith.fts.cda.services.deidentifhir;
 
 import care.smith.fts.api.ConsentedPatient;
+import care.smith.fts.util.deidentifhir.DeidentifhirContext;
+import care.smith.fts.util.deidentifhir.DeidentifhirContext.Providers;
 import care.smith.fts.util.deidentifhir.NamespacingReplacementProvider;
 import com.typesafe.config.Config;
 import de.ume.deidentifhir.Deidentifhir;
@@ -11,28 +13,23 @@ import java.util.Set;
 import org.hl7.fhir.r4.model.Resource;
 
 public class IDATScraper {
+  private final DeidentifhirContext context = new DeidentifhirContext();
   private final Deidentifhir deidentiFHIR;
-  private final ScrapingStorage scrapingStorage;
-
-  public IDATScraper(Config config, ConsentedPatient patient) {
-    var keyCreator = NamespacingReplacementProvider.withNamespacing(patient.id());
-    scrapingStorage = new ScrapingStorage(keyCreator);
 
+  public IDATScraper(Config config) {
     Registry registry = new Registry();
     registry.addHander(
-        "gatherIdHandler",
-        JavaCompat.partiallyApply(scrapingStorage, Handlers::idReplacementHandler));
+        "gatherIdHandler", JavaCompat.partiallyApply(context, Handlers::idReplacementHandler));
     registry.addHander(
         "gatherReferenceHandler",
-        JavaCompat.partiallyApply(scrapingStorage, Handlers::referenceReplacementHandler));
+        JavaCompat.partiallyApply(context, Handlers::referenceReplacementHandler));
     registry.addHander(
         "gatherIdentifierValueHandler",
-        JavaCompat.partiallyApply2(
-            scrapingStorage, true, Handlers::identifierValueReplacementHandler));
+        JavaCompat.partiallyApply2(context, true, Handlers::identifierValueReplacementHandler));
     registry.addHander(
         "gatherConditionalReferencesHandler",
         JavaCompat.partiallyApply2(
-            scrapingStorage, scrapingStorage, Handlers::conditionalReferencesReplacementHandler));
+            context, context, Handlers::conditionalReferencesReplacementHandler));
 
     deidentiFHIR = Deidentifhir.apply(config, registry);
   }
@@ -42,8 +39,10 @@ public class IDATScraper {
    *
    * @return a Set of all IDs gathered in the Resource
    */
-  public Set<String> gatherIDs(Resource resource) {
-    deidentiFHIR.deidentify(resource);
+  public Set<String> gatherIDs(ConsentedPatient patient, Resource resource) {
+    var keyCreator = NamespacingReplacementProvider.withNamespacing(patient.id());
+    var scrapingStorage = new ScrapingStorage(keyCreator);
+    context.withProviders(Providers.of(scrapingStorage), () -> deidentiFHIR.deidentify(resource));
     return scrapingStorage.getGatheredIDATs();
   }
 }
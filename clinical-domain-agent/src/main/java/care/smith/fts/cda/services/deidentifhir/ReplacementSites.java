@@ -0,0 +1,181 @@
+package care.smith.fts.cda.services.deidentifhir;
+
+import care.smith.fts.util.deidentifhir.NamespacingReplacementProvider.KeyCreator;
+import de.ume.deidentifhir.util.Handlers;
+import de.ume.deidentifhir.util.IDReplacementProvider;
+import de.ume.deidentifhir.util.IdentifierValueReplacementProvider;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.hl7.fhir.r4.model.Base;
+import org.hl7.fhir.r4.model.BaseDateTimeType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Identifier;
+import org.hl7.fhir.r4.model.PrimitiveType;
+import org.hl7.fhir.r4.model.Reference;
+import scala.collection.immutable.Seq;
+
+/**
+ * Records the elements of a deidentified bundle that still need a transport ID or a shifted date.
+ * While the bundle is deidentified, IDs are replaced with placeholders and their keys are gathered.
+ * Once the transport IDs and the date shift are known, {@link #apply(Map, Duration)} fills in the
+ * recorded elements without traversing the bundle again.
+ */
+public class ReplacementSites implements IDReplacementProvider, IdentifierValueReplacementProvider {
+  private final KeyCreator keyCreator;
+  private final String placeholderPrefix = UUID.randomUUID().toString();
+  private final List<String> keys = new ArrayList<>();
+  private final List<StringSite> strings = new ArrayList<>();
+  private final List<DateSite> dates = new ArrayList<>();
+  private Bundle bundle;
+
+  public ReplacementSites(KeyCreator keyCreator) {
+    this.keyCreator = keyCreator;
+  }
+
+  /**
+   * @return the keys of all IDs that need a transport ID
+   */
+  public Set<String> ids() {
+    return new HashSet<>(keys);
+  }
+
+  /**
+   * Replaces the placeholders with the transport IDs and shifts the recorded dates.
+   *
+   * @return the deidentified bundle
+   */
+  public Bundle apply(Map<String, String> transportIds, Duration dateShiftValue) {
+    for (var site : strings) {
+      var value = site.element().getValue();
+      for (int i = site.from(); i < site.to(); i++) {
+        value = value.replace(placeholder(i), transportId(transportIds, keys.get(i)));
+      }
+      site.element().setValue(value);
+    }
+
+    var dateShiftingProvider = new DateShiftingProvider(dateShiftValue);
+    for (var site : dates) {
+      var shifted =
+          Handlers.shiftDateHandler(
+              dateShiftingProvider,
+              site.path(),
+              site.original(),
+              site.context(),
+              site.staticContext());
+      site.element().setValueAsString(shifted.getValueAsString());
+    }
+    return bundle;
+  }
+
+  void setBundle(Bundle bundle) {
+    this.bundle = bundle;
+  }
+
+  @Override
+  public String getIDReplacement(String resourceType, String id) {
+    return newPlaceholder(keyCreator.getKeyForResourceTypeAndID(resourceType, id));
+  }
+
+  @Override
+  public String getValueReplacement(String system, String value) {
+    return newPlaceholder(keyCreator.getKeyForSystemAndValue(system, value));
+  }
+
+  IdType replaceId(
+      Seq<String> path,
+      IdType id,
+      Seq<Base> context,
+      scala.collection.immutable.Map<String, String> staticContext) {
+    var from = keys.size();
+    var replaced = Handlers.idReplacementHandler(this, path, id, context, staticContext);
+    addSite(replaced, from);
+    return replaced;
+  }
+
+  Reference replaceReference(
+      Seq<String> path,
+      Reference reference,
+      Seq<Base> context,
+      scala.collection.immutable.Map<String, String> staticContext) {
+    var from = keys.size();
+    var replaced =
+        Handlers.referenceReplacementHandler(this, path, reference, context, staticContext);
+    addSite(replaced.getReferenceElement_(), from);
+    return replaced;
+  }
+
+  Reference replaceConditionalReference(
+      Seq<String> path,
+      Reference reference,
+      Seq<Base> context,
+      scala.collection.immutable.Map<String, String> staticContext) {
+    var from = keys.size();
+    var replaced =
+        Handlers.conditionalReferencesReplacementHandler(
+            this, this, path, reference, context, staticContext);
+    addSite(replaced.getReferenceElement_(), from);
+    return replaced;
+  }
+
+  Identifier replaceIdentifierValue(
+      Seq<String> path,
+      Identifier identifier,
+      Seq<Base> context,
+      scala.collection.immutable.Map<String, String> staticContext) {
+    var from = keys.size();
+    var replaced =
+        Handlers.identifierValueReplacementHandler(
+            this, true, path, identifier, context, staticContext);
+    addSite(replaced.getValueElement(), from);
+    return replaced;
+  }
+
+  BaseDateTimeType shiftDate(
+      Seq<String> path,
+      BaseDateTimeType date,
+      Seq<Base> context,
+      scala.collection.immutable.Map<String, String> staticContext) {
+    var element = (BaseDateTimeType) date.copy();
+    dates.add(new DateSite(element, path, date, context, staticContext));
+    return element;
+  }
+
+  private void addSite(PrimitiveType<String> element, int from) {
+    if (from < keys.size()) {
+      strings.add(new StringSite(element, from, keys.size()));
+    }
+  }
+
+  private String newPlaceholder(String key) {
+    keys.add(key);
+    return placeholder(keys.size() - 1);
+  }
+
+  private String placeholder(int index) {
+    return placeholderPrefix + "." + index + ".";
+  }
+
+  private static String transportId(Map<String, String> transportIds, String key) {
+    var transportId = transportIds.get(key);
+    if (transportId == null) {
+      throw new IllegalArgumentException("no valid mapping found for id: " + key);
+    }
+    return transportId;
+  }
+
+  /** An element whose value contains the placeholders {@code from} to {@code to} (exclusive). */
+  private record StringSite(PrimitiveType<String> element, int from, int to) {}
+
+  private record DateSite(
+      BaseDateTimeType element,
+      Seq<String> path,
+      BaseDateTimeType original,
+      Seq<Base> context,
+      scala.collection.immutable.Map<String, String> staticContext) {}
+}
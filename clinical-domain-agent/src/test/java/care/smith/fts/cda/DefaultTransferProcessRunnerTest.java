@@ -9,21 +9,39 @@ import static reactor.test.StepVerifier.create;
 import care.smith.fts.api.*;
 import care.smith.fts.api.ConsentedPatient;
 import care.smith.fts.api.cda.BundleSender;
+import care.smith.fts.cda.TransferProcessRunner.Phase;
+import care.smith.fts.cda.TransferProcessRunner.Status;
+import care.smith.fts.util.TransferProcessRetention;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 import org.hl7.fhir.r4.model.Bundle;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
 
 class DefaultTransferProcessRunnerTest {
 
   private static final String PATIENT_ID = "patient-150622";
   private static final ConsentedPatient PATIENT = new ConsentedPatient(PATIENT_ID);
 
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
   private DefaultTransferProcessRunner runner;
 
+  @TempDir private Path stateDirectory;
+
   @BeforeEach
-  void setUp() {
-    runner = new DefaultTransferProcessRunner();
+  void setUp() throws IOException {
+    runner =
+        new DefaultTransferProcessRunner(
+            new FileProcessStateStore(stateDirectory.toString()), meterRegistry);
   }
 
   @Test
@@ -47,4 +65,176 @@ class DefaultTransferProcessRunnerTest {
             })
         .verifyComplete();
   }
+
+  @Test
+  void statusUpdatesCompleteWithFinalStatus() throws InterruptedException {
+    var process =
+        new TransferProcessDefinition(
+            "test",
+            pids -> fromIterable(List.of(PATIENT, new ConsentedPatient("patient-091844"))),
+            p -> fromIterable(List.of(new ConsentedPatientBundle(new Bundle(), p))),
+            b -> just(new TransportBundle(new Bundle(), "tIDMapName")),
+            b -> just(new BundleSender.Result(1)));
+
+    var processId = runner.start(process, List.of());
+    sleep(500L);
+    create(runner.statusUpdates(processId))
+        .expectNext(new Status(processId, Phase.COMPLETED, 2, 0))
+        .verifyComplete();
+  }
+
+  @Test
+  void statusUpdatesFollowProgress() {
+    var cohort = Sinks.many().unicast().<ConsentedPatient>onBackpressureBuffer();
+    var process =
+        new TransferProcessDefinition(
+            "test",
+            pids -> cohort.asFlux(),
+            p -> fromIterable(List.of(new ConsentedPatientBundle(new Bundle(), p))),
+            b -> just(new TransportBundle(new Bundle(), "tIDMapName")),
+            b -> just(new BundleSender.Result(1)));
+
+    var processId = runner.start(process, List.of());
+    create(runner.statusUpdates(processId))
+        .expectNext(new Status(processId, Phase.RUNNING, 0, 0))
+        .then(() -> cohort.tryEmitNext(PATIENT))
+        .expectNext(new Status(processId, Phase.RUNNING, 1, 0))
+        .then(() -> cohort.tryEmitNext(new ConsentedPatient("patient-091844")))
+        .expectNext(new Status(processId, Phase.RUNNING, 2, 0))
+        .then(cohort::tryEmitComplete)
+        .expectNext(new Status(processId, Phase.COMPLETED, 2, 0))
+        .verifyComplete();
+  }
+
+  @Test
+  void statusUpdatesOfUnknownProcessFail() {
+    create(runner.statusUpdates("unknown")).expectError(IllegalArgumentException.class).verify();
+  }
+
+  @Test
+  void finishedProcessesAreEvicted() throws Exception {
+    var retention = new TransferProcessRetention();
+    retention.setMaxFinished(1);
+    runner =
+        new DefaultTransferProcessRunner(
+            new FileProcessStateStore(stateDirectory.toString()), meterRegistry, retention);
+    var process =
+        new TransferProcessDefinition(
+            "test",
+            pids -> fromIterable(List.of(PATIENT)),
+            p -> fromIterable(List.of(new ConsentedPatientBundle(new Bundle(), PATIENT))),
+            b -> just(new TransportBundle(new Bundle(), "tIDMapName")),
+            b -> just(new BundleSender.Result(1)));
+
+    var first = runner.start(process, List.of());
+    var second = runner.start(process, List.of());
+    sleep(500L);
+
+    create(runner.status(first)).expectError(IllegalArgumentException.class).verify();
+    create(runner.status(second))
+        .expectNext(new Status(second, Phase.COMPLETED, 1, 0))
+        .verifyComplete();
+    create(runner.statusUpdates(second))
+        .expectNext(new Status(second, Phase.COMPLETED, 1, 0))
+        .verifyComplete();
+  }
+
+  @Test
+  void stagesAreMeasuredPerProject() throws InterruptedException {
+    var process =
+        new TransferProcessDefinition(
+            "test",
+            pids -> fromIterable(List.of(PATIENT)),
+            p -> fromIterable(List.of(new ConsentedPatientBundle(new Bundle(), PATIENT))),
+            b -> just(new TransportBundle(new Bundle(), "tIDMapName")),
+            b -> just(new BundleSender.Result(1)));
+
+    runner.start(process, List.of());
+    sleep(500L);
+
+    for (var stage : List.of("selectCohort", "selectData", "deidentify", "send")) {
+      var timer =
+          meterRegistry.get("transferProcess.stage").tag("project", "test").tag("stage", stage);
+      assertThat(timer.timer().count()).isEqualTo(1);
+      assertThat(
+              meterRegistry.get("transferProcess.stage.active").tag("stage", stage).gauge().value())
+          .isZero();
+    }
+    assertThat(meterRegistry.get("transferProcess.patient").tag("project", "test").timer().count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void runLimitsConcurrentPatients() throws InterruptedException {
+    var patients =
+        IntStream.range(0, 8).mapToObj(i -> new ConsentedPatient("patient-" + i)).toList();
+    var active = new AtomicInteger();
+    var maxActive = new AtomicInteger();
+    var process =
+        new TransferProcessDefinition(
+            "test",
+            pids -> fromIterable(patients),
+            p ->
+                Flux.just(new ConsentedPatientBundle(new Bundle(), p))
+                    .delayElements(Duration.ofMillis(20))
+                    .doOnSubscribe(
+                        s -> maxActive.accumulateAndGet(active.incrementAndGet(), Math::max))
+                    .doOnTerminate(active::decrementAndGet),
+            b -> just(new TransportBundle(new Bundle(), "tIDMapName")),
+            b -> just(new BundleSender.Result(1)),
+            new ConcurrencyConfig(2, 0, 0, 0));
+
+    var processId = runner.start(process, List.of());
+    sleep(500L);
+    create(runner.status(processId))
+        .assertNext(r -> assertThat(r.bundlesSentCount()).isEqualTo(8))
+        .verifyComplete();
+    assertThat(maxActive.get()).isEqualTo(2);
+  }
+
+  @Test
+  void resumeSkipsSentPatients() throws Exception {
+    var interrupted = new FileProcessStateStore(stateDirectory.toString());
+    interrupted.started("interrupted", "test");
+    interrupted.patientSent("interrupted", PATIENT_ID, 1);
+    interrupted.destroy();
+
+    var otherPatient = new ConsentedPatient("patient-113924");
+    var selected = new ArrayList<String>();
+    var process =
+        new TransferProcessDefinition(
+            "test",
+            pids -> fromIterable(List.of(PATIENT, otherPatient)),
+            p -> {
+              selected.add(p.id());
+              return fromIterable(List.of(new ConsentedPatientBundle(new Bundle(), p)));
+            },
+            b -> just(new TransportBundle(new Bundle(), "tIDMapName")),
+            b -> just(new BundleSender.Result(1)));
+
+    runner =
+        new DefaultTransferProcessRunner(
+            new FileProcessStateStore(stateDirectory.toString()), meterRegistry);
+    var processId = runner.resume(process, List.of());
+    sleep(500L);
+
+    assertThat(processId).isEqualTo("interrupted");
+    assertThat(selected).containsExactly("patient-113924");
+    create(runner.status(processId))
+        .assertNext(r -> assertThat(r.bundlesSentCount()).isEqualTo(2))
+        .verifyComplete();
+  }
+
+  @Test
+  void resumeWithoutInterruptedProcessStarts() {
+    var process =
+        new TransferProcessDefinition(
+            "test",
+            pids -> fromIterable(List.of(PATIENT)),
+            p -> fromIterable(List.of(new ConsentedPatientBundle(new Bundle(), PATIENT))),
+            b -> just(new TransportBundle(new Bundle(), "tIDMapName")),
+            b -> just(new BundleSender.Result(1)));
+
+    assertThat(runner.resume(process, List.of())).isNotBlank();
+  }
 }
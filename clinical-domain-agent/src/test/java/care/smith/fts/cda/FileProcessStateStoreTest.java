@@ -0,0 +1,104 @@
+package care.smith.fts.cda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import care.smith.fts.cda.ProcessStateStore.ProcessState;
+import care.smith.fts.cda.TransferProcessRunner.Phase;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileProcessStateStoreTest {
+
+  @TempDir private Path directory;
+
+  private FileProcessStateStore store;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    store = new FileProcessStateStore(directory.toString());
+  }
+
+  @Test
+  void unknownProjectHasNoInterruptedProcess() {
+    assertThat(store.findInterrupted("unknown")).isEmpty();
+  }
+
+  @Test
+  void finishedProcessIsNotInterrupted() throws Exception {
+    store.started("process-1", "example");
+    store.patientSent("process-1", "patient-1", 2);
+    store.finished("process-1", Phase.COMPLETED);
+    store.destroy();
+
+    assertThat(new FileProcessStateStore(directory.toString()).findInterrupted("example"))
+        .isEmpty();
+    assertThat(directory.resolve("example/process-1.journal")).doesNotExist();
+  }
+
+  @Test
+  void failedProcessIsInterrupted() throws Exception {
+    store.started("process-1", "example");
+    store.patientSent("process-1", "patient-1", 2);
+    store.finished("process-1", Phase.ERROR);
+    store.destroy();
+
+    assertThat(new FileProcessStateStore(directory.toString()).findInterrupted("example"))
+        .hasValue(new ProcessState("process-1", "example", Set.of("patient-1"), 2));
+  }
+
+  @Test
+  void leftoverJournalOfFinishedProcessIsDeleted() throws IOException {
+    var journal = Files.createDirectories(directory.resolve("example")).resolve("old.journal");
+    Files.writeString(journal, "STARTED\texample\nCOMPLETED\n");
+
+    assertThat(store.findInterrupted("example")).isEmpty();
+    assertThat(journal).doesNotExist();
+  }
+
+  @Test
+  void runningProcessIsNotInterrupted() {
+    store.started("process-1", "example");
+
+    assertThat(store.findInterrupted("example")).isEmpty();
+  }
+
+  @Test
+  void unfinishedProcessIsInterrupted() throws Exception {
+    store.started("process-1", "example");
+    store.patientSent("process-1", "patient-1", 2);
+    store.patientSkipped("process-1", "patient-2");
+    store.patientSent("process-1", "patient-3", 1);
+    store.destroy();
+
+    assertThat(new FileProcessStateStore(directory.toString()).findInterrupted("example"))
+        .hasValue(new ProcessState("process-1", "example", Set.of("patient-1", "patient-3"), 3));
+  }
+
+  @Test
+  void resumedProcessContinuesJournal() throws Exception {
+    store.started("process-1", "example");
+    store.patientSent("process-1", "patient-1", 1);
+    store.destroy();
+
+    var resumed = new FileProcessStateStore(directory.toString());
+    resumed.started("process-1", "example");
+    resumed.patientSent("process-1", "patient-2", 1);
+    var stopped = new FileProcessStateStore(directory.toString());
+    resumed.destroy();
+
+    assertThat(stopped.findInterrupted("example"))
+        .hasValue(new ProcessState("process-1", "example", Set.of("patient-1", "patient-2"), 2));
+
+    var completed = new FileProcessStateStore(directory.toString());
+    completed.started("process-1", "example");
+    completed.finished("process-1", Phase.COMPLETED);
+    completed.destroy();
+    assertThat(new FileProcessStateStore(directory.toString()).findInterrupted("example"))
+        .isEmpty();
+  }
+}
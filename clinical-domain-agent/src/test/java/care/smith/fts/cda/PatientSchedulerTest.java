@@ -0,0 +1,104 @@
+package care.smith.fts.cda;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static reactor.test.StepVerifier.create;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class PatientSchedulerTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Test
+  void nonPositiveMaxConcurrentPatientsThrows() {
+    assertThatThrownBy(() -> new PatientScheduler(meterRegistry, 0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void limitsPatientsOfAllProjects() {
+    var scheduler = new PatientScheduler(meterRegistry, 2);
+    var active = new AtomicInteger();
+    var maxActive = new AtomicInteger();
+    var work =
+        Mono.delay(Duration.ofMillis(20))
+            .doOnSubscribe(s -> maxActive.accumulateAndGet(active.incrementAndGet(), Math::max))
+            .doOnTerminate(active::decrementAndGet);
+
+    create(
+            Flux.range(0, 8)
+                .flatMap(i -> scheduler.schedule(i % 2 == 0 ? "a" : "b", 1, work), 8)
+                .count())
+        .expectNext(8L)
+        .verifyComplete();
+    assertThat(maxActive.get()).isEqualTo(2);
+    assertThat(scheduler.running()).isZero();
+  }
+
+  @Test
+  void slotsAreSharedByWeight() {
+    var scheduler = new PatientScheduler(meterRegistry, 1);
+    var blocker = Sinks.empty();
+    var granted = new CopyOnWriteArrayList<String>();
+    scheduler.schedule("x", 1, blocker.asMono()).subscribe();
+
+    for (var i = 0; i < 8; i++) {
+      scheduler.schedule("a", 3, Mono.fromRunnable(() -> granted.add("a"))).subscribe();
+    }
+    for (var i = 0; i < 4; i++) {
+      scheduler.schedule("b", 1, Mono.fromRunnable(() -> granted.add("b"))).subscribe();
+    }
+    assertThat(
+            meterRegistry
+                .get("transferProcess.scheduler.waiting")
+                .tag("project", "a")
+                .gauge()
+                .value())
+        .isEqualTo(8);
+
+    blocker.tryEmitEmpty();
+    assertThat(granted).hasSize(12);
+    assertThat(granted.subList(0, 8)).filteredOn("a"::equals).hasSize(6);
+    assertThat(
+            meterRegistry.get("transferProcess.scheduler.wait").tag("project", "b").timer().count())
+        .isEqualTo(4);
+  }
+
+  @Test
+  void newProjectDoesNotWaitForBacklogOfOthers() {
+    var scheduler = new PatientScheduler(meterRegistry, 1);
+    var blocker = Sinks.empty();
+    var granted = new CopyOnWriteArrayList<String>();
+    scheduler.schedule("a", 1, blocker.asMono()).subscribe();
+    for (var i = 0; i < 5; i++) {
+      scheduler.schedule("a", 1, Mono.fromRunnable(() -> granted.add("a"))).subscribe();
+    }
+    scheduler.schedule("b", 1, Mono.fromRunnable(() -> granted.add("b"))).subscribe();
+
+    blocker.tryEmitEmpty();
+    assertThat(granted).isEqualTo(List.of("b", "a", "a", "a", "a", "a"));
+  }
+
+  @Test
+  void cancelledPatientsReleaseTheirSlot() {
+    var scheduler = new PatientScheduler(meterRegistry, 1);
+    var blocker = Sinks.empty();
+    var running = scheduler.schedule("a", 1, blocker.asMono()).subscribe();
+    var waiting = scheduler.schedule("a", 1, Mono.just("waiting")).subscribe();
+
+    waiting.dispose();
+    running.dispose();
+
+    assertThat(scheduler.running()).isZero();
+    create(scheduler.schedule("a", 1, Mono.just("next"))).expectNext("next").verifyComplete();
+  }
+}
@@ -1,16 +1,20 @@
 package care.smith.fts.cda;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
@@ -53,4 +57,36 @@ class ProjectReaderTest {
 
     verify(processFactory, times(1)).create(any(), eq("example"));
   }
+
+  @Test
+  void concurrencyIsParsed() throws Exception {
+    Files.copy(testDirectory.resolve("example.yaml"), tempDirectory.resolve("example.yaml"));
+    Files.writeString(
+        tempDirectory.resolve("example.yaml"),
+        "concurrency:\n  maxConcurrentPatients: 4\n  sending: 2\n",
+        StandardOpenOption.APPEND);
+    var config = ArgumentCaptor.forClass(TransferProcessConfig.class);
+    when(processFactory.create(config.capture(), anyString())).thenReturn(null);
+
+    var factory = new ProjectReader(processFactory, objectMapper, tempDirectory);
+    factory.createTransferProcesses();
+
+    assertThat(config.getValue().concurrency()).isEqualTo(new ConcurrencyConfig(4, 4, 4, 2));
+  }
+
+  @Test
+  void weightIsParsed() throws Exception {
+    Files.copy(testDirectory.resolve("example.yaml"), tempDirectory.resolve("example.yaml"));
+    Files.writeString(
+        tempDirectory.resolve("example.yaml"),
+        "concurrency:\n  weight: 3\n",
+        StandardOpenOption.APPEND);
+    var config = ArgumentCaptor.forClass(TransferProcessConfig.class);
+    when(processFactory.create(config.capture(), anyString())).thenReturn(null);
+
+    var factory = new ProjectReader(processFactory, objectMapper, tempDirectory);
+    factory.createTransferProcesses();
+
+    assertThat(config.getValue().concurrency().weight()).isEqualTo(3);
+  }
 }
@@ -1,5 +1,6 @@
 package care.smith.fts.cda;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.assertj.core.api.Assertions.assertThatNoException;
 
@@ -54,6 +55,20 @@ class TransferProcessFactoryTest {
     assertThatNoException().isThrownBy(() -> factory.create(processDefinition, "example"));
   }
 
+  @Test
+  void concurrencyDefaultsToMaxConcurrentPatients() {
+    TransferProcessConfig processDefinition =
+        new TransferProcessConfig(
+            Map.of("mock", Map.of()),
+            Map.of("mock", Map.of()),
+            Map.of("mock", Map.of()),
+            Map.of("mock", Map.of()),
+            new ConcurrencyConfig(8, 2, 0, 0));
+
+    assertThat(factory.create(processDefinition, "example").concurrency())
+        .isEqualTo(new ConcurrencyConfig(8, 2, 8, 8));
+  }
+
   @Test
   void unknownConfigEntriesThrow() {
     TransferProcessConfig processDefinition =
@@ -0,0 +1,74 @@
+package care.smith.fts.cda.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ca.uhn.fhir.context.FhirContext;
+import care.smith.fts.cda.services.FhirResolveConfig;
+import care.smith.fts.util.HttpClientConfig;
+import care.smith.fts.util.RetryPolicies;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.web.reactive.function.client.WebClientSsl;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.web.reactive.function.client.WebClient;
+
+@SpringBootTest
+class BulkExportDataSelectorFactoryTest {
+
+  @Autowired WebClient.Builder client;
+  @Autowired MeterRegistry meterRegistry;
+  @Autowired WebClientSsl ssl;
+  @Autowired FhirContext fhir;
+
+  private BulkExportDataSelectorFactory factory;
+
+  @BeforeEach
+  void setUp() {
+    factory =
+        new BulkExportDataSelectorFactory(
+            client, ssl, meterRegistry, new RetryPolicies(meterRegistry), fhir);
+  }
+
+  @Test
+  void testConfigType() {
+    assertThat(factory.getConfigType()).isNotNull();
+  }
+
+  @Test
+  void testCreateWithoutResolver() {
+    assertThat(
+            factory.create(
+                null,
+                new BulkExportDataSelectorConfig(new HttpClientConfig("http://localhost"), null)))
+        .isNotNull();
+  }
+
+  @Test
+  void testCreateWithResolver() {
+    assertThat(
+            factory.create(
+                null,
+                new BulkExportDataSelectorConfig(
+                    new HttpClientConfig("http://localhost"),
+                    new FhirResolveConfig("https://patient-identifier.example.com"),
+                    "cohort-1",
+                    null,
+                    null,
+                    null,
+                    null,
+                    null)))
+        .isNotNull();
+  }
+
+  @Test
+  void configDefaults() {
+    var config = new BulkExportDataSelectorConfig(new HttpClientConfig("http://localhost"), null);
+    assertThat(config.types()).isEmpty();
+    assertThat(config.typeFilters()).isEmpty();
+    assertThat(config.pollInterval()).isEqualTo(Duration.ofSeconds(5));
+    assertThat(config.timeout()).isEqualTo(Duration.ofHours(1));
+  }
+}
@@ -0,0 +1,241 @@
+package care.smith.fts.cda.impl;
+
+import static care.smith.fts.test.MockServerUtil.clientConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+import static org.mockserver.verify.VerificationTimes.once;
+import static reactor.test.StepVerifier.create;
+
+import ca.uhn.fhir.context.FhirContext;
+import care.smith.fts.api.ConsentedPatient;
+import care.smith.fts.api.ConsentedPatient.ConsentedPolicies;
+import care.smith.fts.api.ConsentedPatientBundle;
+import care.smith.fts.api.Period;
+import care.smith.fts.api.cda.DataSelector;
+import care.smith.fts.cda.impl.BulkExportDataSelector.Export;
+import care.smith.fts.cda.services.PatientIdResolver;
+import care.smith.fts.util.RetryPolicies;
+import care.smith.fts.util.RetryPolicy;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Resource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockserver.client.MockServerClient;
+import org.mockserver.junit.jupiter.MockServerExtension;
+import org.mockserver.matchers.Times;
+import org.mockserver.model.Header;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+@SpringBootTest
+@ExtendWith(MockServerExtension.class)
+class BulkExportDataSelectorTest {
+
+  private static final Header CONTENT_JSON = new Header("Content-Type", "application/json");
+  private static final Header CONTENT_NDJSON =
+      new Header("Content-Type", "application/fhir+ndjson");
+  private static final PatientIdResolver patient = pid -> Mono.just(new IdType("Patient", pid));
+  private static final FhirContext fhir = FhirContext.forR4();
+
+  @Autowired WebClient.Builder builder;
+  @Autowired MeterRegistry meterRegistry;
+
+  private final DataSelector.Config common = new DataSelector.Config(true, null);
+  private BulkExportDataSelectorConfig config;
+  private WebClient client;
+  private RetryPolicy retryPolicy;
+
+  private static final String PATIENTS =
+      """
+      {"resourceType":"Patient","id":"patient-1"}
+      {"resourceType":"Patient","id":"patient-2"}
+      """;
+  private static final String OBSERVATIONS =
+      String.join(
+          "\n",
+          observation("obs-1", "patient-1", ",\"effectiveDateTime\":\"2020-06-01\""),
+          observation("obs-2", "patient-1", ",\"effectiveDateTime\":\"2024-06-01\""),
+          observation("obs-3", "patient-2", ""));
+  private static final String MANIFEST =
+      """
+      {"output":[
+        {"type":"Patient","url":"http://localhost:%1$d/files/patient.ndjson"},
+        {"type":"Observation","url":"http://localhost:%1$d/files/observation.ndjson"}
+      ],"error":[]}
+      """;
+
+  @BeforeEach
+  void setUp(MockServerClient mockServer) {
+    var server = clientConfig(mockServer);
+    config =
+        new BulkExportDataSelectorConfig(
+            server, null, null, List.of("Patient", "Observation"), null, Duration.ZERO, null, null);
+    client = server.createClient(builder, null);
+    retryPolicy = new RetryPolicies(meterRegistry).of(server);
+  }
+
+  @Test
+  void noConsentErrors() {
+    var dataSelector =
+        new BulkExportDataSelector(
+            new DataSelector.Config(false, null), config, client, patient, fhir, retryPolicy);
+
+    create(dataSelector.select(new ConsentedPatient("patient-1"))).expectError().verify();
+  }
+
+  @Test
+  void resourcesAreGroupedByPatient(MockServerClient mockServer) {
+    mockBulkExport(mockServer);
+    var dataSelector = dataSelector(common);
+
+    create(dataSelector.select(new ConsentedPatient("patient-1")))
+        .assertNext(b -> assertThat(resourceIds(b)).containsExactly("patient-1", "obs-1", "obs-2"))
+        .verifyComplete();
+    create(dataSelector.select(new ConsentedPatient("patient-2")))
+        .assertNext(b -> assertThat(resourceIds(b)).containsExactly("patient-2", "obs-3"))
+        .verifyComplete();
+    mockServer.verify(request().withPath("/Patient/$export"), once());
+    mockServer.verify(request().withMethod("DELETE").withPath("/status/1"), once());
+  }
+
+  @Test
+  void resourcesOutsideConsentedPeriodAreDropped(MockServerClient mockServer) {
+    mockBulkExport(mockServer);
+    var dataSelector = dataSelector(new DataSelector.Config(false, null));
+
+    var consentedPolicies = new ConsentedPolicies();
+    consentedPolicies.put(
+        "pol",
+        new Period(
+            ZonedDateTime.parse("2023-01-01T00:00:00Z"),
+            ZonedDateTime.parse("2025-01-01T00:00:00Z")));
+    create(dataSelector.select(new ConsentedPatient("patient-1", consentedPolicies)))
+        .assertNext(b -> assertThat(resourceIds(b)).containsExactly("patient-1", "obs-2"))
+        .verifyComplete();
+  }
+
+  @Test
+  void patientWithoutResourcesSelectsNothing(MockServerClient mockServer) {
+    mockBulkExport(mockServer);
+    var dataSelector = dataSelector(common);
+
+    create(dataSelector.select(new ConsentedPatient("patient-3"))).verifyComplete();
+  }
+
+  @Test
+  void failedKickOffErrors(MockServerClient mockServer) {
+    mockServer
+        .when(request().withMethod("GET").withPath("/Patient/$export"))
+        .respond(response().withStatusCode(200));
+    var dataSelector = dataSelector(common);
+
+    create(dataSelector.select(new ConsentedPatient("patient-1"))).expectError().verify();
+  }
+
+  @Test
+  void disposeDeletesSpool(MockServerClient mockServer) throws IOException {
+    mockBulkExport(mockServer);
+    var dataSelector = dataSelector(common);
+    var before = spools();
+
+    create(dataSelector.select(new ConsentedPatient("patient-1")))
+        .expectNextCount(1)
+        .verifyComplete();
+    var created = spools().stream().filter(p -> !before.contains(p)).toList();
+    assertThat(created).hasSize(1).allSatisfy(p -> assertThat(p).exists());
+
+    dataSelector.dispose();
+    assertThat(created).allSatisfy(p -> assertThat(p).doesNotExist());
+  }
+
+  @Test
+  void exportIsDeletedAfterLastReader() throws IOException {
+    var export = Export.create();
+    var spool = export.spool(0);
+    spool.append(observation("obs-1", "patient-1", ""), Stream.of("patient-1"));
+    spool.close();
+
+    assertThat(export.retain()).isTrue();
+    export.release();
+    assertThat(export.read("patient-1")).hasSize(1);
+
+    export.release();
+    assertThat(export.retain()).isFalse();
+    assertThrows(IOException.class, () -> export.read("patient-1"));
+  }
+
+  private static List<Path> spools() throws IOException {
+    try (var dirs = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+      return dirs.filter(p -> p.getFileName().toString().startsWith("fts-bulk-export")).toList();
+    }
+  }
+
+  /* Answers the status request once with in progress, before the export is complete */
+  private static void mockBulkExport(MockServerClient mockServer) {
+    mockServer
+        .when(
+            request()
+                .withMethod("GET")
+                .withPath("/Patient/$export")
+                .withHeader("Prefer", "respond-async")
+                .withQueryStringParameter("_type", "Patient,Observation"))
+        .respond(
+            response()
+                .withStatusCode(202)
+                .withHeader(
+                    "Content-Location",
+                    "http://localhost:%d/status/1".formatted(mockServer.getPort())));
+    mockServer
+        .when(request().withMethod("GET").withPath("/status/1"), Times.once())
+        .respond(response().withStatusCode(202).withHeader("X-Progress", "50%"));
+    mockServer
+        .when(request().withMethod("GET").withPath("/status/1"))
+        .respond(
+            response().withBody(MANIFEST.formatted(mockServer.getPort())).withHeader(CONTENT_JSON));
+    mockServer
+        .when(request().withMethod("DELETE").withPath("/status/1"))
+        .respond(response().withStatusCode(202));
+    mockServer
+        .when(request().withMethod("GET").withPath("/files/patient.ndjson"))
+        .respond(response().withBody(PATIENTS).withHeader(CONTENT_NDJSON));
+    mockServer
+        .when(request().withMethod("GET").withPath("/files/observation.ndjson"))
+        .respond(response().withBody(OBSERVATIONS).withHeader(CONTENT_NDJSON));
+  }
+
+  private static String observation(String id, String patient, String fields) {
+    return """
+           {"resourceType":"Observation","id":"%s","subject":{"reference":"Patient/%s"}%s}"""
+        .formatted(id, patient, fields);
+  }
+
+  private BulkExportDataSelector dataSelector(DataSelector.Config common) {
+    return new BulkExportDataSelector(common, config, client, patient, fhir, retryPolicy);
+  }
+
+  private static List<String> resourceIds(ConsentedPatientBundle b) {
+    return b.bundle().getEntry().stream()
+        .map(e -> e.getResource())
+        .map(Resource::getIdPart)
+        .toList();
+  }
+
+  @AfterEach
+  void tearDown(MockServerClient mockServer) {
+    mockServer.reset();
+  }
+}
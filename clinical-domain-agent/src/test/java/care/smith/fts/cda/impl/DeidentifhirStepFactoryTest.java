@@ -6,6 +6,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import care.smith.fts.api.cda.Deidentificator;
 import care.smith.fts.cda.impl.DeidentifhirStepConfig.TCAConfig;
 import care.smith.fts.util.HttpClientConfig;
+import care.smith.fts.util.RetryPolicies;
 import io.micrometer.core.instrument.MeterRegistry;
 import java.io.File;
 import org.junit.jupiter.api.BeforeEach;
@@ -25,7 +26,9 @@ class DeidentifhirStepFactoryTest {
 
   @BeforeEach
   void setUp() {
-    factory = new DeidentifhirStepFactory(WebClient.builder(), ssl, meterRegistry);
+    factory =
+        new DeidentifhirStepFactory(
+            WebClient.builder(), ssl, meterRegistry, new RetryPolicies(meterRegistry));
   }
 
   @Test
@@ -45,4 +48,18 @@ class DeidentifhirStepFactoryTest {
                     new File("scraperConfig"))))
         .isNotNull();
   }
+
+  @Test
+  void createSinglePass() {
+    assertThat(
+            factory.create(
+                new Deidentificator.Config(),
+                new DeidentifhirStepConfig(
+                    new TCAConfig(new HttpClientConfig("baseUrl:1234"), "domain"),
+                    ofDays(14),
+                    new File("deidentifhirConfig"),
+                    null,
+                    true)))
+        .isNotNull();
+  }
 }
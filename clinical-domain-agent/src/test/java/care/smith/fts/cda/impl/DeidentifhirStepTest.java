@@ -7,15 +7,19 @@ import static org.mockserver.matchers.MatchType.ONLY_MATCHING_FIELDS;
 import static org.mockserver.model.HttpRequest.request;
 import static org.mockserver.model.HttpResponse.response;
 import static org.mockserver.model.JsonBody.json;
+import static org.mockserver.verify.VerificationTimes.once;
 import static reactor.test.StepVerifier.create;
 
 import care.smith.fts.api.ConsentedPatient;
 import care.smith.fts.api.ConsentedPatientBundle;
+import care.smith.fts.cda.impl.DeidentifhirStepConfig.BatchConfig;
 import care.smith.fts.cda.services.deidentifhir.DeidentifhirUtil;
 import care.smith.fts.test.MockServerUtil;
+import care.smith.fts.util.RetryPolicies;
 import com.typesafe.config.Config;
 import io.micrometer.core.instrument.MeterRegistry;
 import java.io.IOException;
+import java.time.Duration;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -25,6 +29,7 @@ import org.mockserver.junit.jupiter.MockServerExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 
 @SpringBootTest
 @ExtendWith(MockServerExtension.class)
@@ -46,7 +51,9 @@ class DeidentifhirStepTest {
             ofDays(14),
             deidentifhirConfig,
             scraperConfig,
-            meterRegistry);
+            meterRegistry,
+            null,
+            new RetryPolicies(meterRegistry).of(server));
   }
 
   @Test
@@ -116,6 +123,119 @@ class DeidentifhirStepTest {
     create(step.deidentify(consentedPatientBundle)).expectNextCount(1).verifyComplete();
   }
 
+  @Test
+  void singlePassDeidentifySucceeds(MockServerClient mockServer) throws IOException {
+    Config deidentifhirConfig = parseResources(DeidentifhirUtil.class, "CDtoTransport.profile");
+    var server = MockServerUtil.clientConfig(mockServer);
+    var singlePassStep =
+        new DeidentifhirStep(
+            server.createClient(WebClient.builder(), null),
+            "domain",
+            ofDays(14),
+            deidentifhirConfig,
+            null,
+            meterRegistry,
+            null,
+            new RetryPolicies(meterRegistry).of(server));
+    mockServer
+        .when(
+            request()
+                .withMethod("POST")
+                .withPath("/api/v2/cd/transport-ids-and-date-shifting-values")
+                .withBody(
+                    json(
+                        """
+                        {"ids" : [ "id1.identifier.identifierSystem:id1", "id1.Patient:id1" ]}
+                        """,
+                        ONLY_MATCHING_FIELDS)))
+        .respond(
+            response()
+                .withBody(
+                    json(
+                        """
+{"tIDMapName": "tIDMapName", "originalToTransportIDMap":{"id1.identifier.identifierSystem:id1":"tident1",
+ "id1.Patient:id1":"tid1"},"dateShiftValue":1209600.000000000}
+"""))
+                .withStatusCode(200));
+
+    var consentedPatient = new ConsentedPatient("id1");
+    var bundle = generateOnePatient("id1", "2024", "identifierSystem");
+    var consentedPatientBundle = new ConsentedPatientBundle(bundle, consentedPatient);
+
+    create(singlePassStep.deidentify(consentedPatientBundle))
+        .expectNextMatches(b -> b.tIDMapName().equals("tIDMapName"))
+        .verifyComplete();
+  }
+
+  @Test
+  void batchedRequestsAreCombined(MockServerClient mockServer) throws IOException {
+    var batchedStep = batchedStep(mockServer);
+    mockServer
+        .when(
+            request()
+                .withMethod("POST")
+                .withPath("/api/v2/cd/transport-ids-and-date-shifting-values/batch"))
+        .respond(
+            response()
+                .withBody(
+                    json(
+                        """
+[{"tIDMapName": "tIDMapName1", "originalToTransportIDMap": {}, "dateShiftValue": 1209600.0},
+ {"tIDMapName": "tIDMapName2", "originalToTransportIDMap": {}, "dateShiftValue": 1209600.0}]
+"""))
+                .withStatusCode(200));
+
+    var bundles =
+        Flux.just(
+            new ConsentedPatientBundle(
+                generateOnePatient("id1", "2024", "identifierSystem"), new ConsentedPatient("id1")),
+            new ConsentedPatientBundle(
+                generateOnePatient("id2", "2024", "identifierSystem"),
+                new ConsentedPatient("id2")));
+
+    create(bundles.flatMapSequential(batchedStep::deidentify))
+        .expectNextMatches(b -> b.tIDMapName().equals("tIDMapName1"))
+        .expectNextMatches(b -> b.tIDMapName().equals("tIDMapName2"))
+        .verifyComplete();
+    mockServer.verify(
+        request().withPath("/api/v2/cd/transport-ids-and-date-shifting-values/batch"), once());
+  }
+
+  @Test
+  void batchResponseOfWrongSizeErrors(MockServerClient mockServer) throws IOException {
+    var batchedStep = batchedStep(mockServer);
+    mockServer
+        .when(
+            request()
+                .withMethod("POST")
+                .withPath("/api/v2/cd/transport-ids-and-date-shifting-values/batch"))
+        .respond(response().withBody(json("[]")).withStatusCode(200));
+
+    var consentedPatient = new ConsentedPatient("id1");
+    var bundle = generateOnePatient("id1", "2024", "identifierSystem");
+    var consentedPatientBundle = new ConsentedPatientBundle(bundle, consentedPatient);
+
+    create(batchedStep.deidentify(consentedPatientBundle))
+        .expectError(IllegalStateException.class)
+        .verify();
+  }
+
+  private DeidentifhirStep batchedStep(MockServerClient mockServer) {
+    Config scraperConfig = parseResources(DeidentifhirUtil.class, "IDScraper.profile");
+    Config deidentifhirConfig = parseResources(DeidentifhirUtil.class, "CDtoTransport.profile");
+    var server = MockServerUtil.clientConfig(mockServer);
+
+    return new DeidentifhirStep(
+        server.createClient(WebClient.builder(), null),
+        "domain",
+        ofDays(14),
+        deidentifhirConfig,
+        scraperConfig,
+        meterRegistry,
+        new BatchConfig(2, Duration.ofSeconds(1)),
+        new RetryPolicies(meterRegistry).of(server));
+  }
+
   @AfterEach
   void tearDown(MockServerClient mockServer) {
     mockServer.reset();
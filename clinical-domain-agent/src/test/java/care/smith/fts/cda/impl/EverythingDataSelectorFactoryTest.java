@@ -2,8 +2,10 @@ package care.smith.fts.cda.impl;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import care.smith.fts.cda.impl.EverythingDataSelectorConfig.PageConfig;
 import care.smith.fts.cda.services.FhirResolveConfig;
 import care.smith.fts.util.HttpClientConfig;
+import care.smith.fts.util.RetryPolicies;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -23,7 +25,9 @@ class EverythingDataSelectorFactoryTest {
 
   @BeforeEach
   void setUp() {
-    factory = new EverythingDataSelectorFactory(client, ssl, meterRegistry);
+    factory =
+        new EverythingDataSelectorFactory(
+            client, ssl, meterRegistry, new RetryPolicies(meterRegistry));
   }
 
   @Test
@@ -49,4 +53,21 @@ class EverythingDataSelectorFactoryTest {
                     new FhirResolveConfig("https://patient-identifier.example.com"))))
         .isNotNull();
   }
+
+  @Test
+  void testCreateWithPageConfig() {
+    assertThat(
+            factory.create(
+                null,
+                new EverythingDataSelectorConfig(
+                    new HttpClientConfig("http://localhost"), null, new PageConfig(100, 2))))
+        .isNotNull();
+  }
+
+  @Test
+  void pageConfigDefaults() {
+    var config = new EverythingDataSelectorConfig(new HttpClientConfig("http://localhost"));
+
+    assertThat(config.page()).isEqualTo(new PageConfig(500, 1));
+  }
 }
@@ -1,6 +1,8 @@
 package care.smith.fts.cda.impl;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
 import static org.springframework.http.HttpStatus.OK;
 import static org.springframework.web.reactive.function.client.WebClient.builder;
 import static reactor.core.publisher.Mono.just;
@@ -11,15 +13,30 @@ import care.smith.fts.api.ConsentedPatient;
 import care.smith.fts.api.ConsentedPatient.ConsentedPolicies;
 import care.smith.fts.api.Period;
 import care.smith.fts.api.cda.DataSelector;
+import care.smith.fts.api.cda.DataSelector.AdditionalFilterConfig;
+import care.smith.fts.cda.impl.EverythingDataSelectorConfig.PageConfig;
 import care.smith.fts.cda.services.PatientIdResolver;
 import care.smith.fts.util.HttpClientConfig;
+import care.smith.fts.util.RetryPolicies;
+import care.smith.fts.util.RetryPolicy;
 import io.micrometer.core.instrument.MeterRegistry;
 import java.io.InputStream;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.Encounter;
 import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -38,12 +55,23 @@ class EverythingDataSelectorTest {
   @Mock ClientResponse response;
   private final DataSelector.Config common = new DataSelector.Config(false, null);
   private final HttpClientConfig server = new HttpClientConfig("http://localhost");
+  private RetryPolicy retryPolicy;
+
+  @BeforeEach
+  void setUp() {
+    retryPolicy = new RetryPolicies(meterRegistry).of(server);
+  }
 
   @Test
   void noConsentErrors() {
     var client = builder();
     var dataSelector =
-        new EverythingDataSelector(common, server.createClient(client, null), patient, meterRegistry);
+        new EverythingDataSelector(
+            common,
+            server.createClient(client, null),
+            patient,
+            retryPolicy,
+            new PageConfig(0, null));
 
     create(dataSelector.select(new ConsentedPatient(PATIENT_ID))).expectError().verify();
   }
@@ -53,7 +81,12 @@ class EverythingDataSelectorTest {
     var client = builder().exchangeFunction(req -> Mono.just(ClientResponse.create(OK).build()));
     DataSelector.Config common = new DataSelector.Config(true, null);
     var dataSelector =
-        new EverythingDataSelector(common, server.createClient(client, null), patient, meterRegistry);
+        new EverythingDataSelector(
+            common,
+            server.createClient(client, null),
+            patient,
+            retryPolicy,
+            new PageConfig(0, null));
 
     create(dataSelector.select(new ConsentedPatient(PATIENT_ID))).verifyComplete();
   }
@@ -68,7 +101,12 @@ class EverythingDataSelectorTest {
       given(response.bodyToMono(Bundle.class)).willReturn(Mono.just(bundle));
     }
     var dataSelector =
-        new EverythingDataSelector(common, server.createClient(client, null), patient, meterRegistry);
+        new EverythingDataSelector(
+            common,
+            server.createClient(client, null),
+            patient,
+            retryPolicy,
+            new PageConfig(0, null));
 
     var consentedPolicies = new ConsentedPolicies();
     consentedPolicies.put("pol", new Period(ZonedDateTime.now(), ZonedDateTime.now().plusYears(5)));
@@ -76,4 +114,139 @@ class EverythingDataSelectorTest {
         .expectNextCount(1)
         .verifyComplete();
   }
+
+  @ParameterizedTest
+  @ValueSource(ints = {0, 1, 2})
+  void pagesAreFetchedAheadOfDemand(int prefetch) {
+    var requests = new ArrayList<String>();
+    var fetched = new AtomicInteger();
+    var client =
+        builder()
+            .exchangeFunction(
+                req -> {
+                  requests.add(req.url().toString());
+                  return just(pageResponse(requests.size(), fetched));
+                });
+    var dataSelector =
+        new EverythingDataSelector(
+            new DataSelector.Config(true, null),
+            server.createClient(client, null),
+            patient,
+            retryPolicy,
+            new PageConfig(50, prefetch));
+
+    create(dataSelector.select(new ConsentedPatient(PATIENT_ID)), 1)
+        .expectNextCount(1)
+        .then(() -> assertThat(fetched).hasValue(1 + prefetch))
+        .thenRequest(1)
+        .expectNextCount(1)
+        .then(() -> assertThat(fetched).hasValue(Math.min(3, 2 + prefetch)))
+        .thenRequest(1)
+        .expectNextCount(1)
+        .verifyComplete();
+    assertThat(requests.getFirst()).contains("_count=50");
+  }
+
+  @Test
+  void clinicalDateFilterRemovesResourcesOutsideConsentedPeriod() {
+    var bundle = new Bundle();
+    bundle.addEntry().setResource(new Patient().setId(PATIENT_ID));
+    bundle.addEntry().setResource(observation("inside", "2021-06-01", null));
+    bundle.addEntry().setResource(observation("outside", "2019-06-01", null));
+    var client = builder().exchangeFunction(req -> just(bundleResponse(bundle)));
+    var dataSelector =
+        new EverythingDataSelector(
+            new DataSelector.Config(false, new AdditionalFilterConfig(null, Map.of(), null)),
+            server.createClient(client, null),
+            patient,
+            retryPolicy,
+            new PageConfig(0, null));
+
+    create(dataSelector.select(new ConsentedPatient(PATIENT_ID, consentedPolicies())))
+        .assertNext(
+            b ->
+                assertThat(b.bundle().getEntry())
+                    .extracting(e -> e.getResource().getIdPart())
+                    .containsExactly(PATIENT_ID, "inside"))
+        .verifyComplete();
+  }
+
+  @Test
+  void encounterFilterSelectsResourcesOfEncountersInConsentedPeriod() {
+    var encounters = new Bundle();
+    encounters.addEntry().setResource(new Encounter().setId("inside"));
+    var everything = new Bundle();
+    everything.addEntry().setResource(new Patient().setId(PATIENT_ID));
+    everything.addEntry().setResource(new Encounter().setId("inside"));
+    everything.addEntry().setResource(new Encounter().setId("outside"));
+    everything.addEntry().setResource(observation("obs-inside", "2019-06-01", "inside"));
+    everything.addEntry().setResource(observation("obs-outside", "2021-06-01", "outside"));
+    var requests = new ArrayList<String>();
+    var client =
+        builder()
+            .exchangeFunction(
+                req -> {
+                  requests.add(req.url().toString());
+                  return just(
+                      bundleResponse(
+                          req.url().getPath().equals("/Encounter") ? encounters : everything));
+                });
+    var dataSelector =
+        new EverythingDataSelector(
+            new DataSelector.Config(false, new AdditionalFilterConfig(null, null, Map.of())),
+            server.createClient(client, null),
+            patient,
+            retryPolicy,
+            new PageConfig(0, null));
+
+    create(dataSelector.select(new ConsentedPatient(PATIENT_ID, consentedPolicies())))
+        .assertNext(
+            b ->
+                assertThat(b.bundle().getEntry())
+                    .extracting(e -> e.getResource().getIdPart())
+                    .containsExactly(PATIENT_ID, "inside", "obs-inside"))
+        .verifyComplete();
+    assertThat(requests.getFirst())
+        .contains("/Encounter?patient=" + PATIENT_ID)
+        .contains("date=ge2020-01-01")
+        .contains("date=le2022-12-31");
+  }
+
+  private static ConsentedPolicies consentedPolicies() {
+    var consentedPolicies = new ConsentedPolicies();
+    consentedPolicies.put(
+        "pol",
+        new Period(
+            ZonedDateTime.parse("2020-01-01T12:00:00+01:00"),
+            ZonedDateTime.parse("2022-12-31T12:00:00+01:00")));
+    return consentedPolicies;
+  }
+
+  private static Observation observation(String id, String effective, String encounter) {
+    var observation = new Observation().setEffective(new DateTimeType(effective));
+    if (encounter != null) {
+      observation.setEncounter(new Reference("Encounter/" + encounter));
+    }
+    observation.setId(id);
+    return observation;
+  }
+
+  private static ClientResponse bundleResponse(Bundle bundle) {
+    var response = mock(ClientResponse.class);
+    given(response.statusCode()).willReturn(OK);
+    given(response.bodyToMono(Bundle.class)).willReturn(Mono.just(bundle.copy()));
+    return response;
+  }
+
+  private static ClientResponse pageResponse(int page, AtomicInteger fetched) {
+    var bundle = new Bundle();
+    if (page < 3) {
+      bundle.addLink().setRelation("next").setUrl("http://localhost/page" + (page + 1));
+    }
+    var response = mock(ClientResponse.class);
+    given(response.statusCode()).willReturn(OK);
+    given(response.bodyToMono(Bundle.class))
+        .willReturn(Mono.defer(() -> Mono.just(bundle).doOnNext(b -> fetched.incrementAndGet())));
+    return response;
+  }
 }
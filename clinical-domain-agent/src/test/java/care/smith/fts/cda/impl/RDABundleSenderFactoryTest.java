@@ -2,7 +2,10 @@ package care.smith.fts.cda.impl;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import ca.uhn.fhir.context.FhirContext;
+import care.smith.fts.cda.impl.RDABundleSenderConfig.Format;
 import care.smith.fts.util.HttpClientConfig;
+import care.smith.fts.util.RetryPolicies;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,12 +19,14 @@ class RDABundleSenderFactoryTest {
 
   @Autowired MeterRegistry meterRegistry;
   @Autowired WebClientSsl ssl;
+  @Autowired FhirContext fhir;
   private final WebClient.Builder clientBuilder = WebClient.builder();
   private RDABundleSenderFactory factory;
 
   @BeforeEach
   void setUp() {
-    factory = new RDABundleSenderFactory(clientBuilder, ssl, meterRegistry);
+    factory =
+        new RDABundleSenderFactory(clientBuilder, ssl, new RetryPolicies(meterRegistry), fhir);
   }
 
   @Test
@@ -37,4 +42,14 @@ class RDABundleSenderFactoryTest {
                 new RDABundleSenderConfig(new HttpClientConfig("http://localhost"), "example")))
         .isNotNull();
   }
+
+  @Test
+  void testCreateNdjson() {
+    assertThat(
+            factory.create(
+                null,
+                new RDABundleSenderConfig(
+                    new HttpClientConfig("http://localhost"), "example", Format.NDJSON)))
+        .isNotNull();
+  }
 }
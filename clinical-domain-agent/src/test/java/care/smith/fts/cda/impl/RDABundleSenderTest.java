@@ -2,6 +2,7 @@ package care.smith.fts.cda.impl;
 
 import static care.smith.fts.util.FhirUtils.toBundle;
 import static care.smith.fts.util.auth.HttpClientAuthMethod.AuthMethod.NONE;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.stream.Stream.generate;
 import static org.mockserver.matchers.Times.once;
 import static org.mockserver.model.HttpRequest.request;
@@ -16,16 +17,23 @@ import static reactor.core.publisher.Flux.fromIterable;
 import static reactor.core.publisher.Flux.fromStream;
 import static reactor.test.StepVerifier.create;
 
+import ca.uhn.fhir.context.FhirContext;
 import care.smith.fts.api.ConsentedPatient;
 import care.smith.fts.api.TransportBundle;
 import care.smith.fts.api.cda.BundleSender;
+import care.smith.fts.cda.impl.RDABundleSenderConfig.Format;
 import care.smith.fts.test.MockServerUtil;
 import care.smith.fts.util.HttpClientConfig;
+import care.smith.fts.util.RetryConfig;
+import care.smith.fts.util.RetryPolicies;
+import care.smith.fts.util.RetryPolicy;
 import care.smith.fts.util.error.TransferProcessException;
 import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
 import java.util.List;
 import java.util.stream.Stream;
 import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Observation;
 import org.hl7.fhir.r4.model.Patient;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -34,6 +42,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockserver.client.MockServerClient;
 import org.mockserver.junit.jupiter.MockServerExtension;
+import org.mockserver.verify.VerificationTimes;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.web.reactive.function.client.*;
@@ -53,17 +62,19 @@ class RDABundleSenderTest {
   private final RDABundleSenderConfig config = new RDABundleSenderConfig(server, "example");
 
   private WebClient client;
+  private RetryPolicy retryPolicy;
 
   @BeforeEach
   void setUp(MockServerClient mockServer, @Autowired WebClient.Builder builder) {
     var server = MockServerUtil.clientConfig(mockServer);
     client = server.createClient(builder, null);
+    retryPolicy = new RetryPolicies(meterRegistry).of(server);
   }
 
   @Test
   void nullBundleErrors(MockServerClient mockServer) {
     mockServer.when(request().withMethod("POST")).respond(response().withStatusCode(OK.value()));
-    var bundleSender = new RDABundleSender(config, client, meterRegistry);
+    var bundleSender = new RDABundleSender(config, client, retryPolicy, null);
 
     create(bundleSender.send(fromStream(generate(() -> null))))
         .expectError(NullPointerException.class)
@@ -76,7 +87,7 @@ class RDABundleSenderTest {
         .when(request().withMethod("POST"))
         .respond(response().withStatusCode(BAD_REQUEST.value()));
 
-    var bundleSender = new RDABundleSender(config, client, meterRegistry);
+    var bundleSender = new RDABundleSender(config, client, retryPolicy, null);
 
     create(bundleSender.send(Flux.just(new TransportBundle(new Bundle(), "tIDMapName"))))
         .expectError(WebClientResponseException.class)
@@ -90,7 +101,7 @@ class RDABundleSenderTest {
         .respond(response().withStatusCode(ACCEPTED.value()));
     mockServer.when(request().withMethod("GET")).respond(response().withStatusCode(OK.value()));
 
-    var bundleSender = new RDABundleSender(config, client, meterRegistry);
+    var bundleSender = new RDABundleSender(config, client, retryPolicy, null);
 
     var bundle = Stream.of(new Patient().setId(PATIENT_ID)).collect(toBundle());
     create(bundleSender.send(fromIterable(List.of(new TransportBundle(bundle, "tIDMapName")))))
@@ -105,7 +116,7 @@ class RDABundleSenderTest {
         .respond(response().withStatusCode(ACCEPTED.value()).withHeader(CONTENT_LOCATION, ""));
     mockServer.when(request().withMethod("GET")).respond(response().withStatusCode(OK.value()));
 
-    var bundleSender = new RDABundleSender(config, client, meterRegistry);
+    var bundleSender = new RDABundleSender(config, client, retryPolicy, null);
 
     var bundle = Stream.of(new Patient().setId(PATIENT_ID)).collect(toBundle());
     create(bundleSender.send(fromIterable(List.of(new TransportBundle(bundle, "tIDMapName")))))
@@ -125,7 +136,7 @@ class RDABundleSenderTest {
         .when(request().withMethod("GET").withPath("/api/v2/process/status/processId"))
         .respond(response().withStatusCode(OK.value()));
 
-    var bundleSender = new RDABundleSender(config, client, meterRegistry);
+    var bundleSender = new RDABundleSender(config, client, retryPolicy, null);
 
     var bundle = Stream.of(new Patient().setId(PATIENT_ID)).collect(toBundle());
     create(bundleSender.send(fromIterable(List.of(new TransportBundle(bundle, "tIDMapName")))))
@@ -133,6 +144,221 @@ class RDABundleSenderTest {
         .verifyComplete();
   }
 
+  @Test
+  void ndjsonSent(MockServerClient mockServer) {
+    mockServer
+        .when(
+            request()
+                .withMethod("POST")
+                .withHeader("Content-Type", "application/fhir\\+ndjson")
+                .withHeader("X-Transport-Id-Map", "tIDMapName")
+                .withBody(
+                    """
+                    {"resourceType":"Patient","id":"patient-102931"}
+                    {"resourceType":"Observation","id":"observation-1"}
+                    """))
+        .respond(
+            response()
+                .withStatusCode(ACCEPTED.value())
+                .withHeader(CONTENT_LOCATION, "/api/v2/process/status/processId"));
+    mockServer
+        .when(request().withMethod("GET").withPath("/api/v2/process/status/processId"))
+        .respond(response().withStatusCode(OK.value()));
+
+    var ndjsonConfig = new RDABundleSenderConfig(server, "example", Format.NDJSON);
+    var bundleSender = new RDABundleSender(ndjsonConfig, client, retryPolicy, FhirContext.forR4());
+
+    var bundle =
+        Stream.of(new Patient().setId(PATIENT_ID), new Observation().setId("observation-1"))
+            .collect(toBundle());
+    create(bundleSender.send(fromIterable(List.of(new TransportBundle(bundle, "tIDMapName")))))
+        .expectNext(new BundleSender.Result(1))
+        .verifyComplete();
+  }
+
+  @Test
+  void ndjsonUploadTimesOut(MockServerClient mockServer) {
+    mockServer
+        .when(request().withMethod("POST").withPath("/api/v2/process/example/patient"))
+        .respond(response().withStatusCode(ACCEPTED.value()).withDelay(SECONDS, 2));
+
+    var ndjsonConfig =
+        new RDABundleSenderConfig(
+            server, "example", Format.NDJSON, null, Duration.ofMillis(200), null);
+    var noRetries = new RetryConfig(0, null, null, null, null, null);
+    var bundleSender =
+        new RDABundleSender(
+            ndjsonConfig,
+            client,
+            new RetryPolicy("http://localhost", noRetries, meterRegistry),
+            FhirContext.forR4());
+
+    var bundle = Stream.of(new Patient().setId(PATIENT_ID)).collect(toBundle());
+    create(bundleSender.send(fromIterable(List.of(new TransportBundle(bundle, "tIDMapName")))))
+        .expectError()
+        .verify(Duration.ofSeconds(1));
+  }
+
+  @Test
+  void bundleSentWithStatusStream(MockServerClient mockServer) {
+    mockServer
+        .when(request().withMethod("POST"))
+        .respond(
+            response()
+                .withStatusCode(ACCEPTED.value())
+                .withHeader(CONTENT_LOCATION, "/api/v2/process/status/processId"));
+    mockServer
+        .when(request().withMethod("GET").withPath("/api/v2/process/status/processId/events"))
+        .respond(
+            response()
+                .withStatusCode(OK.value())
+                .withHeader("Content-Type", "text/event-stream")
+                .withBody(
+                    """
+                    event:RUNNING
+                    data:{"phase":"RUNNING"}
+
+                    event:COMPLETED
+                    data:{"phase":"COMPLETED"}
+
+                    """));
+
+    var bundleSender = new RDABundleSender(config, client, retryPolicy, null);
+
+    var bundle = Stream.of(new Patient().setId(PATIENT_ID)).collect(toBundle());
+    create(bundleSender.send(fromIterable(List.of(new TransportBundle(bundle, "tIDMapName")))))
+        .expectNext(new BundleSender.Result(1))
+        .verifyComplete();
+    mockServer.verify(
+        request().withMethod("GET").withPath("/api/v2/process/status/processId"),
+        VerificationTimes.never());
+  }
+
+  @Test
+  void statusStreamWithErrorFails(MockServerClient mockServer) {
+    mockServer
+        .when(request().withMethod("POST"))
+        .respond(
+            response()
+                .withStatusCode(ACCEPTED.value())
+                .withHeader(CONTENT_LOCATION, "/api/v2/process/status/processId"));
+    mockServer
+        .when(request().withMethod("GET").withPath("/api/v2/process/status/processId/events"))
+        .respond(
+            response()
+                .withStatusCode(OK.value())
+                .withHeader("Content-Type", "text/event-stream")
+                .withBody(
+                    """
+                    event:ERROR
+                    data:{"phase":"ERROR"}
+
+                    """));
+
+    var bundleSender = new RDABundleSender(config, client, retryPolicy, null);
+
+    var bundle = Stream.of(new Patient().setId(PATIENT_ID)).collect(toBundle());
+    create(bundleSender.send(fromIterable(List.of(new TransportBundle(bundle, "tIDMapName")))))
+        .expectError(TransferProcessException.class)
+        .verify();
+  }
+
+  @Test
+  void statusPolledIfStreamEndsEarly(MockServerClient mockServer) {
+    mockServer
+        .when(request().withMethod("POST"))
+        .respond(
+            response()
+                .withStatusCode(ACCEPTED.value())
+                .withHeader(CONTENT_LOCATION, "/api/v2/process/status/processId"));
+    mockServer
+        .when(request().withMethod("GET").withPath("/api/v2/process/status/processId/events"))
+        .respond(
+            response()
+                .withStatusCode(OK.value())
+                .withHeader("Content-Type", "text/event-stream")
+                .withBody("event:RUNNING\ndata:{}\n\n"));
+    mockServer
+        .when(request().withMethod("GET").withPath("/api/v2/process/status/processId"))
+        .respond(response().withStatusCode(OK.value()));
+
+    var bundleSender = new RDABundleSender(config, client, retryPolicy, null);
+
+    var bundle = Stream.of(new Patient().setId(PATIENT_ID)).collect(toBundle());
+    create(bundleSender.send(fromIterable(List.of(new TransportBundle(bundle, "tIDMapName")))))
+        .expectNext(new BundleSender.Result(1))
+        .verifyComplete();
+  }
+
+  @Test
+  void statusPolledIfStreamTimesOut(MockServerClient mockServer) {
+    mockServer
+        .when(request().withMethod("POST"))
+        .respond(
+            response()
+                .withStatusCode(ACCEPTED.value())
+                .withHeader(CONTENT_LOCATION, "/api/v2/process/status/processId"));
+    mockServer
+        .when(request().withMethod("GET").withPath("/api/v2/process/status/processId/events"))
+        .respond(
+            response()
+                .withStatusCode(OK.value())
+                .withHeader("Content-Type", "text/event-stream")
+                .withBody("event:COMPLETED\ndata:{}\n\n")
+                .withDelay(SECONDS, 2));
+    mockServer
+        .when(request().withMethod("GET").withPath("/api/v2/process/status/processId"))
+        .respond(response().withStatusCode(OK.value()));
+
+    var timeoutConfig =
+        new RDABundleSenderConfig(server, "example", null, null, null, Duration.ofMillis(200));
+    var bundleSender = new RDABundleSender(timeoutConfig, client, retryPolicy, null);
+
+    var bundle = Stream.of(new Patient().setId(PATIENT_ID)).collect(toBundle());
+    create(bundleSender.send(fromIterable(List.of(new TransportBundle(bundle, "tIDMapName")))))
+        .expectNext(new BundleSender.Result(1))
+        .verifyComplete();
+  }
+
+  @Test
+  void unknownProcessKeepsStatusStream(MockServerClient mockServer) {
+    mockServer
+        .when(request().withMethod("POST"), once())
+        .respond(
+            response()
+                .withStatusCode(ACCEPTED.value())
+                .withHeader(CONTENT_LOCATION, "/api/v2/process/status/unknown"));
+    mockServer
+        .when(request().withMethod("POST"))
+        .respond(
+            response()
+                .withStatusCode(ACCEPTED.value())
+                .withHeader(CONTENT_LOCATION, "/api/v2/process/status/processId"));
+    mockServer
+        .when(request().withMethod("GET").withPath("/api/v2/process/status/processId/events"))
+        .respond(
+            response()
+                .withStatusCode(OK.value())
+                .withHeader("Content-Type", "text/event-stream")
+                .withBody("event:COMPLETED\ndata:{}\n\n"));
+
+    var noRetries = new RetryConfig(0, null, null, null, null, null);
+    var bundleSender =
+        new RDABundleSender(
+            config, client, new RetryPolicy("http://localhost", noRetries, meterRegistry), null);
+
+    var bundle = Stream.of(new Patient().setId(PATIENT_ID)).collect(toBundle());
+    create(bundleSender.send(fromIterable(List.of(new TransportBundle(bundle, "tIDMapName")))))
+        .expectError()
+        .verify();
+    create(bundleSender.send(fromIterable(List.of(new TransportBundle(bundle, "tIDMapName")))))
+        .expectNext(new BundleSender.Result(1))
+        .verifyComplete();
+    mockServer.verify(
+        request().withMethod("GET").withPath("/api/v2/process/status/processId"),
+        VerificationTimes.never());
+  }
+
   @Test
   void withStatusUnequalAcceptedInWaitForRDACompleted(MockServerClient mockServer) {
     mockServer
@@ -142,7 +368,7 @@ class RDABundleSenderTest {
                 .withStatusCode(CREATED.value())
                 .withHeader(CONTENT_LOCATION, "/api/v2/process/status/processId"));
 
-    var bundleSender = new RDABundleSender(config, client, meterRegistry);
+    var bundleSender = new RDABundleSender(config, client, retryPolicy, null);
     var bundle = Stream.of(new Patient().setId(PATIENT_ID)).collect(toBundle());
     create(bundleSender.send(fromIterable(List.of(new TransportBundle(bundle, "tIDMapName")))))
         .expectErrorMessage("Require ACCEPTED status")
@@ -168,7 +394,7 @@ class RDABundleSenderTest {
         .when(request().withMethod("GET").withPath("/api/v2/process/status/processId"))
         .respond(response().withStatusCode(OK.value()));
 
-    var bundleSender = new RDABundleSender(config, client, meterRegistry);
+    var bundleSender = new RDABundleSender(config, client, retryPolicy, null);
     var bundle = Stream.of(new Patient().setId(PATIENT_ID)).collect(toBundle());
     create(bundleSender.send(fromIterable(List.of(new TransportBundle(bundle, "tIDMapName")))))
         .expectNext(new BundleSender.Result(1))
@@ -194,7 +420,7 @@ class RDABundleSenderTest {
         .when(request().withMethod("GET").withPath("/api/v2/process/status/processId"))
         .respond(response().withStatusCode(OK.value()));
 
-    var bundleSender = new RDABundleSender(config, client, meterRegistry);
+    var bundleSender = new RDABundleSender(config, client, retryPolicy, null);
     var bundle = Stream.of(new Patient().setId(PATIENT_ID)).collect(toBundle());
     create(bundleSender.send(fromIterable(List.of(new TransportBundle(bundle, "tIDMapName")))))
         .expectNext(new BundleSender.Result(1))
@@ -213,7 +439,7 @@ class RDABundleSenderTest {
         .when(request().withMethod("GET").withPath("/api/v2/process/status/processId"))
         .respond(response().withStatusCode(ACCEPTED.value()).withHeader(RETRY_AFTER, "1"));
 
-    var bundleSender = new RDABundleSender(config, client, meterRegistry);
+    var bundleSender = new RDABundleSender(config, client, retryPolicy, null);
     var bundle = Stream.of(new Patient().setId(PATIENT_ID)).collect(toBundle());
     create(bundleSender.send(fromIterable(List.of(new TransportBundle(bundle, "tIDMapName")))))
         .expectError(TransferProcessException.class)
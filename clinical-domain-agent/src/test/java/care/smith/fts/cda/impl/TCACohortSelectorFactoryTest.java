@@ -3,6 +3,7 @@ package care.smith.fts.cda.impl;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import care.smith.fts.util.HttpClientConfig;
+import care.smith.fts.util.RetryPolicies;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -21,7 +22,7 @@ class TCACohortSelectorFactoryTest {
 
   @BeforeEach
   void setUp() {
-    factory = new TCACohortSelectorFactory(client, ssl, meterRegistry);
+    factory = new TCACohortSelectorFactory(client, ssl, new RetryPolicies(meterRegistry));
   }
 
   @Test
@@ -38,4 +39,11 @@ class TCACohortSelectorFactoryTest {
                     new HttpClientConfig("http://dummy.example.com"), null, null, null, null)))
         .isNotNull();
   }
+
+  @Test
+  void pagingConfigDefaults() {
+    var paging = new TCACohortSelectorConfig.PagingConfig(0, 0, false);
+    assertThat(paging.count()).isEqualTo(500);
+    assertThat(paging.concurrency()).isEqualTo(4);
+  }
 }
@@ -2,6 +2,7 @@ package care.smith.fts.cda.impl;
 
 import static care.smith.fts.util.FhirUtils.toBundle;
 import static care.smith.fts.util.auth.HttpClientAuthMethod.AuthMethod.NONE;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.OK;
@@ -9,11 +10,19 @@ import static org.springframework.web.reactive.function.client.WebClient.builder
 import static reactor.core.publisher.Mono.just;
 import static reactor.test.StepVerifier.create;
 
+import ca.uhn.fhir.context.FhirContext;
+import care.smith.fts.api.ConsentedPatient;
+import care.smith.fts.cda.impl.TCACohortSelectorConfig.PagingConfig;
+import care.smith.fts.util.FhirDecoder;
 import care.smith.fts.util.HttpClientConfig;
+import care.smith.fts.util.RetryPolicies;
+import care.smith.fts.util.RetryPolicy;
 import io.micrometer.core.instrument.MeterRegistry;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.r4.model.*;
@@ -25,7 +34,11 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.ProblemDetail;
+import org.springframework.web.reactive.function.client.ClientRequest;
 import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Mono;
 
 @Slf4j
@@ -42,15 +55,23 @@ class TCACohortSelectorTest {
   private static final String POLICY_SYSTEM =
       "https://ths-greifswald.de/fhir/CodeSystem/gics/Policy";
 
+  private static final FhirContext FHIR = FhirContext.forR4();
+  private static final ExchangeStrategies FHIR_STRATEGIES =
+      ExchangeStrategies.builder()
+          .codecs(c -> c.customCodecs().register(new FhirDecoder(FHIR)))
+          .build();
+
   @Mock ClientResponse response;
 
   private TCACohortSelectorConfig config;
+  private RetryPolicy retryPolicy;
 
   @BeforeEach
   void setUp() {
     var address = "http://localhost";
     var server = new HttpClientConfig(address, NONE);
     config = new TCACohortSelectorConfig(server, PID_SYSTEM, POLICY_SYSTEM, POLICIES, "MII");
+    retryPolicy = new RetryPolicies(meterRegistry).of(server);
   }
 
   @Test
@@ -59,7 +80,7 @@ class TCACohortSelectorTest {
     given(response.statusCode()).willReturn(OK);
     given(response.bodyToMono(String.class)).willReturn(Mono.just(""));
     var cohortSelector =
-        new TCACohortSelector(config, config.server().createClient(client, null), meterRegistry);
+        new TCACohortSelector(config, config.server().createClient(client, null), retryPolicy);
 
     create(cohortSelector.selectCohort(List.of())).expectError().verify();
   }
@@ -70,7 +91,7 @@ class TCACohortSelectorTest {
         .willReturn(Mono.just(ProblemDetail.forStatusAndDetail(BAD_REQUEST, "Some TCA Error")));
     var client = builder().exchangeFunction(req -> just(response));
     var cohortSelector =
-        new TCACohortSelector(config, config.server().createClient(client, null), meterRegistry);
+        new TCACohortSelector(config, config.server().createClient(client, null), retryPolicy);
 
     create(cohortSelector.selectCohort(List.of())).expectError().verify();
   }
@@ -89,7 +110,7 @@ class TCACohortSelectorTest {
     Bundle outer = Stream.of(inner).collect(toBundle());
     given(response.bodyToMono(Bundle.class)).willReturn(Mono.just(outer));
     var cohortSelector =
-        new TCACohortSelector(config, config.server().createClient(client, null), meterRegistry);
+        new TCACohortSelector(config, config.server().createClient(client, null), retryPolicy);
 
     create(cohortSelector.selectCohort(List.of())).expectNextCount(1).verifyComplete();
   }
@@ -108,7 +129,7 @@ class TCACohortSelectorTest {
     Bundle outer = Stream.of(inner).collect(toBundle());
     given(response.bodyToMono(Bundle.class)).willReturn(Mono.just(outer));
     var cohortSelector =
-        new TCACohortSelector(config, config.server().createClient(client, null), meterRegistry);
+        new TCACohortSelector(config, config.server().createClient(client, null), retryPolicy);
 
     create(cohortSelector.selectCohort(List.of("patient-122651")))
         .expectNextCount(1)
@@ -122,7 +143,7 @@ class TCACohortSelectorTest {
     Bundle outer = Stream.<Resource>of().collect(toBundle());
     given(response.bodyToMono(Bundle.class)).willReturn(Mono.just(outer));
     var cohortSelector =
-        new TCACohortSelector(config, config.server().createClient(client, null), meterRegistry);
+        new TCACohortSelector(config, config.server().createClient(client, null), retryPolicy);
 
     create(cohortSelector.selectCohort(List.of())).verifyComplete();
   }
@@ -134,11 +155,114 @@ class TCACohortSelectorTest {
     Bundle outer = Stream.of(Stream.<Resource>of().collect(toBundle())).collect(toBundle());
     given(response.bodyToMono(Bundle.class)).willReturn(Mono.just(outer));
     var cohortSelector =
-        new TCACohortSelector(config, config.server().createClient(client, null), meterRegistry);
+        new TCACohortSelector(config, config.server().createClient(client, null), retryPolicy);
 
     create(cohortSelector.selectCohort(List.of())).verifyComplete();
   }
 
+  @Test
+  void pagesAreFetchedConcurrentlyInOrder() {
+    var requests = new AtomicInteger();
+    var client = builder().exchangeFunction(req -> pagedResponse(req, 5, requests));
+    var paging = new PagingConfig(2, 3, true);
+    var cohortSelector = pagedCohortSelector(client, paging);
+
+    create(cohortSelector.selectCohort(List.of()).map(ConsentedPatient::id).collectList())
+        .assertNext(ids -> assertThat(ids).containsExactly("p-0", "p-1", "p-2", "p-3", "p-4"))
+        .verifyComplete();
+    assertThat(requests).hasValue(3);
+  }
+
+  @Test
+  void pagesAreFetchedConcurrentlyUnordered() {
+    var client = builder().exchangeFunction(req -> pagedResponse(req, 7, new AtomicInteger()));
+    var paging = new PagingConfig(2, 4, false);
+    var cohortSelector = pagedCohortSelector(client, paging);
+
+    create(cohortSelector.selectCohort(List.of()).map(ConsentedPatient::id).collectList())
+        .assertNext(
+            ids ->
+                assertThat(ids)
+                    .containsExactlyInAnyOrder("p-0", "p-1", "p-2", "p-3", "p-4", "p-5", "p-6"))
+        .verifyComplete();
+  }
+
+  @Test
+  void pagesOfPidsAreCountedFromPids() {
+    var pids = List.of("p-0", "p-1", "p-2", "p-3", "p-4");
+    var requests = new AtomicInteger();
+    var client = builder().exchangeFunction(req -> pagedPidResponse(req, pids, requests));
+    var cohortSelector = pagedCohortSelector(client, new PagingConfig(2, 3, true));
+
+    create(cohortSelector.selectCohort(pids).map(ConsentedPatient::id).collectList())
+        .assertNext(ids -> assertThat(ids).containsExactlyElementsOf(pids))
+        .verifyComplete();
+    assertThat(requests).hasValue(3);
+  }
+
+  @Test
+  void pagingWithoutTotalFollowsNextLinks() {
+    var client = builder().exchangeFunction(req -> just(response));
+    given(response.statusCode()).willReturn(OK);
+    given(response.bodyToMono(Bundle.class))
+        .willReturn(Mono.just(Stream.of(consentBundle("p-0")).collect(toBundle())));
+    var cohortSelector = pagedCohortSelector(client, new PagingConfig(2, 2, true));
+
+    create(cohortSelector.selectCohort(List.of())).expectNextCount(1).verifyComplete();
+  }
+
+  private TCACohortSelector pagedCohortSelector(WebClient.Builder client, PagingConfig paging) {
+    var pagedConfig =
+        new TCACohortSelectorConfig(
+            config.server(), PID_SYSTEM, POLICY_SYSTEM, POLICIES, "MII", paging);
+    return new TCACohortSelector(
+        pagedConfig, pagedConfig.server().createClient(client, null), retryPolicy);
+  }
+
+  private static Mono<ClientResponse> pagedResponse(
+      ClientRequest req, int total, AtomicInteger requests) {
+    requests.incrementAndGet();
+    var params = UriComponentsBuilder.fromUri(req.url()).build().getQueryParams();
+    var from = Integer.parseInt(params.getFirst("from"));
+    var count = Integer.parseInt(params.getFirst("count"));
+    var page =
+        IntStream.range(from, Math.min(from + count, total))
+            .mapToObj(i -> consentBundle("p-" + i))
+            .collect(toBundle())
+            .setTotal(total);
+    return Mono.just(
+        ClientResponse.create(OK, FHIR_STRATEGIES)
+            .header("Content-Type", "application/fhir+json")
+            .body(FHIR.newJsonParser().encodeResourceToString(page))
+            .build());
+  }
+
+  /* Like the TCA, the pages hold the consents of count pids, with the total of gICS */
+  private static Mono<ClientResponse> pagedPidResponse(
+      ClientRequest req, List<String> pids, AtomicInteger requests) {
+    requests.incrementAndGet();
+    assertThat(req.url().getPath()).isEqualTo("/api/v2/cd/consented-patients/fetch");
+    var params = UriComponentsBuilder.fromUri(req.url()).build().getQueryParams();
+    var from = Integer.parseInt(params.getFirst("from"));
+    var count = Integer.parseInt(params.getFirst("count"));
+    var page =
+        pids.subList(from, Math.min(from + count, pids.size())).stream()
+            .map(TCACohortSelectorTest::consentBundle)
+            .collect(toBundle());
+    return Mono.just(
+        ClientResponse.create(OK, FHIR_STRATEGIES)
+            .header("Content-Type", "application/fhir+json")
+            .body(FHIR.newJsonParser().encodeResourceToString(page))
+            .build());
+  }
+
+  private static Bundle consentBundle(String pid) {
+    return Stream.of(
+            new Patient().addIdentifier(new Identifier().setSystem(PID_SYSTEM).setValue(pid)),
+            new Consent().setProvision(denyProvision()))
+        .collect(toBundle());
+  }
+
   private static Consent.provisionComponent denyProvision() {
     return new Consent.provisionComponent()
         .setType(Consent.ConsentProvisionType.DENY)
@@ -1,6 +1,7 @@
 package care.smith.fts.cda.rest;
 
 import static java.util.List.of;
+import static org.assertj.core.api.Assertions.assertThat;
 import static reactor.test.StepVerifier.create;
 
 import care.smith.fts.cda.TransferProcessDefinition;
@@ -32,6 +33,11 @@ class TransferProcessControllerTest {
                 return "processId";
               }
 
+              @Override
+              public String resume(TransferProcessDefinition process, List<String> pids) {
+                return "resumedProcessId";
+              }
+
               @Override
               public Mono<Status> status(String processId) {
                 return Mono.just(PATIENT_SUMMARY_RESULT);
@@ -44,7 +50,10 @@ class TransferProcessControllerTest {
   void startExistingProjectSucceeds() {
     var start =
         api.start(
-            "example", UriComponentsBuilder.fromUriString("http://localhost:1234"), List.of());
+            "example",
+            UriComponentsBuilder.fromUriString("http://localhost:1234"),
+            List.of(),
+            false);
     var uri =
         UriComponentsBuilder.fromUriString("http://localhost:1234")
             .path("api/v2/process/status/processId")
@@ -58,11 +67,35 @@ class TransferProcessControllerTest {
         .verifyComplete();
   }
 
+  @Test
+  void resumeExistingProjectSucceeds() {
+    var start =
+        api.start(
+            "example",
+            UriComponentsBuilder.fromUriString("http://localhost:1234"),
+            List.of(),
+            true);
+    var uri =
+        UriComponentsBuilder.fromUriString("http://localhost:1234")
+            .path("api/v2/process/status/resumedProcessId")
+            .build()
+            .toUri();
+    create(start)
+        .expectNext(
+            ResponseEntity.accepted()
+                .headers(h -> h.add("Content-Location", uri.toString()))
+                .build())
+        .verifyComplete();
+  }
+
   @Test
   void startNonExistingProjectErrors() {
     var start =
         api.start(
-            "non-existent", UriComponentsBuilder.fromUriString("http://localhost:1234"), List.of());
+            "non-existent",
+            UriComponentsBuilder.fromUriString("http://localhost:1234"),
+            List.of(),
+            false);
     create(start)
         .expectNext(
             ResponseEntity.of(
@@ -72,6 +105,18 @@ class TransferProcessControllerTest {
         .verifyComplete();
   }
 
+  @Test
+  void statusEventsAreNamedAfterPhase() {
+    var events = api.statusEvents(processId).flatMapMany(ResponseEntity::getBody).take(1);
+    create(events)
+        .assertNext(
+            e -> {
+              assertThat(e.event()).isEqualTo("RUNNING");
+              assertThat(e.data()).isEqualTo(PATIENT_SUMMARY_RESULT);
+            })
+        .verifyComplete();
+  }
+
   private static TransferProcessDefinition mockTransferProcess() {
     return new TransferProcessDefinition(
         "example",
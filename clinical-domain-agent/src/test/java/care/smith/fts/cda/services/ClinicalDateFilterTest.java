@@ -0,0 +1,95 @@
+package care.smith.fts.cda.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.ZonedDateTime;
+import org.hl7.fhir.r4.model.Condition;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.MedicationRequest;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Period;
+import org.hl7.fhir.r4.model.StringType;
+import org.junit.jupiter.api.Test;
+
+class ClinicalDateFilterTest {
+
+  private final ClinicalDateFilter filter =
+      new ClinicalDateFilter(
+          care.smith.fts.api.Period.of(
+              ZonedDateTime.parse("2020-07-01T00:00:00Z"),
+              ZonedDateTime.parse("2022-07-01T00:00:00Z")));
+
+  private static Observation observation(String effective) {
+    return new Observation().setEffective(new DateTimeType(effective));
+  }
+
+  @Test
+  void dateWithinPeriodIsSelected() {
+    assertThat(filter.test(observation("2021-01-01T10:00:00Z"))).isTrue();
+  }
+
+  @Test
+  void dateOutsidePeriodIsNotSelected() {
+    assertThat(filter.test(observation("2019-01-01T10:00:00Z"))).isFalse();
+    assertThat(filter.test(observation("2023-01-01T10:00:00Z"))).isFalse();
+  }
+
+  @Test
+  void dateIsComparedWithItsPrecision() {
+    assertThat(filter.test(observation("2020"))).isTrue();
+    assertThat(filter.test(observation("2022-06"))).isTrue();
+    assertThat(filter.test(observation("2019"))).isFalse();
+  }
+
+  @Test
+  void periodOverlappingPeriodIsSelected() {
+    var encounter =
+        new Encounter()
+            .setPeriod(
+                new Period()
+                    .setStartElement(new DateTimeType("2020-06-01"))
+                    .setEndElement(new DateTimeType("2020-07-15")));
+    assertThat(filter.test(encounter)).isTrue();
+  }
+
+  @Test
+  void openPeriodIsSelected() {
+    var encounter =
+        new Encounter().setPeriod(new Period().setStartElement(new DateTimeType("2022-01-01")));
+    assertThat(filter.test(encounter)).isTrue();
+  }
+
+  @Test
+  void periodBeforePeriodIsNotSelected() {
+    var encounter =
+        new Encounter()
+            .setPeriod(
+                new Period()
+                    .setStartElement(new DateTimeType("2019-01-01"))
+                    .setEndElement(new DateTimeType("2019-12-31")));
+    assertThat(filter.test(encounter)).isFalse();
+  }
+
+  @Test
+  void recordedDateIsUsedWithoutOnsetDate() {
+    var condition =
+        new Condition()
+            .setOnset(new StringType("childhood"))
+            .setRecordedDateElement(new DateTimeType("2019-03-01"));
+    assertThat(filter.test(condition)).isFalse();
+  }
+
+  @Test
+  void authoredOnIsClinicalDateOfMedicationRequest() {
+    var request = new MedicationRequest().setAuthoredOnElement(new DateTimeType("2021-03-01"));
+    assertThat(filter.test(request)).isTrue();
+  }
+
+  @Test
+  void resourcesWithoutClinicalDateAreSelected() {
+    assertThat(filter.test(new Patient())).isTrue();
+    assertThat(filter.test(new Observation())).isTrue();
+  }
+}
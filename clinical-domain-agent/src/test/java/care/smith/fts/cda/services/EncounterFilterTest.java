@@ -0,0 +1,42 @@
+package care.smith.fts.cda.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Set;
+import org.hl7.fhir.r4.model.DocumentReference;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.Test;
+
+class EncounterFilterTest {
+
+  private final EncounterFilter filter = new EncounterFilter(Set.of("e1"), r -> false);
+
+  @Test
+  void selectedEncountersAreSelected() {
+    assertThat(filter.test(new Encounter().setId("e1"))).isTrue();
+    assertThat(filter.test(new Encounter().setId("e2"))).isFalse();
+  }
+
+  @Test
+  void resourcesOfSelectedEncountersAreSelected() {
+    assertThat(filter.test(new Observation().setEncounter(new Reference("Encounter/e1")))).isTrue();
+    assertThat(filter.test(new Observation().setEncounter(new Reference("Encounter/e2"))))
+        .isFalse();
+  }
+
+  @Test
+  void nestedEncounterReferencesAreFound() {
+    var document = new DocumentReference();
+    document.getContext().addEncounter(new Reference("http://hds/fhir/Encounter/e1"));
+    assertThat(filter.test(document)).isTrue();
+  }
+
+  @Test
+  void resourcesWithoutEncounterAreSelectedOtherwise() {
+    assertThat(filter.test(new Patient())).isFalse();
+    assertThat(new EncounterFilter(Set.of(), r -> true).test(new Patient())).isTrue();
+  }
+}
@@ -2,6 +2,9 @@ package care.smith.fts.cda.services;
 
 import static org.assertj.core.api.Assertions.*;
 
+import care.smith.fts.util.HttpClientConfig;
+import care.smith.fts.util.RetryPolicies;
+import care.smith.fts.util.RetryPolicy;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,10 +19,15 @@ class FhirResolveConfigTest {
   private static final WebClient CLIENT =
       WebClient.builder().baseUrl("https://some.example.com").build();
 
+  private RetryPolicy retryPolicy() {
+    return new RetryPolicies(meterRegistry).of(new HttpClientConfig("https://some.example.com"));
+  }
+
   @Test
   void nullSystemThrows() {
     assertThatExceptionOfType(NullPointerException.class)
-        .isThrownBy(() -> new FhirResolveConfig(null).createService(CLIENT, meterRegistry));
+        .isThrownBy(
+            () -> new FhirResolveConfig(null).createService(CLIENT, meterRegistry, retryPolicy()));
   }
 
   @Test
@@ -32,13 +40,14 @@ class FhirResolveConfigTest {
   void createThrowsOnEmptyClient() {
     assertThatExceptionOfType(NullPointerException.class)
         .isThrownBy(
-            () -> new FhirResolveConfig("https://some.exampl.com").createService(null, null));
+            () -> new FhirResolveConfig("https://some.exampl.com").createService(null, null, null));
   }
 
   @Test
   void createSucceeds() {
     assertThat(
-            new FhirResolveConfig("https://some.example.com").createService(CLIENT, meterRegistry))
+            new FhirResolveConfig("https://some.example.com")
+                .createService(CLIENT, meterRegistry, retryPolicy()))
         .isNotNull();
   }
 }
@@ -3,22 +3,36 @@ package care.smith.fts.cda.services;
 import static care.smith.fts.test.MockServerUtil.clientConfig;
 import static java.util.Objects.requireNonNull;
 import static org.assertj.core.api.Assertions.*;
+import static org.hl7.fhir.r4.model.Bundle.BundleType.SEARCHSET;
 import static org.mockserver.model.HttpRequest.request;
 import static org.mockserver.model.HttpResponse.response;
+import static org.mockserver.verify.VerificationTimes.once;
 import static reactor.test.StepVerifier.create;
 
+import ca.uhn.fhir.context.FhirContext;
+import care.smith.fts.cda.services.FhirResolveConfig.BatchConfig;
+import care.smith.fts.cda.services.FhirResolveConfig.CacheConfig;
 import care.smith.fts.test.MockServerUtil;
+import care.smith.fts.util.RetryPolicies;
+import care.smith.fts.util.RetryPolicy;
 import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockserver.client.MockServerClient;
 import org.mockserver.junit.jupiter.MockServerExtension;
+import org.mockserver.matchers.Times;
 import org.mockserver.model.Header;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @SpringBootTest
 @ExtendWith(MockServerExtension.class)
@@ -31,12 +45,17 @@ class FhirResolveServiceTest {
   @Autowired WebClient.Builder builder;
   @Autowired MeterRegistry meterRegistry;
 
+  private WebClient client;
+  private RetryPolicy retryPolicy;
   private FhirResolveService service;
 
   @BeforeEach
   void setUp(MockServerClient mockServer) throws Exception {
-    var client = clientConfig(mockServer).createClient(builder, null);
-    this.service = new FhirResolveService(KDS_PATIENT, client, meterRegistry);
+    var server = clientConfig(mockServer);
+    client = server.createClient(builder, null);
+    retryPolicy = new RetryPolicies(meterRegistry).of(server);
+    this.service =
+        new FhirResolveService(KDS_PATIENT, client, meterRegistry, null, null, retryPolicy);
     try (var inStream = MockServerUtil.getResourceAsStream("metadata.json")) {
       var capStatement = requireNonNull(inStream).readAllBytes();
       mockServer
@@ -105,6 +124,106 @@ class FhirResolveServiceTest {
         .withMessageContaining("empty");
   }
 
+  @Test
+  void batchedResolveSearchesOnce(MockServerClient mockServer) {
+    mockServer
+        .when(request().withMethod("GET").withPath("/Patient"))
+        .respond(
+            response().withBody(searchResult("external-1", "external-2")).withHeader(CONTENT_JSON));
+    var batched =
+        new FhirResolveService(
+            KDS_PATIENT,
+            client,
+            meterRegistry,
+            new BatchConfig(2, Duration.ofSeconds(10)),
+            null,
+            retryPolicy);
+
+    var resolved =
+        Flux.just("external-1", "external-2", "external-3")
+            .flatMap(pid -> batched.resolve(pid).map(IIdType::getIdPart).onErrorReturn("error"));
+
+    create(resolved.collectList())
+        .assertNext(
+            ids -> assertThat(ids).containsExactlyInAnyOrder("patient-1", "patient-2", "error"))
+        .verifyComplete();
+    mockServer.verify(
+        request()
+            .withPath("/Patient")
+            .withQueryStringParameter(
+                "identifier", KDS_PATIENT + "|external-1," + KDS_PATIENT + "|external-2"),
+        once());
+  }
+
+  @Test
+  void failedPageIsRetriedAlone(MockServerClient mockServer) {
+    var nextPage = "http://localhost:%d/Patient/page-2".formatted(mockServer.getPort());
+    mockServer
+        .when(request().withMethod("GET").withPath("/Patient"))
+        .respond(response().withBody(searchPage(nextPage, "external-1")).withHeader(CONTENT_JSON));
+    mockServer
+        .when(request().withMethod("GET").withPath("/Patient/page-2"), Times.once())
+        .respond(response().withStatusCode(500));
+    mockServer
+        .when(request().withMethod("GET").withPath("/Patient/page-2"))
+        .respond(response().withBody(searchResult("external-2")).withHeader(CONTENT_JSON));
+    var batched =
+        new FhirResolveService(
+            KDS_PATIENT,
+            client,
+            meterRegistry,
+            new BatchConfig(2, Duration.ofSeconds(10)),
+            null,
+            retryPolicy);
+
+    var resolved =
+        Flux.just("external-1", "external-2")
+            .flatMap(pid -> batched.resolve(pid).map(IIdType::getIdPart));
+
+    create(resolved.collectList())
+        .assertNext(ids -> assertThat(ids).containsExactlyInAnyOrder("patient-1", "patient-2"))
+        .verifyComplete();
+    mockServer.verify(request().withPath("/Patient"), once());
+  }
+
+  @Test
+  void cachedIdsAreNotResolvedAgain(MockServerClient mockServer) {
+    mockServer
+        .when(request().withMethod("GET").withPath("/Patient"))
+        .respond(response().withBody(searchResult("external-1")).withHeader(CONTENT_JSON));
+    var cached =
+        new FhirResolveService(
+            KDS_PATIENT,
+            client,
+            meterRegistry,
+            null,
+            new CacheConfig(10, Duration.ofHours(1)),
+            retryPolicy);
+
+    create(cached.resolve("external-1").then(Mono.defer(() -> cached.resolve("external-1"))))
+        .assertNext(pid -> assertThat(pid.getIdPart()).isEqualTo("patient-1"))
+        .verifyComplete();
+    mockServer.verify(request().withPath("/Patient"), once());
+  }
+
+  private static String searchResult(String... pids) {
+    return searchPage(null, pids);
+  }
+
+  private static String searchPage(String nextPage, String... pids) {
+    var bundle = new Bundle().setType(SEARCHSET);
+    if (nextPage != null) {
+      bundle.addLink().setRelation("next").setUrl(nextPage);
+    }
+    for (var pid : pids) {
+      var patient = new Patient();
+      patient.setId("patient-" + pid.substring(pid.indexOf('-') + 1));
+      patient.addIdentifier().setSystem(KDS_PATIENT).setValue(pid);
+      bundle.addEntry().setResource(patient);
+    }
+    return FhirContext.forR4().newJsonParser().encodeResourceToString(bundle);
+  }
+
   @AfterEach
   void tearDown(MockServerClient mockServer) {
     mockServer.reset();
@@ -0,0 +1,72 @@
+package care.smith.fts.cda.services.deidentifhir;
+
+import static care.smith.fts.test.TestPatientGenerator.generateOnePatient;
+import static com.typesafe.config.ConfigFactory.parseResources;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest
+class DeidentifhirEngineTest {
+
+  @Autowired MeterRegistry meterRegistry;
+
+  private DeidentifhirEngine engine;
+
+  @BeforeEach
+  void setUp() {
+    var config = parseResources(DeidentifhirEngineTest.class, "CDtoTransport.profile");
+    engine = new DeidentifhirEngine(config, meterRegistry);
+  }
+
+  @Test
+  void deidentifySeveralPatients() throws IOException {
+    assertDeidentified("id1", "tid1");
+    assertDeidentified("id2", "tid2");
+  }
+
+  @Test
+  void deferredDeidentificationMatchesDeidentification() throws IOException {
+    Map<String, String> transportIDs =
+        Map.of("id1.identifier.identifierSystem1:id1", "tid1", "id1.Patient:id1", "tid1");
+
+    var sites =
+        engine.deidentifyDeferred(generateOnePatient("id1", "2023", "identifierSystem1"), "id1");
+    assertThat(sites.ids()).containsExactlyInAnyOrderElementsOf(transportIDs.keySet());
+    var deferred = sites.apply(transportIDs, Duration.ofMillis(1000));
+    var deidentified =
+        engine.deidentify(
+            generateOnePatient("id1", "2023", "identifierSystem1"),
+            "id1",
+            transportIDs,
+            Duration.ofMillis(1000));
+
+    assertThat(deferred.equalsDeep(deidentified)).isTrue();
+  }
+
+  private void assertDeidentified(String patientId, String transportId) throws IOException {
+    Map<String, String> transportIDs =
+        Map.of(
+            "%s.identifier.identifierSystem1:%s".formatted(patientId, patientId),
+            transportId,
+            "%s.Patient:%s".formatted(patientId, patientId),
+            transportId);
+    var bundle = generateOnePatient(patientId, "2023", "identifierSystem1");
+
+    var deidentified = engine.deidentify(bundle, patientId, transportIDs, Duration.ofMillis(1000));
+
+    Bundle b = (Bundle) deidentified.getEntryFirstRep().getResource();
+    Patient p = (Patient) b.getEntryFirstRep().getResource();
+    assertThat(p.getId()).isEqualTo("Patient/" + transportId);
+    assertThat(p.getIdentifierFirstRep().getValue()).isEqualTo(transportId);
+  }
+}
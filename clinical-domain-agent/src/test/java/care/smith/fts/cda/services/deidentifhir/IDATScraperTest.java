@@ -14,15 +14,26 @@ class IDATScraperTest {
 
   @BeforeEach
   void setUp() {
-    ConsentedPatient patient = new ConsentedPatient("id1");
     var config = parseResources(IDATScraperTest.class, "IDScraper.profile");
-    scraper = new IDATScraper(config, patient);
+    scraper = new IDATScraper(config);
   }
 
   @Test
   void gatherIDs() throws IOException {
+    ConsentedPatient patient = new ConsentedPatient("id1");
     var bundle = generateOnePatient("id1", "2023", "identifierSystem1");
-    assertThat(scraper.gatherIDs(bundle))
+    assertThat(scraper.gatherIDs(patient, bundle))
+        .containsExactlyInAnyOrder("id1.identifier.identifierSystem1:id1", "id1.Patient:id1");
+  }
+
+  @Test
+  void gatherIDsOfSeveralPatients() throws IOException {
+    var bundle1 = generateOnePatient("id1", "2023", "identifierSystem1");
+    var bundle2 = generateOnePatient("id2", "2023", "identifierSystem1");
+
+    assertThat(scraper.gatherIDs(new ConsentedPatient("id1"), bundle1))
         .containsExactlyInAnyOrder("id1.identifier.identifierSystem1:id1", "id1.Patient:id1");
+    assertThat(scraper.gatherIDs(new ConsentedPatient("id2"), bundle2))
+        .containsExactlyInAnyOrder("id2.identifier.identifierSystem1:id2", "id2.Patient:id2");
   }
 }
@@ -0,0 +1,81 @@
+package care.smith.fts.cda.services.deidentifhir;
+
+import static care.smith.fts.util.deidentifhir.NamespacingReplacementProvider.withNamespacing;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.Map;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.DateType;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Identifier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import scala.collection.immutable.Map$;
+import scala.collection.immutable.Seq;
+import scala.collection.immutable.Seq$;
+
+class ReplacementSitesTest {
+  private static final Seq<String> PATH = Seq$.MODULE$.empty();
+
+  private ReplacementSites sites;
+
+  @BeforeEach
+  void setUp() {
+    sites = new ReplacementSites(withNamespacing("id1"));
+    sites.setBundle(new Bundle());
+  }
+
+  @Test
+  void idsAreReplacedWithPlaceholders() {
+    var id = sites.getIDReplacement("Patient", "id1");
+    var value = sites.getValueReplacement("identifierSystem1", "id1");
+
+    assertThat(id).isNotEqualTo(value).doesNotContain("id1");
+    assertThat(sites.ids())
+        .containsExactlyInAnyOrder("id1.Patient:id1", "id1.identifier.identifierSystem1:id1");
+  }
+
+  @Test
+  void recordedSitesAreReplaced() {
+    var id = sites.replaceId(PATH, new IdType("Patient", "id1"), Seq$.MODULE$.empty(), noContext());
+    var identifier =
+        sites.replaceIdentifierValue(
+            PATH,
+            new Identifier().setSystem("identifierSystem1").setValue("id1"),
+            Seq$.MODULE$.empty(),
+            noContext());
+
+    sites.apply(
+        Map.of("id1.Patient:id1", "tid1", "id1.identifier.identifierSystem1:id1", "tident1"),
+        Duration.ZERO);
+
+    assertThat(id.getIdPart()).isEqualTo("tid1");
+    assertThat(identifier.getValue()).isEqualTo("tident1");
+  }
+
+  @Test
+  void missingTransportIdThrows() {
+    sites.replaceId(PATH, new IdType("Patient", "id1"), Seq$.MODULE$.empty(), noContext());
+
+    assertThatThrownBy(() -> sites.apply(Map.of(), Duration.ZERO))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void datesAreShiftedAfterwards() {
+    var original = new DateType("2023-01-01");
+
+    var date = sites.shiftDate(PATH, original, Seq$.MODULE$.empty(), noContext());
+    sites.apply(Map.of(), Duration.ofDays(1));
+
+    assertThat(date).isNotSameAs(original);
+    assertThat(original.getValueAsString()).isEqualTo("2023-01-01");
+    assertThat(date.getValueAsString()).isEqualTo("2023-01-02");
+  }
+
+  private static scala.collection.immutable.Map<String, String> noContext() {
+    return Map$.MODULE$.empty();
+  }
+}
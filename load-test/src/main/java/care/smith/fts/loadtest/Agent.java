@@ -0,0 +1,52 @@
+package care.smith.fts.loadtest;
+
+import care.smith.fts.cda.ClinicalDomainAgent;
+import care.smith.fts.rda.ResearchDomainAgent;
+import care.smith.fts.tca.TrustCenterAgent;
+import java.util.Arrays;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * The agents started by the load test, each one in its own JVM. The agents read their settings from
+ * <code>loadtest-{name}.yaml</code> instead of the application.yaml of their jar, as all agent jars
+ * are on the classpath.
+ */
+@Slf4j
+enum Agent {
+  CDA(ClinicalDomainAgent.class),
+  TCA(TrustCenterAgent.class),
+  RDA(ResearchDomainAgent.class);
+
+  private final Class<?> application;
+
+  Agent(Class<?> application) {
+    this.application = application;
+  }
+
+  String configName() {
+    return "loadtest-" + name().toLowerCase();
+  }
+
+  /** Entry point of the agent JVMs, the first argument names the agent to run. */
+  public static void main(String... args) {
+    var agent = Agent.valueOf(args[0]);
+    var app = new SpringApplicationBuilder(agent.application);
+    if (agent == TCA) {
+      app.initializers(Agent::useInMemoryKeystore);
+    }
+    app.run(Arrays.copyOfRange(args, 1, args.length));
+  }
+
+  /** Replaces the redis client of the TCA, after its configuration classes have been processed. */
+  private static void useInMemoryKeystore(ConfigurableApplicationContext context) {
+    context.addBeanFactoryPostProcessor(
+        beanFactory -> {
+          log.info("Using in-memory keystore");
+          ((BeanDefinitionRegistry) beanFactory).removeBeanDefinition("redisClient");
+          beanFactory.registerSingleton("redisClient", new InMemoryRedisson().client());
+        });
+  }
+}
@@ -0,0 +1,123 @@
+package care.smith.fts.loadtest;
+
+import static java.net.http.HttpResponse.BodyHandlers.ofString;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+
+/** An agent running in its own JVM, its output is written to <code>{agent}.log</code>. */
+@Slf4j
+class AgentProcess implements AutoCloseable {
+  private static final HttpClient http = HttpClient.newHttpClient();
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final Agent agent;
+  private final Process process;
+  private final int port;
+  private final AtomicLong peakHeap = new AtomicLong();
+
+  private AgentProcess(Agent agent, Process process, int port) {
+    this.agent = agent;
+    this.process = process;
+    this.port = port;
+  }
+
+  static AgentProcess start(Agent agent, String maxHeap, Path logDirectory, List<String> args)
+      throws IOException {
+    var port = freePort();
+    var command = new ArrayList<String>();
+    command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    command.add("-Xmx" + maxHeap);
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(Agent.class.getName());
+    command.add(agent.name());
+    command.add("--spring.config.name=" + agent.configName());
+    command.add("--server.port=" + port);
+    command.addAll(args);
+
+    log.info("Starting {} on port {}", agent, port);
+    var logFile = logDirectory.resolve(agent.name().toLowerCase() + ".log").toFile();
+    var process =
+        new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(logFile).start();
+    return new AgentProcess(agent, process, port);
+  }
+
+  Agent agent() {
+    return agent;
+  }
+
+  String baseUrl() {
+    return "http://localhost:%d".formatted(port);
+  }
+
+  void awaitHealthy(Duration timeout) throws InterruptedException {
+    var deadline = Instant.now().plus(timeout);
+    while (Instant.now().isBefore(deadline)) {
+      if (!process.isAlive()) {
+        throw new IllegalStateException("%s exited during startup, see its log".formatted(agent));
+      }
+      try {
+        if (get("/actuator/health").contains("\"UP\"")) {
+          log.info("{} is up", agent);
+          return;
+        }
+      } catch (IOException e) {
+        // not listening yet
+      }
+      Thread.sleep(500);
+    }
+    throw new IllegalStateException("%s did not start within %s".formatted(agent, timeout));
+  }
+
+  /** Samples the heap in use, the highest sample is kept as peak heap. */
+  void sampleHeap() {
+    try {
+      var metric = objectMapper.readTree(get("/actuator/metrics/jvm.memory.used?tag=area:heap"));
+      var used = metric.path("measurements").path(0).path("value").asLong();
+      peakHeap.accumulateAndGet(used, Math::max);
+    } catch (IOException | InterruptedException e) {
+      log.debug("Unable to sample heap of {}: {}", agent, e.getMessage());
+    }
+  }
+
+  long peakHeap() {
+    return peakHeap.get();
+  }
+
+  String prometheus() throws IOException, InterruptedException {
+    return get("/actuator/prometheus");
+  }
+
+  String get(String path) throws IOException, InterruptedException {
+    var request = HttpRequest.newBuilder(URI.create(baseUrl() + path)).GET().build();
+    return http.send(request, ofString()).body();
+  }
+
+  private static int freePort() throws IOException {
+    try (var socket = new ServerSocket(0)) {
+      socket.setReuseAddress(true);
+      return socket.getLocalPort();
+    }
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    process.destroy();
+    if (!process.waitFor(30, TimeUnit.SECONDS)) {
+      process.destroyForcibly();
+    }
+  }
+}
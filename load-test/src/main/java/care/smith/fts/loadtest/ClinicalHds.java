@@ -0,0 +1,106 @@
+package care.smith.fts.loadtest;
+
+import static care.smith.fts.test.FhirGenerators.patient;
+import static care.smith.fts.test.FhirGenerators.randomUuid;
+import static care.smith.fts.test.FhirGenerators.resolveSearchResponse;
+import static care.smith.fts.test.MockServerUtil.APPLICATION_FHIR_JSON;
+import static care.smith.fts.util.FhirUtils.fhirResourceToString;
+import static care.smith.fts.util.FhirUtils.resourceStream;
+import static care.smith.fts.util.FhirUtils.stringToFhirBundle;
+import static java.lang.Math.min;
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.joining;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+import care.smith.fts.test.MockServerUtil;
+import java.io.IOException;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.r4.model.Patient;
+import org.mockserver.client.MockServerClient;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+
+/**
+ * Stand-in for the clinical HDS. Any patient may be resolved by its identifier, the data of each
+ * patient is generated from the patient template of test-util and served by $everything in pages.
+ */
+@Slf4j
+class ClinicalHds implements AutoCloseable {
+  static final String IDENTIFIER_SYSTEM = "http://fts.smith.care";
+  private static final String PLACEHOLDER = "loadtest-patient";
+
+  private final MockServerClient server;
+  private final String resolveResponse;
+  private final List<String> resources;
+
+  private ClinicalHds(MockServerClient server, int resources) throws IOException {
+    this.server = server;
+    this.resolveResponse = resolveSearchResponse(() -> PLACEHOLDER, randomUuid()).generateString();
+    var template = patient(() -> PLACEHOLDER, () -> IDENTIFIER_SYSTEM, () -> "2023");
+    this.resources =
+        resourceStream(stringToFhirBundle(template.generateString()))
+            .sorted(comparing(r -> !(r instanceof Patient)))
+            .limit(resources)
+            .map(r -> fhirResourceToString(r))
+            .toList();
+    if (this.resources.size() < resources) {
+      log.warn("The patient template holds {} resources only", this.resources.size());
+    }
+  }
+
+  static ClinicalHds start(int resources) throws IOException {
+    var hds = new ClinicalHds(MockServerUtil.onRandomPort(), resources);
+    hds.server.when(request().withMethod("GET").withPath("/fhir/Patient")).respond(hds::resolve);
+    hds.server
+        .when(request().withMethod("GET").withPath("/fhir/Patient/[^/]+/\\$everything"))
+        .respond(hds::everything);
+    return hds;
+  }
+
+  String baseUrl() {
+    return "http://localhost:%d/fhir".formatted(server.getPort());
+  }
+
+  private HttpResponse resolve(HttpRequest request) {
+    var identifier = request.getFirstQueryStringParameter("identifier");
+    var patientId = identifier.substring(identifier.indexOf('|') + 1);
+    return fhirJson(resolveResponse.replace(PLACEHOLDER, patientId));
+  }
+
+  private HttpResponse everything(HttpRequest request) {
+    var patientId = request.getPath().getValue().split("/")[3];
+    var count = intParameter(request, "_count", resources.size());
+    var offset = intParameter(request, "_offset", 0);
+    var page =
+        resources.subList(min(offset, resources.size()), min(offset + count, resources.size()));
+
+    var next =
+        offset + count < resources.size()
+            ? ",\"link\":[{\"relation\":\"next\",\"url\":\"%s/Patient/%s/$everything?_count=%d&_offset=%d\"}]"
+                .formatted(baseUrl(), patientId, count, offset + count)
+            : "";
+    var entries =
+        page.stream()
+            .map(r -> "{\"resource\":" + r.replace(PLACEHOLDER, patientId) + "}")
+            .collect(joining(","));
+    return fhirJson(
+        "{\"resourceType\":\"Bundle\",\"type\":\"searchset\",\"total\":%d%s,\"entry\":[%s]}"
+            .formatted(resources.size(), next, entries));
+  }
+
+  private static int intParameter(HttpRequest request, String name, int defaultValue) {
+    var value = request.getFirstQueryStringParameter(name);
+    return value.isEmpty() ? defaultValue : Integer.parseInt(value);
+  }
+
+  static HttpResponse fhirJson(String body) {
+    return response().withStatusCode(200).withContentType(APPLICATION_FHIR_JSON).withBody(body);
+  }
+
+  @Override
+  public void close() {
+    server.stop();
+  }
+}
@@ -0,0 +1,64 @@
+package care.smith.fts.loadtest;
+
+import static care.smith.fts.loadtest.ClinicalHds.fhirJson;
+import static care.smith.fts.test.FhirGenerators.gicsResponse;
+import static java.lang.Math.min;
+import static java.util.stream.Collectors.joining;
+import static org.mockserver.model.HttpRequest.request;
+
+import care.smith.fts.test.MockServerUtil;
+import java.io.IOException;
+import java.util.stream.IntStream;
+import org.mockserver.client.MockServerClient;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+
+/**
+ * Stand-in for gICS. All patients of the cohort have given the consent of the gICS response
+ * template of test-util, their IDs are <code>lt-0</code> to <code>lt-{patients - 1}</code>.
+ */
+class Gics implements AutoCloseable {
+  static final String PATIENT_IDENTIFIER_SYSTEM =
+      "https://ths-greifswald.de/fhir/gics/identifiers/Pseudonym";
+  static final String POLICY_SYSTEM = "https://ths-greifswald.de/fhir/CodeSystem/gics/Policy";
+  private static final String PLACEHOLDER = "loadtest-patient";
+
+  private final MockServerClient server;
+  private final String consent;
+  private final int patients;
+
+  private Gics(MockServerClient server, int patients) throws IOException {
+    this.server = server;
+    this.consent = gicsResponse(() -> "qr-" + PLACEHOLDER, () -> PLACEHOLDER).generateString();
+    this.patients = patients;
+  }
+
+  static Gics start(int patients) throws IOException {
+    var gics = new Gics(MockServerUtil.onRandomPort(), patients);
+    gics.server
+        .when(request().withMethod("POST").withPath("/ttp-fhir/fhir/gics/\\$allConsentsForDomain"))
+        .respond(gics::allConsentsForDomain);
+    return gics;
+  }
+
+  String baseUrl() {
+    return "http://localhost:%d/ttp-fhir/fhir/gics".formatted(server.getPort());
+  }
+
+  private HttpResponse allConsentsForDomain(HttpRequest request) {
+    var count = Integer.parseInt(request.getFirstQueryStringParameter("_count"));
+    var offset = Integer.parseInt(request.getFirstQueryStringParameter("_offset"));
+    var entries =
+        IntStream.range(min(offset, patients), min(offset + count, patients))
+            .mapToObj(i -> "{\"resource\":" + consent.replace(PLACEHOLDER, "lt-" + i) + "}")
+            .collect(joining(","));
+    return fhirJson(
+        "{\"resourceType\":\"Bundle\",\"type\":\"searchset\",\"total\":%d,\"entry\":[%s]}"
+            .formatted(patients, entries));
+  }
+
+  @Override
+  public void close() {
+    server.stop();
+  }
+}
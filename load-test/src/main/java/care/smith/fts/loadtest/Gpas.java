@@ -0,0 +1,61 @@
+package care.smith.fts.loadtest;
+
+import static care.smith.fts.loadtest.ClinicalHds.fhirJson;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockserver.model.HttpRequest.request;
+
+import care.smith.fts.test.GpasTestHelper;
+import care.smith.fts.test.MockServerUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.HashMap;
+import java.util.UUID;
+import org.mockserver.client.MockServerClient;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+
+/** Stand-in for gPAS, the pseudonym of an original is derived from the original itself. */
+class Gpas implements AutoCloseable {
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final MockServerClient server;
+
+  private Gpas(MockServerClient server) {
+    this.server = server;
+  }
+
+  static Gpas start() {
+    var gpas = new Gpas(MockServerUtil.onRandomPort());
+    gpas.server
+        .when(
+            request().withMethod("POST").withPath("/ttp-fhir/fhir/gpas/\\$pseudonymizeAllowCreate"))
+        .respond(gpas::pseudonymizeAllowCreate);
+    return gpas;
+  }
+
+  String baseUrl() {
+    return "http://localhost:%d/ttp-fhir/fhir/gpas".formatted(server.getPort());
+  }
+
+  private HttpResponse pseudonymizeAllowCreate(HttpRequest request) throws JsonProcessingException {
+    var domain = "";
+    var pseudonyms = new HashMap<String, String>();
+    for (var parameter : objectMapper.readTree(request.getBodyAsString()).path("parameter")) {
+      var value = parameter.path("valueString").asText();
+      switch (parameter.path("name").asText()) {
+        case "target" -> domain = value;
+        case "original" -> pseudonyms.put(value, pseudonym(value));
+        default -> {}
+      }
+    }
+    return fhirJson(GpasTestHelper.pseudonymizeAllowCreate(domain, pseudonyms));
+  }
+
+  private static String pseudonym(String original) {
+    return UUID.nameUUIDFromBytes(original.getBytes(UTF_8)).toString();
+  }
+
+  @Override
+  public void close() {
+    server.stop();
+  }
+}
@@ -0,0 +1,148 @@
+package care.smith.fts.loadtest;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.redisson.api.BatchResult;
+import org.redisson.api.RBatchReactive;
+import org.redisson.api.RBucketReactive;
+import org.redisson.api.RMapCacheReactive;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.RedissonReactiveClient;
+import reactor.core.publisher.Mono;
+
+/**
+ * Stand-in for the redis keystore of the TCA, keeping buckets and map caches in memory. Only the
+ * reactive operations used by the TCA are supported, expiration is ignored.
+ */
+class InMemoryRedisson {
+  private final Map<String, Object> buckets = new ConcurrentHashMap<>();
+  private final Map<String, Map<Object, Object>> maps = new ConcurrentHashMap<>();
+
+  RedissonClient client() {
+    RedissonReactiveClient reactive =
+        proxy(
+            RedissonReactiveClient.class,
+            (method, args) ->
+                switch (method) {
+                  case "getBucket" -> bucket((String) args[0], Mono::fromSupplier);
+                  case "getMapCache" -> mapCache((String) args[0], Mono::fromSupplier);
+                  case "createBatch" -> batch();
+                  default -> unsupported(RedissonReactiveClient.class, method);
+                });
+    return proxy(
+        RedissonClient.class,
+        (method, args) ->
+            switch (method) {
+              case "reactive" -> reactive;
+              case "shutdown" -> null;
+              case "isShutdown", "isShuttingDown" -> false;
+              default -> unsupported(RedissonClient.class, method);
+            });
+  }
+
+  /** Operations of a batch are queued when called and run in order on execute. */
+  private RBatchReactive batch() {
+    var operations = new ArrayList<Supplier<Object>>();
+    Function<Supplier<Object>, Mono<Object>> queue =
+        op -> {
+          synchronized (operations) {
+            operations.add(op);
+          }
+          return Mono.empty();
+        };
+    return proxy(
+        RBatchReactive.class,
+        (method, args) ->
+            switch (method) {
+              case "getBucket" -> bucket((String) args[0], queue);
+              case "getMapCache" -> mapCache((String) args[0], queue);
+              case "execute" -> Mono.fromSupplier(() -> execute(operations));
+              default -> unsupported(RBatchReactive.class, method);
+            });
+  }
+
+  private static BatchResult<?> execute(List<Supplier<Object>> operations) {
+    synchronized (operations) {
+      return new BatchResult<>(operations.stream().map(Supplier::get).toList(), 0);
+    }
+  }
+
+  private RBucketReactive<?> bucket(String name, Function<Supplier<Object>, Mono<Object>> run) {
+    return proxy(
+        RBucketReactive.class,
+        (method, args) ->
+            switch (method) {
+              case "setIfAbsent" -> run.apply(() -> buckets.putIfAbsent(name, args[0]) == null);
+              case "set" -> run.apply(() -> set(name, args[0]));
+              case "get" -> run.apply(() -> buckets.get(name));
+              case "delete" -> run.apply(() -> buckets.remove(name) != null);
+              default -> unsupported(RBucketReactive.class, method);
+            });
+  }
+
+  private Object set(String name, Object value) {
+    buckets.put(name, value);
+    return null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private RMapCacheReactive<?, ?> mapCache(
+      String name, Function<Supplier<Object>, Mono<Object>> run) {
+    Supplier<Map<Object, Object>> map =
+        () -> maps.computeIfAbsent(name, n -> new ConcurrentHashMap<>());
+    return proxy(
+        RMapCacheReactive.class,
+        (method, args) ->
+            switch (method) {
+              case "expire" -> run.apply(() -> true);
+              case "putAll" -> run.apply(() -> putAll(map.get(), (Map<Object, Object>) args[0]));
+              case "readAllMap" -> run.apply(() -> copy(map.get(), null));
+              case "getAll" -> run.apply(() -> copy(map.get(), (Set<Object>) args[0]));
+              case "delete" -> run.apply(() -> maps.remove(name) != null);
+              default -> unsupported(RMapCacheReactive.class, method);
+            });
+  }
+
+  private static Object putAll(Map<Object, Object> map, Map<Object, Object> entries) {
+    map.putAll(entries);
+    return null;
+  }
+
+  private static Map<Object, Object> copy(Map<Object, Object> map, Set<Object> keys) {
+    var copy = new HashMap<>(map);
+    if (keys != null) {
+      copy.keySet().retainAll(keys);
+    }
+    return copy;
+  }
+
+  private static Object unsupported(Class<?> type, String method) {
+    throw new UnsupportedOperationException(
+        "%s.%s is not supported by the in-memory keystore".formatted(type.getSimpleName(), method));
+  }
+
+  private interface Operation {
+    Object invoke(String method, Object[] args);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T proxy(Class<T> type, Operation operation) {
+    InvocationHandler handler =
+        (proxy, method, args) ->
+            switch (method.getName()) {
+              case "toString" -> "in-memory " + type.getSimpleName();
+              case "hashCode" -> System.identityHashCode(proxy);
+              case "equals" -> proxy == args[0];
+              default -> operation.invoke(method.getName(), args);
+            };
+    return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler);
+  }
+}
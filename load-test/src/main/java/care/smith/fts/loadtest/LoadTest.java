@@ -0,0 +1,259 @@
+package care.smith.fts.loadtest;
+
+import static care.smith.fts.loadtest.Agent.CDA;
+import static care.smith.fts.loadtest.Agent.RDA;
+import static care.smith.fts.loadtest.Agent.TCA;
+import static java.net.http.HttpResponse.BodyHandlers.ofString;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import lombok.extern.slf4j.Slf4j;
+import org.mockserver.configuration.ConfigurationProperties;
+
+/**
+ * Transfers a synthetic cohort from a clinical to a research HDS and reports the throughput,
+ * percentiles of the transfer process stages and the peak heap of each agent.
+ *
+ * <p>CDA, TCA and RDA are started in JVMs of their own and wired together, while HDS, gICS and gPAS
+ * are replaced by mock servers running in this JVM and redis by an in-memory keystore in the TCA.
+ */
+@Slf4j
+public class LoadTest {
+  private static final String PROJECT = "loadtest";
+  private static final String DOMAIN = "MII";
+  private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(3);
+  private static final Duration POLL_INTERVAL = Duration.ofMillis(100);
+  private static final HttpClient http = HttpClient.newHttpClient();
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final LoadTestConfig config;
+
+  LoadTest(LoadTestConfig config) {
+    this.config = config;
+  }
+
+  public static void main(String... args) throws IOException {
+    var config = LoadTestConfig.parse(args);
+    Report report;
+    try {
+      report = new LoadTest(config).run();
+    } catch (Exception e) {
+      // mock server threads would keep the JVM alive
+      log.error("Load test failed", e);
+      System.exit(2);
+      return;
+    }
+
+    var results = config.workDirectory().resolve("results.json");
+    objectMapper.writerWithDefaultPrettyPrinter().writeValue(results.toFile(), report);
+    System.out.print(report.summary());
+    System.out.println("Results written to " + results);
+    System.exit(report.phase().equals("COMPLETED") ? 0 : 1);
+  }
+
+  Report run() throws Exception {
+    var work = Files.createDirectories(config.workDirectory());
+    ConfigurationProperties.logLevel("WARN");
+    ConfigurationProperties.disableLogging(true);
+
+    try (var clinicalHds = ClinicalHds.start(config.resources());
+        var gics = Gics.start(config.patients());
+        var gpas = Gpas.start();
+        var researchHds = ResearchHds.start();
+        var tca = startTca(work, gics, gpas);
+        var rda = startRda(work, tca, researchHds);
+        var cda = startCda(work, tca, rda, clinicalHds)) {
+      var agents = List.of(cda, tca, rda);
+      for (var agent : agents) {
+        agent.awaitHealthy(STARTUP_TIMEOUT);
+      }
+
+      var sampler = Executors.newSingleThreadScheduledExecutor();
+      sampler.scheduleAtFixedRate(
+          () -> agents.forEach(AgentProcess::sampleHeap), 0, 250, MILLISECONDS);
+      try {
+        var start = Instant.now();
+        var status = transfer(cda);
+        var seconds = Duration.between(start, Instant.now()).toMillis() / 1000.0;
+        return report(status, seconds, researchHds, agents);
+      } finally {
+        sampler.shutdownNow();
+      }
+    }
+  }
+
+  private AgentProcess startTca(Path work, Gics gics, Gpas gpas) throws IOException {
+    return AgentProcess.start(
+        TCA,
+        config.maxHeap(),
+        work,
+        List.of(
+            "--consent.gics.fhir.base-url=" + gics.baseUrl(),
+            "--de-identification.gpas.fhir.base-url=" + gpas.baseUrl()));
+  }
+
+  private AgentProcess startRda(Path work, AgentProcess tca, ResearchHds researchHds)
+      throws IOException {
+    var project =
+        """
+        deidentificator:
+          deidentifhir:
+            tca:
+              server:
+                baseUrl: %s
+              domain: %s
+            dateShift: P14D
+            deidentifhirConfig: %s
+        bundleSender:
+          fhirStore:
+            server:
+              baseUrl: %s
+        """
+            .formatted(tca.baseUrl(), DOMAIN, profile("TransportToRD"), researchHds.baseUrl());
+    var projects = writeProject(work.resolve("rda-projects"), project);
+    return AgentProcess.start(
+        RDA, config.maxHeap(), work, List.of("--projects.directory=" + projects));
+  }
+
+  private AgentProcess startCda(
+      Path work, AgentProcess tca, AgentProcess rda, ClinicalHds clinicalHds) throws IOException {
+    var project =
+        """
+cohortSelector:
+  trustCenterAgent:
+    server:
+      baseUrl: %s
+    domain: %s
+    patientIdentifierSystem: %s
+    policySystem: %s
+    policies: [ IDAT_erheben, IDAT_speichern_verarbeiten, MDAT_erheben, MDAT_speichern_verarbeiten ]
+dataSelector:
+  everything:
+    fhirServer:
+      baseUrl: %s
+    resolve:
+      patientIdentifierSystem: %s
+    page:
+      count: %d
+deidentificator:
+  deidentifhir:
+    tca:
+      server:
+        baseUrl: %s
+      domain: %s
+    dateShift: P14D
+    deidentifhirConfig: %s
+    scraperConfig: %s
+bundleSender:
+  researchDomainAgent:
+    server:
+      baseUrl: %s
+    project: %s
+    format: %s
+"""
+            .formatted(
+                tca.baseUrl(),
+                DOMAIN,
+                Gics.PATIENT_IDENTIFIER_SYSTEM,
+                Gics.POLICY_SYSTEM,
+                clinicalHds.baseUrl(),
+                ClinicalHds.IDENTIFIER_SYSTEM,
+                config.pageSize(),
+                tca.baseUrl(),
+                DOMAIN,
+                profile("CDtoTransport"),
+                profile("IDScraper"),
+                rda.baseUrl(),
+                PROJECT,
+                config.format());
+    var projects = writeProject(work.resolve("cda-projects"), project);
+    return AgentProcess.start(
+        CDA,
+        config.maxHeap(),
+        work,
+        List.of(
+            "--projects.directory=" + projects,
+            "--processState.directory=" + work.resolve("cda-state")));
+  }
+
+  private String profile(String name) {
+    return config.deidentifhirProfiles().resolve(name + ".profile").toAbsolutePath().toString();
+  }
+
+  private static Path writeProject(Path directory, String project) throws IOException {
+    Files.createDirectories(directory);
+    Files.writeString(directory.resolve(PROJECT + ".yaml"), project);
+    return directory.toAbsolutePath();
+  }
+
+  /** Starts the transfer process and waits until it is completed or failed. */
+  private JsonNode transfer(AgentProcess cda) throws IOException, InterruptedException {
+    var start =
+        HttpRequest.newBuilder(URI.create(cda.baseUrl() + "/api/v2/process/" + PROJECT + "/start"))
+            .POST(BodyPublishers.noBody())
+            .build();
+    var response = http.send(start, ofString());
+    var statusUri =
+        response
+            .headers()
+            .firstValue("Content-Location")
+            .orElseThrow(() -> new IllegalStateException("Unable to start: " + response.body()));
+    log.info("Started transfer of {} patients: {}", config.patients(), statusUri);
+
+    var deadline = Instant.now().plus(config.timeout());
+    while (Instant.now().isBefore(deadline)) {
+      var status =
+          objectMapper.readTree(
+              http.send(HttpRequest.newBuilder(URI.create(statusUri)).build(), ofString()).body());
+      var phase = status.path("phase").asText();
+      if (phase.equals("COMPLETED") || phase.equals("ERROR")) {
+        log.info("Transfer finished: {}", status);
+        return status;
+      }
+      Thread.sleep(POLL_INTERVAL);
+    }
+    throw new IllegalStateException("Transfer did not finish within " + config.timeout());
+  }
+
+  private Report report(
+      JsonNode status, double seconds, ResearchHds researchHds, List<AgentProcess> agents)
+      throws IOException, InterruptedException {
+    var bundles = status.path("bundlesSentCount").asLong();
+    var skipped = status.path("patientsSkippedCount").asLong();
+    var stages = new LinkedHashMap<String, Map<String, Report.Percentiles>>();
+    var peakHeap = new LinkedHashMap<String, Long>();
+    for (var agent : agents) {
+      if (agent.agent() != TCA) {
+        stages.put(agent.agent().name(), Report.stagePercentiles(agent.prometheus()));
+      }
+      peakHeap.put(agent.agent().name(), agent.peakHeap());
+    }
+    return new Report(
+        config.patients(),
+        config.resources(),
+        config.format(),
+        status.path("phase").asText(),
+        seconds,
+        skipped,
+        bundles,
+        researchHds.transactions(),
+        (config.patients() - skipped) / seconds,
+        bundles / seconds,
+        stages,
+        peakHeap);
+  }
+}
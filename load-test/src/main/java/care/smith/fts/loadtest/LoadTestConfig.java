@@ -0,0 +1,72 @@
+package care.smith.fts.loadtest;
+
+import static java.util.stream.Collectors.toMap;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+
+/** Options of a load test run, each option may be given as <code>--name=value</code> argument. */
+public record LoadTestConfig(
+    /* Number of patients in the cohort */
+    int patients,
+
+    /* Number of resources of each patient, limited by the size of the patient template */
+    int resources,
+
+    /* Number of resources per page of the $everything responses of the clinical HDS */
+    int pageSize,
+
+    /* Format of the bundles sent from CDA to RDA, BUNDLE or NDJSON */
+    String format,
+
+    /* Maximum heap of each agent, passed to its JVM as -Xmx */
+    String maxHeap,
+
+    /* Directory of the deidentifhir profiles used by CDA and RDA */
+    Path deidentifhirProfiles,
+
+    /* Maximum duration of the transfer */
+    Duration timeout,
+
+    /* Directory of the project files, agent logs and results */
+    Path workDirectory) {
+
+  public LoadTestConfig {
+    patients = patients > 0 ? patients : 100;
+    resources = resources > 0 ? resources : 100;
+    pageSize = pageSize > 0 ? pageSize : 500;
+    format = format != null ? format : "BUNDLE";
+    maxHeap = maxHeap != null ? maxHeap : "1g";
+    deidentifhirProfiles =
+        deidentifhirProfiles != null ? deidentifhirProfiles : Path.of(".github/test/deidentifhir");
+    timeout = timeout != null ? timeout : Duration.ofMinutes(30);
+    workDirectory = workDirectory != null ? workDirectory : Path.of("target/load-test");
+  }
+
+  public static LoadTestConfig parse(String... args) {
+    Map<String, String> options =
+        Arrays.stream(args)
+            .filter(a -> a.startsWith("--") && a.contains("="))
+            .map(a -> a.substring(2).split("=", 2))
+            .collect(toMap(o -> o[0], o -> o[1], (a, b) -> b));
+    return new LoadTestConfig(
+        intOption(options, "patients"),
+        intOption(options, "resources"),
+        intOption(options, "pageSize"),
+        options.get("format"),
+        options.get("maxHeap"),
+        pathOption(options, "deidentifhirProfiles"),
+        options.containsKey("timeout") ? Duration.parse(options.get("timeout")) : null,
+        pathOption(options, "workDirectory"));
+  }
+
+  private static int intOption(Map<String, String> options, String name) {
+    return options.containsKey(name) ? Integer.parseInt(options.get(name)) : 0;
+  }
+
+  private static Path pathOption(Map<String, String> options, String name) {
+    return options.containsKey(name) ? Path.of(options.get(name)) : null;
+  }
+}
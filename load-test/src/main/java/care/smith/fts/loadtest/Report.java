@@ -0,0 +1,92 @@
+package care.smith.fts.loadtest;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/** Results of a load test run, durations of the stages are given in milliseconds. */
+public record Report(
+    int patients,
+    int resourcesPerPatient,
+    String format,
+    String phase,
+    double durationSeconds,
+    long patientsSkipped,
+    long bundlesSent,
+    long transactions,
+    double patientsPerSecond,
+    double bundlesPerSecond,
+    Map<String, Map<String, Percentiles>> stages,
+    Map<String, Long> peakHeapBytes) {
+
+  private static final Pattern QUANTILE =
+      Pattern.compile("^transferProcess_(stage|patient)_seconds\\{([^}]*)}\\s+(\\S+)");
+  private static final Pattern LABEL = Pattern.compile("(\\w+)=\"([^\"]*)\"");
+
+  public record Percentiles(double p50, double p95, double p99) {
+    Percentiles with(String quantile, double millis) {
+      return switch (quantile) {
+        case "0.5" -> new Percentiles(millis, p95, p99);
+        case "0.95" -> new Percentiles(p50, millis, p99);
+        case "0.99" -> new Percentiles(p50, p95, millis);
+        default -> this;
+      };
+    }
+  }
+
+  /**
+   * Reads the percentiles of the <code>transferProcess.stage</code> timers and of the <code>
+   * transferProcess.patient</code> timer, reported as stage <code>patient</code>, from the
+   * prometheus scrape of an agent.
+   */
+  static Map<String, Percentiles> stagePercentiles(String prometheus) {
+    var stages = new TreeMap<String, Percentiles>();
+    prometheus
+        .lines()
+        .map(QUANTILE::matcher)
+        .filter(m -> m.find())
+        .forEach(
+            m -> {
+              var labels = labels(m.group(2));
+              var stage = m.group(1).equals("stage") ? labels.get("stage") : "patient";
+              var quantile = labels.get("quantile");
+              var millis = Double.parseDouble(m.group(3)) * 1000;
+              stages.compute(
+                  stage,
+                  (k, p) -> (p != null ? p : new Percentiles(0, 0, 0)).with(quantile, millis));
+            });
+    return stages;
+  }
+
+  private static Map<String, String> labels(String labels) {
+    var map = new TreeMap<String, String>();
+    var matcher = LABEL.matcher(labels);
+    while (matcher.find()) {
+      map.put(matcher.group(1), matcher.group(2));
+    }
+    return map;
+  }
+
+  String summary() {
+    var s = new StringBuilder();
+    s.append(
+        "%d patients with %d resources each, %s: %s after %.1f s%n"
+            .formatted(patients, resourcesPerPatient, format, phase, durationSeconds));
+    s.append(
+        "%.2f patients/s, %.2f bundles/s, %d bundles sent, %d transactions, %d patients skipped%n"
+            .formatted(
+                patientsPerSecond, bundlesPerSecond, bundlesSent, transactions, patientsSkipped));
+    s.append("%-4s %-14s %10s %10s %10s%n".formatted("", "stage", "p50 ms", "p95 ms", "p99 ms"));
+    stages.forEach(
+        (agent, percentiles) ->
+            percentiles.forEach(
+                (stage, p) ->
+                    s.append(
+                        "%-4s %-14s %10.1f %10.1f %10.1f%n"
+                            .formatted(agent, stage, p.p50(), p.p95(), p.p99()))));
+    peakHeapBytes.forEach(
+        (agent, bytes) ->
+            s.append("%-4s peak heap %d MiB%n".formatted(agent, bytes / (1024 * 1024))));
+    return s.toString();
+  }
+}
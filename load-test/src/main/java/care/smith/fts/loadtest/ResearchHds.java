@@ -0,0 +1,47 @@
+package care.smith.fts.loadtest;
+
+import static care.smith.fts.loadtest.ClinicalHds.fhirJson;
+import static org.mockserver.model.HttpRequest.request;
+
+import care.smith.fts.test.MockServerUtil;
+import java.util.concurrent.atomic.AtomicLong;
+import org.mockserver.client.MockServerClient;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+
+/** Stand-in for the research HDS, accepts and counts all transactions. */
+class ResearchHds implements AutoCloseable {
+  private static final String TRANSACTION_RESPONSE =
+      "{\"resourceType\":\"Bundle\",\"type\":\"transaction-response\"}";
+
+  private final MockServerClient server;
+  private final AtomicLong transactions = new AtomicLong();
+
+  private ResearchHds(MockServerClient server) {
+    this.server = server;
+  }
+
+  static ResearchHds start() {
+    var hds = new ResearchHds(MockServerUtil.onRandomPort());
+    hds.server.when(request().withMethod("POST").withPath("/fhir")).respond(hds::transaction);
+    return hds;
+  }
+
+  String baseUrl() {
+    return "http://localhost:%d/fhir".formatted(server.getPort());
+  }
+
+  long transactions() {
+    return transactions.get();
+  }
+
+  private HttpResponse transaction(HttpRequest request) {
+    transactions.incrementAndGet();
+    return fhirJson(TRANSACTION_RESPONSE);
+  }
+
+  @Override
+  public void close() {
+    server.stop();
+  }
+}
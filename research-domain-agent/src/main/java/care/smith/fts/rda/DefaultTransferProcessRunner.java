@@ -3,77 +3,169 @@ package care.smith.fts.rda;
 import care.smith.fts.api.TransportBundle;
 import care.smith.fts.api.rda.BundleSender;
 import care.smith.fts.api.rda.Deidentificator;
+import care.smith.fts.util.FhirUtils;
+import care.smith.fts.util.FinishedProcesses;
+import care.smith.fts.util.FinishedProcesses.Summary;
+import care.smith.fts.util.TransferProcessMetrics;
+import care.smith.fts.util.TransferProcessRetention;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
 @Slf4j
 @Component
 public class DefaultTransferProcessRunner implements TransferProcessRunner {
 
   private final Map<String, TransferProcessInstance> instances = new ConcurrentHashMap<>();
+  private final FinishedProcesses<Phase> finished;
+  private final TransferProcessMetrics metrics;
+
+  public DefaultTransferProcessRunner(MeterRegistry meterRegistry) {
+    this(meterRegistry, new TransferProcessRetention());
+  }
+
+  @Autowired
+  public DefaultTransferProcessRunner(
+      MeterRegistry meterRegistry, TransferProcessRetention retention) {
+    this.metrics = new TransferProcessMetrics(meterRegistry);
+    this.finished = new FinishedProcesses<>(Phase.class, retention);
+  }
 
   @Override
   public String start(TransferProcessDefinition process, Mono<TransportBundle> data) {
+    return start(process, data.flux());
+  }
+
+  @Override
+  public String start(TransferProcessDefinition process, Flux<TransportBundle> data) {
     var processId = UUID.randomUUID().toString();
     log.info("Run process with processId: {}", processId);
-    TransferProcessInstance transferProcessInstance = new TransferProcessInstance(process);
-    transferProcessInstance.execute(data);
+    TransferProcessInstance transferProcessInstance =
+        new TransferProcessInstance(processId, process, metrics);
     instances.put(processId, transferProcessInstance);
+    transferProcessInstance.statusUpdates().last().subscribe(this::evict);
+    transferProcessInstance.execute(data);
     return processId;
   }
 
+  /** Replaces a finished instance by the summary of its status. */
+  private void evict(Status status) {
+    finished.add(
+        status.processId(), status.phase(), status.receivedResources(), status.sentResources());
+    instances.remove(status.processId());
+  }
+
   @Override
   public Mono<Status> status(String processId) {
     TransferProcessInstance transferProcessInstance = instances.get(processId);
     if (transferProcessInstance != null) {
       return Mono.just(transferProcessInstance.status(processId));
     } else {
-      return Mono.error(new IllegalArgumentException());
+      return finished
+          .get(processId)
+          .map(s -> Mono.just(fromSummary(processId, s)))
+          .orElseGet(() -> Mono.error(new IllegalArgumentException()));
+    }
+  }
+
+  @Override
+  public Flux<Status> statusUpdates(String processId) {
+    TransferProcessInstance transferProcessInstance = instances.get(processId);
+    if (transferProcessInstance != null) {
+      return transferProcessInstance.statusUpdates();
+    } else {
+      return status(processId).flux();
     }
   }
 
+  private static Status fromSummary(String processId, Summary<Phase> summary) {
+    return new Status(processId, summary.phase(), summary.first(), summary.second());
+  }
+
   public static class TransferProcessInstance {
+    private final String processId;
     private final Deidentificator deidentificator;
     private final BundleSender bundleSender;
+    private final String project;
+    private final TransferProcessMetrics metrics;
     private final AtomicReference<Phase> phase;
     private final AtomicLong receivedResources;
     private final AtomicLong sentResources;
+    private final Sinks.Many<Status> statusUpdates;
 
-    public TransferProcessInstance(TransferProcessDefinition process) {
+    public TransferProcessInstance(
+        String processId, TransferProcessDefinition process, TransferProcessMetrics metrics) {
+      this.processId = processId;
       deidentificator = process.deidentificator();
       bundleSender = process.bundleSender();
+      project = process.project();
+      this.metrics = metrics;
 
       phase = new AtomicReference<>(Phase.RUNNING);
       receivedResources = new AtomicLong();
       sentResources = new AtomicLong();
+      statusUpdates = Sinks.many().replay().latest();
+      publishStatus();
     }
 
-    public void execute(Mono<TransportBundle> data) {
-      data.doOnNext(
-              b ->
-                  log.debug(
-                      "processing patient bundle, resources: {}", b.bundle().getEntry().size()))
-          .doOnNext(b -> receivedResources.getAndAdd(b.bundle().getEntry().size()))
-          .flatMap(deidentificator::replaceIds)
-          .doOnNext(b -> sentResources.getAndAdd(b.getEntry().size()))
-          .flatMap(bundleSender::send)
+    public void execute(Flux<TransportBundle> data) {
+      var processed =
+          data.doOnNext(
+                  b ->
+                      log.debug(
+                          "processing patient bundle, resources: {}", b.bundle().getEntry().size()))
+              .doOnNext(b -> receivedResources.getAndAdd(b.bundle().getEntry().size()))
+              .doOnNext(b -> metrics.bundle(project, "receive", b.bundle().getEntry().size()))
+              .doOnNext(b -> publishStatus())
+              .flatMapSequential(
+                  b -> metrics.stage(project, "replaceIds", deidentificator.replaceIds(b)))
+              .doOnNext(b -> sentResources.getAndAdd(b.getEntry().size()))
+              .doOnNext(b -> publishStatus())
+              // chunks are deidentified while they arrive, but sent as one transaction, so the data
+              // of a patient is stored completely or not at all
+              .reduce(FhirUtils::mergeEntries)
+              .flatMap(b -> metrics.stage(project, "send", bundleSender.send(b)))
+              .then(
+                  Mono.fromSupplier(
+                      () -> new Result(receivedResources.get(), sentResources.get())));
+      metrics
+          .patient(project, processed)
+          .doOnNext(r -> metrics.patientResources(project, r.sentResources()))
           .doOnError(err -> log.info("Could not process patient: {}", err.getMessage()))
           .doOnError(err -> log.trace("The exception:", err))
-          .doOnError(err -> phase.set(Phase.ERROR))
-          .map(r -> new Result(receivedResources.get(), sentResources.get()))
-          .doOnNext(b -> phase.set(Phase.COMPLETED))
+          .doOnError(err -> finish(Phase.ERROR))
+          .doOnNext(b -> finish(Phase.COMPLETED))
           .onErrorComplete()
           .subscribe();
     }
 
+    private synchronized void finish(Phase phase) {
+      this.phase.set(phase);
+      publishStatus();
+      statusUpdates.tryEmitComplete();
+    }
+
+    /** Emissions are serialized, as bundles are processed concurrently. */
+    private synchronized void publishStatus() {
+      statusUpdates.tryEmitNext(status(processId));
+    }
+
     public Status status(String processId) {
       return new Status(processId, phase.get(), receivedResources.get(), sentResources.get());
     }
+
+    /** Slow subscribers skip intermediate updates, but always receive the latest status. */
+    public Flux<Status> statusUpdates() {
+      return statusUpdates.asFlux().onBackpressureLatest();
+    }
   }
 }
@@ -3,11 +3,16 @@ package care.smith.fts.rda;
 import static java.time.Duration.ofSeconds;
 
 import ca.uhn.fhir.context.FhirContext;
+import care.smith.fts.util.AdaptiveConcurrencyConfig;
 import care.smith.fts.util.CustomErrorHandler;
 import care.smith.fts.util.FhirCodecConfiguration;
 import care.smith.fts.util.MetricsConfig;
+import care.smith.fts.util.RateLimitConfig;
+import care.smith.fts.util.RetryPolicies;
+import care.smith.fts.util.TransferProcessRetention;
 import care.smith.fts.util.WebClientDefaults;
 import care.smith.fts.util.auth.HttpServerAuthConfig;
+import care.smith.fts.util.compression.CompressionConfig;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
@@ -33,6 +38,11 @@ import org.springframework.context.annotation.Primary;
   MetricsConfig.class,
   HttpServerAuthConfig.class,
   CustomErrorHandler.class,
+  CompressionConfig.class,
+  AdaptiveConcurrencyConfig.class,
+  RateLimitConfig.class,
+  RetryPolicies.class,
+  TransferProcessRetention.class,
 })
 public class ResearchDomainAgent {
 
@@ -1,20 +1,55 @@
 package care.smith.fts.rda;
 
 import care.smith.fts.api.TransportBundle;
+import care.smith.fts.util.FhirUtils;
+import java.time.Duration;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface TransferProcessRunner {
   String start(TransferProcessDefinition process, Mono<TransportBundle> data);
 
+  /**
+   * Starts a process for data that arrives in several bundles of the same transport ID map. Runners
+   * that do not process the bundles as they arrive receive them merged into one.
+   */
+  default String start(TransferProcessDefinition process, Flux<TransportBundle> data) {
+    return start(
+        process,
+        data.reduce(
+            (a, b) ->
+                new TransportBundle(
+                    FhirUtils.mergeEntries(a.bundle(), b.bundle()), a.tIDMapName())));
+  }
+
   record Result(long receivedResources, long sentResources) {}
 
   Mono<Status> status(String processId);
 
+  /**
+   * Emits the status of the process whenever its phase or counters change, starting with the
+   * current status and completing with the final one. Runners that cannot push the changes poll
+   * {@link #status(String)} every second.
+   */
+  default Flux<Status> statusUpdates(String processId) {
+    return status(processId)
+        .expand(
+            s ->
+                s.phase().isFinished()
+                    ? Mono.empty()
+                    : status(processId).delaySubscription(Duration.ofSeconds(1)))
+        .distinctUntilChanged();
+  }
+
   record Status(String processId, Phase phase, long receivedResources, long sentResources) {}
 
   enum Phase {
     RUNNING,
     COMPLETED,
-    ERROR
+    ERROR;
+
+    public boolean isFinished() {
+      return this == COMPLETED || this == ERROR;
+    }
   }
 }
@@ -1,11 +1,11 @@
 package care.smith.fts.rda.impl;
 
-import static care.smith.fts.rda.services.deidentifhir.DeidentifhirUtil.generateRegistry;
-import static care.smith.fts.rda.services.deidentifhir.DeidentifhirUtil.replaceIDs;
-import static care.smith.fts.util.RetryStrategies.defaultRetryStrategy;
-
 import care.smith.fts.api.TransportBundle;
 import care.smith.fts.api.rda.Deidentificator;
+import care.smith.fts.rda.services.deidentifhir.DeidentifhirEngine;
+import care.smith.fts.util.RetryPolicy;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.micrometer.core.instrument.MeterRegistry;
 import java.time.Duration;
 import java.util.Map;
@@ -20,31 +20,45 @@ class DeidentifhirStep implements Deidentificator {
   private final WebClient httpClient;
   private final String domain;
   private final Duration dateShift; // TODO check if we have to do a second date shift in RDA
-  private final com.typesafe.config.Config deidentifhirConfig;
-  private final MeterRegistry meterRegistry;
+  private final DeidentifhirEngine deidentifhir;
+  private final RetryPolicy retryPolicy;
+
+  /* Bundles that are streamed in chunks share their transport ID map, it is resolved only once */
+  private final Cache<String, Mono<Map<String, String>>> pseudonyms =
+      CacheBuilder.newBuilder().expireAfterAccess(Duration.ofMinutes(1)).maximumSize(1000).build();
 
   public DeidentifhirStep(
       com.typesafe.config.Config config,
       WebClient httpClient,
       String domain,
       Duration dateShift,
-      MeterRegistry meterRegistry) {
+      MeterRegistry meterRegistry,
+      RetryPolicy retryPolicy) {
     this.httpClient = httpClient;
     this.domain = domain;
     this.dateShift = dateShift;
-    this.deidentifhirConfig = config;
-    this.meterRegistry = meterRegistry;
+    this.deidentifhir = new DeidentifhirEngine(config, meterRegistry);
+    this.retryPolicy = retryPolicy;
   }
 
   @Override
   public Mono<Bundle> replaceIds(TransportBundle bundle) {
-    return fetchPseudonymsForTransportIds(bundle.tIDMapName())
-        .map(
-            p ->
-                replaceIDs(deidentifhirConfig, generateRegistry(p), bundle.bundle(), meterRegistry))
+    return pseudonymsForTransportIds(bundle.tIDMapName())
+        .map(p -> deidentifhir.replaceIDs(bundle.bundle(), p))
         .doOnNext(b -> log.trace("Total bundle entries: {}", b.getEntry().size()));
   }
 
+  private Mono<Map<String, String>> pseudonymsForTransportIds(String transportIDMapName) {
+    return pseudonyms
+        .asMap()
+        .computeIfAbsent(
+            transportIDMapName,
+            name ->
+                fetchPseudonymsForTransportIds(name)
+                    .doOnError(e -> pseudonyms.invalidate(name))
+                    .cache());
+  }
+
   private Mono<Map<String, String>> fetchPseudonymsForTransportIds(String transportIDMapName) {
     return httpClient
         .post()
@@ -54,7 +68,7 @@ class DeidentifhirStep implements Deidentificator {
         .retrieve()
         .bodyToMono(Object.class)
         .map(o -> (Map<String, String>) o)
-        .retryWhen(defaultRetryStrategy(meterRegistry, "fetchPseudonymsForTransportIds"))
+        .retryWhen(retryPolicy.retry("fetchPseudonymsForTransportIds"))
         .doOnError(e -> log.error("Unable to resolve transport IDs: {}", e.getMessage()));
   }
 }
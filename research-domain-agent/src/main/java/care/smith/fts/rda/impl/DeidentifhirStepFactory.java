@@ -3,9 +3,9 @@ package care.smith.fts.rda.impl;
 import static java.util.Objects.requireNonNull;
 
 import care.smith.fts.api.rda.Deidentificator;
+import care.smith.fts.util.RetryPolicies;
 import com.typesafe.config.ConfigFactory;
 import io.micrometer.core.instrument.MeterRegistry;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.web.reactive.function.client.WebClientSsl;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -16,12 +16,17 @@ public class DeidentifhirStepFactory implements Deidentificator.Factory<Deidenti
   private final WebClient.Builder builder;
   private final WebClientSsl ssl;
   private final MeterRegistry meterRegistry;
+  private final RetryPolicies retryPolicies;
 
   public DeidentifhirStepFactory(
-      WebClient.Builder builder, WebClientSsl ssl, MeterRegistry meterRegistry) {
+      WebClient.Builder builder,
+      WebClientSsl ssl,
+      MeterRegistry meterRegistry,
+      RetryPolicies retryPolicies) {
     this.builder = builder;
     this.ssl = ssl;
     this.meterRegistry = meterRegistry;
+    this.retryPolicies = retryPolicies;
   }
 
   @Override
@@ -33,9 +38,15 @@ public class DeidentifhirStepFactory implements Deidentificator.Factory<Deidenti
   public Deidentificator create(
       Deidentificator.Config commonConfig, DeidentifhirStepConfig implConfig) {
 
-    var httpClient = implConfig.tca().server().createClient(builder, ssl);
+    var retryPolicy = retryPolicies.of(implConfig.tca().server());
+    var httpClient = implConfig.tca().server().createClient(builder, ssl, retryPolicy);
     var config = ConfigFactory.parseFile(requireNonNull(implConfig.deidentifhirConfig()));
     return new DeidentifhirStep(
-        config, httpClient, implConfig.tca().domain(), implConfig.dateShift(), meterRegistry);
+        config,
+        httpClient,
+        implConfig.tca().domain(),
+        implConfig.dateShift(),
+        meterRegistry,
+        retryPolicy);
   }
 }
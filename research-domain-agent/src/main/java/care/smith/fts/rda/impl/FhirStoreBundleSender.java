@@ -2,44 +2,99 @@ package care.smith.fts.rda.impl;
 
 import static care.smith.fts.util.FhirUtils.resourceStream;
 import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
-import static care.smith.fts.util.RetryStrategies.defaultRetryStrategy;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toSet;
 import static org.hl7.fhir.r4.model.Bundle.BundleType.TRANSACTION;
 
+import ca.uhn.fhir.context.FhirContext;
 import care.smith.fts.api.rda.BundleSender;
+import care.smith.fts.rda.impl.FhirStoreBundleSenderConfig.BatchConfig;
+import care.smith.fts.util.RetryPolicy;
 import io.micrometer.core.instrument.MeterRegistry;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.Bundle.BundleEntryComponent;
 import org.hl7.fhir.r4.model.Resource;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Slf4j
 final class FhirStoreBundleSender implements BundleSender {
   private final WebClient client;
-  private final MeterRegistry meterRegistry;
+  private final RetryPolicy retryPolicy;
+  private final FhirContext fhir;
+  private final TransactionBatcher batcher;
 
-  public FhirStoreBundleSender(WebClient client, MeterRegistry meterRegistry) {
+  public FhirStoreBundleSender(
+      WebClient client,
+      MeterRegistry meterRegistry,
+      RetryPolicy retryPolicy,
+      FhirContext fhir,
+      BatchConfig batch) {
     this.client = client;
-    this.meterRegistry = meterRegistry;
+    this.retryPolicy = retryPolicy;
+    this.fhir = fhir;
+    this.batcher =
+        batch != null ? new TransactionBatcher(batch, this::sendTransaction, meterRegistry) : null;
   }
 
   @Override
   public Mono<Result> send(Bundle bundle) {
+    if (batcher != null) {
+      var resources = resourceStream(bundle).toList();
+      var urls = resources.stream().map(FhirStoreBundleSender::putUrl).collect(toSet());
+      return Mono.fromCallable(() -> encodePutEntries(resources))
+          .flatMap(entries -> batcher.submit(entries, urls))
+          .thenReturn(new Result());
+    }
+
     log.trace("Sending bundle");
     return client
         .post()
         .uri("")
         .headers(h -> h.setContentType(APPLICATION_FHIR_JSON))
-        .bodyValue(toTransactionBundle(bundle))
+        .body(Flux.just(toTransactionBundle(bundle)), Bundle.class)
         .retrieve()
         .toBodilessEntity()
-        .retryWhen(defaultRetryStrategy(meterRegistry, "sendBundleToHds"))
+        .retryWhen(retryPolicy.retry("sendBundleToHds"))
         .doOnNext(res -> log.trace("Response received: {}", res))
         .doOnError(err -> log.debug("Error received", err))
         .map(b -> new Result());
   }
 
+  private Mono<Void> sendTransaction(byte[] transaction) {
+    return client
+        .post()
+        .uri("")
+        .headers(h -> h.setContentType(APPLICATION_FHIR_JSON))
+        .bodyValue(transaction)
+        .retrieve()
+        .toBodilessEntity()
+        .retryWhen(retryPolicy.retry("sendBundleToHds"))
+        .doOnNext(res -> log.trace("Response received: {}", res))
+        .doOnError(err -> log.debug("Error received", err))
+        .then();
+  }
+
+  private List<byte[]> encodePutEntries(List<Resource> resources) throws IOException {
+    var parser = fhir.newJsonParser();
+    var entries = new ArrayList<byte[]>(resources.size());
+    for (var resource : resources) {
+      var entry = new ByteArrayOutputStream();
+      try (var writer = new OutputStreamWriter(entry, UTF_8)) {
+        parser.encodeToWriter(createPutEntry(resource), writer);
+      }
+      entries.add(entry.toByteArray());
+    }
+    return entries;
+  }
+
   private static Bundle toTransactionBundle(Bundle bundle) {
     Bundle transactionBundle = new Bundle();
     resourceStream(bundle)
@@ -51,9 +106,11 @@ final class FhirStoreBundleSender implements BundleSender {
 
   private static BundleEntryComponent createPutEntry(Resource r) {
     var value =
-        new Bundle.BundleEntryRequestComponent()
-            .setMethod(Bundle.HTTPVerb.PUT)
-            .setUrl("%s/%s".formatted(r.getResourceType().name(), r.getIdPart()));
+        new Bundle.BundleEntryRequestComponent().setMethod(Bundle.HTTPVerb.PUT).setUrl(putUrl(r));
     return new BundleEntryComponent().setRequest(value).setResource(r);
   }
+
+  private static String putUrl(Resource r) {
+    return "%s/%s".formatted(r.getResourceType().name(), r.getIdPart());
+  }
 }
@@ -2,10 +2,36 @@ package care.smith.fts.rda.impl;
 
 import care.smith.fts.util.HttpClientConfig;
 import jakarta.validation.constraints.NotNull;
+import java.time.Duration;
 
 public record FhirStoreBundleSenderConfig(
     /* */
     @NotNull HttpClientConfig server,
 
     /* */
-    String project) {}
+    String project,
+
+    /* Merge the bundles of multiple transfer processes into one transaction, disabled if not set */
+    BatchConfig batch) {
+
+  public FhirStoreBundleSenderConfig(HttpClientConfig server, String project) {
+    this(server, project, null);
+  }
+
+  public record BatchConfig(
+      /* Maximum number of entries per transaction */
+      int maxEntries,
+
+      /* Maximum size of a transaction in bytes */
+      long maxBytes,
+
+      /* Maximum time a bundle waits for the transaction to fill up */
+      Duration maxWait) {
+
+    public BatchConfig {
+      maxEntries = maxEntries > 0 ? maxEntries : 1000;
+      maxBytes = maxBytes > 0 ? maxBytes : 16 * 1024 * 1024;
+      maxWait = maxWait != null ? maxWait : Duration.ofMillis(100);
+    }
+  }
+}
@@ -1,6 +1,8 @@
 package care.smith.fts.rda.impl;
 
+import ca.uhn.fhir.context.FhirContext;
 import care.smith.fts.api.rda.BundleSender;
+import care.smith.fts.util.RetryPolicies;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.boot.autoconfigure.web.reactive.function.client.WebClientSsl;
 import org.springframework.stereotype.Component;
@@ -13,12 +15,20 @@ public class FhirStoreBundleSenderFactory
   private final WebClient.Builder builder;
   private final WebClientSsl ssl;
   private final MeterRegistry meterRegistry;
+  private final RetryPolicies retryPolicies;
+  private final FhirContext fhir;
 
   public FhirStoreBundleSenderFactory(
-      WebClient.Builder builder, WebClientSsl ssl, MeterRegistry meterRegistry) {
+      WebClient.Builder builder,
+      WebClientSsl ssl,
+      MeterRegistry meterRegistry,
+      RetryPolicies retryPolicies,
+      FhirContext fhir) {
     this.builder = builder;
     this.ssl = ssl;
     this.meterRegistry = meterRegistry;
+    this.retryPolicies = retryPolicies;
+    this.fhir = fhir;
   }
 
   @Override
@@ -29,6 +39,12 @@ public class FhirStoreBundleSenderFactory
   @Override
   public BundleSender create(
       BundleSender.Config commonConfig, FhirStoreBundleSenderConfig implConfig) {
-    return new FhirStoreBundleSender(implConfig.server().createClient(builder, ssl), meterRegistry);
+    var retryPolicy = retryPolicies.of(implConfig.server());
+    return new FhirStoreBundleSender(
+        implConfig.server().createClient(builder, ssl, retryPolicy),
+        meterRegistry,
+        retryPolicy,
+        fhir,
+        implConfig.batch());
   }
 }
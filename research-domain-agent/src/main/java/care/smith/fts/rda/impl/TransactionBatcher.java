@@ -0,0 +1,178 @@
+package care.smith.fts.rda.impl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import care.smith.fts.rda.impl.FhirStoreBundleSenderConfig.BatchConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Merges the entries of bundles sent by multiple transfer processes into transactions. A
+ * transaction is sent once it holds {@code maxEntries} entries or {@code maxBytes} bytes, or {@code
+ * maxWait} has passed since its first bundle was added. Bundles that PUT a resource already put by
+ * the pending transaction start a new transaction, as a transaction must not contain the same
+ * resource twice.
+ *
+ * <p>If the server rejects a merged transaction with a client error, its bundles are sent as
+ * separate transactions, so each transfer process receives the result of its own data. Other errors
+ * are passed to all bundles, the transaction has already been retried and resending its bundles
+ * would multiply the retries.
+ */
+@Slf4j
+class TransactionBatcher {
+  private static final byte[] PREFIX =
+      "{\"resourceType\":\"Bundle\",\"type\":\"transaction\",\"entry\":[".getBytes(UTF_8);
+  private static final byte[] SUFFIX = "]}".getBytes(UTF_8);
+
+  private final BatchConfig config;
+  private final Function<byte[], Mono<Void>> transaction;
+  private final MeterRegistry meterRegistry;
+
+  private List<Part> parts = new ArrayList<>();
+  private Set<String> urls = new HashSet<>();
+  private int entries = 0;
+  private long bytes = 0;
+  private Disposable timer;
+
+  /**
+   * @param transaction sends a transaction bundle
+   */
+  TransactionBatcher(
+      BatchConfig config, Function<byte[], Mono<Void>> transaction, MeterRegistry meterRegistry) {
+    this.config = config;
+    this.transaction = transaction;
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * @param entries the JSON encoded transaction entries of one bundle
+   * @param urls the request URLs of the entries
+   * @return Mono that completes once the entries are stored
+   */
+  Mono<Void> submit(List<byte[]> entries, Set<String> urls) {
+    return Mono.defer(
+        () -> {
+          var part = new Part(entries, urls, size(entries), Sinks.empty());
+          add(part).forEach(this::send);
+          return part.result().asMono();
+        });
+  }
+
+  private synchronized List<List<Part>> add(Part part) {
+    var ready = new ArrayList<List<Part>>();
+    if (!parts.isEmpty()
+        && (entries + part.entries().size() > config.maxEntries()
+            || bytes + part.bytes() > config.maxBytes()
+            || !Collections.disjoint(urls, part.urls()))) {
+      ready.add(drain());
+    }
+    parts.add(part);
+    urls.addAll(part.urls());
+    entries += part.entries().size();
+    bytes += part.bytes();
+    if (entries >= config.maxEntries() || bytes >= config.maxBytes()) {
+      ready.add(drain());
+    } else if (parts.size() == 1) {
+      timer =
+          Schedulers.parallel().schedule(this::flush, config.maxWait().toMillis(), MILLISECONDS);
+    }
+    return ready;
+  }
+
+  private void flush() {
+    List<Part> batch;
+    synchronized (this) {
+      if (parts.isEmpty()) {
+        return;
+      }
+      batch = drain();
+    }
+    send(batch);
+  }
+
+  private List<Part> drain() {
+    if (timer != null) {
+      timer.dispose();
+      timer = null;
+    }
+    var batch = parts;
+    parts = new ArrayList<>();
+    urls = new HashSet<>();
+    entries = 0;
+    bytes = 0;
+    return batch;
+  }
+
+  private void send(List<Part> batch) {
+    var body = body(batch);
+    log.trace("Send transaction of {} bundles, {} bytes", batch.size(), body.length);
+    meterRegistry.summary("sendBundleToHds.batchSize").record(batch.size());
+    transaction
+        .apply(body)
+        .subscribe(
+            null,
+            e -> onError(batch, e),
+            () -> batch.forEach(part -> part.result().tryEmitEmpty()));
+  }
+
+  private void onError(List<Part> batch, Throwable e) {
+    if (batch.size() > 1 && isRejected(e)) {
+      log.debug("Transaction of {} bundles was rejected, send them separately", batch.size());
+      batch.forEach(part -> send(List.of(part)));
+    } else {
+      batch.forEach(part -> part.result().tryEmitError(e));
+    }
+  }
+
+  /* The server rejected the data of the transaction, which may be caused by a single bundle */
+  private static boolean isRejected(Throwable e) {
+    return e instanceof WebClientResponseException r
+        && r.getStatusCode().is4xxClientError()
+        && r.getStatusCode().value() != 429;
+  }
+
+  private static byte[] body(List<Part> batch) {
+    var size = PREFIX.length + SUFFIX.length;
+    for (var part : batch) {
+      size += part.bytes();
+    }
+    var body = new ByteArrayOutputStream(size);
+    body.writeBytes(PREFIX);
+    var first = true;
+    for (var part : batch) {
+      for (var entry : part.entries()) {
+        if (!first) {
+          body.write(',');
+        }
+        body.writeBytes(entry);
+        first = false;
+      }
+    }
+    body.writeBytes(SUFFIX);
+    return body.toByteArray();
+  }
+
+  private static long size(List<byte[]> entries) {
+    long size = 0;
+    for (var entry : entries) {
+      size += entry.length + 1;
+    }
+    return size;
+  }
+
+  private record Part(
+      List<byte[]> entries, Set<String> urls, long bytes, Sinks.Empty<Void> result) {}
+}
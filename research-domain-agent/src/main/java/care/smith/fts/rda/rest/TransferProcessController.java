@@ -3,20 +3,26 @@ package care.smith.fts.rda.rest;
 import static care.smith.fts.util.FhirUtils.resourceStream;
 import static care.smith.fts.util.FhirUtils.toBundle;
 import static care.smith.fts.util.HeaderTypes.X_PROGRESS;
+import static care.smith.fts.util.HeaderTypes.X_TRANSPORT_ID_MAP;
 import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON_VALUE;
+import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_NDJSON_VALUE;
 import static care.smith.fts.util.error.ErrorResponseUtil.notFound;
 import static com.google.common.base.Predicates.and;
 import static java.util.function.Predicate.not;
 import static org.springframework.http.HttpHeaders.CONTENT_LOCATION;
 import static org.springframework.http.HttpHeaders.RETRY_AFTER;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE;
 
+import ca.uhn.fhir.context.FhirContext;
 import care.smith.fts.api.TransportBundle;
 import care.smith.fts.rda.TransferProcessDefinition;
 import care.smith.fts.rda.TransferProcessRunner;
 import care.smith.fts.rda.TransferProcessRunner.Status;
 import care.smith.fts.util.error.ErrorResponseUtil;
+import care.smith.fts.util.error.TransferProcessException;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 import java.net.URI;
 import java.util.List;
 import java.util.Optional;
@@ -25,13 +31,17 @@ import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.Parameters;
 import org.hl7.fhir.r4.model.Parameters.ParametersParameterComponent;
 import org.hl7.fhir.r4.model.PrimitiveType;
+import org.hl7.fhir.r4.model.Resource;
 import org.hl7.fhir.r4.model.StringType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.ResponseEntity.BodyBuilder;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
 @Slf4j
 @RestController
@@ -39,13 +49,18 @@ import reactor.core.publisher.Mono;
 @Validated
 public class TransferProcessController {
 
+  /* Number of NDJSON resources that are deidentified together */
+  static final int NDJSON_CHUNK_SIZE = 250;
+
   private final TransferProcessRunner processRunner;
   private final List<TransferProcessDefinition> processes;
+  private final FhirContext fhir;
 
   public TransferProcessController(
-      TransferProcessRunner runner, List<TransferProcessDefinition> processes) {
+      TransferProcessRunner runner, List<TransferProcessDefinition> processes, FhirContext fhir) {
     this.processRunner = runner;
     this.processes = processes;
+    this.fhir = fhir;
   }
 
   @PostMapping(
@@ -84,6 +99,76 @@ public class TransferProcessController {
                     .build());
   }
 
+  /**
+   * Starts a process for resources that are uploaded as NDJSON. The resources are deidentified in
+   * chunks while they are uploaded and sent together, the response is sent once the upload is
+   * complete or the process stopped reading it.
+   */
+  @PostMapping(
+      value = "/{project:[\\w-]+}/patient",
+      consumes = APPLICATION_FHIR_NDJSON_VALUE,
+      produces = APPLICATION_FHIR_JSON_VALUE)
+  Mono<ResponseEntity<Object>> startNdjson(
+      @PathVariable("project") String project,
+      @RequestHeader(X_TRANSPORT_ID_MAP) @Pattern(regexp = "^[\\w-]+$") String transportIdMapName,
+      @RequestBody Flux<String> lines,
+      UriComponentsBuilder uriBuilder) {
+
+    var process = findProcess(project);
+    return process
+        .map(
+            transferProcessDefinition ->
+                startNdjsonProcess(
+                    transportIdMapName, lines, uriBuilder, transferProcessDefinition))
+        .orElseGet(
+            () ->
+                notFound(
+                    new IllegalArgumentException(
+                        "Project '%s' could not be found".formatted(project))));
+  }
+
+  private Mono<ResponseEntity<Object>> startNdjsonProcess(
+      String transportIdMapName,
+      Flux<String> lines,
+      UriComponentsBuilder uriBuilder,
+      TransferProcessDefinition transferProcessDefinition) {
+    var uploaded = Sinks.<Void>empty();
+    var parser = fhir.newJsonParser();
+    var bundles =
+        lines
+            .filter(not(String::isBlank))
+            .map(line -> (Resource) parser.parseResource(line))
+            .buffer(NDJSON_CHUNK_SIZE)
+            .map(
+                chunk ->
+                    new TransportBundle(chunk.stream().collect(toBundle()), transportIdMapName))
+            .doOnComplete(uploaded::tryEmitEmpty)
+            .doOnError(uploaded::tryEmitError)
+            .doOnCancel(
+                () ->
+                    uploaded.tryEmitError(
+                        new TransferProcessException(
+                            "Process stopped before the upload was complete")));
+
+    log.debug("Running process: {}", transferProcessDefinition);
+    var id = processRunner.start(transferProcessDefinition, bundles);
+    log.trace("projectId {}", id);
+    var jobUri = generateJobUri(uriBuilder, id);
+    return uploaded
+        .asMono()
+        .then(
+            Mono.fromSupplier(
+                () ->
+                    ResponseEntity.accepted()
+                        .headers(h -> h.add(CONTENT_LOCATION, jobUri.toString()))
+                        .build()))
+        .onErrorResume(
+            e ->
+                e instanceof TransferProcessException
+                    ? ErrorResponseUtil.internalServerError(e)
+                    : ErrorResponseUtil.badRequest(e));
+  }
+
   static TransportBundle fromPlainBundle(Bundle bundle) {
     log.trace("Converting from PlainBundle to TransportBundle");
     var bundleWithoutParameters =
@@ -126,6 +211,25 @@ public class TransferProcessController {
         .onErrorResume(ErrorResponseUtil::notFound);
   }
 
+  /**
+   * Streams the status of the process as server-sent events, named after the phase. An event is
+   * sent whenever the phase or the counters change, the stream completes once the process is
+   * finished.
+   */
+  @GetMapping(value = "/status/{processId:[\\w-]+}/events", produces = TEXT_EVENT_STREAM_VALUE)
+  Mono<ResponseEntity<Flux<ServerSentEvent<Status>>>> statusEvents(
+      @PathVariable("processId") String processId) {
+    var events = processRunner.statusUpdates(processId).map(TransferProcessController::toEvent);
+    return processRunner
+        .status(processId)
+        .map(s -> ResponseEntity.ok().body(events))
+        .onErrorResume(ErrorResponseUtil::notFound);
+  }
+
+  private static ServerSentEvent<Status> toEvent(Status s) {
+    return ServerSentEvent.builder(s).event(s.phase().name()).build();
+  }
+
   private BodyBuilder responseForStatus(Status s) {
     return switch (s.phase()) {
       case RUNNING ->
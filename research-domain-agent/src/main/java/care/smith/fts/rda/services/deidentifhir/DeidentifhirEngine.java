@@ -0,0 +1,44 @@
+package care.smith.fts.rda.services.deidentifhir;
+
+import static care.smith.fts.rda.services.deidentifhir.DeidentifhirUtil.generateRegistry;
+
+import care.smith.fts.util.deidentifhir.DeidentifhirContext;
+import care.smith.fts.util.deidentifhir.DeidentifhirContext.Providers;
+import care.smith.fts.util.deidentifhir.NamespacingReplacementProvider;
+import com.typesafe.config.Config;
+import de.ume.deidentifhir.Deidentifhir;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Map;
+import org.hl7.fhir.r4.model.Bundle;
+
+/**
+ * Replaces transport IDs with a Deidentifhir instance that is built once per configuration. The
+ * pseudonyms of a bundle are passed per invocation, so one engine can be shared by all bundles of a
+ * transfer process.
+ */
+public class DeidentifhirEngine {
+  private final DeidentifhirContext context = new DeidentifhirContext();
+  private final Deidentifhir deidentifhir;
+  private final MeterRegistry meterRegistry;
+
+  public DeidentifhirEngine(Config config, MeterRegistry meterRegistry) {
+    this.deidentifhir = Deidentifhir.apply(config, generateRegistry(context));
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * Replace all IDs contained in the provided bundle with the replacement stored in the provided
+   * transportIdToPseudonym map.
+   */
+  public Bundle replaceIDs(Bundle bundle, Map<String, String> transportIdToPseudonym) {
+    var sample = Timer.start(meterRegistry);
+    var keyCreator = NamespacingReplacementProvider.withoutNamespacing();
+    var providers =
+        Providers.of(NamespacingReplacementProvider.of(keyCreator, transportIdToPseudonym));
+    var deidentified =
+        context.withProviders(providers, () -> (Bundle) deidentifhir.deidentify(bundle));
+    sample.stop(meterRegistry.timer("replaceIDs"));
+    return deidentified;
+  }
+}
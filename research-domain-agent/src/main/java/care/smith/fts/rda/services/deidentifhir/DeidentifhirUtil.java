@@ -1,22 +1,16 @@
 package care.smith.fts.rda.services.deidentifhir;
 
-import care.smith.fts.util.deidentifhir.NamespacingReplacementProvider;
-import com.typesafe.config.Config;
-import de.ume.deidentifhir.Deidentifhir;
 import de.ume.deidentifhir.Registry;
 import de.ume.deidentifhir.util.Handlers;
+import de.ume.deidentifhir.util.IDReplacementProvider;
+import de.ume.deidentifhir.util.IdentifierValueReplacementProvider;
 import de.ume.deidentifhir.util.JavaCompat;
-import io.micrometer.core.instrument.MeterRegistry;
-import io.micrometer.core.instrument.Timer;
-import java.util.Map;
-import org.hl7.fhir.r4.model.Bundle;
 
 /** TransportID to Pseudonym */
 public interface DeidentifhirUtil {
 
-  static Registry generateRegistry(Map<String, String> transportIdToPseudonym) {
-    var keyCreator = NamespacingReplacementProvider.withoutNamespacing();
-    var replacementProvider = NamespacingReplacementProvider.of(keyCreator, transportIdToPseudonym);
+  static <P extends IDReplacementProvider & IdentifierValueReplacementProvider>
+      Registry generateRegistry(P replacementProvider) {
     Registry registry = new Registry();
     registry.addHander(
         "idReplacementHandler",
@@ -36,17 +30,4 @@ public interface DeidentifhirUtil {
             Handlers::conditionalReferencesReplacementHandler));
     return registry;
   }
-
-  /**
-   * Replace all IDs contained in the provided bundle with the replacement stored in the provided
-   * pseudonymMap.
-   */
-  static Bundle replaceIDs(
-      Config config, Registry registry, Bundle bundle, MeterRegistry meterRegistry) {
-    var sample = Timer.start(meterRegistry);
-    var deidentifhir = Deidentifhir.apply(config, registry);
-    var deidentified = (Bundle) deidentifhir.deidentify(bundle);
-    sample.stop(meterRegistry.timer("replaceIDs"));
-    return deidentified;
-  }
 }
@@ -9,10 +9,15 @@ import static reactor.test.StepVerifier.create;
 import care.smith.fts.api.TransportBundle;
 import care.smith.fts.api.rda.BundleSender;
 import care.smith.fts.rda.TransferProcessRunner.Phase;
+import care.smith.fts.rda.TransferProcessRunner.Status;
+import care.smith.fts.util.TransferProcessRetention;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.hl7.fhir.r4.model.Bundle;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
 class DefaultTransferProcessRunnerTest {
 
@@ -20,7 +25,7 @@ class DefaultTransferProcessRunnerTest {
 
   @BeforeEach
   void setUp() {
-    runner = new DefaultTransferProcessRunner();
+    runner = new DefaultTransferProcessRunner(new SimpleMeterRegistry());
   }
 
   @Test
@@ -48,4 +53,86 @@ class DefaultTransferProcessRunnerTest {
             })
         .verifyComplete();
   }
+
+  @Test
+  void runChunkedMockTestSuccessfully() throws InterruptedException {
+    TransferProcessDefinition process =
+        new TransferProcessDefinition(
+            "test", (b) -> Mono.just(b.bundle()), (b) -> just(new Result()));
+
+    String processId =
+        runner.start(
+            process,
+            Flux.range(0, 3)
+                .map(
+                    i ->
+                        new TransportBundle(
+                            new Bundle().addEntry(new Bundle().getEntryFirstRep()), "tIDMapName")));
+    sleep(500L);
+    create(runner.status(processId))
+        .assertNext(
+            r -> {
+              assertThat(r.phase()).isEqualTo(Phase.COMPLETED);
+              assertThat(r.receivedResources()).isEqualTo(3);
+              assertThat(r.sentResources()).isEqualTo(3);
+            })
+        .verifyComplete();
+  }
+
+  @Test
+  void statusUpdatesFollowProgress() {
+    TransferProcessDefinition process =
+        new TransferProcessDefinition(
+            "test", (b) -> Mono.just(b.bundle()), (b) -> just(new Result()));
+    var data = Sinks.many().unicast().<TransportBundle>onBackpressureBuffer();
+    var bundle =
+        new TransportBundle(new Bundle().addEntry(new Bundle().getEntryFirstRep()), "tIDMapName");
+
+    String processId = runner.start(process, data.asFlux());
+    create(runner.statusUpdates(processId))
+        .expectNext(new Status(processId, Phase.RUNNING, 0, 0))
+        .then(() -> data.tryEmitNext(bundle))
+        .expectNext(new Status(processId, Phase.RUNNING, 1, 0))
+        .expectNext(new Status(processId, Phase.RUNNING, 1, 1))
+        .then(data::tryEmitComplete)
+        .expectNext(new Status(processId, Phase.COMPLETED, 1, 1))
+        .verifyComplete();
+  }
+
+  @Test
+  void statusUpdatesEndWithError() throws InterruptedException {
+    TransferProcessDefinition process =
+        new TransferProcessDefinition(
+            "test",
+            (b) -> Mono.error(new IllegalStateException("replacing IDs failed")),
+            (b) -> just(new Result()));
+
+    String processId =
+        runner.start(process, Mono.just(new TransportBundle(new Bundle(), "tIDMapName")));
+    sleep(500L);
+    create(runner.statusUpdates(processId))
+        .assertNext(s -> assertThat(s.phase()).isEqualTo(Phase.ERROR))
+        .verifyComplete();
+  }
+
+  @Test
+  void finishedProcessesAreEvicted() throws InterruptedException {
+    var retention = new TransferProcessRetention();
+    retention.setMaxFinished(1);
+    runner = new DefaultTransferProcessRunner(new SimpleMeterRegistry(), retention);
+    TransferProcessDefinition process =
+        new TransferProcessDefinition(
+            "test", (b) -> Mono.just(b.bundle()), (b) -> just(new Result()));
+    var bundle =
+        new TransportBundle(new Bundle().addEntry(new Bundle().getEntryFirstRep()), "tIDMapName");
+
+    String first = runner.start(process, Mono.just(bundle));
+    String second = runner.start(process, Mono.just(bundle));
+    sleep(500L);
+
+    create(runner.status(first)).expectError(IllegalArgumentException.class).verify();
+    create(runner.status(second))
+        .expectNext(new Status(second, Phase.COMPLETED, 1, 1))
+        .verifyComplete();
+  }
 }
@@ -6,6 +6,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import care.smith.fts.api.rda.Deidentificator;
 import care.smith.fts.rda.impl.DeidentifhirStepConfig.TCAConfig;
 import care.smith.fts.util.HttpClientConfig;
+import care.smith.fts.util.RetryPolicies;
 import io.micrometer.core.instrument.MeterRegistry;
 import java.io.File;
 import org.junit.jupiter.api.BeforeEach;
@@ -24,7 +25,9 @@ class DeidentifhirStepFactoryTest {
 
   @BeforeEach
   void setUp() {
-    factory = new DeidentifhirStepFactory(WebClient.builder(), ssl, meterRegistry);
+    factory =
+        new DeidentifhirStepFactory(
+            WebClient.builder(), ssl, meterRegistry, new RetryPolicies(meterRegistry));
   }
 
   @Test
@@ -7,11 +7,13 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockserver.model.HttpRequest.request;
 import static org.mockserver.model.HttpResponse.response;
 import static org.mockserver.model.JsonBody.json;
+import static org.mockserver.verify.VerificationTimes.once;
 import static reactor.test.StepVerifier.create;
 
 import care.smith.fts.api.TransportBundle;
 import care.smith.fts.rda.services.deidentifhir.DeidentifhirUtil;
 import care.smith.fts.test.MockServerUtil;
+import care.smith.fts.util.RetryPolicies;
 import com.typesafe.config.Config;
 import io.micrometer.core.instrument.MeterRegistry;
 import java.io.IOException;
@@ -40,7 +42,12 @@ class DeidentifhirStepTest {
 
     step =
         new DeidentifhirStep(
-            config, server.createClient(WebClient.builder(), null), "domain", ofDays(14), meterRegistry);
+            config,
+            server.createClient(WebClient.builder(), null),
+            "domain",
+            ofDays(14),
+            meterRegistry,
+            new RetryPolicies(meterRegistry).of(server));
   }
 
   @AfterEach
@@ -74,6 +81,18 @@ class DeidentifhirStepTest {
     create(step.replaceIds(new TransportBundle(bundle, "tIDMapName"))).verifyComplete();
   }
 
+  @Test
+  void pseudonymsOfTransportIdMapAreFetchedOnce(MockServerClient mockServer) throws IOException {
+    var resolve = request().withMethod("POST").withPath("/api/v2/rd/resolve-pseudonyms");
+    mockServer.when(resolve).respond(response().withStatusCode(200));
+
+    var bundle = generateOnePatient("tid1", "2024", "identifierSystem");
+
+    create(step.replaceIds(new TransportBundle(bundle, "tIDMapName"))).verifyComplete();
+    create(step.replaceIds(new TransportBundle(bundle, "tIDMapName"))).verifyComplete();
+    mockServer.verify(resolve, once());
+  }
+
   @Test
   void replaceIdsSucceeds(MockServerClient mockServer) throws IOException {
     mockServer
@@ -2,7 +2,10 @@ package care.smith.fts.rda.impl;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import ca.uhn.fhir.context.FhirContext;
+import care.smith.fts.rda.impl.FhirStoreBundleSenderConfig.BatchConfig;
 import care.smith.fts.util.HttpClientConfig;
+import care.smith.fts.util.RetryPolicies;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,13 +19,16 @@ class FhirStoreBundleSenderFactoryTest {
 
   @Autowired MeterRegistry meterRegistry;
   @Autowired WebClientSsl ssl;
+  @Autowired FhirContext fhir;
 
   private final WebClient.Builder clientBuilder = WebClient.builder();
   private FhirStoreBundleSenderFactory factory;
 
   @BeforeEach
   void setUp() {
-    factory = new FhirStoreBundleSenderFactory(clientBuilder, ssl, meterRegistry);
+    factory =
+        new FhirStoreBundleSenderFactory(
+            clientBuilder, ssl, meterRegistry, new RetryPolicies(meterRegistry), fhir);
   }
 
   @Test
@@ -39,4 +45,16 @@ class FhirStoreBundleSenderFactoryTest {
                     new HttpClientConfig("http://localhost"), "example")))
         .isNotNull();
   }
+
+  @Test
+  void testCreateBatched() {
+    assertThat(
+            factory.create(
+                null,
+                new FhirStoreBundleSenderConfig(
+                    new HttpClientConfig("http://localhost"),
+                    "example",
+                    new BatchConfig(0, 0, null))))
+        .isNotNull();
+  }
 }
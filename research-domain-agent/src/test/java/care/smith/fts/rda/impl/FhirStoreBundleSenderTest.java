@@ -1,16 +1,30 @@
 package care.smith.fts.rda.impl;
 
 import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockserver.matchers.MatchType.ONLY_MATCHING_FIELDS;
 import static org.mockserver.model.HttpRequest.request;
 import static org.mockserver.model.HttpResponse.response;
+import static org.mockserver.model.JsonBody.json;
+import static org.mockserver.model.StringBody.subString;
+import static org.mockserver.verify.VerificationTimes.exactly;
+import static org.mockserver.verify.VerificationTimes.once;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
 import static org.springframework.http.HttpStatus.OK;
 import static reactor.test.StepVerifier.create;
 
+import ca.uhn.fhir.context.FhirContext;
 import care.smith.fts.api.rda.BundleSender;
+import care.smith.fts.rda.impl.FhirStoreBundleSenderConfig.BatchConfig;
 import care.smith.fts.test.MockServerUtil;
+import care.smith.fts.util.RetryConfig;
+import care.smith.fts.util.RetryPolicies;
+import care.smith.fts.util.RetryPolicy;
 import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
 import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -19,22 +33,25 @@ import org.mockserver.client.MockServerClient;
 import org.mockserver.junit.jupiter.MockServerExtension;
 import org.mockserver.model.MediaType;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.autoconfigure.web.reactive.function.client.WebClientSsl;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClient.Builder;
+import reactor.core.publisher.Flux;
 
 @SpringBootTest
 @ExtendWith(MockServerExtension.class)
 class FhirStoreBundleSenderTest {
 
   @Autowired MeterRegistry meterRegistry;
+  @Autowired FhirContext fhir;
   private WebClient client;
+  private RetryPolicy retryPolicy;
 
   @BeforeEach
   void setUp(MockServerClient mockServer, @Autowired Builder builder) {
     var server = MockServerUtil.clientConfig(mockServer);
     client = server.createClient(builder, null);
+    retryPolicy = new RetryPolicies(meterRegistry).of(server);
   }
 
   @Test
@@ -43,7 +60,7 @@ class FhirStoreBundleSenderTest {
         .when(request().withMethod("POST"))
         .respond(response().withStatusCode(BAD_REQUEST.value()));
 
-    var bundleSender = new FhirStoreBundleSender(client, meterRegistry);
+    var bundleSender = new FhirStoreBundleSender(client, meterRegistry, retryPolicy, null, null);
 
     create(bundleSender.send(new Bundle())).expectError().verify();
   }
@@ -56,11 +73,151 @@ class FhirStoreBundleSenderTest {
                 .withContentType(MediaType.parse(APPLICATION_FHIR_JSON.toString()))
                 .withMethod("POST"))
         .respond(response().withStatusCode(OK.value()));
-    var bundleSender = new FhirStoreBundleSender(client, meterRegistry);
+    var bundleSender = new FhirStoreBundleSender(client, meterRegistry, retryPolicy, null, null);
 
     create(bundleSender.send(new Bundle())).expectNext(new BundleSender.Result()).verifyComplete();
   }
 
+  @Test
+  void bundlesAreMergedIntoOneTransaction(MockServerClient mockServer) {
+    mockServer.when(request().withMethod("POST")).respond(response().withStatusCode(OK.value()));
+    var bundleSender =
+        new FhirStoreBundleSender(
+            client,
+            meterRegistry,
+            retryPolicy,
+            fhir,
+            new BatchConfig(2, 0, Duration.ofSeconds(10)));
+
+    create(Flux.just("id1", "id2").flatMap(id -> bundleSender.send(patientBundle(id))))
+        .expectNextCount(2)
+        .verifyComplete();
+
+    mockServer.verify(
+        request()
+            .withMethod("POST")
+            .withBody(
+                json(
+                    """
+                    {"resourceType": "Bundle", "type": "transaction", "entry": [
+                      {"request": {"method": "PUT", "url": "Patient/id1"}},
+                      {"request": {"method": "PUT", "url": "Patient/id2"}}]}
+                    """,
+                    ONLY_MATCHING_FIELDS)),
+        once());
+  }
+
+  @Test
+  void bundlesAreSentAfterMaxWait(MockServerClient mockServer) {
+    mockServer.when(request().withMethod("POST")).respond(response().withStatusCode(OK.value()));
+    var bundleSender =
+        new FhirStoreBundleSender(
+            client,
+            meterRegistry,
+            retryPolicy,
+            fhir,
+            new BatchConfig(100, 0, Duration.ofMillis(10)));
+
+    create(bundleSender.send(patientBundle("id1")))
+        .expectNext(new BundleSender.Result())
+        .verifyComplete();
+  }
+
+  @Test
+  void failedTransactionIsSentSeparately(MockServerClient mockServer) {
+    mockServer
+        .when(request().withMethod("POST").withBody(subString("Patient/id2")))
+        .respond(response().withStatusCode(BAD_REQUEST.value()));
+    mockServer.when(request().withMethod("POST")).respond(response().withStatusCode(OK.value()));
+    var bundleSender =
+        new FhirStoreBundleSender(
+            client,
+            meterRegistry,
+            retryPolicy,
+            fhir,
+            new BatchConfig(2, 0, Duration.ofSeconds(10)));
+
+    var results =
+        Flux.just("id1", "id2")
+            .flatMap(
+                id ->
+                    bundleSender
+                        .send(patientBundle(id))
+                        .map(r -> id + " sent")
+                        .onErrorReturn(id + " failed"));
+
+    create(results.collectList())
+        .assertNext(r -> assertThat(r).containsExactlyInAnyOrder("id1 sent", "id2 failed"))
+        .verifyComplete();
+  }
+
+  @Test
+  void failedMergedTransactionIsNotResentAfterRetries(MockServerClient mockServer) {
+    mockServer
+        .when(request().withMethod("POST"))
+        .respond(response().withStatusCode(INTERNAL_SERVER_ERROR.value()));
+    var retryPolicy =
+        new RetryPolicy(
+            "http://localhost",
+            new RetryConfig(1, Duration.ofMillis(10), null, null, null, null),
+            meterRegistry);
+    var bundleSender =
+        new FhirStoreBundleSender(
+            client,
+            meterRegistry,
+            retryPolicy,
+            fhir,
+            new BatchConfig(2, 0, Duration.ofSeconds(10)));
+
+    var results =
+        Flux.just("id1", "id2")
+            .flatMap(
+                id ->
+                    bundleSender
+                        .send(patientBundle(id))
+                        .map(r -> id + " sent")
+                        .onErrorReturn(id + " failed"));
+
+    create(results.collectList())
+        .assertNext(r -> assertThat(r).containsExactlyInAnyOrder("id1 failed", "id2 failed"))
+        .verifyComplete();
+    mockServer.verify(request().withMethod("POST"), exactly(2));
+  }
+
+  @Test
+  void bundlesWithSamePutUrlAreSentSeparately(MockServerClient mockServer) {
+    mockServer.when(request().withMethod("POST")).respond(response().withStatusCode(OK.value()));
+    var bundleSender =
+        new FhirStoreBundleSender(
+            client,
+            meterRegistry,
+            retryPolicy,
+            fhir,
+            new BatchConfig(2, 0, Duration.ofMillis(100)));
+
+    create(Flux.just("id1", "id1").flatMap(id -> bundleSender.send(patientBundle(id))))
+        .expectNextCount(2)
+        .verifyComplete();
+
+    mockServer.verify(
+        request()
+            .withMethod("POST")
+            .withBody(
+                json(
+                    """
+                    {"resourceType": "Bundle", "type": "transaction", "entry": [
+                      {"request": {"method": "PUT", "url": "Patient/id1"}}]}
+                    """,
+                    ONLY_MATCHING_FIELDS)),
+        exactly(2));
+  }
+
+  private static Bundle patientBundle(String id) {
+    var bundle = new Bundle();
+    bundle.addEntry().setResource(new Patient().setId(id));
+    return bundle;
+  }
+
   @AfterEach
   void tearDown(MockServerClient mockServer) {
     mockServer.reset();
@@ -11,11 +11,17 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.springframework.http.HttpHeaders.RETRY_AFTER;
 import static reactor.test.StepVerifier.create;
 
+import ca.uhn.fhir.context.FhirContext;
 import care.smith.fts.api.TransportBundle;
+import care.smith.fts.api.rda.BundleSender;
+import care.smith.fts.rda.DefaultTransferProcessRunner;
 import care.smith.fts.rda.TransferProcessDefinition;
 import care.smith.fts.rda.TransferProcessRunner;
 import care.smith.fts.rda.TransferProcessRunner.Phase;
 import care.smith.fts.rda.TransferProcessRunner.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Stream;
 import org.hl7.fhir.r4.model.*;
 import org.junit.jupiter.api.BeforeEach;
@@ -24,6 +30,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 class TransferProcessControllerTest {
@@ -49,7 +56,8 @@ class TransferProcessControllerTest {
                 }
               }
             },
-            of(mockTransferProcess()));
+            of(mockTransferProcess()),
+            FhirContext.forR4());
   }
 
   @Test
@@ -93,6 +101,153 @@ class TransferProcessControllerTest {
         .verifyComplete();
   }
 
+  @Test
+  void startNdjsonStreamsChunks() {
+    List<TransportBundle> received = new ArrayList<>();
+    var ndjsonApi =
+        new TransferProcessController(
+            new TransferProcessRunner() {
+              @Override
+              public String start(TransferProcessDefinition process, Mono<TransportBundle> data) {
+                return "processId";
+              }
+
+              @Override
+              public String start(TransferProcessDefinition process, Flux<TransportBundle> data) {
+                data.subscribe(received::add);
+                return "processId";
+              }
+
+              @Override
+              public Mono<Status> status(String processId) {
+                return Mono.empty();
+              }
+            },
+            of(mockTransferProcess()),
+            FhirContext.forR4());
+    var lines =
+        Flux.range(0, TransferProcessController.NDJSON_CHUNK_SIZE + 1)
+            .map(i -> "{\"resourceType\":\"Observation\",\"id\":\"obs-%d\"}".formatted(i));
+
+    create(
+            ndjsonApi.startNdjson(
+                "example",
+                "tIDMapName",
+                lines,
+                UriComponentsBuilder.fromUriString("http://localhost:1234")))
+        .assertNext(r -> assertThat(r.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED))
+        .verifyComplete();
+    assertThat(received).hasSize(2);
+    assertThat(received)
+        .allSatisfy(b -> assertThat(b.tIDMapName()).isEqualTo("tIDMapName"))
+        .extracting(b -> b.bundle().getEntry().size())
+        .containsExactly(TransferProcessController.NDJSON_CHUNK_SIZE, 1);
+  }
+
+  @Test
+  void startNdjsonWithInvalidLineErrors() {
+    var ndjsonApi =
+        new TransferProcessController(
+            new TransferProcessRunner() {
+              @Override
+              public String start(TransferProcessDefinition process, Mono<TransportBundle> data) {
+                data.subscribe(b -> {}, e -> {});
+                return "processId";
+              }
+
+              @Override
+              public Mono<Status> status(String processId) {
+                return Mono.empty();
+              }
+            },
+            of(mockTransferProcess()),
+            FhirContext.forR4());
+
+    create(
+            ndjsonApi.startNdjson(
+                "example",
+                "tIDMapName",
+                Flux.just("not json"),
+                UriComponentsBuilder.fromUriString("http://localhost:1234")))
+        .assertNext(r -> assertThat(r.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST))
+        .verifyComplete();
+  }
+
+  @Test
+  void startNdjsonRespondsWhenProcessStopsReading() {
+    var ndjsonApi =
+        new TransferProcessController(
+            new TransferProcessRunner() {
+              @Override
+              public String start(TransferProcessDefinition process, Mono<TransportBundle> data) {
+                return "processId";
+              }
+
+              @Override
+              public String start(TransferProcessDefinition process, Flux<TransportBundle> data) {
+                data.take(1).subscribe();
+                return "processId";
+              }
+
+              @Override
+              public Mono<Status> status(String processId) {
+                return Mono.empty();
+              }
+            },
+            of(mockTransferProcess()),
+            FhirContext.forR4());
+    var lines =
+        Flux.range(0, 2 * TransferProcessController.NDJSON_CHUNK_SIZE + 1)
+            .map(i -> "{\"resourceType\":\"Observation\",\"id\":\"obs-%d\"}".formatted(i));
+
+    create(
+            ndjsonApi.startNdjson(
+                "example",
+                "tIDMapName",
+                lines,
+                UriComponentsBuilder.fromUriString("http://localhost:1234")))
+        .assertNext(r -> assertThat(r.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR))
+        .verifyComplete();
+  }
+
+  @Test
+  void startNdjsonSendsPatientInOneTransaction() {
+    List<Bundle> sent = new ArrayList<>();
+    var ndjsonApi =
+        new TransferProcessController(
+            new DefaultTransferProcessRunner(new SimpleMeterRegistry()),
+            of(
+                new TransferProcessDefinition(
+                    "example",
+                    (b) -> Mono.just(b.bundle()),
+                    (b) -> {
+                      sent.add(b);
+                      return Mono.just(new BundleSender.Result());
+                    })),
+            FhirContext.forR4());
+    var observations =
+        Flux.range(0, TransferProcessController.NDJSON_CHUNK_SIZE)
+            .map(
+                i ->
+                    "{\"resourceType\":\"Observation\",\"id\":\"obs-%d\",\"subject\":{\"reference\":\"Patient/patient-1\"}}"
+                        .formatted(i));
+    var lines =
+        Flux.just("{\"resourceType\":\"Patient\",\"id\":\"patient-1\"}").concatWith(observations);
+
+    create(
+            ndjsonApi.startNdjson(
+                "example",
+                "tIDMapName",
+                lines,
+                UriComponentsBuilder.fromUriString("http://localhost:1234")))
+        .assertNext(r -> assertThat(r.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED))
+        .verifyComplete();
+    assertThat(sent).hasSize(1);
+    assertThat(resourceStream(sent.getFirst()).map(r -> r.getIdElement().getValue()))
+        .hasSize(TransferProcessController.NDJSON_CHUNK_SIZE + 1)
+        .contains("Patient/patient-1", "Observation/obs-0", "Observation/obs-249");
+  }
+
   @Test
   void minimalTransportBundleConversionSucceeds() {
     Bundle bundle =
@@ -166,4 +321,23 @@ class TransferProcessControllerTest {
                 .body(new Status("processId", Phase.RUNNING, 0, 0)))
         .verifyComplete();
   }
+
+  @Test
+  void statusEventsAreNamedAfterPhase() {
+    var events = api.statusEvents("processId").flatMapMany(ResponseEntity::getBody).take(1);
+    create(events)
+        .assertNext(
+            e -> {
+              assertThat(e.event()).isEqualTo("RUNNING");
+              assertThat(e.data()).isEqualTo(new Status("processId", Phase.RUNNING, 0, 0));
+            })
+        .verifyComplete();
+  }
+
+  @Test
+  void statusEventsOfUnknownProcessAreNotFound() {
+    create(api.statusEvents("unknown"))
+        .assertNext(r -> assertThat(r.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND))
+        .verifyComplete();
+  }
 }
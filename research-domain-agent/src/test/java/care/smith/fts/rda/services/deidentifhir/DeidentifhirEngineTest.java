@@ -0,0 +1,48 @@
+package care.smith.fts.rda.services.deidentifhir;
+
+import static care.smith.fts.test.TestPatientGenerator.generateOnePatient;
+import static com.typesafe.config.ConfigFactory.parseResources;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.util.Map;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest
+class DeidentifhirEngineTest {
+
+  @Autowired MeterRegistry meterRegistry;
+
+  private DeidentifhirEngine engine;
+
+  @BeforeEach
+  void setUp() {
+    var config = parseResources(DeidentifhirEngineTest.class, "TransportToRD.profile");
+    engine = new DeidentifhirEngine(config, meterRegistry);
+  }
+
+  @Test
+  void replaceIDsOfSeveralBundles() throws IOException {
+    assertReplaced("tid1", "pid1");
+    assertReplaced("tid2", "pid2");
+  }
+
+  private void assertReplaced(String transportId, String pseudonym) throws IOException {
+    var transportBundle = generateOnePatient(transportId, "2023", "identifierSystem1");
+
+    var pseudonymized = engine.replaceIDs(transportBundle, Map.of(transportId, pseudonym));
+
+    Bundle b = (Bundle) pseudonymized.getEntryFirstRep().getResource();
+    Patient p = (Patient) b.getEntryFirstRep().getResource();
+    assertThat(pseudonymized.getEntry()).hasSize(1);
+    assertThat(b.getEntry()).hasSize(1);
+    assertThat(p.getId()).isEqualTo("Patient/" + pseudonym);
+    assertThat(p.getIdentifierFirstRep().getValue()).isEqualTo(pseudonym);
+  }
+}
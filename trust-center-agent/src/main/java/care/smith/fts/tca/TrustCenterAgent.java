@@ -3,11 +3,15 @@ package care.smith.fts.tca;
 import static java.time.Duration.ofSeconds;
 
 import ca.uhn.fhir.context.FhirContext;
+import care.smith.fts.util.AdaptiveConcurrencyConfig;
 import care.smith.fts.util.CustomErrorHandler;
 import care.smith.fts.util.FhirCodecConfiguration;
 import care.smith.fts.util.MetricsConfig;
+import care.smith.fts.util.RateLimitConfig;
+import care.smith.fts.util.RetryPolicies;
 import care.smith.fts.util.WebClientDefaults;
 import care.smith.fts.util.auth.HttpServerAuthConfig;
+import care.smith.fts.util.compression.CompressionConfig;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import java.net.http.HttpClient;
@@ -28,6 +32,10 @@ import org.springframework.context.annotation.Primary;
   MetricsConfig.class,
   HttpServerAuthConfig.class,
   CustomErrorHandler.class,
+  CompressionConfig.class,
+  AdaptiveConcurrencyConfig.class,
+  RateLimitConfig.class,
+  RetryPolicies.class,
 })
 public class TrustCenterAgent {
 
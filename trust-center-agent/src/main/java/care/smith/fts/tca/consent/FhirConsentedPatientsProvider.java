@@ -2,17 +2,19 @@ package care.smith.fts.tca.consent;
 
 import static care.smith.fts.tca.consent.GicsFhirUtil.filterOuterBundle;
 import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
-import static care.smith.fts.util.RetryStrategies.defaultRetryStrategy;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 
+import care.smith.fts.util.FhirDecoder;
+import care.smith.fts.util.FhirUtils;
+import care.smith.fts.util.RetryPolicy;
 import care.smith.fts.util.error.UnknownDomainException;
 import care.smith.fts.util.tca.ConsentFetchAllRequest;
 import care.smith.fts.util.tca.ConsentFetchRequest;
 import care.smith.fts.util.tca.ConsentRequest;
-import io.micrometer.core.instrument.MeterRegistry;
 import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.r4.model.*;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -23,17 +25,21 @@ import reactor.core.publisher.Mono;
 @Slf4j
 public class FhirConsentedPatientsProvider implements ConsentedPatientsProvider {
   private final WebClient client;
-  private final MeterRegistry meterRegistry;
+  private final RetryPolicy retryPolicy;
+  private final FhirDecoder decoder;
 
   /**
    * Constructs a FhirConsentProvider with the specified parameters.
    *
    * @param client the WebClient used for HTTP requests
+   * @param retryPolicy the retries of the requests to gICS
+   * @param decoder decodes the responses of gICS entry by entry
    */
   public FhirConsentedPatientsProvider(
-      WebClient client,  MeterRegistry meterRegistry) {
+      WebClient client, RetryPolicy retryPolicy, FhirDecoder decoder) {
     this.client = client;
-    this.meterRegistry = meterRegistry;
+    this.retryPolicy = retryPolicy;
+    this.decoder = decoder;
   }
 
   @Override
@@ -79,11 +85,15 @@ public class FhirConsentedPatientsProvider implements ConsentedPatientsProvider
         .retrieve()
         .onStatus(
             r -> r.equals(HttpStatus.NOT_FOUND), FhirConsentedPatientsProvider::handleGicsNotFound)
-        .bodyToMono(Bundle.class)
+        // each consent bundle is filtered as soon as it is decoded, so only the consented patients
+        // of a page are held in memory, not the whole page
+        .bodyToFlux(DataBuffer.class)
+        .transform(decoder::decodeEntries)
+        .map(outerBundle -> filterOuterBundle(req.policySystem(), req.policies(), outerBundle))
+        .reduce(FhirUtils::mergeEntries)
         .doOnNext(b -> log.trace("body(n: {})", b.getEntry().size()))
-        .retryWhen(defaultRetryStrategy(meterRegistry, helper.requestName()))
+        .retryWhen(retryPolicy.retry(helper.requestName()))
         .doOnError(b -> log.error("Unable to fetch consent from gICS", b))
-        .map(outerBundle -> filterOuterBundle(req.policySystem(), req.policies(), outerBundle))
         .map(bundle -> helper.processResponse(bundle, req, requestUrl, paging));
   }
 
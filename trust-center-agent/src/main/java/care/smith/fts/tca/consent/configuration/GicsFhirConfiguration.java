@@ -1,9 +1,11 @@
 package care.smith.fts.tca.consent.configuration;
 
 import care.smith.fts.tca.consent.FhirConsentedPatientsProvider;
+import care.smith.fts.util.FhirDecoder;
 import care.smith.fts.util.HttpClientConfig;
+import care.smith.fts.util.RetryConfig;
+import care.smith.fts.util.RetryPolicies;
 import care.smith.fts.util.auth.HttpClientAuthMethod;
-import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
@@ -21,6 +23,7 @@ public class GicsFhirConfiguration {
   @NotBlank String baseUrl;
   int defaultPageSize = 50;
   @NotNull HttpClientAuthMethod.AuthMethod auth;
+  @NotNull RetryConfig retry = new RetryConfig();
 
   @Bean
   int defaultPageSize() {
@@ -29,15 +32,16 @@ public class GicsFhirConfiguration {
 
   @Bean("gicsFhirHttpClient")
   public WebClient httpClient(WebClient.Builder builder, WebClientSsl ssl) {
-    HttpClientConfig httpClientConfig = new HttpClientConfig(baseUrl, auth);
+    HttpClientConfig httpClientConfig = new HttpClientConfig(baseUrl, auth, null, retry);
     return httpClientConfig.createClient(builder, ssl);
   }
 
   @Bean
   FhirConsentedPatientsProvider fhirConsentedPatientsProvider(
-      Builder builder, MeterRegistry meterRegistry, WebClientSsl ssl) {
-    HttpClientConfig httpClientConfig = new HttpClientConfig(baseUrl, auth);
-    var client = httpClientConfig.createClient(builder, ssl);
-    return new FhirConsentedPatientsProvider(client, meterRegistry);
+      Builder builder, RetryPolicies retryPolicies, WebClientSsl ssl, FhirDecoder decoder) {
+    HttpClientConfig httpClientConfig = new HttpClientConfig(baseUrl, auth, null, retry);
+    var retryPolicy = retryPolicies.of(httpClientConfig);
+    var client = httpClientConfig.createClient(builder, ssl, retryPolicy);
+    return new FhirConsentedPatientsProvider(client, retryPolicy, decoder);
   }
 }
@@ -1,13 +1,16 @@
 package care.smith.fts.tca.deidentification;
 
 import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
-import static care.smith.fts.util.RetryStrategies.defaultRetryStrategy;
+import static java.util.stream.Collectors.flatMapping;
+import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 
 import care.smith.fts.tca.deidentification.configuration.PseudonymizationConfiguration;
+import care.smith.fts.util.RetryPolicy;
 import care.smith.fts.util.error.UnknownDomainException;
+import care.smith.fts.util.tca.PseudonymizeRequest;
 import com.google.common.hash.Hashing;
-import io.micrometer.core.instrument.MeterRegistry;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.*;
@@ -23,6 +26,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.util.function.Tuple2;
 import reactor.util.function.Tuples;
@@ -37,19 +41,22 @@ public class FhirPseudonymProvider implements PseudonymProvider {
   private final PseudonymizationConfiguration configuration;
   private final RedissonClient redisClient;
   private final RandomGenerator randomGenerator;
-  private final MeterRegistry meterRegistry;
+  private final RetryPolicy retryPolicy;
+  private final PseudonymCache pseudonymCache;
 
   public FhirPseudonymProvider(
       @Qualifier("gpasFhirHttpClient") WebClient httpClient,
       RedissonClient redisClient,
       PseudonymizationConfiguration configuration,
       RandomGenerator randomGenerator,
-      MeterRegistry meterRegistry) {
+      @Qualifier("gpasFhirRetryPolicy") RetryPolicy retryPolicy,
+      PseudonymCache pseudonymCache) {
     this.httpClient = httpClient;
     this.configuration = configuration;
     this.redisClient = redisClient;
     this.randomGenerator = randomGenerator;
-    this.meterRegistry = meterRegistry;
+    this.retryPolicy = retryPolicy;
+    this.pseudonymCache = pseudonymCache;
   }
 
   /**
@@ -71,28 +78,90 @@ public class FhirPseudonymProvider implements PseudonymProvider {
     return rMap.expire(Duration.ofSeconds(configuration.getTransportIdTTLinSeconds()))
         .flatMap(ignore -> fetchOrCreatePseudonyms(domain, Set.of(patientId, saltKey)))
         .flatMap(
-            originalToSecureIDMapping -> {
-              var sha256 = Hashing.sha256();
-              var salt = originalToSecureIDMapping.get(saltKey);
-              var transportToSecureIDMapping =
-                  originalToTransportIDMapping.entrySet().stream()
-                      .collect(
-                          toMap(
-                              Entry::getValue,
-                              entry ->
-                                  sha256
-                                      .hashString(salt + entry.getKey(), StandardCharsets.UTF_8)
-                                      .toString()));
-              replacePatientIdMapping(
-                  patientId,
-                  originalToSecureIDMapping,
-                  transportToSecureIDMapping,
-                  originalToTransportIDMapping);
-              return rMap.putAll(transportToSecureIDMapping);
-            })
+            originalToSecureIDMapping ->
+                rMap.putAll(
+                    transportToSecureIDMapping(
+                        patientId, originalToSecureIDMapping, originalToTransportIDMapping)))
         .then(Mono.fromCallable(() -> Tuples.of(tIDMapName, originalToTransportIDMapping)));
   }
 
+  @Override
+  public Mono<List<Tuple2<String, Map<String, String>>>> retrieveTransportIds(
+      List<PseudonymizeRequest> requests) {
+    log.trace("retrieveTransportIds for {} patients", requests.size());
+    var transportIds =
+        requests.stream()
+            .map(
+                r ->
+                    Tuples.of(
+                        generateTID(),
+                        r.ids().stream().collect(toMap(id -> id, id -> generateTID()))))
+            .toList();
+    var originalsByDomain =
+        requests.stream()
+            .collect(
+                groupingBy(
+                    PseudonymizeRequest::domain,
+                    flatMapping(r -> Stream.of(r.patientId(), "Salt_" + r.patientId()), toSet())));
+
+    return Flux.fromIterable(originalsByDomain.entrySet())
+        .flatMap(
+            e ->
+                fetchOrCreatePseudonyms(e.getKey(), e.getValue())
+                    .map(secureIds -> Tuples.of(e.getKey(), secureIds)))
+        .collectMap(Tuple2::getT1, Tuple2::getT2)
+        .flatMap(secureIdsByDomain -> storeTransportIds(requests, transportIds, secureIdsByDomain))
+        .thenReturn(transportIds);
+  }
+
+  private Mono<Void> storeTransportIds(
+      List<PseudonymizeRequest> requests,
+      List<Tuple2<String, Map<String, String>>> transportIds,
+      Map<String, Map<String, String>> secureIdsByDomain) {
+    var batch = redisClient.reactive().createBatch();
+    var ttl = Duration.ofSeconds(configuration.getTransportIdTTLinSeconds());
+    for (int i = 0; i < requests.size(); i++) {
+      var request = requests.get(i);
+      var mapping =
+          transportToSecureIDMapping(
+              request.patientId(),
+              secureIdsByDomain.get(request.domain()),
+              transportIds.get(i).getT2());
+      if (!mapping.isEmpty()) {
+        var rMap = batch.getMapCache(transportIds.get(i).getT1());
+        rMap.putAll(mapping);
+        rMap.expire(ttl);
+      }
+    }
+    return batch
+        .execute()
+        .doOnError(e -> log.error("Unable to store transport ids: {}", e.getMessage()))
+        .then();
+  }
+
+  private static Map<String, String> transportToSecureIDMapping(
+      String patientId,
+      Map<String, String> originalToSecureIDMapping,
+      Map<String, String> originalToTransportIDMapping) {
+    var sha256 = Hashing.sha256();
+    var salt = originalToSecureIDMapping.get("Salt_" + patientId);
+    var transportToSecureIDMapping =
+        originalToTransportIDMapping.entrySet().stream()
+            .collect(
+                toMap(
+                    Entry::getValue,
+                    entry ->
+                        sha256
+                            .hashString(salt + entry.getKey(), StandardCharsets.UTF_8)
+                            .toString()));
+    replacePatientIdMapping(
+        patientId,
+        originalToSecureIDMapping,
+        transportToSecureIDMapping,
+        originalToTransportIDMapping);
+    return transportToSecureIDMapping;
+  }
+
   /**
    * With this function we make sure that the patient's ID in the RDA is the pseudomized ID. This
    * ensures that we can de-pseudomize patients.
@@ -119,9 +188,13 @@ public class FhirPseudonymProvider implements PseudonymProvider {
   }
 
   /**
-   * @return Flux of (id, pid) tuples
+   * @return Map of (id, pid) pairs, only ids missing in the cache are fetched from gPAS
    */
   private Mono<Map<String, String>> fetchOrCreatePseudonyms(String domain, Set<String> ids) {
+    return pseudonymCache.getAll(domain, ids, this::fetchOrCreatePseudonymsOnGpas);
+  }
+
+  private Mono<Map<String, String>> fetchOrCreatePseudonymsOnGpas(String domain, Set<String> ids) {
     var idParams =
         Stream.concat(
             Stream.of(Map.of("name", "target", "valueString", domain)),
@@ -140,7 +213,7 @@ public class FhirPseudonymProvider implements PseudonymProvider {
         .onStatus(
             r1 -> r1.equals(HttpStatus.BAD_REQUEST), FhirPseudonymProvider::handleGpasBadRequest)
         .bodyToMono(GpasParameterResponse.class)
-        .retryWhen(defaultRetryStrategy(meterRegistry, "fetchOrCreatePseudonymsOnGpas"))
+        .retryWhen(retryPolicy.retry("fetchOrCreatePseudonymsOnGpas"))
         .doOnError(e -> log.error("Unable to fetch pseudonym from gPAS: {}", e.getMessage()))
         .doOnNext(r -> log.trace("$pseudonymize response: {} parameters", r.parameter().size()))
         .map(GpasParameterResponse::getMappedID);
@@ -169,6 +242,6 @@ public class FhirPseudonymProvider implements PseudonymProvider {
             m ->
                 m.entrySet().stream()
                     .collect(toMap(e -> (String) e.getKey(), e -> (String) e.getValue())))
-        .retryWhen(defaultRetryStrategy(meterRegistry, "fetchPseudonymizedIds"));
+        .retryWhen(retryPolicy.retry("fetchPseudonymizedIds"));
   }
 }
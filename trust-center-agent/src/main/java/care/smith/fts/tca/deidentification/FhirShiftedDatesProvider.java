@@ -4,6 +4,9 @@ import static java.lang.Long.parseLong;
 import static java.time.Duration.ofMillis;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RedissonClient;
@@ -40,6 +43,35 @@ public class FhirShiftedDatesProvider implements ShiftedDatesProvider {
                     .map(shift -> ofMillis(parseLong(shift))));
   }
 
+  /** Sets and reads all date shifts in a single redis batch, in the same order as for one id. */
+  @Override
+  public Mono<Map<String, Duration>> generateDateShifts(Map<String, Duration> dateShiftByIds) {
+    if (dateShiftByIds.isEmpty()) {
+      return Mono.just(Map.of());
+    }
+    var batch = redisClient.reactive().createBatch();
+    var ids = new ArrayList<>(dateShiftByIds.keySet());
+    for (var id : ids) {
+      var bucket = batch.<String>getBucket(withPrefix(id));
+      bucket.setIfAbsent(String.valueOf(getRandomDateShift(dateShiftByIds.get(id))));
+      bucket.get();
+    }
+    return batch
+        .execute()
+        .doOnError(e -> log.error("Unable to set date shifts: {}", e.getMessage()))
+        .doOnNext(ignore -> log.trace("generateDateShifts for {} ids", ids.size()))
+        .map(
+            result -> {
+              var responses = result.getResponses();
+              var shifts = new HashMap<String, Duration>();
+              for (int i = 0; i < ids.size(); i++) {
+                var shift = (String) responses.get(2 * i + 1);
+                shifts.put(ids.get(i), ofMillis(parseLong(shift)));
+              }
+              return shifts;
+            });
+  }
+
   private static String withPrefix(String id) {
     return "%s:%s".formatted(SHIFTED_DATE_PREFIX, id);
   }
@@ -0,0 +1,151 @@
+package care.smith.fts.tca.deidentification;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toSet;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RMapCacheReactive;
+import org.redisson.api.RedissonClient;
+import reactor.core.publisher.Mono;
+
+/**
+ * Caches secure IDs (pseudonyms) by domain and original. Lookups check a bounded local cache first,
+ * then the optional redis backed second level, and only the remaining originals are loaded, i.e.
+ * fetched from gPAS.
+ */
+@Slf4j
+public class PseudonymCache {
+  private static final String CACHE_NAME = "pseudonyms";
+
+  private final Cache<Key, String> local;
+  private final RedissonClient redisClient;
+  private final Duration ttl;
+  private final Counter redisHits;
+  private final Counter redisMisses;
+
+  /**
+   * @param redisClient used as second level cache, may be {@code null} to disable the second level
+   */
+  public PseudonymCache(
+      long maxSize, Duration ttl, RedissonClient redisClient, MeterRegistry meterRegistry) {
+    this.local =
+        CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).recordStats().build();
+    this.redisClient = redisClient;
+    this.ttl = ttl;
+    GuavaCacheMetrics.monitor(meterRegistry, local, CACHE_NAME);
+    this.redisHits = redisCounter(meterRegistry, "hit");
+    this.redisMisses = redisCounter(meterRegistry, "miss");
+  }
+
+  private static Counter redisCounter(MeterRegistry meterRegistry, String result) {
+    return Counter.builder("cache.gets")
+        .tag("cache", CACHE_NAME + ".redis")
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+
+  /**
+   * Looks up the secure IDs of all originals in the given domain.
+   *
+   * @param loader fetches the secure IDs of the originals missing in both cache levels
+   * @return Map<Original, SecureID>
+   */
+  public Mono<Map<String, String>> getAll(
+      String domain,
+      Set<String> originals,
+      BiFunction<String, Set<String>, Mono<Map<String, String>>> loader) {
+    var cached = new HashMap<String, String>();
+    for (var original : originals) {
+      var secureId = local.getIfPresent(new Key(domain, original));
+      if (secureId != null) {
+        cached.put(original, secureId);
+      }
+    }
+    if (cached.size() == originals.size()) {
+      return Mono.just(cached);
+    }
+
+    var misses = missing(originals, cached);
+    log.trace("{} of {} pseudonyms not cached locally", misses.size(), originals.size());
+    return getAllFromRedis(domain, misses)
+        .flatMap(
+            fromRedis -> {
+              putAllLocal(domain, fromRedis);
+              var remaining = missing(misses, fromRedis);
+              return remaining.isEmpty()
+                  ? Mono.just(fromRedis)
+                  : loader
+                      .apply(domain, remaining)
+                      .flatMap(loaded -> putAllRedis(domain, loaded).thenReturn(loaded))
+                      .doOnNext(loaded -> putAllLocal(domain, loaded))
+                      .map(loaded -> merge(fromRedis, loaded));
+            })
+        .map(found -> merge(cached, found));
+  }
+
+  private Mono<Map<String, String>> getAllFromRedis(String domain, Set<String> originals) {
+    if (redisClient == null) {
+      return Mono.just(Map.of());
+    }
+    return redisMap(domain)
+        .getAll(originals)
+        .doOnNext(
+            found -> {
+              redisHits.increment(found.size());
+              redisMisses.increment(originals.size() - found.size());
+            })
+        .onErrorResume(
+            e -> {
+              log.warn("Unable to read pseudonyms from cache: {}", e.getMessage());
+              return Mono.just(Map.of());
+            });
+  }
+
+  private Mono<Void> putAllRedis(String domain, Map<String, String> secureIds) {
+    if (redisClient == null || secureIds.isEmpty()) {
+      return Mono.empty();
+    }
+    return redisMap(domain)
+        .putAll(secureIds, ttl.toMillis(), MILLISECONDS)
+        .onErrorResume(
+            e -> {
+              log.warn("Unable to write pseudonyms to cache: {}", e.getMessage());
+              return Mono.empty();
+            });
+  }
+
+  private RMapCacheReactive<String, String> redisMap(String domain) {
+    return redisClient.reactive().getMapCache(CACHE_NAME + ":" + domain);
+  }
+
+  private void putAllLocal(String domain, Map<String, String> secureIds) {
+    secureIds.forEach((original, secureId) -> local.put(new Key(domain, original), secureId));
+  }
+
+  private static Set<String> missing(Set<String> originals, Map<String, String> found) {
+    return originals.stream().filter(o -> !found.containsKey(o)).collect(toSet());
+  }
+
+  private static Map<String, String> merge(Map<String, String> a, Map<String, String> b) {
+    var merged = new HashMap<>(a);
+    merged.putAll(b);
+    return merged;
+  }
+
+  long localSize() {
+    local.cleanUp();
+    return local.size();
+  }
+
+  private record Key(String domain, String original) {}
+}
@@ -1,5 +1,7 @@
 package care.smith.fts.tca.deidentification;
 
+import care.smith.fts.util.tca.PseudonymizeRequest;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import reactor.core.publisher.Mono;
@@ -15,6 +17,17 @@ public interface PseudonymProvider {
   Mono<Tuple2<String, Map<String, String>>> retrieveTransportIds(
       String patientId, Set<String> ids, String domain);
 
+  /**
+   * Batch variant of {@link #retrieveTransportIds(String, Set, String)}, that fetches the secure
+   * ids of all patients with one gPAS request per domain and stores the transport id maps in a
+   * single redis batch.
+   *
+   * @param requests the requests to retrieve transport ids for
+   * @return the tIDMapName and original to transport id mapping of each request, in request order
+   */
+  Mono<List<Tuple2<String, Map<String, String>>>> retrieveTransportIds(
+      List<PseudonymizeRequest> requests);
+
   /**
    * Retrieves the mapping of <code>transportId</code> to <code>secureId</code> using the mappings
    * name.
@@ -1,8 +1,17 @@
 package care.smith.fts.tca.deidentification;
 
 import java.time.Duration;
+import java.util.Map;
 import reactor.core.publisher.Mono;
 
 public interface ShiftedDatesProvider {
   Mono<Duration> generateDateShift(String id, Duration dateShiftBy);
+
+  /**
+   * Batch variant of {@link #generateDateShift(String, Duration)}.
+   *
+   * @param dateShiftByIds maximum date shift by id
+   * @return the date shift by id
+   */
+  Mono<Map<String, Duration>> generateDateShifts(Map<String, Duration> dateShiftByIds);
 }
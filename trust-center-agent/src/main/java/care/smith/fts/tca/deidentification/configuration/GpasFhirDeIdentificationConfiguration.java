@@ -1,6 +1,9 @@
 package care.smith.fts.tca.deidentification.configuration;
 
 import care.smith.fts.util.HttpClientConfig;
+import care.smith.fts.util.RetryConfig;
+import care.smith.fts.util.RetryPolicies;
+import care.smith.fts.util.RetryPolicy;
 import care.smith.fts.util.auth.HttpClientAuthMethod;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.constraints.NotBlank;
@@ -8,6 +11,7 @@ import jakarta.validation.constraints.NotNull;
 import java.security.SecureRandom;
 import java.util.random.RandomGenerator;
 import lombok.Data;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.web.reactive.function.client.WebClientSsl;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -20,16 +24,28 @@ import org.springframework.web.reactive.function.client.WebClient;
 public class GpasFhirDeIdentificationConfiguration {
   @NotBlank String baseUrl;
   @NotNull HttpClientAuthMethod.AuthMethod auth;
+  @NotNull RetryConfig retry = new RetryConfig();
 
   @Bean
   public ObjectMapper objectMapper() {
     return new ObjectMapper();
   }
 
+  @Bean("gpasFhirRetryPolicy")
+  public RetryPolicy retryPolicy(RetryPolicies retryPolicies) {
+    return retryPolicies.of(httpClientConfig());
+  }
+
   @Bean("gpasFhirHttpClient")
-  public WebClient httpClient(WebClient.Builder builder, WebClientSsl ssl) {
-    HttpClientConfig httpClientConfig = new HttpClientConfig(baseUrl, auth);
-    return httpClientConfig.createClient(builder, ssl);
+  public WebClient httpClient(
+      WebClient.Builder builder,
+      WebClientSsl ssl,
+      @Qualifier("gpasFhirRetryPolicy") RetryPolicy retryPolicy) {
+    return httpClientConfig().createClient(builder, ssl, retryPolicy);
+  }
+
+  private HttpClientConfig httpClientConfig() {
+    return new HttpClientConfig(baseUrl, auth, null, retry);
   }
 
   @Bean
@@ -0,0 +1,31 @@
+package care.smith.fts.tca.deidentification.configuration;
+
+import care.smith.fts.tca.deidentification.PseudonymCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+import java.time.Duration;
+import lombok.Data;
+import org.redisson.api.RedissonClient;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties("de-identification.pseudonymization.cache")
+@Data
+public class PseudonymCacheConfiguration {
+  /* Maximum number of secure IDs held in memory, 0 disables the local cache */
+  @PositiveOrZero long maxSize = 100_000;
+
+  /* Time after which cached secure IDs are fetched from gPAS again */
+  @NotNull Duration ttl = Duration.ofHours(1);
+
+  /* Use the keystore as second level cache shared by all TCA instances */
+  boolean redis = false;
+
+  @Bean
+  public PseudonymCache pseudonymCache(RedissonClient redisClient, MeterRegistry meterRegistry) {
+    return new PseudonymCache(maxSize, ttl, redis ? redisClient : null, meterRegistry);
+  }
+}
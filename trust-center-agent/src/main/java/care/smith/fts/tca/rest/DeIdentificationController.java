@@ -1,13 +1,20 @@
 package care.smith.fts.tca.rest;
 
+import static java.util.stream.Collectors.joining;
+
 import care.smith.fts.tca.deidentification.PseudonymProvider;
 import care.smith.fts.tca.deidentification.ShiftedDatesProvider;
 import care.smith.fts.util.error.ErrorResponseUtil;
 import care.smith.fts.util.error.UnknownDomainException;
 import care.smith.fts.util.tca.*;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Pattern;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,6 +23,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
 @Slf4j
 @RestController
@@ -24,12 +32,16 @@ import reactor.core.publisher.Mono;
 public class DeIdentificationController {
   private final PseudonymProvider pseudonymProvider;
   private final ShiftedDatesProvider shiftedDatesProvider;
+  private final Validator validator;
 
   @Autowired
   public DeIdentificationController(
-      PseudonymProvider pseudonymProvider, ShiftedDatesProvider shiftedDatesProvider) {
+      PseudonymProvider pseudonymProvider,
+      ShiftedDatesProvider shiftedDatesProvider,
+      Validator validator) {
     this.pseudonymProvider = pseudonymProvider;
     this.shiftedDatesProvider = shiftedDatesProvider;
+    this.validator = validator;
   }
 
   @PostMapping(
@@ -54,17 +66,87 @@ public class DeIdentificationController {
                 return Mono.empty();
               }
             });
-    return response
-        .map(ResponseEntity::ok)
-        .onErrorResume(
-            e -> {
-              if (e instanceof UnknownDomainException || e instanceof IllegalArgumentException) {
-                return ErrorResponseUtil.badRequest(e);
-              } else {
-                log.error("Internal error", e);
-                return ErrorResponseUtil.internalServerError(e);
-              }
-            });
+    return response.map(ResponseEntity::ok).onErrorResume(DeIdentificationController::onError);
+  }
+
+  /**
+   * Batch variant of {@link #getTransportIdsAndDateShiftingValues}. The responses are in request
+   * order, requests without IDs are answered with <code>null</code>, like the empty response of the
+   * single endpoint.
+   */
+  @PostMapping(
+      value = "/cd/transport-ids-and-date-shifting-values/batch",
+      consumes = MediaType.APPLICATION_JSON_VALUE,
+      produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<ResponseEntity<List<PseudonymizeResponse>>> getTransportIdsAndDateShiftingValuesBatch(
+      @RequestBody Mono<List<PseudonymizeRequest>> requestData) {
+    var response =
+        requestData.doOnNext(requests -> requests.forEach(this::validate)).flatMap(this::retrieve);
+    return response.map(ResponseEntity::ok).onErrorResume(DeIdentificationController::onError);
+  }
+
+  private void validate(PseudonymizeRequest request) {
+    var violations = validator.validate(request);
+    if (!violations.isEmpty()) {
+      throw new IllegalArgumentException(
+          violations.stream()
+              .map(v -> v.getPropertyPath() + " " + v.getMessage())
+              .collect(joining(", ")));
+    }
+  }
+
+  private Mono<List<PseudonymizeResponse>> retrieve(List<PseudonymizeRequest> requests) {
+    var withIds = requests.stream().filter(r -> !r.ids().isEmpty()).toList();
+    if (withIds.isEmpty()) {
+      return Mono.just(toResponses(requests, List.of(), Map.of()));
+    }
+    var shiftedDates = shiftedDatesProvider.generateDateShifts(dateShifts(withIds));
+    var transportIds = pseudonymProvider.retrieveTransportIds(withIds);
+    return transportIds.zipWith(shiftedDates, (t, shifts) -> toResponses(requests, t, shifts));
+  }
+
+  /* The date shift of each patient, the requests of a patient must not disagree on it */
+  private static Map<String, Duration> dateShifts(List<PseudonymizeRequest> requests) {
+    var dateShifts = new HashMap<String, Duration>();
+    for (var r : requests) {
+      var previous = dateShifts.putIfAbsent(r.patientId(), r.dateShift());
+      if (previous != null && !previous.equals(r.dateShift())) {
+        throw new IllegalArgumentException(
+            "Conflicting date shifts for patient %s: %s and %s"
+                .formatted(r.patientId(), previous, r.dateShift()));
+      }
+    }
+    return dateShifts;
+  }
+
+  /**
+   * @param transportIds the transport IDs of the requests with IDs, in request order
+   */
+  private static List<PseudonymizeResponse> toResponses(
+      List<PseudonymizeRequest> requests,
+      List<Tuple2<String, Map<String, String>>> transportIds,
+      Map<String, Duration> shifts) {
+    var responses = new ArrayList<PseudonymizeResponse>(requests.size());
+    var next = transportIds.iterator();
+    for (var request : requests) {
+      if (request.ids().isEmpty()) {
+        responses.add(null);
+      } else {
+        var t = next.next();
+        responses.add(
+            new PseudonymizeResponse(t.getT1(), t.getT2(), shifts.get(request.patientId())));
+      }
+    }
+    return responses;
+  }
+
+  private static <T> Mono<ResponseEntity<T>> onError(Throwable e) {
+    if (e instanceof UnknownDomainException || e instanceof IllegalArgumentException) {
+      return ErrorResponseUtil.badRequest(e);
+    } else {
+      log.error("Internal error", e);
+      return ErrorResponseUtil.internalServerError(e);
+    }
   }
 
   @PostMapping(
@@ -15,7 +15,11 @@ import care.smith.fts.tca.consent.ConsentedPatientsProvider.PagingParams;
 import care.smith.fts.test.FhirGenerator;
 import care.smith.fts.test.FhirGenerators;
 import care.smith.fts.test.TestWebClientFactory;
+import care.smith.fts.util.FhirDecoder;
 import care.smith.fts.util.FhirUtils;
+import care.smith.fts.util.HttpClientConfig;
+import care.smith.fts.util.RetryPolicies;
+import care.smith.fts.util.RetryPolicy;
 import care.smith.fts.util.error.UnknownDomainException;
 import care.smith.fts.util.tca.ConsentFetchAllRequest;
 import io.micrometer.core.instrument.MeterRegistry;
@@ -52,6 +56,7 @@ import org.springframework.web.reactive.function.client.WebClient;
 class FhirConsentedPatientsProviderFetchAllTest {
   @Autowired WebClient.Builder httpClientBuilder;
   @Autowired MeterRegistry meterRegistry;
+  @Autowired FhirDecoder decoder;
 
   @MockBean
   RedissonClient redisClient; // We need to mock the redisClient otherwise the tests won't start
@@ -96,12 +101,16 @@ class FhirConsentedPatientsProviderFetchAllTest {
     mockServer.reset();
   }
 
+  private RetryPolicy retryPolicy() {
+    return new RetryPolicies(meterRegistry).of(new HttpClientConfig(address));
+  }
+
   @Test
   void paging(MockServerClient mockServer) {
     int totalEntries = 2 * defaultPageSize;
     fhirConsentProvider =
         new FhirConsentedPatientsProvider(
-            httpClientBuilder.baseUrl(address).build(), meterRegistry);
+            httpClientBuilder.baseUrl(address).build(), retryPolicy(), decoder);
 
     Bundle bundle =
         gicsConsentGenerator
@@ -160,7 +169,7 @@ class FhirConsentedPatientsProviderFetchAllTest {
 
     fhirConsentProvider =
         new FhirConsentedPatientsProvider(
-            httpClientBuilder.baseUrl(address).build(), meterRegistry);
+            httpClientBuilder.baseUrl(address).build(), retryPolicy(), decoder);
 
     Bundle bundle =
         Stream.generate(gicsConsentGenerator::generateString)
@@ -197,7 +206,7 @@ class FhirConsentedPatientsProviderFetchAllTest {
 
     fhirConsentProvider =
         new FhirConsentedPatientsProvider(
-            httpClientBuilder.baseUrl(address).build(), meterRegistry);
+            httpClientBuilder.baseUrl(address).build(), retryPolicy(), decoder);
     Bundle bundle =
         Stream.generate(gicsConsentGenerator::generateString)
             .limit(totalEntries)
@@ -236,7 +245,7 @@ class FhirConsentedPatientsProviderFetchAllTest {
 
     fhirConsentProvider =
         new FhirConsentedPatientsProvider(
-            httpClientBuilder.baseUrl(address).build(), meterRegistry);
+            httpClientBuilder.baseUrl(address).build(), retryPolicy(), decoder);
 
     var operationOutcome = new OperationOutcome();
     var issue = operationOutcome.addIssue().setSeverity(IssueSeverity.ERROR);
@@ -265,7 +274,7 @@ class FhirConsentedPatientsProviderFetchAllTest {
 
     fhirConsentProvider =
         new FhirConsentedPatientsProvider(
-            httpClientBuilder.baseUrl(address).build(), meterRegistry);
+            httpClientBuilder.baseUrl(address).build(), retryPolicy(), decoder);
 
     var operationOutcome = new OperationOutcome();
     var issue = operationOutcome.addIssue().setSeverity(IssueSeverity.ERROR);
@@ -294,7 +303,7 @@ class FhirConsentedPatientsProviderFetchAllTest {
 
     fhirConsentProvider =
         new FhirConsentedPatientsProvider(
-            httpClientBuilder.baseUrl(address).build(), meterRegistry);
+            httpClientBuilder.baseUrl(address).build(), retryPolicy(), decoder);
 
     var operationOutcome = new OperationOutcome();
     operationOutcome.addIssue().setSeverity(IssueSeverity.ERROR);
@@ -324,7 +333,7 @@ class FhirConsentedPatientsProviderFetchAllTest {
     var consentRequest = new ConsentFetchAllRequest("MII", Set.of(), POLICY_SYSTEM);
     fhirConsentProvider =
         new FhirConsentedPatientsProvider(
-            httpClientBuilder.baseUrl(address).build(), meterRegistry);
+            httpClientBuilder.baseUrl(address).build(), retryPolicy(), decoder);
     Bundle bundle =
         Stream.generate(gicsConsentGenerator::generateString)
             .limit(totalEntries)
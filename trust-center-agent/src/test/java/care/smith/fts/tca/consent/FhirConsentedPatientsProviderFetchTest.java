@@ -16,7 +16,11 @@ import care.smith.fts.tca.consent.ConsentedPatientsProvider.PagingParams;
 import care.smith.fts.test.FhirGenerator;
 import care.smith.fts.test.FhirGenerators;
 import care.smith.fts.test.TestWebClientFactory;
+import care.smith.fts.util.FhirDecoder;
 import care.smith.fts.util.FhirUtils;
+import care.smith.fts.util.HttpClientConfig;
+import care.smith.fts.util.RetryPolicies;
+import care.smith.fts.util.RetryPolicy;
 import care.smith.fts.util.error.UnknownDomainException;
 import care.smith.fts.util.tca.ConsentFetchRequest;
 import io.micrometer.core.instrument.MeterRegistry;
@@ -51,6 +55,7 @@ import org.springframework.web.reactive.function.client.WebClient;
 class FhirConsentedPatientsProviderFetchTest {
   @Autowired WebClient.Builder httpClientBuilder;
   @Autowired MeterRegistry meterRegistry;
+  @Autowired FhirDecoder decoder;
 
   @MockBean
   RedissonClient redisClient; // We need to mock the redisClient otherwise the tests won't start
@@ -116,6 +121,10 @@ class FhirConsentedPatientsProviderFetchTest {
     mockServer.reset();
   }
 
+  private RetryPolicy retryPolicy() {
+    return new RetryPolicies(meterRegistry).of(new HttpClientConfig(address));
+  }
+
   @Test
   void paging(MockServerClient mockServer) {
     int pageSize = 2;
@@ -123,7 +132,7 @@ class FhirConsentedPatientsProviderFetchTest {
 
     fhirConsentProvider =
         new FhirConsentedPatientsProvider(
-            httpClientBuilder.baseUrl(address).build(), meterRegistry);
+            httpClientBuilder.baseUrl(address).build(), retryPolicy(), decoder);
 
     var bundle1 =
         gicsConsentGenerator
@@ -183,7 +192,7 @@ class FhirConsentedPatientsProviderFetchTest {
 
     fhirConsentProvider =
         new FhirConsentedPatientsProvider(
-            httpClientBuilder.baseUrl(address).build(), meterRegistry);
+            httpClientBuilder.baseUrl(address).build(), retryPolicy(), decoder);
     Bundle bundle =
         Stream.generate(gicsConsentGenerator::generateString)
             .limit(totalEntries)
@@ -219,7 +228,7 @@ class FhirConsentedPatientsProviderFetchTest {
 
     fhirConsentProvider =
         new FhirConsentedPatientsProvider(
-            httpClientBuilder.baseUrl(address).build(), meterRegistry);
+            httpClientBuilder.baseUrl(address).build(), retryPolicy(), decoder);
 
     var operationOutcome = new OperationOutcome();
     var issue = operationOutcome.addIssue().setSeverity(IssueSeverity.ERROR);
@@ -248,7 +257,7 @@ class FhirConsentedPatientsProviderFetchTest {
 
     fhirConsentProvider =
         new FhirConsentedPatientsProvider(
-            httpClientBuilder.baseUrl(address).build(), meterRegistry);
+            httpClientBuilder.baseUrl(address).build(), retryPolicy(), decoder);
 
     var operationOutcome = new OperationOutcome();
     var issue = operationOutcome.addIssue().setSeverity(IssueSeverity.ERROR);
@@ -277,7 +286,7 @@ class FhirConsentedPatientsProviderFetchTest {
 
     fhirConsentProvider =
         new FhirConsentedPatientsProvider(
-            httpClientBuilder.baseUrl(address).build(), meterRegistry);
+            httpClientBuilder.baseUrl(address).build(), retryPolicy(), decoder);
 
     var operationOutcome = new OperationOutcome();
     operationOutcome.addIssue().setSeverity(IssueSeverity.ERROR);
@@ -310,7 +319,7 @@ class FhirConsentedPatientsProviderFetchTest {
             List.of("id1", "id2", "id3", "id4"));
     fhirConsentProvider =
         new FhirConsentedPatientsProvider(
-            httpClientBuilder.baseUrl(address).build(), meterRegistry);
+            httpClientBuilder.baseUrl(address).build(), retryPolicy(), decoder);
 
     create(
             fhirConsentProvider.fetch(
@@ -331,7 +340,7 @@ class FhirConsentedPatientsProviderFetchTest {
             "MII", POLICIES, POLICY_SYSTEM, PATIENT_IDENTIFIER_SYSTEM, List.of());
     fhirConsentProvider =
         new FhirConsentedPatientsProvider(
-            httpClientBuilder.baseUrl(address).build(), meterRegistry);
+            httpClientBuilder.baseUrl(address).build(), retryPolicy(), decoder);
     create(
             fhirConsentProvider.fetch(
                 consentRequest,
@@ -6,17 +6,23 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockserver.matchers.MatchType.ONLY_MATCHING_FIELDS;
 import static org.mockserver.model.HttpRequest.request;
 import static org.mockserver.model.HttpResponse.response;
 import static org.mockserver.model.JsonBody.json;
+import static org.mockserver.verify.VerificationTimes.exactly;
 import static reactor.test.StepVerifier.create;
 
 import care.smith.fts.tca.deidentification.configuration.PseudonymizationConfiguration;
 import care.smith.fts.test.FhirGenerators;
 import care.smith.fts.test.TestWebClientFactory;
+import care.smith.fts.util.HttpClientConfig;
 import care.smith.fts.util.MediaTypes;
+import care.smith.fts.util.RetryPolicies;
 import care.smith.fts.util.error.UnknownDomainException;
+import care.smith.fts.util.tca.PseudonymizeRequest;
 import io.micrometer.core.instrument.MeterRegistry;
 import java.io.IOException;
 import java.time.Duration;
@@ -34,6 +40,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockserver.client.MockServerClient;
 import org.mockserver.junit.jupiter.MockServerExtension;
 import org.mockserver.model.MediaType;
+import org.redisson.api.BatchResult;
+import org.redisson.api.RBatchReactive;
 import org.redisson.api.RMapCacheReactive;
 import org.redisson.api.RedissonClient;
 import org.redisson.api.RedissonReactiveClient;
@@ -57,6 +65,7 @@ class FhirPseudonymProviderTest {
   @MockBean RedissonClient redisClient;
   @Mock RedissonReactiveClient redis;
   @Mock RMapCacheReactive<Object, Object> mapCache;
+  @Mock RBatchReactive batch;
   @Autowired PseudonymizationConfiguration pseudonymizationConfiguration;
   @Autowired MeterRegistry meterRegistry;
 
@@ -74,7 +83,8 @@ class FhirPseudonymProviderTest {
             redisClient,
             pseudonymizationConfiguration,
             new Random(SEED),
-            meterRegistry);
+            new RetryPolicies(meterRegistry).of(new HttpClientConfig("http://localhost")),
+            new PseudonymCache(0, Duration.ofHours(1), null, meterRegistry));
   }
 
   @Test
@@ -119,6 +129,89 @@ class FhirPseudonymProviderTest {
         .verifyComplete();
   }
 
+  @Test
+  void retrieveTransportIdsBatch(MockServerClient mockServer) throws IOException {
+    var fhirGenerator =
+        FhirGenerators.gpasGetOrCreateResponse(
+            fromList(List.of("id1", "Salt_id1", "id2", "Salt_id2")),
+            fromList(List.of("469680023", "123", "469680024", "456")));
+
+    mockServer
+        .when(request().withMethod("POST").withPath("/$pseudonymizeAllowCreate"))
+        .respond(
+            response()
+                .withBody(
+                    fhirGenerator.generateString(), MediaType.create("application", "fhir+json")));
+
+    given(redis.createBatch()).willReturn(batch);
+    given(batch.getMapCache(anyString())).willReturn(mapCache);
+    given(batch.execute()).willReturn(Mono.just(new BatchResult<>(List.of(), 0)));
+
+    var requests =
+        List.of(
+            new PseudonymizeRequest("id1", Set.of("Patient.id1"), "domain", Duration.ofDays(14)),
+            new PseudonymizeRequest("id2", Set.of("Patient.id2"), "domain", Duration.ofDays(14)));
+    create(pseudonymProvider.retrieveTransportIds(requests))
+        .assertNext(
+            transportIds -> {
+              assertThat(transportIds).hasSize(2);
+              assertThat(transportIds.get(0).getT2()).containsOnlyKeys("Patient.id1");
+              assertThat(transportIds.get(1).getT2()).containsOnlyKeys("Patient.id2");
+            })
+        .verifyComplete();
+
+    mockServer.verify(request().withPath("/$pseudonymizeAllowCreate"), exactly(1));
+    verify(mapCache, times(2)).putAll(anyMap());
+    verify(mapCache, times(2)).expire(Duration.ofSeconds(1000));
+  }
+
+  @Test
+  void cachedPseudonymsAreNotFetchedAgain(MockServerClient mockServer) {
+    mockServer
+        .when(request().withMethod("POST").withPath("/$pseudonymizeAllowCreate"))
+        .respond(
+            response()
+                .withBody(
+                    """
+                    { "resourceType": "Parameters",
+                      "parameter": [
+                        {"name": "pseudonym",
+                         "part": [
+                           {"name": "original", "valueIdentifier": {"value": "id1"}},
+                           {"name": "pseudonym", "valueIdentifier": {"value": "469680023"}}]},
+                        {"name": "pseudonym",
+                         "part": [
+                           {"name": "original", "valueIdentifier": {"value": "Salt_id1"}},
+                           {"name": "pseudonym", "valueIdentifier": {"value": "123"}}]}]}
+                    """,
+                    MediaType.create("application", "fhir+json")));
+
+    given(redis.getMapCache(anyString())).willReturn(mapCache);
+    given(mapCache.expire(Duration.ofSeconds(1000))).willReturn(Mono.just(false));
+    given(mapCache.putAll(anyMap())).willReturn(Mono.empty());
+
+    var cachingProvider =
+        new FhirPseudonymProvider(
+            httpClientBuilder
+                .baseUrl("http://localhost:%d".formatted(mockServer.getPort()))
+                .build(),
+            redisClient,
+            pseudonymizationConfiguration,
+            new Random(SEED),
+            new RetryPolicies(meterRegistry).of(new HttpClientConfig("http://localhost")),
+            new PseudonymCache(100, Duration.ofHours(1), null, meterRegistry));
+
+    var ids = Set.of("Patient.id1");
+    create(cachingProvider.retrieveTransportIds("id1", ids, "domain"))
+        .expectNextCount(1)
+        .verifyComplete();
+    create(cachingProvider.retrieveTransportIds("id1", ids, "domain"))
+        .expectNextCount(1)
+        .verifyComplete();
+
+    mockServer.verify(request().withPath("/$pseudonymizeAllowCreate"), exactly(1));
+  }
+
   @Test
   void retrieveTransportIdsWhenRedisDown() {
     given(redis.getMapCache(anyString())).willThrow(new RedisTimeoutException("timeout"));
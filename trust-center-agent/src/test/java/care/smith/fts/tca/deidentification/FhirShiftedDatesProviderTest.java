@@ -7,12 +7,17 @@ import static reactor.test.StepVerifier.create;
 
 import care.smith.fts.util.tca.DateShiftingRequest;
 import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.BatchResult;
+import org.redisson.api.RBatchReactive;
 import org.redisson.api.RBucketReactive;
 import org.redisson.api.RedissonClient;
 import org.redisson.api.RedissonReactiveClient;
@@ -27,6 +32,7 @@ class FhirShiftedDatesProviderTest {
   @MockBean RedissonClient redisClient;
   @Mock RedissonReactiveClient redis;
   @Mock RBucketReactive<Object> bucket;
+  @Mock RBatchReactive batch;
   FhirShiftedDatesProvider provider;
 
   @BeforeEach
@@ -50,6 +56,34 @@ class FhirShiftedDatesProviderTest {
         .verifyComplete();
   }
 
+  @Test
+  void generateDateShifts() {
+    given(redisClient.reactive()).willReturn(redis);
+    given(redis.createBatch()).willReturn(batch);
+    given(batch.getBucket(anyString())).willReturn(bucket);
+    given(batch.execute())
+        .willReturn(Mono.just(new BatchResult<>(List.of(true, "2", false, "-3"), 0)));
+
+    var dateShifts = new LinkedHashMap<String, Duration>();
+    dateShifts.put("1", Duration.ofDays(14));
+    dateShifts.put("2", Duration.ofDays(14));
+
+    create(provider.generateDateShifts(dateShifts))
+        .assertNext(
+            shifts ->
+                assertThat(shifts)
+                    .containsEntry("1", Duration.ofMillis(2))
+                    .containsEntry("2", Duration.ofMillis(-3)))
+        .verifyComplete();
+  }
+
+  @Test
+  void generateDateShiftsWithoutIds() {
+    create(provider.generateDateShifts(Map.of()))
+        .assertNext(shifts -> assertThat(shifts).isEmpty())
+        .verifyComplete();
+  }
+
   @Test
   void getRandomDateShift() {
     for (int i = 0; i < 1000; i++) {
@@ -0,0 +1,160 @@
+package care.smith.fts.tca.deidentification;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+import static reactor.test.StepVerifier.create;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiFunction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RMapCacheReactive;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.RedissonReactiveClient;
+import org.redisson.client.RedisTimeoutException;
+import reactor.core.publisher.Mono;
+
+@ExtendWith(MockitoExtension.class)
+class PseudonymCacheTest {
+
+  @Mock RedissonClient redisClient;
+  @Mock RedissonReactiveClient redis;
+  @Mock RMapCacheReactive<String, String> mapCache;
+
+  private SimpleMeterRegistry meterRegistry;
+  private List<Set<String>> loaded;
+  private BiFunction<String, Set<String>, Mono<Map<String, String>>> loader;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    loaded = new CopyOnWriteArrayList<>();
+    loader =
+        (domain, originals) -> {
+          loaded.add(originals);
+          var secureIds = new HashMap<String, String>();
+          originals.forEach(o -> secureIds.put(o, domain + "-" + o));
+          return Mono.just(secureIds);
+        };
+  }
+
+  @Test
+  void onlyMissesAreLoaded() {
+    var cache = new PseudonymCache(100, Duration.ofHours(1), null, meterRegistry);
+
+    create(cache.getAll("domain", Set.of("a", "b"), loader))
+        .expectNext(Map.of("a", "domain-a", "b", "domain-b"))
+        .verifyComplete();
+    create(cache.getAll("domain", Set.of("a", "c"), loader))
+        .expectNext(Map.of("a", "domain-a", "c", "domain-c"))
+        .verifyComplete();
+
+    assertThat(loaded).containsExactly(Set.of("a", "b"), Set.of("c"));
+    assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count())
+        .isEqualTo(1);
+    assertThat(meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count())
+        .isEqualTo(3);
+  }
+
+  @Test
+  void domainIsPartOfTheKey() {
+    var cache = new PseudonymCache(100, Duration.ofHours(1), null, meterRegistry);
+
+    create(cache.getAll("d1", Set.of("a"), loader))
+        .expectNext(Map.of("a", "d1-a"))
+        .verifyComplete();
+    create(cache.getAll("d2", Set.of("a"), loader))
+        .expectNext(Map.of("a", "d2-a"))
+        .verifyComplete();
+
+    assertThat(loaded).hasSize(2);
+  }
+
+  @Test
+  void sizeIsBounded() {
+    var cache = new PseudonymCache(2, Duration.ofHours(1), null, meterRegistry);
+
+    create(cache.getAll("domain", Set.of("a", "b", "c", "d"), loader))
+        .expectNextCount(1)
+        .verifyComplete();
+
+    assertThat(cache.localSize()).isEqualTo(2);
+    assertThat(meterRegistry.get("cache.evictions").functionCounter().count()).isEqualTo(2);
+  }
+
+  @Test
+  void zeroSizeDisablesCache() {
+    var cache = new PseudonymCache(0, Duration.ofHours(1), null, meterRegistry);
+
+    create(cache.getAll("domain", Set.of("a"), loader)).expectNextCount(1).verifyComplete();
+    create(cache.getAll("domain", Set.of("a"), loader)).expectNextCount(1).verifyComplete();
+
+    assertThat(loaded).hasSize(2);
+  }
+
+  @Test
+  void secondLevelIsAskedBeforeLoading() {
+    given(redisClient.reactive()).willReturn(redis);
+    given(redis.<String, String>getMapCache("pseudonyms:domain")).willReturn(mapCache);
+    given(mapCache.getAll(Set.of("a", "b"))).willReturn(Mono.just(Map.of("a", "redis-a")));
+    given(mapCache.putAll(Map.of("b", "domain-b"), Duration.ofHours(1).toMillis(), MILLISECONDS))
+        .willReturn(Mono.empty());
+    var cache = new PseudonymCache(100, Duration.ofHours(1), redisClient, meterRegistry);
+
+    create(cache.getAll("domain", Set.of("a", "b"), loader))
+        .expectNext(Map.of("a", "redis-a", "b", "domain-b"))
+        .verifyComplete();
+    create(cache.getAll("domain", Set.of("a", "b"), loader))
+        .expectNext(Map.of("a", "redis-a", "b", "domain-b"))
+        .verifyComplete();
+
+    assertThat(loaded).containsExactly(Set.of("b"));
+    assertThat(
+            meterRegistry
+                .get("cache.gets")
+                .tags("cache", "pseudonyms.redis", "result", "hit")
+                .counter()
+                .count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void unavailableSecondLevelFallsBackToLoader() {
+    given(redisClient.reactive()).willReturn(redis);
+    given(redis.<String, String>getMapCache("pseudonyms:domain")).willReturn(mapCache);
+    given(mapCache.getAll(anySet())).willReturn(Mono.error(new RedisTimeoutException("timeout")));
+    given(mapCache.putAll(anyMap(), anyLong(), eq(MILLISECONDS)))
+        .willReturn(Mono.error(new RedisTimeoutException("timeout")));
+    var cache = new PseudonymCache(100, Duration.ofHours(1), redisClient, meterRegistry);
+
+    create(cache.getAll("domain", Set.of("a"), loader))
+        .expectNext(Map.of("a", "domain-a"))
+        .verifyComplete();
+
+    verify(mapCache).putAll(anyMap(), anyLong(), eq(MILLISECONDS));
+  }
+
+  @Test
+  void loaderErrorIsPropagated() {
+    var cache = new PseudonymCache(100, Duration.ofHours(1), null, meterRegistry);
+
+    create(cache.getAll("domain", Set.of("a"), (d, o) -> Mono.error(new IllegalStateException())))
+        .expectError(IllegalStateException.class)
+        .verify();
+  }
+}
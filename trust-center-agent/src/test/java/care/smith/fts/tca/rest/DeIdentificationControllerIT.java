@@ -127,6 +127,54 @@ class DeIdentificationControllerIT extends BaseIT {
         .verifyComplete();
   }
 
+  @Test
+  void successfulBatchRequest() throws IOException {
+    gpas.when(
+            request()
+                .withMethod("POST")
+                .withPath("/ttp-fhir/fhir/gpas/$pseudonymizeAllowCreate")
+                .withContentType(APPLICATION_FHIR_JSON))
+        .respond(
+            response()
+                .withContentType(APPLICATION_FHIR_JSON)
+                .withBody(
+                    pseudonymizeAllowCreate(
+                        "MII",
+                        ofEntries(
+                            entry("id-144218", "pseudonym-144218"),
+                            entry("Salt_id-144218", "salt-144218"),
+                            entry("id-244194", "pseudonym-244194"),
+                            entry("Salt_id-244194", "salt-244194")))));
+
+    var response =
+        cdClient
+            .post()
+            .uri("/api/v2/cd/transport-ids-and-date-shifting-values/batch")
+            .contentType(MediaType.APPLICATION_JSON)
+            .accept(MediaType.APPLICATION_JSON)
+            .bodyValue(
+                List.of(
+                    ofEntries(
+                        entry("domain", "MII"),
+                        entry("patientId", "id-144218"),
+                        entry("ids", Set.of("Patient.id-144218")),
+                        entry("dateShift", ofDays(14).getSeconds())),
+                    ofEntries(
+                        entry("domain", "MII"),
+                        entry("patientId", "id-244194"),
+                        entry("ids", Set.of("Patient.id-244194")),
+                        entry("dateShift", ofDays(14).getSeconds()))))
+            .retrieve()
+            .bodyToFlux(PseudonymizeResponse.class);
+
+    create(response)
+        .assertNext(
+            res -> assertThat(res.originalToTransportIDMap()).containsKeys("Patient.id-144218"))
+        .assertNext(
+            res -> assertThat(res.originalToTransportIDMap()).containsKeys("Patient.id-244194"))
+        .verifyComplete();
+  }
+
   @Test
   void rejectInvalidIds() {
     var response =
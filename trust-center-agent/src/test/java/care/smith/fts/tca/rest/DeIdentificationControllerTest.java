@@ -8,8 +8,11 @@ import care.smith.fts.tca.deidentification.PseudonymProvider;
 import care.smith.fts.tca.deidentification.ShiftedDatesProvider;
 import care.smith.fts.util.error.UnknownDomainException;
 import care.smith.fts.util.tca.PseudonymizeRequest;
+import care.smith.fts.util.tca.PseudonymizeResponse;
 import com.github.dockerjava.api.exception.InternalServerErrorException;
+import jakarta.validation.Validation;
 import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
@@ -32,7 +35,11 @@ class DeIdentificationControllerTest {
 
   @BeforeEach
   void setUp() {
-    this.controller = new DeIdentificationController(pseudonymProvider, shiftedDatesProvider);
+    this.controller =
+        new DeIdentificationController(
+            pseudonymProvider,
+            shiftedDatesProvider,
+            Validation.buildDefaultValidatorFactory().getValidator());
   }
 
   @Test
@@ -118,6 +125,98 @@ class DeIdentificationControllerTest {
         .verifyComplete();
   }
 
+  @Test
+  void getTransportIdsAndDateShiftingValuesBatch() {
+    var requests =
+        List.of(
+            new PseudonymizeRequest("patientId1", Set.of("id1"), "domain", Duration.ofDays(14)),
+            new PseudonymizeRequest("patientId2", Set.of("id2"), "domain", Duration.ofDays(14)));
+    given(pseudonymProvider.retrieveTransportIds(requests))
+        .willReturn(
+            Mono.just(
+                List.of(
+                    Tuples.of("tIDMapName1", Map.of("id1", "tid1")),
+                    Tuples.of("tIDMapName2", Map.of("id2", "tid2")))));
+    given(
+            shiftedDatesProvider.generateDateShifts(
+                Map.of("patientId1", Duration.ofDays(14), "patientId2", Duration.ofDays(14))))
+        .willReturn(
+            Mono.just(Map.of("patientId1", Duration.ofDays(1), "patientId2", Duration.ofDays(2))));
+
+    create(controller.getTransportIdsAndDateShiftingValuesBatch(Mono.just(requests)))
+        .assertNext(
+            r -> {
+              assertThat(r.getStatusCode().is2xxSuccessful()).isTrue();
+              assertThat(r.getBody())
+                  .containsExactly(
+                      new PseudonymizeResponse(
+                          "tIDMapName1", Map.of("id1", "tid1"), Duration.ofDays(1)),
+                      new PseudonymizeResponse(
+                          "tIDMapName2", Map.of("id2", "tid2"), Duration.ofDays(2)));
+            })
+        .verifyComplete();
+  }
+
+  @Test
+  void getTransportIdsAndDateShiftingValuesBatchUnknownDomain() {
+    var requests =
+        List.of(new PseudonymizeRequest("id1", Set.of("id1"), "unknown", Duration.ofDays(14)));
+    given(pseudonymProvider.retrieveTransportIds(requests))
+        .willReturn(Mono.error(new UnknownDomainException("unknown domain")));
+    given(shiftedDatesProvider.generateDateShifts(Map.of("id1", Duration.ofDays(14))))
+        .willReturn(Mono.just(Map.of("id1", Duration.ofDays(1))));
+
+    create(controller.getTransportIdsAndDateShiftingValuesBatch(Mono.just(requests)))
+        .assertNext(r -> assertThat(r.getStatusCode().is4xxClientError()).isTrue())
+        .verifyComplete();
+  }
+
+  @Test
+  void getTransportIdsAndDateShiftingValuesBatchWithoutIds() {
+    var requests =
+        List.of(
+            new PseudonymizeRequest("patientId1", Set.of(), "domain", Duration.ofDays(14)),
+            new PseudonymizeRequest("patientId2", Set.of("id2"), "domain", Duration.ofDays(14)));
+    given(pseudonymProvider.retrieveTransportIds(requests.subList(1, 2)))
+        .willReturn(Mono.just(List.of(Tuples.of("tIDMapName2", Map.of("id2", "tid2")))));
+    given(shiftedDatesProvider.generateDateShifts(Map.of("patientId2", Duration.ofDays(14))))
+        .willReturn(Mono.just(Map.of("patientId2", Duration.ofDays(2))));
+
+    create(controller.getTransportIdsAndDateShiftingValuesBatch(Mono.just(requests)))
+        .assertNext(
+            r ->
+                assertThat(r.getBody())
+                    .containsExactly(
+                        null,
+                        new PseudonymizeResponse(
+                            "tIDMapName2", Map.of("id2", "tid2"), Duration.ofDays(2))))
+        .verifyComplete();
+  }
+
+  @Test
+  void getTransportIdsAndDateShiftingValuesBatchInvalidRequest() {
+    var requests =
+        List.of(
+            new PseudonymizeRequest("patientId1", Set.of("id1"), "domain", Duration.ofDays(14)),
+            new PseudonymizeRequest("patientId2", Set.of("id2"), "", Duration.ofDays(14)));
+
+    create(controller.getTransportIdsAndDateShiftingValuesBatch(Mono.just(requests)))
+        .assertNext(r -> assertThat(r.getStatusCode().is4xxClientError()).isTrue())
+        .verifyComplete();
+  }
+
+  @Test
+  void getTransportIdsAndDateShiftingValuesBatchConflictingDateShifts() {
+    var requests =
+        List.of(
+            new PseudonymizeRequest("patientId1", Set.of("id1"), "domain", Duration.ofDays(14)),
+            new PseudonymizeRequest("patientId1", Set.of("id2"), "domain", Duration.ofDays(7)));
+
+    create(controller.getTransportIdsAndDateShiftingValuesBatch(Mono.just(requests)))
+        .assertNext(r -> assertThat(r.getStatusCode().is4xxClientError()).isTrue())
+        .verifyComplete();
+  }
+
   @Test
   void fetchPseudonymizedIds() {
     given(pseudonymProvider.fetchPseudonymizedIds("tIDMapName"))
@@ -0,0 +1,121 @@
+package care.smith.fts.util;
+
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+
+/**
+ * Limits the requests the web clients of an agent have in flight to each server with an {@link
+ * AdaptiveConcurrencyLimiter}, shared by all clients calling the same host and port. A request is
+ * in flight until its response body is consumed or cancelled. Streamed responses, e.g. server-sent
+ * events, are only in flight until their headers arrive and their latency is not sampled, as a
+ * stream stays open as long as the server has events to send. Responses with status 429 or 503 and
+ * timeouts count as overload.
+ *
+ * <p>Records per server, tagged by <code>host</code>:
+ *
+ * <ul>
+ *   <li>{@code http.client.concurrency.limit}: current limit of requests in flight
+ *   <li>{@code http.client.concurrency.inFlight}: number of requests in flight
+ *   <li>{@code http.client.concurrency.waiting}: number of requests waiting for the limit
+ * </ul>
+ */
+@Configuration
+@ConfigurationProperties("http.client.adaptive-concurrency")
+@Data
+public class AdaptiveConcurrencyConfig {
+  private static final List<MediaType> STREAMING_TYPES =
+      List.of(MediaType.TEXT_EVENT_STREAM, MediaType.APPLICATION_NDJSON);
+
+  /* Limit requests in flight per server, the limit adapts to the server */
+  boolean enabled = true;
+
+  /* Limit of requests in flight before any response was received */
+  int initialLimit = 16;
+
+  /* The limit never drops below minLimit */
+  int minLimit = 1;
+
+  /* The limit never grows beyond maxLimit */
+  int maxLimit = 256;
+
+  /* Factor the limit is multiplied with on overload */
+  double backoffRatio = 0.75;
+
+  /* The limit is decreased if the p95 latency exceeds the baseline by this factor */
+  double latencyTolerance = 2.0;
+
+  /* Number of responses the p95 latency is computed of */
+  int window = 50;
+
+  // outer filter, so that waiting for the limit does not count towards the request timeout, only
+  // the rate limit comes first
+  @Bean
+  @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+  public WebClientCustomizer adaptiveConcurrencyWebClientCustomizer(MeterRegistry meterRegistry) {
+    if (!enabled) {
+      return builder -> {};
+    }
+    var filter = adaptiveConcurrencyFilter(meterRegistry);
+    return builder -> builder.filter(filter);
+  }
+
+  ExchangeFilterFunction adaptiveConcurrencyFilter(MeterRegistry meterRegistry) {
+    Map<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+    return (request, next) -> {
+      var url = request.url();
+      var host = url.getPort() < 0 ? url.getHost() : url.getHost() + ":" + url.getPort();
+      var limiter = limiters.computeIfAbsent(host, h -> createLimiter(h, meterRegistry));
+      return limiter.limit(
+          next.exchange(request),
+          AdaptiveConcurrencyConfig::isOverloaded,
+          e -> e instanceof TimeoutException,
+          AdaptiveConcurrencyConfig::isStream,
+          (response, release) ->
+              response.mutate().body(body -> body.doFinally(s -> release.run())).build());
+    };
+  }
+
+  private AdaptiveConcurrencyLimiter createLimiter(String host, MeterRegistry meterRegistry) {
+    var limiter = new AdaptiveConcurrencyLimiter(this);
+    Gauge.builder("http.client.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::limit)
+        .tag("host", host)
+        .register(meterRegistry);
+    Gauge.builder("http.client.concurrency.inFlight", limiter, AdaptiveConcurrencyLimiter::inFlight)
+        .tag("host", host)
+        .register(meterRegistry);
+    Gauge.builder("http.client.concurrency.waiting", limiter, AdaptiveConcurrencyLimiter::waiting)
+        .tag("host", host)
+        .register(meterRegistry);
+    return limiter;
+  }
+
+  private static boolean isStream(ClientResponse response) {
+    return response
+        .headers()
+        .contentType()
+        .filter(type -> STREAMING_TYPES.stream().anyMatch(type::isCompatibleWith))
+        .isPresent();
+  }
+
+  private static boolean isOverloaded(ClientResponse response) {
+    return response.statusCode().isSameCodeAs(TOO_MANY_REQUESTS)
+        || response.statusCode().isSameCodeAs(SERVICE_UNAVAILABLE);
+  }
+}
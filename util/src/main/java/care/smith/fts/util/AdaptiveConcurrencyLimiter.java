@@ -0,0 +1,250 @@
+package care.smith.fts.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Non-blocking limit on the number of calls to a server that are in flight at the same time, which
+ * adapts to the latency and the errors of the server (AIMD). While the server keeps up, the limit
+ * grows by one per <code>limit</code> successful calls, as long as at least half of it is used. The
+ * limit is multiplied by <code>backoffRatio</code> if a call is rejected as overloaded, or if the
+ * p95 latency of the last <code>window</code> calls exceeds <code>latencyTolerance</code> times the
+ * baseline, the lowest p95 seen, which slowly follows the latency upwards. Calls that started
+ * before the last decrease do not decrease the limit again. Waiting calls are served in FIFO order.
+ */
+public class AdaptiveConcurrencyLimiter {
+  private final LongSupplier nanoTime;
+  private final int minLimit;
+  private final int maxLimit;
+  private final double backoffRatio;
+  private final double latencyTolerance;
+
+  /* Guarded by this */
+  private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+  private final long[] latencies;
+  private int sampled;
+  private double limit;
+  private int inFlight;
+  private long baseline;
+  private long lastDecrease = Long.MIN_VALUE;
+
+  public AdaptiveConcurrencyLimiter(AdaptiveConcurrencyConfig config) {
+    this(config, System::nanoTime);
+  }
+
+  AdaptiveConcurrencyLimiter(AdaptiveConcurrencyConfig config, LongSupplier nanoTime) {
+    if (config.getMinLimit() < 1 || config.getMaxLimit() < config.getMinLimit()) {
+      throw new IllegalArgumentException(
+          "Limits must satisfy 1 <= minLimit <= maxLimit: %d, %d"
+              .formatted(config.getMinLimit(), config.getMaxLimit()));
+    }
+    this.nanoTime = nanoTime;
+    this.minLimit = config.getMinLimit();
+    this.maxLimit = config.getMaxLimit();
+    this.backoffRatio = config.getBackoffRatio();
+    this.latencyTolerance = config.getLatencyTolerance();
+    this.latencies = new long[Math.max(1, config.getWindow())];
+    this.limit = Math.clamp(config.getInitialLimit(), minLimit, maxLimit);
+  }
+
+  /**
+   * Subscribes to <code>call</code> once the limit allows it.
+   *
+   * @param overloaded whether a result signals that the server is overloaded
+   * @param overloadedError whether an error signals that the server is overloaded
+   */
+  public <T> Mono<T> limit(
+      Mono<T> call, Predicate<? super T> overloaded, Predicate<Throwable> overloadedError) {
+    return limit(
+        call,
+        overloaded,
+        overloadedError,
+        result -> false,
+        (result, release) -> {
+          release.run();
+          return result;
+        });
+  }
+
+  /**
+   * Subscribes to <code>call</code> once the limit allows it. The call stays in flight after its
+   * result until the release passed to <code>hold</code> runs, e.g. once the body of a response is
+   * consumed, so its latency includes the body.
+   *
+   * @param overloaded whether a result signals that the server is overloaded
+   * @param overloadedError whether an error signals that the server is overloaded
+   * @param stream whether a result is a long-lived stream, which is released at once without
+   *     sampling its latency, as its duration does not depend on the load of the server
+   * @param hold gets the result and its release, returns the result to emit
+   */
+  public <T> Mono<T> limit(
+      Mono<T> call,
+      Predicate<? super T> overloaded,
+      Predicate<Throwable> overloadedError,
+      Predicate<? super T> stream,
+      BiFunction<T, Runnable, T> hold) {
+    return acquire()
+        .flatMap(
+            p ->
+                call.map(
+                        r -> {
+                          if (stream.test(r)) {
+                            p.release(Outcome.IGNORED);
+                            return r;
+                          }
+                          var outcome = overloaded.test(r) ? Outcome.OVERLOADED : Outcome.SUCCESS;
+                          return hold.apply(r, () -> p.release(outcome));
+                        })
+                    .doOnError(
+                        e ->
+                            p.release(
+                                overloadedError.test(e) ? Outcome.OVERLOADED : Outcome.IGNORED))
+                    .doOnCancel(() -> p.release(Outcome.IGNORED))
+                    .switchIfEmpty(Mono.fromRunnable(() -> p.release(Outcome.SUCCESS))));
+  }
+
+  public synchronized int limit() {
+    return (int) limit;
+  }
+
+  public synchronized int inFlight() {
+    return inFlight;
+  }
+
+  public synchronized int waiting() {
+    return waiters.size();
+  }
+
+  private Mono<Permit> acquire() {
+    return Mono.create(
+        sink -> {
+          var waiter = new Waiter(sink);
+          synchronized (this) {
+            waiters.add(waiter);
+          }
+          sink.onCancel(waiter::cancel);
+          drain();
+        });
+  }
+
+  /** Waiters are granted outside the lock, as granting subscribes to the call. */
+  private void drain() {
+    List<Waiter> granted = new ArrayList<>();
+    synchronized (this) {
+      while (!waiters.isEmpty() && inFlight < (int) limit) {
+        inFlight++;
+        granted.add(waiters.poll());
+      }
+    }
+    granted.forEach(Waiter::grant);
+  }
+
+  private synchronized void record(Permit permit, Outcome outcome) {
+    var now = nanoTime.getAsLong();
+    switch (outcome) {
+      case OVERLOADED -> {
+        if (permit.start >= lastDecrease) {
+          decrease(now);
+        }
+      }
+      case SUCCESS -> sample(now - permit.start);
+      case IGNORED -> {}
+    }
+    inFlight--;
+  }
+
+  private void sample(long latency) {
+    latencies[sampled++] = latency;
+    if (sampled == latencies.length) {
+      sampled = 0;
+      var p95 = p95();
+      var rising = baseline > 0 && p95 > latencyTolerance * baseline;
+      baseline = baseline == 0 || p95 < baseline ? p95 : baseline + (p95 - baseline) / 20;
+      if (rising) {
+        decrease(nanoTime.getAsLong());
+        return;
+      }
+    }
+    if (inFlight * 2 >= limit) {
+      limit = Math.min(maxLimit, limit + 1 / limit);
+    }
+  }
+
+  private long p95() {
+    var sorted = latencies.clone();
+    Arrays.sort(sorted);
+    return sorted[(int) Math.ceil(sorted.length * 0.95) - 1];
+  }
+
+  private void decrease(long now) {
+    limit = Math.max(minLimit, limit * backoffRatio);
+    lastDecrease = now;
+  }
+
+  private enum Outcome {
+    SUCCESS,
+    OVERLOADED,
+    IGNORED
+  }
+
+  private final class Permit {
+    private final long start = nanoTime.getAsLong();
+    private boolean released;
+
+    private void release(Outcome outcome) {
+      synchronized (AdaptiveConcurrencyLimiter.this) {
+        if (released) {
+          return;
+        }
+        released = true;
+        record(this, outcome);
+      }
+      drain();
+    }
+  }
+
+  private final class Waiter {
+    private final MonoSink<Permit> sink;
+    private boolean cancelled;
+    private Permit permit;
+
+    private Waiter(MonoSink<Permit> sink) {
+      this.sink = sink;
+    }
+
+    private void grant() {
+      boolean wasCancelled;
+      synchronized (AdaptiveConcurrencyLimiter.this) {
+        permit = new Permit();
+        wasCancelled = cancelled;
+      }
+      if (wasCancelled) {
+        permit.release(Outcome.IGNORED);
+      } else {
+        sink.success(permit);
+      }
+    }
+
+    /** A permit granted concurrently to cancellation may never reach the subscriber. */
+    private void cancel() {
+      Permit granted;
+      synchronized (AdaptiveConcurrencyLimiter.this) {
+        cancelled = true;
+        granted = permit;
+        if (granted == null) {
+          waiters.remove(this);
+        }
+      }
+      if (granted != null) {
+        granted.release(Outcome.IGNORED);
+      }
+    }
+  }
+}
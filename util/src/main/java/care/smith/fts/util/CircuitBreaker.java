@@ -0,0 +1,135 @@
+package care.smith.fts.util;
+
+import care.smith.fts.util.RetryConfig.CircuitBreakerConfig;
+import java.util.function.LongSupplier;
+
+/**
+ * Sheds the requests to a failing server. The breaker is closed as long as less than <code>
+ * failureRateThreshold</code> of the requests of a window fail. Once it opens, requests are
+ * rejected for <code>openDuration</code>, then a single probe is let through: the breaker closes if
+ * it succeeds and opens again if it fails.
+ *
+ * <p>Each state change starts a new generation, results of calls acquired in an earlier generation
+ * are ignored.
+ */
+public class CircuitBreaker {
+
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  public enum Outcome {
+    SUCCESS,
+    FAILURE,
+    /* The call was cancelled or failed for a reason unrelated to the server */
+    IGNORED
+  }
+
+  private final LongSupplier nanoTime;
+  private final double failureRateThreshold;
+  private final int minimumRequests;
+  private final long windowNanos;
+  private final long openNanos;
+
+  /* Guarded by this */
+  private State state = State.CLOSED;
+  private long generation;
+  private long windowStart;
+  private int requests;
+  private int failures;
+  private long openedAt;
+  private boolean probing;
+
+  public CircuitBreaker(CircuitBreakerConfig config) {
+    this(config, System::nanoTime);
+  }
+
+  CircuitBreaker(CircuitBreakerConfig config, LongSupplier nanoTime) {
+    this.nanoTime = nanoTime;
+    this.failureRateThreshold = config.failureRateThreshold();
+    this.minimumRequests = Math.max(1, config.minimumRequests());
+    this.windowNanos = config.window().toNanos();
+    this.openNanos = config.openDuration().toNanos();
+    this.windowStart = nanoTime.getAsLong();
+  }
+
+  /**
+   * @return the generation the call is acquired in, to be passed to {@link #record}, or -1 if the
+   *     call is rejected
+   */
+  public synchronized long tryAcquire() {
+    switch (state) {
+      case OPEN -> {
+        if (nanoTime.getAsLong() - openedAt < openNanos) {
+          return -1;
+        }
+        transition(State.HALF_OPEN);
+        probing = true;
+      }
+      case HALF_OPEN -> {
+        if (probing) {
+          return -1;
+        }
+        probing = true;
+      }
+      case CLOSED -> {}
+    }
+    return generation;
+  }
+
+  public synchronized void record(long acquiredIn, Outcome outcome) {
+    if (acquiredIn != generation) {
+      return;
+    }
+    switch (state) {
+      case CLOSED -> count(outcome);
+      case HALF_OPEN -> {
+        probing = false;
+        if (outcome == Outcome.SUCCESS) {
+          transition(State.CLOSED);
+        } else if (outcome == Outcome.FAILURE) {
+          transition(State.OPEN);
+        }
+      }
+      case OPEN -> {}
+    }
+  }
+
+  public synchronized State state() {
+    return state;
+  }
+
+  private void count(Outcome outcome) {
+    if (outcome == Outcome.IGNORED) {
+      return;
+    }
+    var now = nanoTime.getAsLong();
+    if (now - windowStart >= windowNanos) {
+      windowStart = now;
+      requests = 0;
+      failures = 0;
+    }
+    requests++;
+    if (outcome == Outcome.FAILURE) {
+      failures++;
+    }
+    if (requests >= minimumRequests && failures >= failureRateThreshold * requests) {
+      transition(State.OPEN);
+    }
+  }
+
+  private void transition(State next) {
+    var now = nanoTime.getAsLong();
+    state = next;
+    generation++;
+    if (next == State.OPEN) {
+      openedAt = now;
+    } else if (next == State.CLOSED) {
+      windowStart = now;
+      requests = 0;
+      failures = 0;
+    }
+  }
+}
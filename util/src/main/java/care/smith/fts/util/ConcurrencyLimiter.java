@@ -0,0 +1,124 @@
+package care.smith.fts.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Non-blocking limit on the number of publishers that are subscribed at the same time. Publishers
+ * wrapped by {@link #limit(Mono)} or {@link #limit(Flux)} are only subscribed once a permit is
+ * available and release it on completion, error or cancellation. Waiting subscribers are served in
+ * FIFO order.
+ */
+public class ConcurrencyLimiter {
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+  private final int maxConcurrency;
+
+  public ConcurrencyLimiter(int maxConcurrency) {
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+    }
+    this.maxConcurrency = maxConcurrency;
+  }
+
+  public <T> Mono<T> limit(Mono<T> mono) {
+    return Mono.usingWhen(
+        acquire(), p -> mono, Permit::release, (p, e) -> p.release(), Permit::release);
+  }
+
+  public <T> Flux<T> limit(Flux<T> flux) {
+    return Flux.usingWhen(
+        acquire(), p -> flux, Permit::release, (p, e) -> p.release(), Permit::release);
+  }
+
+  public int maxConcurrency() {
+    return maxConcurrency;
+  }
+
+  public int inFlight() {
+    return inFlight.get();
+  }
+
+  public int waiting() {
+    return waiters.size();
+  }
+
+  private Mono<Permit> acquire() {
+    return Mono.create(
+        sink -> {
+          var waiter = new Waiter(sink);
+          sink.onCancel(waiter::cancel);
+          waiters.add(waiter);
+          drain();
+        });
+  }
+
+  private void drain() {
+    while (!waiters.isEmpty() && tryAcquire()) {
+      var waiter = waiters.poll();
+      if (waiter == null || !waiter.grant()) {
+        inFlight.decrementAndGet();
+      }
+    }
+  }
+
+  private boolean tryAcquire() {
+    int current;
+    do {
+      current = inFlight.get();
+      if (current >= maxConcurrency) {
+        return false;
+      }
+    } while (!inFlight.compareAndSet(current, current + 1));
+    return true;
+  }
+
+  private final class Permit {
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private Mono<Void> release() {
+      if (released.compareAndSet(false, true)) {
+        inFlight.decrementAndGet();
+        drain();
+      }
+      return Mono.empty();
+    }
+  }
+
+  private final class Waiter {
+    private static final int WAITING = 0;
+    private static final int GRANTED = 1;
+    private static final int CANCELLED = 2;
+
+    private final MonoSink<Permit> sink;
+    private final AtomicInteger state = new AtomicInteger(WAITING);
+    private final Permit permit = new Permit();
+
+    private Waiter(MonoSink<Permit> sink) {
+      this.sink = sink;
+    }
+
+    private boolean grant() {
+      if (state.compareAndSet(WAITING, GRANTED)) {
+        sink.success(permit);
+        return true;
+      }
+      return false;
+    }
+
+    /** A permit granted concurrently to cancellation may never reach the subscriber. */
+    private void cancel() {
+      if (state.compareAndSet(WAITING, CANCELLED)) {
+        waiters.remove(this);
+      } else {
+        permit.release();
+      }
+    }
+  }
+}
@@ -0,0 +1,231 @@
+package care.smith.fts.util;
+
+import static com.fasterxml.jackson.core.JsonToken.END_ARRAY;
+import static com.fasterxml.jackson.core.JsonToken.FIELD_NAME;
+import static com.fasterxml.jackson.core.JsonToken.START_ARRAY;
+import static com.fasterxml.jackson.core.JsonToken.START_OBJECT;
+import static com.fasterxml.jackson.core.JsonToken.VALUE_NULL;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import ca.uhn.fhir.parser.DataFormatException;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+
+/**
+ * Splits a streamed JSON Bundle into JSON Bundles that hold a single entry each. All other elements
+ * of the Bundle, e.g. type, total and link, are copied into every emitted Bundle. Only the entry
+ * that is currently parsed is held in memory, not the whole Bundle.
+ *
+ * <p>Elements that follow the entries, e.g. signature, are emitted in a final Bundle without
+ * entries, as is a Bundle that has no entries at all. Empty input yields no Bundle. Invalid JSON is
+ * reported as {@link DataFormatException}, just like HAPI does when parsing a whole Bundle.
+ */
+@Slf4j
+class FhirBundleSplitter {
+  private static final JsonFactory JSON = new JsonFactory();
+  private static final byte[] RESOURCE_TYPE_FIELD = "\"resourceType\":\"Bundle\",".getBytes(UTF_8);
+  private static final byte[] ENTRY_FIELD = "\"entry\":[".getBytes(UTF_8);
+  private static final byte[] ENTRY_END = "]}".getBytes(UTF_8);
+
+  private final JsonParser parser;
+  private final ByteArrayFeeder feeder;
+  private final ByteArrayOutputStream header = new ByteArrayOutputStream();
+  private final JsonGenerator headerGenerator;
+
+  private ByteArrayOutputStream entry;
+  private JsonGenerator entryGenerator;
+  private byte[] entryPrefix;
+
+  private int depth = 0;
+  private boolean started = false;
+  private boolean entryField = false;
+  private boolean inEntries = false;
+  private int headerFields = 0;
+  private boolean resourceType = false;
+  private int entries = 0;
+  private boolean trailingFields = false;
+
+  private FhirBundleSplitter() {
+    try {
+      parser = JSON.createNonBlockingByteArrayParser();
+      feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+      headerGenerator = JSON.createGenerator(header, JsonEncoding.UTF8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * @param in the JSON Bundle, buffers are released once they are consumed
+   * @return Flux of JSON Bundles with one entry each
+   * @see FhirDecoder#decodeEntries(Publisher)
+   */
+  static Flux<byte[]> split(Publisher<DataBuffer> in) {
+    return Flux.defer(
+        () -> {
+          var splitter = new FhirBundleSplitter();
+          return Flux.from(in)
+              .concatMapIterable(splitter::feed)
+              .concatWith(Flux.defer(() -> Flux.fromIterable(splitter.endOfInput())))
+              .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+              .doFinally(s -> splitter.close());
+        });
+  }
+
+  private List<byte[]> feed(DataBuffer buffer) {
+    try {
+      var bytes = new byte[buffer.readableByteCount()];
+      buffer.read(bytes);
+      feeder.feedInput(bytes, 0, bytes.length);
+      return nextBundles();
+    } catch (IOException e) {
+      throw new DataFormatException("Unable to parse Bundle: " + e.getMessage(), e);
+    } finally {
+      DataBufferUtils.release(buffer);
+    }
+  }
+
+  private List<byte[]> endOfInput() {
+    try {
+      feeder.endOfInput();
+      var bundles = nextBundles();
+      if (!started) {
+        return bundles;
+      } else if (depth != 0) {
+        throw new DataFormatException("Incomplete Bundle");
+      }
+      if (entries == 0 || trailingFields) {
+        headerGenerator.writeEndObject();
+        headerGenerator.flush();
+        bundles.add(header.toByteArray());
+      }
+      return bundles;
+    } catch (IOException e) {
+      throw new DataFormatException("Unable to parse Bundle: " + e.getMessage(), e);
+    }
+  }
+
+  private List<byte[]> nextBundles() throws IOException {
+    var bundles = new ArrayList<byte[]>();
+    JsonToken token;
+    while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+      handle(token, bundles);
+    }
+    return bundles;
+  }
+
+  private void handle(JsonToken token, List<byte[]> bundles) throws IOException {
+    if (entryGenerator != null) {
+      copy(token, entryGenerator);
+      if (depth == 2) {
+        bundles.add(entryBundle());
+      }
+    } else if (inEntries) {
+      if (token == END_ARRAY) {
+        inEntries = false;
+        depth = 1;
+      } else if (token == START_OBJECT) {
+        entry = new ByteArrayOutputStream();
+        entryGenerator = JSON.createGenerator(entry, JsonEncoding.UTF8);
+        copy(token, entryGenerator);
+      } else {
+        throw new DataFormatException("Expected Bundle entry, got " + token);
+      }
+    } else if (depth == 0) {
+      if (started || token != START_OBJECT) {
+        throw new DataFormatException("Expected a single Bundle, got " + token);
+      }
+      started = true;
+      headerGenerator.writeStartObject();
+      depth = 1;
+    } else if (entryField) {
+      entryField = false;
+      if (token == START_ARRAY) {
+        startEntries();
+      } else if (token != VALUE_NULL) {
+        throw new DataFormatException("Expected Bundle entries, got " + token);
+      }
+    } else if (depth == 1 && token == FIELD_NAME && "entry".equals(parser.currentName())) {
+      entryField = true;
+    } else if (depth == 1 && token == JsonToken.END_OBJECT) {
+      depth = 0;
+    } else {
+      if (depth == 1 && token == FIELD_NAME) {
+        headerFields++;
+        trailingFields = entries > 0;
+        resourceType |= "resourceType".equals(parser.currentName());
+      }
+      copy(token, headerGenerator);
+    }
+  }
+
+  private void startEntries() throws IOException {
+    headerGenerator.flush();
+    var prefix = new ByteArrayOutputStream(header.size() + 64);
+    prefix.write(header.toByteArray());
+    if (headerFields > 0) {
+      prefix.write(',');
+    }
+    if (!resourceType) {
+      // resourceType follows the entries
+      prefix.write(RESOURCE_TYPE_FIELD);
+    }
+    prefix.write(ENTRY_FIELD);
+    entryPrefix = prefix.toByteArray();
+    inEntries = true;
+    depth = 2;
+  }
+
+  private byte[] entryBundle() throws IOException {
+    entryGenerator.close();
+    entryGenerator = null;
+    entries++;
+    var bundle = new ByteArrayOutputStream(entryPrefix.length + entry.size() + ENTRY_END.length);
+    bundle.write(entryPrefix);
+    entry.writeTo(bundle);
+    bundle.write(ENTRY_END);
+    entry = null;
+    return bundle.toByteArray();
+  }
+
+  /** Copies the current token and keeps track of the nesting depth. */
+  private void copy(JsonToken token, JsonGenerator generator) throws IOException {
+    if (token.isNumeric()) {
+      // keep the exact representation, e.g. of decimals
+      generator.writeNumber(parser.getText());
+    } else {
+      generator.copyCurrentEvent(parser);
+    }
+    if (token.isStructStart()) {
+      depth++;
+    } else if (token.isStructEnd()) {
+      depth--;
+    }
+  }
+
+  private void close() {
+    try {
+      parser.close();
+      headerGenerator.close();
+      if (entryGenerator != null) {
+        entryGenerator.close();
+      }
+    } catch (IOException e) {
+      log.debug("Unable to close Bundle parser: {}", e.getMessage());
+    }
+  }
+}
@@ -7,9 +7,11 @@ import static org.springframework.core.io.buffer.DataBufferUtils.join;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 
 import ca.uhn.fhir.context.FhirContext;
+import java.io.ByteArrayInputStream;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
 import org.reactivestreams.Publisher;
 import org.springframework.core.ResolvableType;
 import org.springframework.core.codec.AbstractDecoder;
@@ -45,6 +47,25 @@ public class FhirDecoder extends AbstractDecoder<IBaseResource> {
     return Flux.from(in).mapNotNull(b -> decode(b, type, mimeType, hints));
   }
 
+  /**
+   * Decodes a Bundle entry by entry: Instead of joining the whole body, every entry is emitted in
+   * its own Bundle as soon as it is complete. The remaining elements of the Bundle, e.g. type,
+   * total and link, are copied into each of these Bundles. Only the entry being parsed is buffered,
+   * so consumers that process or discard entries one at a time never hold the whole Bundle.
+   *
+   * <p>{@link #decode(Publisher, ResolvableType, MimeType, Map)} and {@link #decodeToMono} decode
+   * whole Bundles, this mode has to be requested explicitly, e.g. with <code>
+   * bodyToFlux(DataBuffer.class).transform(decoder::decodeEntries)</code>.
+   *
+   * @param in the JSON Bundle, buffers are released once they are consumed
+   * @return Flux of Bundles with one entry each
+   */
+  public Flux<Bundle> decodeEntries(Publisher<DataBuffer> in) {
+    log.trace("Decode Bundle entries to Flux");
+    return FhirBundleSplitter.split(in)
+        .map(b -> fhir.newJsonParser().parseResource(Bundle.class, new ByteArrayInputStream(b)));
+  }
+
   @Override
   public IBaseResource decode(
       DataBuffer buffer, ResolvableType targetType, MimeType mimeType, Map<String, Object> hints)
@@ -2,26 +2,52 @@ package care.smith.fts.util;
 
 import static care.smith.fts.util.FhirCodecUtils.isBaseResource;
 import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 
 import ca.uhn.fhir.context.FhirContext;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Bundle.BundleEntryComponent;
 import org.reactivestreams.Publisher;
 import org.springframework.core.ResolvableType;
 import org.springframework.core.codec.AbstractEncoder;
+import org.springframework.core.codec.EncodingException;
+import org.springframework.core.codec.Hints;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.util.MimeType;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+/**
+ * Encodes FHIR resources as UTF-8 JSON. Single values, e.g. bodies passed as {@link Mono}, are
+ * encoded into one buffer. Bundles passed as {@link Flux} are streamed: the bundle without its
+ * entries is encoded first, then one buffer per entry as the consumer requests them, so a large
+ * bundle is never encoded as a whole.
+ *
+ * <p>Buffers are allocated from the given factory, i.e. pooled Netty buffers on the wire. Their
+ * size is estimated per resource type from a moving average of the encoded sizes, capped at {@link
+ * #MAX_SIZE_HINT}; buffers grow if a resource does not fit.
+ */
 @Slf4j
 public class FhirEncoder extends AbstractEncoder<IBaseResource> {
+  static final int DEFAULT_SIZE_HINT = 1024;
+  static final int MAX_SIZE_HINT = 256 * 1024;
+
+  private static final byte[] ENTRY_START = ",\"entry\":[".getBytes(UTF_8);
+  private static final byte[] ENTRY_SEPARATOR = ",".getBytes(UTF_8);
+  private static final byte[] ENTRY_END = "]}".getBytes(UTF_8);
+
   private final FhirContext fhir;
+  private final Map<Class<?>, Integer> sizeHints = new ConcurrentHashMap<>();
 
   public FhirEncoder(FhirContext fhir) {
     super(APPLICATION_FHIR_JSON, APPLICATION_JSON);
@@ -35,7 +61,74 @@ public class FhirEncoder extends AbstractEncoder<IBaseResource> {
       ResolvableType type,
       MimeType mimeType,
       Map<String, Object> hints) {
-    return Flux.from(in).mapNotNull(r -> encodeValue(r, bufferFactory, type, mimeType, hints));
+    if (in instanceof Mono) {
+      return Mono.from(in)
+          .mapNotNull(r -> encodeValue(r, bufferFactory, type, mimeType, hints))
+          .flux();
+    }
+    return Flux.from(in)
+        .concatMap(
+            r ->
+                r instanceof Bundle bundle && bundle.hasEntry()
+                    ? encodeEntries(bundle, bufferFactory, hints)
+                    : Mono.justOrEmpty(encodeValue(r, bufferFactory, type, mimeType, hints)));
+  }
+
+  /**
+   * Encodes the bundle without its entries, then each entry on demand. The JSON object of the
+   * bundle is reopened to append the entries, HAPI encodes them the same way within the bundle.
+   */
+  private Flux<DataBuffer> encodeEntries(
+      Bundle bundle, DataBufferFactory bufferFactory, Map<String, Object> hints) {
+    log.trace(
+        "{}encode bundle with {} entries", Hints.getLogPrefix(hints), bundle.getEntry().size());
+    var entries = bundle.getEntry();
+    return Flux.<DataBuffer, Integer>generate(
+            () -> -1,
+            (i, sink) -> {
+              try {
+                if (i < 0) {
+                  sink.next(encodeBundleStart(bundle, bufferFactory));
+                } else if (i < entries.size()) {
+                  sink.next(encodeEntry(entries.get(i), i == 0, bufferFactory));
+                } else {
+                  sink.next(bufferFactory.wrap(ENTRY_END));
+                  sink.complete();
+                }
+              } catch (IOException e) {
+                log.error("Error encoding bundle: {}", e.getMessage(), e);
+                sink.error(new EncodingException("Error encoding bundle", e));
+              }
+              return i + 1;
+            })
+        .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+  }
+
+  private DataBuffer encodeBundleStart(Bundle bundle, DataBufferFactory bufferFactory)
+      throws IOException {
+    var parser = fhir.newJsonParser();
+    parser.setDontEncodeElements(Set.of("Bundle.entry"));
+    var start = parser.encodeResourceToString(bundle).getBytes(UTF_8);
+    var buffer = bufferFactory.allocateBuffer(start.length - 1 + ENTRY_START.length);
+    return buffer.write(start, 0, start.length - 1).write(ENTRY_START);
+  }
+
+  private DataBuffer encodeEntry(
+      BundleEntryComponent entry, boolean first, DataBufferFactory bufferFactory)
+      throws IOException {
+    var type = entry.hasResource() ? entry.getResource().getClass() : entry.getClass();
+    var buffer = bufferFactory.allocateBuffer(sizeHint(type));
+    try (OutputStreamWriter w = new OutputStreamWriter(buffer.asOutputStream(), UTF_8)) {
+      if (!first) {
+        buffer.write(ENTRY_SEPARATOR);
+      }
+      fhir.newJsonParser().encodeToWriter(entry, w);
+    } catch (IOException | RuntimeException e) {
+      DataBufferUtils.release(buffer);
+      throw e;
+    }
+    updateSizeHint(type, buffer.readableByteCount());
+    return buffer;
   }
 
   @Override
@@ -45,19 +138,32 @@ public class FhirEncoder extends AbstractEncoder<IBaseResource> {
       ResolvableType valueType,
       MimeType mimeType,
       Map<String, Object> hints) {
-    DataBuffer dataBuffer = bufferFactory.allocateBuffer(128);
+    DataBuffer dataBuffer = bufferFactory.allocateBuffer(sizeHint(value.getClass()));
 
-    try (OutputStreamWriter w = new OutputStreamWriter(dataBuffer.asOutputStream())) {
-      log.trace("encode {} to {}", valueType, mimeType);
+    try (OutputStreamWriter w = new OutputStreamWriter(dataBuffer.asOutputStream(), UTF_8)) {
+      log.trace("{}encode {} to {}", Hints.getLogPrefix(hints), valueType, mimeType);
       fhir.newJsonParser().encodeToWriter(value, w);
     } catch (IOException e) {
       log.error("Error encoding value: {}", e.getMessage(), e);
       DataBufferUtils.release(dataBuffer);
       return null;
     }
+    updateSizeHint(value.getClass(), dataBuffer.readableByteCount());
     return dataBuffer;
   }
 
+  int sizeHint(Class<?> type) {
+    return sizeHints.getOrDefault(type, DEFAULT_SIZE_HINT);
+  }
+
+  /* Moving average, so that a single large resource does not oversize the following buffers */
+  private void updateSizeHint(Class<?> type, int size) {
+    sizeHints.merge(
+        type,
+        Math.clamp(size, 1, MAX_SIZE_HINT),
+        (hint, s) -> Math.clamp(hint + (s - hint) / 8, 1, MAX_SIZE_HINT));
+  }
+
   @Override
   public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
     var can =
@@ -1,5 +1,6 @@
 package care.smith.fts.util;
 
+import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.Stream.concat;
 
 import ca.uhn.fhir.context.FhirContext;
@@ -62,6 +63,17 @@ public interface FhirUtils {
     return resourceStream(bundle).filter(type::isInstance).map(type::cast);
   }
 
+  /**
+   * Appends the entries of {@code other} to {@code bundle}, e.g. to reassemble Bundles that were
+   * received in chunks or decoded by {@link FhirDecoder#decodeEntries}.
+   *
+   * @return bundle
+   */
+  static Bundle mergeEntries(Bundle bundle, Bundle other) {
+    bundle.getEntry().addAll(other.getEntry());
+    return bundle;
+  }
+
   static Collector<? super Resource, List<Resource>, Bundle> toBundle() {
     return Collector.of(
         ArrayList::new,
@@ -73,7 +85,9 @@ public interface FhirUtils {
 
   private static Bundle toBundle(List<Resource> l) {
     List<Bundle.BundleEntryComponent> list =
-        l.stream().map(r -> new Bundle.BundleEntryComponent().setResource(r)).toList();
+        l.stream()
+            .map(r -> new Bundle.BundleEntryComponent().setResource(r))
+            .collect(toCollection(ArrayList::new));
     return new Bundle().setTotal(l.size()).setEntry(list);
   }
 }
@@ -0,0 +1,76 @@
+package care.smith.fts.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Summaries of finished transfer processes, their phase and two counters, so their status may still
+ * be requested after the process instance has been evicted. The summaries are kept in a ring of
+ * primitive arrays, holding at most <code>maxFinished</code> processes for <code>ttl</code>; the
+ * oldest summary is overwritten once the ring is full.
+ *
+ * @param <P> the phases of a transfer process
+ */
+public class FinishedProcesses<P extends Enum<P>> {
+  private final P[] phases;
+  private final long ttlNanos;
+
+  private final String[] ids;
+  private final byte[] phaseOrdinals;
+  private final long[] firstCounts;
+  private final long[] secondCounts;
+  private final long[] finishedAt;
+  private final Map<String, Integer> slots;
+  private int next;
+
+  public FinishedProcesses(Class<P> phase, TransferProcessRetention retention) {
+    this.phases = phase.getEnumConstants();
+    this.ttlNanos = retention.getTtl().toNanos();
+
+    var capacity = Math.max(1, retention.getMaxFinished());
+    ids = new String[capacity];
+    phaseOrdinals = new byte[capacity];
+    firstCounts = new long[capacity];
+    secondCounts = new long[capacity];
+    finishedAt = new long[capacity];
+    slots = new HashMap<>(capacity * 4 / 3 + 1);
+  }
+
+  public synchronized void add(String processId, P phase, long first, long second) {
+    var slot = slots.get(processId);
+    if (slot == null) {
+      slot = next;
+      next = (next + 1) % ids.length;
+      if (ids[slot] != null) {
+        slots.remove(ids[slot]);
+      }
+      ids[slot] = processId;
+      slots.put(processId, slot);
+    }
+    phaseOrdinals[slot] = (byte) phase.ordinal();
+    firstCounts[slot] = first;
+    secondCounts[slot] = second;
+    finishedAt[slot] = System.nanoTime();
+  }
+
+  public synchronized Optional<Summary<P>> get(String processId) {
+    var slot = slots.get(processId);
+    if (slot == null) {
+      return Optional.empty();
+    } else if (System.nanoTime() - finishedAt[slot] > ttlNanos) {
+      slots.remove(processId);
+      ids[slot] = null;
+      return Optional.empty();
+    } else {
+      return Optional.of(
+          new Summary<>(phases[phaseOrdinals[slot]], firstCounts[slot], secondCounts[slot]));
+    }
+  }
+
+  public synchronized int size() {
+    return slots.size();
+  }
+
+  public record Summary<P>(P phase, long first, long second) {}
+}
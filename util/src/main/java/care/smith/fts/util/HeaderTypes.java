@@ -3,4 +3,6 @@ package care.smith.fts.util;
 public interface HeaderTypes {
 
   String X_PROGRESS = "X-Progress";
+
+  String X_TRANSPORT_ID_MAP = "X-Transport-Id-Map";
 }
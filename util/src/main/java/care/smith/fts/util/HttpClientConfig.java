@@ -5,6 +5,7 @@ import static java.util.Objects.requireNonNull;
 import static java.util.Optional.ofNullable;
 
 import care.smith.fts.util.auth.HttpClientAuthMethod.AuthMethod;
+import care.smith.fts.util.compression.CompressionConfig;
 import jakarta.annotation.Nullable;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -12,12 +13,28 @@ import org.springframework.boot.autoconfigure.web.reactive.function.client.WebCl
 import org.springframework.web.reactive.function.client.WebClient;
 
 public record HttpClientConfig(
-    @NotBlank String baseUrl, @NotNull AuthMethod auth, @Nullable Ssl ssl) {
+    @NotBlank String baseUrl,
+    @NotNull AuthMethod auth,
+    @Nullable Ssl ssl,
+    @NotNull RetryConfig retry,
+    /* Compress the requests and responses of this client, see CompressionConfig */
+    boolean compression) {
 
-  public HttpClientConfig(@NotBlank String baseUrl, AuthMethod auth, Ssl ssl) {
+  public HttpClientConfig(
+      @NotBlank String baseUrl, AuthMethod auth, Ssl ssl, RetryConfig retry, boolean compression) {
     this.baseUrl = requireNonNull(emptyToNull(baseUrl), "Base URL must not be null");
     this.auth = ofNullable(auth).orElse(AuthMethod.NONE);
     this.ssl = ssl;
+    this.retry = ofNullable(retry).orElseGet(RetryConfig::new);
+    this.compression = compression;
+  }
+
+  public HttpClientConfig(@NotBlank String baseUrl, AuthMethod auth, Ssl ssl, RetryConfig retry) {
+    this(baseUrl, auth, ssl, retry, false);
+  }
+
+  public HttpClientConfig(@NotBlank String baseUrl, AuthMethod auth, Ssl ssl) {
+    this(baseUrl, auth, ssl, null);
   }
 
   public HttpClientConfig(@NotBlank String baseUrl, AuthMethod auth) {
@@ -33,9 +50,19 @@ public record HttpClientConfig(
         .baseUrl(baseUrl())
         .apply(auth()::customize)
         .apply(b -> ofNullable(ssl()).ifPresent(s -> s.customize(b, wcssl)))
+        .apply(b -> CompressionConfig.customize(b, compression()))
         .build();
   }
 
+  /**
+   * Creates a client whose requests are counted by <code>retryPolicy</code> and rejected while its
+   * circuit breaker is open, before they wait for any concurrency limit.
+   */
+  public WebClient createClient(
+      WebClient.Builder builder, WebClientSsl wcssl, RetryPolicy retryPolicy) {
+    return createClient(builder.clone().filters(f -> f.addFirst(retryPolicy.filter())), wcssl);
+  }
+
   public record Ssl(String bundle) {
     void customize(WebClient.Builder client, WebClientSsl wcssl) {
       client.apply(wcssl.fromBundle(bundle()));
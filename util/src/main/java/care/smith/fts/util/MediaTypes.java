@@ -8,4 +8,8 @@ public interface MediaTypes {
   String APPLICATION_FHIR_JSON_VALUE = "application/fhir+json";
 
   MediaType APPLICATION_FHIR_JSON = parseMediaType(APPLICATION_FHIR_JSON_VALUE);
+
+  String APPLICATION_FHIR_NDJSON_VALUE = "application/fhir+ndjson";
+
+  MediaType APPLICATION_FHIR_NDJSON = parseMediaType(APPLICATION_FHIR_NDJSON_VALUE);
 }
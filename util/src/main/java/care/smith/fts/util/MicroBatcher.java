@@ -0,0 +1,108 @@
+package care.smith.fts.util;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.publisher.Sinks.Many;
+import reactor.core.publisher.Sinks.One;
+
+/**
+ * Collects single requests into batches that are bounded by size and time. A batch is flushed once
+ * it holds {@code maxSize} requests or {@code maxWait} has passed since its first request.
+ *
+ * <p>The batcher must be disposed by its owner. Once disposed, new requests are rejected, while the
+ * requests already submitted are still executed.
+ *
+ * @param <REQ> request type
+ * @param <RES> response type
+ */
+@Slf4j
+public class MicroBatcher<REQ, RES> implements Disposable {
+
+  private final Many<Pending<REQ, RES>> pending = Sinks.many().unicast().onBackpressureBuffer();
+  private final Function<List<REQ>, Mono<List<RES>>> batchCall;
+
+  /* Guarded by pending */
+  private boolean disposed;
+
+  /**
+   * @param batchCall executes a batch, must yield exactly one response per request, in order
+   */
+  public MicroBatcher(
+      int maxSize, Duration maxWait, Function<List<REQ>, Mono<List<RES>>> batchCall) {
+    this.batchCall = batchCall;
+    pending.asFlux().bufferTimeout(maxSize, maxWait).flatMap(this::execute).subscribe();
+  }
+
+  public Mono<RES> submit(REQ request) {
+    return Mono.defer(
+        () -> {
+          var response = Sinks.<RES>one();
+          synchronized (pending) {
+            if (disposed) {
+              return Mono.error(new IllegalStateException("MicroBatcher is disposed"));
+            }
+            pending.emitNext(new Pending<>(request, response), Sinks.EmitFailureHandler.FAIL_FAST);
+          }
+          return response.asMono();
+        });
+  }
+
+  /** Flushes the pending requests and rejects further ones. */
+  @Override
+  public void dispose() {
+    synchronized (pending) {
+      if (!disposed) {
+        disposed = true;
+        pending.emitComplete(Sinks.EmitFailureHandler.FAIL_FAST);
+      }
+    }
+  }
+
+  @Override
+  public boolean isDisposed() {
+    synchronized (pending) {
+      return disposed;
+    }
+  }
+
+  private Mono<Void> execute(List<Pending<REQ, RES>> batch) {
+    var requests = batch.stream().map(Pending::request).toList();
+    log.trace("Execute batch of {} requests", requests.size());
+    return batchCall
+        .apply(requests)
+        .flatMap(responses -> checkSize(responses, requests.size()))
+        .doOnNext(responses -> complete(batch, responses))
+        .switchIfEmpty(Mono.error(new IllegalStateException("Empty batch response")))
+        .doOnError(e -> batch.forEach(p -> p.response().tryEmitError(e)))
+        .onErrorComplete()
+        .then();
+  }
+
+  private static <RES> Mono<List<RES>> checkSize(List<RES> responses, int expected) {
+    if (responses.size() == expected) {
+      return Mono.just(responses);
+    } else {
+      return Mono.error(
+          new IllegalStateException(
+              "Expected %d batch responses, got %d".formatted(expected, responses.size())));
+    }
+  }
+
+  private static <REQ, RES> void complete(List<Pending<REQ, RES>> batch, List<RES> responses) {
+    for (int i = 0; i < batch.size(); i++) {
+      var response = responses.get(i);
+      if (response != null) {
+        batch.get(i).response().tryEmitValue(response);
+      } else {
+        batch.get(i).response().tryEmitEmpty();
+      }
+    }
+  }
+
+  private record Pending<REQ, RES>(REQ request, One<RES> response) {}
+}
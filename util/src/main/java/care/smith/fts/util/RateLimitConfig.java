@@ -0,0 +1,141 @@
+package care.smith.fts.util;
+
+import static java.util.Objects.requireNonNull;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+
+/**
+ * Limits the rate of requests and bytes the web clients of an agent exchange with a server with a
+ * {@link RateLimiter}, shared by all clients calling the same host. Servers without a limit are not
+ * throttled.
+ */
+@Configuration
+@ConfigurationProperties("http.client.rate-limit")
+@Data
+public class RateLimitConfig {
+
+  /* Rate limits per server */
+  List<Limit> limits = List.of();
+
+  // outermost filter, so that requests wait for the rate limit before they wait for a concurrency
+  // slot
+  @Bean
+  @Order(Ordered.HIGHEST_PRECEDENCE)
+  public WebClientCustomizer rateLimitWebClientCustomizer(MeterRegistry meterRegistry) {
+    if (limits.isEmpty()) {
+      return builder -> {};
+    }
+    var filter = rateLimitFilter(meterRegistry);
+    return builder -> builder.filter(filter);
+  }
+
+  ExchangeFilterFunction rateLimitFilter(MeterRegistry meterRegistry) {
+    var limiters = limits.stream().map(l -> new RateLimiter(l, meterRegistry)).toList();
+    Map<String, Optional<RateLimiter>> byHost = new ConcurrentHashMap<>();
+    return (request, next) -> {
+      var url = request.url();
+      var host = url.getPort() < 0 ? url.getHost() : url.getHost() + ":" + url.getPort();
+      return byHost
+          .computeIfAbsent(host, h -> findLimiter(limiters, url.getHost(), h))
+          .map(limiter -> limiter.filter(request, next))
+          .orElseGet(() -> next.exchange(request));
+    };
+  }
+
+  /* Limits per host and port take precedence over limits per host */
+  private static Optional<RateLimiter> findLimiter(
+      List<RateLimiter> limiters, String host, String hostAndPort) {
+    return limiters.stream()
+        .filter(l -> l.host().equals(hostAndPort))
+        .findFirst()
+        .or(() -> limiters.stream().filter(l -> l.host().equals(host)).findFirst());
+  }
+
+  /* A rate of 0 would read as "no traffic", but a rate limit can only delay requests */
+  private static void requirePositive(Double requestsPerSecond, DataSize bytesPerSecond) {
+    if (requestsPerSecond != null && !(requestsPerSecond > 0)) {
+      throw new IllegalArgumentException(
+          "requestsPerSecond must be positive: " + requestsPerSecond);
+    }
+    if (bytesPerSecond != null && bytesPerSecond.toBytes() <= 0) {
+      throw new IllegalArgumentException("bytesPerSecond must be positive: " + bytesPerSecond);
+    }
+  }
+
+  public record Limit(
+      /* Host or host:port of the server */
+      String host,
+
+      /* Requests per second, not limited if not set */
+      Double requestsPerSecond,
+
+      /* Bytes per second sent and received, not limited if not set */
+      DataSize bytesPerSecond,
+
+      /* Tokens of this duration may be used at once */
+      Duration burst,
+
+      /* Rates that apply at certain times, the first matching schedule applies */
+      List<Schedule> schedules) {
+
+    public Limit {
+      requireNonNull(host, "Host of rate limit must not be null");
+      requirePositive(requestsPerSecond, bytesPerSecond);
+      burst = burst != null ? burst : Duration.ofSeconds(1);
+      schedules = schedules != null ? schedules : List.of();
+    }
+  }
+
+  public record Schedule(
+      /* Days the schedule applies on, every day if not set */
+      Set<DayOfWeek> days,
+
+      /* Local time the schedule starts at, inclusive */
+      LocalTime from,
+
+      /* Local time the schedule ends at, exclusive, may be before from to span midnight */
+      LocalTime to,
+
+      /* Requests per second, the rate of the limit applies if not set */
+      Double requestsPerSecond,
+
+      /* Bytes per second, the rate of the limit applies if not set */
+      DataSize bytesPerSecond) {
+
+    public Schedule {
+      requirePositive(requestsPerSecond, bytesPerSecond);
+      days = days != null && !days.isEmpty() ? days : EnumSet.allOf(DayOfWeek.class);
+      from = from != null ? from : LocalTime.MIN;
+      to = to != null ? to : LocalTime.MIDNIGHT;
+    }
+
+    boolean appliesAt(LocalDateTime now) {
+      if (!days.contains(now.getDayOfWeek())) {
+        return false;
+      }
+      var time = now.toLocalTime();
+      return from.isBefore(to)
+          ? !time.isBefore(from) && time.isBefore(to)
+          : !time.isBefore(from) || time.isBefore(to);
+    }
+  }
+}
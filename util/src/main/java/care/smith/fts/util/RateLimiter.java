@@ -0,0 +1,203 @@
+package care.smith.fts.util;
+
+import static java.time.temporal.ChronoUnit.NANOS;
+
+import care.smith.fts.util.RateLimitConfig.Limit;
+import care.smith.fts.util.RateLimitConfig.Schedule;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.function.Function;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.client.reactive.ClientHttpRequestDecorator;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Limits the requests and bytes per second sent to and received from a server with token buckets.
+ * Requests and response bodies are delayed until enough tokens are available. Request bodies are
+ * charged while they are written, so the requests following them wait instead. Each bucket holds
+ * the tokens of <code>burst</code>.
+ *
+ * <p>The delays count against the timeouts of the callers, e.g. the <code>timeout</code> of a
+ * request that covers reading its body: a response of <code>n</code> bytes takes at least <code>
+ * n / bytesPerSecond</code>, and longer while other responses from the host share the rate. The
+ * rates must leave the callers enough time for the largest responses they read concurrently.
+ *
+ * <p>The time throttled is recorded as {@code http.client.rateLimit.delay}, tagged by <code>host
+ * </code> and <code>kind</code> (requests or bytes).
+ */
+public class RateLimiter implements ExchangeFilterFunction {
+
+  private final Limit limit;
+  private final Clock clock;
+  private final Instant start;
+  private final TokenBucket requests;
+  private final TokenBucket bytes;
+  private final Timer requestDelay;
+  private final Timer bytesDelay;
+
+  public RateLimiter(Limit limit, MeterRegistry meterRegistry) {
+    this(limit, meterRegistry, Clock.systemDefaultZone());
+  }
+
+  RateLimiter(Limit limit, MeterRegistry meterRegistry, Clock clock) {
+    this.limit = limit;
+    this.clock = clock;
+    this.start = clock.instant();
+    this.requests = new TokenBucket(limit.burst());
+    this.bytes = new TokenBucket(limit.burst());
+    this.requestDelay = delayTimer(meterRegistry, "requests");
+    this.bytesDelay = delayTimer(meterRegistry, "bytes");
+  }
+
+  private Timer delayTimer(MeterRegistry meterRegistry, String kind) {
+    return Timer.builder("http.client.rateLimit.delay")
+        .description("Time requests and bodies are delayed by the rate limit")
+        .tag("host", limit.host())
+        .tag("kind", kind)
+        .register(meterRegistry);
+  }
+
+  @Override
+  public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+    return Mono.defer(() -> delay(reserveRequest(), requestDelay))
+        .then(Mono.defer(() -> next.exchange(chargeBody(request))))
+        .map(this::throttleBody);
+  }
+
+  public String host() {
+    return limit.host();
+  }
+
+  /**
+   * @return the time to wait before the next request may be sent
+   */
+  Duration reserveRequest() {
+    return requests.reserve(1, currentRate(Rate::requestsPerSecond), nanos());
+  }
+
+  /**
+   * @return the time to wait before the next <code>n</code> bytes may be transferred
+   */
+  Duration reserveBytes(long n) {
+    return bytes.reserve(n, currentRate(Rate::bytesPerSecond), nanos());
+  }
+
+  private static Mono<Void> delay(Duration delay, Timer timer) {
+    if (delay.isZero()) {
+      return Mono.empty();
+    }
+    timer.record(delay);
+    return Mono.delay(delay).then();
+  }
+
+  private ClientRequest chargeBody(ClientRequest request) {
+    if (!limitsBytes()) {
+      return request;
+    }
+    var body = request.body();
+    return ClientRequest.from(request)
+        .body(
+            (message, context) ->
+                body.insert(
+                    new ClientHttpRequestDecorator(message) {
+                      @Override
+                      public Mono<Void> writeWith(Publisher<? extends DataBuffer> buffers) {
+                        return super.writeWith(
+                            Flux.from(buffers).doOnNext(b -> reserveBytes(b.readableByteCount())));
+                      }
+                    },
+                    context))
+        .build();
+  }
+
+  private ClientResponse throttleBody(ClientResponse response) {
+    if (!limitsBytes()) {
+      return response;
+    }
+    return response
+        .mutate()
+        .body(b -> b.delayUntil(buf -> delay(reserveBytes(buf.readableByteCount()), bytesDelay)))
+        .build();
+  }
+
+  private boolean limitsBytes() {
+    return limit.bytesPerSecond() != null
+        || limit.schedules().stream().anyMatch(s -> s.bytesPerSecond() != null);
+  }
+
+  private long nanos() {
+    return NANOS.between(start, clock.instant());
+  }
+
+  private Double currentRate(Function<Rate, Double> rate) {
+    var now = LocalDateTime.now(clock);
+    return limit.schedules().stream()
+        .filter(s -> s.appliesAt(now))
+        .findFirst()
+        .map(s -> rate.apply(Rate.of(s, limit)))
+        .orElseGet(() -> rate.apply(Rate.of(limit)));
+  }
+
+  private record Rate(Double requestsPerSecond, Double bytesPerSecond) {
+    static Rate of(Limit limit) {
+      return new Rate(limit.requestsPerSecond(), bytes(limit.bytesPerSecond()));
+    }
+
+    /* Rates not set by the schedule are inherited from the limit */
+    static Rate of(Schedule schedule, Limit limit) {
+      return new Rate(
+          schedule.requestsPerSecond() != null
+              ? schedule.requestsPerSecond()
+              : limit.requestsPerSecond(),
+          bytes(
+              schedule.bytesPerSecond() != null
+                  ? schedule.bytesPerSecond()
+                  : limit.bytesPerSecond()));
+    }
+
+    private static Double bytes(DataSize size) {
+      return size != null ? (double) size.toBytes() : null;
+    }
+  }
+
+  /**
+   * Token bucket whose rate may change between reservations. Reservations may exceed the tokens
+   * available, the debt is paid by waiting, so that concurrent callers are served in order.
+   */
+  static final class TokenBucket {
+    private final double burstSeconds;
+
+    /* Guarded by this */
+    private double tokens;
+    private long last;
+    private boolean started;
+
+    TokenBucket(Duration burst) {
+      this.burstSeconds = burst.toNanos() / 1e9;
+    }
+
+    synchronized Duration reserve(double n, Double rate, long now) {
+      if (rate == null) {
+        last = now;
+        return Duration.ZERO;
+      }
+      var capacity = Math.max(1, rate * burstSeconds);
+      tokens = started ? Math.min(capacity, tokens + (now - last) / 1e9 * rate) : capacity;
+      started = true;
+      last = now;
+      tokens -= n;
+      return tokens >= 0 ? Duration.ZERO : Duration.ofNanos((long) Math.ceil(-tokens / rate * 1e9));
+    }
+  }
+}
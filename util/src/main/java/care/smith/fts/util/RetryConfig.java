@@ -0,0 +1,73 @@
+package care.smith.fts.util;
+
+import java.time.Duration;
+
+public record RetryConfig(
+    /* Maximum number of retries of a request */
+    Integer maxRetries,
+
+    /* Backoff before the first retry, doubled with each further retry */
+    Duration minBackoff,
+
+    /* Upper bound of the backoff and of the delay requested by a Retry-After header */
+    Duration maxBackoff,
+
+    /* Fraction of the backoff that is randomly added or subtracted, 0 disables jitter */
+    Double jitter,
+
+    /* Limit of the retries relative to the requests sent to the server */
+    BudgetConfig budget,
+
+    /* Reject requests while the server fails, disabled if not set */
+    CircuitBreakerConfig circuitBreaker) {
+
+  public RetryConfig {
+    maxRetries = maxRetries != null ? maxRetries : 3;
+    minBackoff = minBackoff != null ? minBackoff : Duration.ofSeconds(1);
+    maxBackoff = maxBackoff != null ? maxBackoff : Duration.ofSeconds(30);
+    jitter = jitter != null ? jitter : 0.5;
+    budget = budget != null ? budget : new BudgetConfig(null, null, null);
+  }
+
+  public RetryConfig() {
+    this(null, null, null, null, null, null);
+  }
+
+  public record BudgetConfig(
+      /* Fraction of the requests that may be retried */
+      Double ratio,
+
+      /* Retries that are always allowed per window */
+      Integer minRetries,
+
+      /* Requests and retries are counted per window */
+      Duration window) {
+
+    public BudgetConfig {
+      ratio = ratio != null ? ratio : 0.2;
+      minRetries = minRetries != null ? minRetries : 10;
+      window = window != null ? window : Duration.ofSeconds(10);
+    }
+  }
+
+  public record CircuitBreakerConfig(
+      /* Fraction of failed requests per window that opens the circuit */
+      Double failureRateThreshold,
+
+      /* Requests per window before the failure rate is evaluated */
+      Integer minimumRequests,
+
+      /* Requests and failures are counted per window */
+      Duration window,
+
+      /* Time the circuit stays open before a single request probes the server */
+      Duration openDuration) {
+
+    public CircuitBreakerConfig {
+      failureRateThreshold = failureRateThreshold != null ? failureRateThreshold : 0.5;
+      minimumRequests = minimumRequests != null ? minimumRequests : 20;
+      window = window != null ? window : Duration.ofSeconds(10);
+      openDuration = openDuration != null ? openDuration : Duration.ofSeconds(30);
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package care.smith.fts.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * The {@link RetryPolicy} of each server, shared by all clients of the agent calling the same host
+ * and port, so that its budget and circuit breaker account for all requests sent to the server. The
+ * {@link RetryConfig} of the first client of a server applies to all of them.
+ */
+@Slf4j
+@Component
+public class RetryPolicies {
+
+  private final MeterRegistry meterRegistry;
+  private final Map<String, RetryPolicy> policies = new ConcurrentHashMap<>();
+
+  public RetryPolicies(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  public RetryPolicy of(HttpClientConfig client) {
+    var policy =
+        policies.computeIfAbsent(
+            RetryPolicy.target(client.baseUrl()),
+            t -> new RetryPolicy(client.baseUrl(), client.retry(), meterRegistry));
+    if (!policy.config().equals(client.retry())) {
+      log.warn(
+          "Retry config of {} differs from the one of other clients of {}, using {}",
+          client.baseUrl(),
+          policy.target(),
+          policy.config());
+    }
+    return policy;
+  }
+}
@@ -0,0 +1,179 @@
+package care.smith.fts.util;
+
+import static care.smith.fts.util.RetryStrategies.retryStrategy;
+
+import care.smith.fts.util.CircuitBreaker.Outcome;
+import care.smith.fts.util.error.CircuitBreakerOpenException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.net.URI;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Retries of the requests to a server, see {@link RetryConfig} and {@link
+ * RetryStrategies#retryStrategy}. The clients of an agent share the policy of each server, see
+ * {@link RetryPolicies}. Within each window of the budget, at most <code>minRetries +
+ * ratio * requests</code> retries are made. If configured, a {@link CircuitBreaker} rejects
+ * requests while the server fails.
+ *
+ * <p>The requests are counted by the {@link #filter()} of the clients. Records, tagged by the
+ * <code>
+ * target</code> host:
+ *
+ * <ul>
+ *   <li>{@code http.client.retries.rejected}: retries rejected by the budget
+ *   <li>{@code http.client.requests.rejected}: requests rejected by the open circuit breaker
+ *   <li>{@code http.client.circuitBreaker.state}: 0 closed, 1 open, 2 half-open
+ * </ul>
+ */
+@Slf4j
+public class RetryPolicy {
+  private final String target;
+  private final RetryConfig config;
+  private final MeterRegistry meterRegistry;
+  private final LongSupplier nanoTime;
+  private final Budget budget;
+  private final CircuitBreaker circuitBreaker;
+  private final Counter rejectedRetries;
+  private final Counter rejectedRequests;
+
+  public RetryPolicy(String baseUrl, RetryConfig config, MeterRegistry meterRegistry) {
+    this(baseUrl, config, meterRegistry, System::nanoTime);
+  }
+
+  RetryPolicy(
+      String baseUrl, RetryConfig config, MeterRegistry meterRegistry, LongSupplier nanoTime) {
+    this.target = target(baseUrl);
+    this.config = config;
+    this.meterRegistry = meterRegistry;
+    this.nanoTime = nanoTime;
+    this.budget = new Budget(config.budget());
+    this.circuitBreaker =
+        config.circuitBreaker() != null
+            ? new CircuitBreaker(config.circuitBreaker(), nanoTime)
+            : null;
+    rejectedRetries = meterRegistry.counter("http.client.retries.rejected", "target", target);
+    rejectedRequests = meterRegistry.counter("http.client.requests.rejected", "target", target);
+    if (circuitBreaker != null) {
+      Gauge.builder("http.client.circuitBreaker.state", circuitBreaker, c -> c.state().ordinal())
+          .tag("target", target)
+          .register(meterRegistry);
+    }
+  }
+
+  static String target(String baseUrl) {
+    try {
+      var url = URI.create(baseUrl);
+      if (url.getHost() == null) {
+        return baseUrl;
+      }
+      return url.getPort() < 0 ? url.getHost() : url.getHost() + ":" + url.getPort();
+    } catch (IllegalArgumentException e) {
+      return baseUrl;
+    }
+  }
+
+  /** Counts the requests of the client and rejects them while the circuit breaker is open. */
+  public ExchangeFilterFunction filter() {
+    return (request, next) -> {
+      if (circuitBreaker == null) {
+        budget.recordRequest();
+        return next.exchange(request);
+      }
+      var generation = circuitBreaker.tryAcquire();
+      if (generation < 0) {
+        rejectedRequests.increment();
+        return Mono.error(new CircuitBreakerOpenException(target));
+      }
+      budget.recordRequest();
+      return next.exchange(request)
+          .doOnNext(r -> circuitBreaker.record(generation, outcome(r.statusCode())))
+          .doOnError(e -> circuitBreaker.record(generation, outcome(e)))
+          .doOnCancel(() -> circuitBreaker.record(generation, Outcome.IGNORED));
+    };
+  }
+
+  /** Retries with the {@link RetryConfig} of the client, as long as the budget allows it. */
+  public Retry retry(String name) {
+    return retryStrategy(meterRegistry, name, config, this::tryRetry);
+  }
+
+  private boolean tryRetry() {
+    if (budget.tryRetry()) {
+      return true;
+    }
+    log.debug("Retry budget of {} exhausted", target);
+    rejectedRetries.increment();
+    return false;
+  }
+
+  String target() {
+    return target;
+  }
+
+  RetryConfig config() {
+    return config;
+  }
+
+  public CircuitBreaker.State circuitBreakerState() {
+    return circuitBreaker != null ? circuitBreaker.state() : CircuitBreaker.State.CLOSED;
+  }
+
+  private static Outcome outcome(HttpStatusCode status) {
+    return status.is5xxServerError() || status.value() == 429 ? Outcome.FAILURE : Outcome.SUCCESS;
+  }
+
+  private static Outcome outcome(Throwable e) {
+    return e instanceof TimeoutException || e instanceof WebClientRequestException
+        ? Outcome.FAILURE
+        : Outcome.IGNORED;
+  }
+
+  private final class Budget {
+    private final double ratio;
+    private final int minRetries;
+    private final long windowNanos;
+
+    /* Guarded by this */
+    private long windowStart = nanoTime.getAsLong();
+    private long requests;
+    private long retries;
+
+    private Budget(RetryConfig.BudgetConfig config) {
+      this.ratio = config.ratio();
+      this.minRetries = config.minRetries();
+      this.windowNanos = config.window().toNanos();
+    }
+
+    private synchronized void recordRequest() {
+      roll();
+      requests++;
+    }
+
+    private synchronized boolean tryRetry() {
+      roll();
+      if (retries < minRetries + ratio * requests) {
+        retries++;
+        return true;
+      }
+      return false;
+    }
+
+    private void roll() {
+      var now = nanoTime.getAsLong();
+      if (now - windowStart >= windowNanos) {
+        windowStart = now;
+        requests = 0;
+        retries = 0;
+      }
+    }
+  }
+}
@@ -1,24 +1,103 @@
 package care.smith.fts.util;
 
-import static com.google.common.base.Predicates.or;
 import static java.lang.Boolean.parseBoolean;
+import static java.time.format.DateTimeFormatter.RFC_1123_DATE_TIME;
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
 
 import io.micrometer.core.instrument.MeterRegistry;
 import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import org.slf4j.LoggerFactory;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
-import reactor.util.retry.RetryBackoffSpec;
 
 public interface RetryStrategies {
 
   boolean RETRY_TIMEOUT = parseBoolean(System.getProperty("fts.retryTimeout", "true"));
 
-  static RetryBackoffSpec defaultRetryStrategy(MeterRegistry meterRegistry, String name) {
+  /** Retries with the defaults of {@link RetryConfig}, without a retry budget. */
+  static Retry defaultRetryStrategy(MeterRegistry meterRegistry, String name) {
+    return retryStrategy(meterRegistry, name, new RetryConfig(), () -> true);
+  }
+
+  /**
+   * Retries 5xx and 429 responses and timeouts up to <code>maxRetries</code> times, as long as the
+   * <code>budget</code> allows it. A retry is delayed as long as the server asks for with a <code>
+   * Retry-After</code> header, otherwise by an exponential backoff with jitter.
+   */
+  static Retry retryStrategy(
+      MeterRegistry meterRegistry, String name, RetryConfig config, BooleanSupplier budget) {
     var counter = meterRegistry.counter("http.client.requests.retries", "request_name", name);
-    return Retry.backoff(3, Duration.ofSeconds(1))
-        .filter(or(RetryStrategies::is5xxServerError, RetryStrategies::isTimeout))
-        .doAfterRetry(i -> counter.increment());
+    return Retry.from(
+        signals ->
+            signals.concatMap(
+                signal -> {
+                  var failure = signal.failure();
+                  var retries = signal.totalRetries();
+                  if (!isRetryable(failure)) {
+                    return Mono.error(failure);
+                  } else if (retries >= config.maxRetries()) {
+                    return Mono.error(
+                        Exceptions.retryExhausted(
+                            "Retries exhausted: %d/%d".formatted(retries, config.maxRetries()),
+                            failure));
+                  } else if (!budget.getAsBoolean()) {
+                    return Mono.error(failure);
+                  }
+                  return Mono.delay(delay(config, retries, failure))
+                      .doOnNext(i -> counter.increment());
+                }));
+  }
+
+  static Duration delay(RetryConfig config, long retries, Throwable failure) {
+    var max = config.maxBackoff();
+    return retryAfter(failure)
+        .map(d -> d.compareTo(max) > 0 ? max : d)
+        .orElseGet(() -> backoff(config, retries, max));
+  }
+
+  private static Duration backoff(RetryConfig config, long retries, Duration max) {
+    var backoff = config.minBackoff().multipliedBy(1L << Math.min(retries, 30));
+    if (backoff.compareTo(max) > 0 || backoff.isNegative()) {
+      backoff = max;
+    }
+    var jitter = backoff.toMillis() * config.jitter();
+    return backoff.plusMillis((long) (jitter * ThreadLocalRandom.current().nextDouble(-1, 1)));
+  }
+
+  /** The delay requested by a <code>Retry-After</code> header, in seconds or as HTTP date. */
+  static Optional<Duration> retryAfter(Throwable failure) {
+    if (!(failure instanceof WebClientResponseException e)) {
+      return Optional.empty();
+    }
+    var retryAfter = e.getHeaders().getFirst(RETRY_AFTER);
+    if (retryAfter == null) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(Duration.ofSeconds(Math.max(0, Long.parseLong(retryAfter.trim()))));
+    } catch (NumberFormatException notSeconds) {
+      try {
+        var date = ZonedDateTime.parse(retryAfter.trim(), RFC_1123_DATE_TIME);
+        var delay = Duration.between(ZonedDateTime.now(date.getZone()), date);
+        return Optional.of(delay.isNegative() ? Duration.ZERO : delay);
+      } catch (DateTimeParseException notDate) {
+        LoggerFactory.getLogger(RetryStrategies.class)
+            .warn("Failed to parse Retry-After header: {}", retryAfter);
+        return Optional.empty();
+      }
+    }
+  }
+
+  static boolean isRetryable(Throwable e) {
+    return is5xxServerError(e) || isTooManyRequests(e) || isTimeout(e);
   }
 
   static boolean isTimeout(Throwable e) {
@@ -29,4 +108,8 @@ public interface RetryStrategies {
     return e instanceof WebClientResponseException
         && ((WebClientResponseException) e).getStatusCode().is5xxServerError();
   }
+
+  private static boolean isTooManyRequests(Throwable e) {
+    return e instanceof WebClientResponseException.TooManyRequests;
+  }
 }
@@ -0,0 +1,121 @@
+package care.smith.fts.util;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Records the stages of transfer processes, tagged by project and stage:
+ *
+ * <ul>
+ *   <li>{@code transferProcess.stage}: time spent in a stage
+ *   <li>{@code transferProcess.stage.active}: number of patients currently in a stage
+ *   <li>{@code transferProcess.patient}: time from selecting a patient until its data is sent
+ *   <li>{@code transferProcess.bundle.entries}: number of entries per bundle
+ *   <li>{@code transferProcess.patient.resources}: number of resources sent per patient
+ * </ul>
+ *
+ * <p>Stages are recorded before their completion or error is passed on, so the meters are up to
+ * date once a subscriber sees the result.
+ */
+public class TransferProcessMetrics {
+  private final MeterRegistry meterRegistry;
+  private final Map<Tags, AtomicInteger> active = new ConcurrentHashMap<>();
+
+  public TransferProcessMetrics(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  public <T> Mono<T> stage(String project, String stage, Mono<T> mono) {
+    return Mono.defer(
+        () -> {
+          var finish = new OnceRunnable(enter(project, stage));
+          return mono.doOnTerminate(finish).doOnCancel(finish);
+        });
+  }
+
+  public <T> Flux<T> stage(String project, String stage, Flux<T> flux) {
+    return Flux.defer(
+        () -> {
+          var finish = new OnceRunnable(enter(project, stage));
+          return flux.doOnTerminate(finish).doOnCancel(finish);
+        });
+  }
+
+  /** Records a stage that is complete once the first element has been emitted. */
+  public <T> Flux<T> untilFirst(String project, String stage, Flux<T> flux) {
+    return Flux.defer(
+        () -> {
+          var finish = new OnceRunnable(enter(project, stage));
+          return flux.doOnNext(e -> finish.run()).doOnTerminate(finish).doOnCancel(finish);
+        });
+  }
+
+  public <T> Mono<T> patient(String project, Mono<T> mono) {
+    return Mono.defer(
+        () -> {
+          var sample = Timer.start(meterRegistry);
+          var finish =
+              new OnceRunnable(
+                  () ->
+                      sample.stop(
+                          Timer.builder("transferProcess.patient")
+                              .tag("project", project)
+                              .publishPercentileHistogram()
+                              .register(meterRegistry)));
+          return mono.doOnTerminate(finish).doOnCancel(finish);
+        });
+  }
+
+  public void bundle(String project, String stage, int entries) {
+    DistributionSummary.builder("transferProcess.bundle.entries")
+        .tags("project", project, "stage", stage)
+        .publishPercentileHistogram()
+        .register(meterRegistry)
+        .record(entries);
+  }
+
+  public void patientResources(String project, long resources) {
+    DistributionSummary.builder("transferProcess.patient.resources")
+        .tag("project", project)
+        .publishPercentileHistogram()
+        .register(meterRegistry)
+        .record(resources);
+  }
+
+  private Runnable enter(String project, String stage) {
+    var tags = Tags.of("project", project, "stage", stage);
+    var inStage =
+        active.computeIfAbsent(
+            tags, t -> meterRegistry.gauge("transferProcess.stage.active", t, new AtomicInteger()));
+    inStage.incrementAndGet();
+    var sample = Timer.start(meterRegistry);
+    return () -> {
+      inStage.decrementAndGet();
+      sample.stop(Timer.builder("transferProcess.stage").tags(tags).register(meterRegistry));
+    };
+  }
+
+  private static class OnceRunnable implements Runnable {
+    private final Runnable runnable;
+    private boolean done;
+
+    OnceRunnable(Runnable runnable) {
+      this.runnable = runnable;
+    }
+
+    @Override
+    public synchronized void run() {
+      if (!done) {
+        done = true;
+        runnable.run();
+      }
+    }
+  }
+}
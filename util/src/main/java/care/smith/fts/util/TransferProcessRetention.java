@@ -0,0 +1,23 @@
+package care.smith.fts.util;
+
+import jakarta.validation.constraints.NotNull;
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * How long finished transfer processes are retained. Running processes are always kept, finished
+ * ones are evicted and only a summary of their status is kept, see {@link FinishedProcesses}.
+ */
+@Configuration
+@ConfigurationProperties("transfer-process.retention")
+@Data
+public class TransferProcessRetention {
+
+  /* Time the status of a finished process may be requested */
+  @NotNull Duration ttl = Duration.ofHours(1);
+
+  /* Number of finished processes whose status is kept, the oldest are dropped first */
+  int maxFinished = 10_000;
+}
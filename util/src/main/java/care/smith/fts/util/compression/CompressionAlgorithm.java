@@ -0,0 +1,94 @@
+package care.smith.fts.util.compression;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/** Content codings that are used to compress request and response bodies. */
+public enum CompressionAlgorithm {
+  NONE("identity", 0) {
+    @Override
+    OutputStream compress(OutputStream out, int level) {
+      return out;
+    }
+
+    @Override
+    Decoder decoder() {
+      return new Decoder() {
+        @Override
+        public byte[] decode(byte[] input) {
+          return input;
+        }
+
+        @Override
+        public byte[] finish() {
+          return new byte[0];
+        }
+
+        @Override
+        public void close() {}
+      };
+    }
+  },
+
+  GZIP("gzip", Deflater.DEFAULT_COMPRESSION) {
+    @Override
+    OutputStream compress(OutputStream out, int level) throws IOException {
+      return new GZIPOutputStream(out) {
+        {
+          def.setLevel(level);
+        }
+      };
+    }
+
+    @Override
+    Decoder decoder() {
+      return new GzipDecoder();
+    }
+  },
+
+  ZSTD("zstd", 3) {
+    @Override
+    OutputStream compress(OutputStream out, int level) throws IOException {
+      return new ZstdOutputStream(out, level);
+    }
+
+    @Override
+    Decoder decoder() {
+      return new ZstdDecoder();
+    }
+  };
+
+  private final String encoding;
+  private final int defaultLevel;
+
+  CompressionAlgorithm(String encoding, int defaultLevel) {
+    this.encoding = encoding;
+    this.defaultLevel = defaultLevel;
+  }
+
+  /**
+   * @return the value of this algorithm in Content-Encoding and Accept-Encoding headers
+   */
+  public String encoding() {
+    return encoding;
+  }
+
+  public int defaultLevel() {
+    return defaultLevel;
+  }
+
+  abstract OutputStream compress(OutputStream out, int level) throws IOException;
+
+  abstract Decoder decoder();
+
+  public static Optional<CompressionAlgorithm> fromEncoding(String encoding) {
+    return Arrays.stream(values())
+        .filter(a -> a.encoding.equalsIgnoreCase(encoding.trim()))
+        .findFirst();
+  }
+}
@@ -0,0 +1,206 @@
+package care.smith.fts.util.compression;
+
+import static java.util.stream.Collectors.joining;
+import static org.springframework.http.HttpHeaders.ACCEPT_ENCODING;
+import static org.springframework.http.HttpHeaders.CONTENT_ENCODING;
+import static org.springframework.http.HttpHeaders.CONTENT_LENGTH;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.constraints.NotNull;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ClientHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Slf4j
+@Configuration
+@ConfigurationProperties("compression")
+@Data
+public class CompressionConfig {
+  private static final Set<HttpMethod> METHODS_WITH_BODY =
+      Set.of(HttpMethod.POST, HttpMethod.PUT, HttpMethod.PATCH);
+
+  /* Request attribute of clients that compress their requests and responses */
+  private static final String CLIENT_COMPRESSION = CompressionConfig.class.getName() + ".client";
+
+  /* Algorithm used to compress outgoing request bodies, NONE sends them uncompressed */
+  @NotNull CompressionAlgorithm algorithm = CompressionAlgorithm.NONE;
+
+  /* Compression level of the algorithm, the algorithm's default level if not set */
+  Integer level;
+
+  /* Ask servers for compressed responses, compressed responses are always decoded */
+  boolean acceptCompressedResponses = true;
+
+  /* Size compressed request bodies may have after decompression, larger ones are rejected */
+  @NotNull DataSize maxDecompressedRequestSize = DataSize.ofMegabytes(256);
+
+  @Bean
+  public HttpCompression httpCompression(MeterRegistry meterRegistry) {
+    return new HttpCompression(meterRegistry);
+  }
+
+  @Bean
+  public WebClientCustomizer compressionWebClientCustomizer(HttpCompression compression) {
+    return builder -> builder.filter(compressionFilter(compression));
+  }
+
+  @Bean
+  public WebFilter compressedRequestWebFilter(HttpCompression compression) {
+    return (exchange, chain) ->
+        decompressRequest(compression, maxDecompressedRequestSize.toBytes(), exchange, chain);
+  }
+
+  /**
+   * Marks the requests of a client as compressed. The compression filter is registered for all
+   * clients, but only compresses the requests and responses of clients that opt in.
+   */
+  public static void customize(WebClient.Builder builder, boolean compression) {
+    if (compression) {
+      builder.defaultRequest(r -> r.attribute(CLIENT_COMPRESSION, true));
+    }
+  }
+
+  ExchangeFilterFunction compressionFilter(HttpCompression compression) {
+    var accepted =
+        Stream.of(CompressionAlgorithm.ZSTD, CompressionAlgorithm.GZIP)
+            .map(CompressionAlgorithm::encoding)
+            .collect(joining(", "));
+    return (request, next) -> {
+      if (request.attribute(CLIENT_COMPRESSION).isEmpty()) {
+        return next.exchange(request);
+      }
+      var builder = ClientRequest.from(request);
+      if (acceptCompressedResponses && !request.headers().containsKey(ACCEPT_ENCODING)) {
+        builder.header(ACCEPT_ENCODING, accepted);
+      }
+      if (algorithm != CompressionAlgorithm.NONE && METHODS_WITH_BODY.contains(request.method())) {
+        builder
+            .header(CONTENT_ENCODING, algorithm.encoding())
+            .body(
+                (message, context) ->
+                    request
+                        .body()
+                        .insert(
+                            new ClientHttpRequestDecorator(message) {
+                              @Override
+                              public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                                getHeaders().remove(CONTENT_LENGTH);
+                                return super.writeWith(
+                                    compression.compress(
+                                        body,
+                                        algorithm,
+                                        compressionLevel(),
+                                        bufferFactory(),
+                                        "request"));
+                              }
+
+                              @Override
+                              public Mono<Void> writeAndFlushWith(
+                                  Publisher<? extends Publisher<? extends DataBuffer>> body) {
+                                return writeWith(Flux.from(body).flatMapSequential(p -> p));
+                              }
+                            },
+                            context));
+      }
+      return next.exchange(builder.build()).map(r -> decompressResponse(compression, r));
+    };
+  }
+
+  private int compressionLevel() {
+    return level != null ? level : algorithm.defaultLevel();
+  }
+
+  private static ClientResponse decompressResponse(
+      HttpCompression compression, ClientResponse response) {
+    return contentEncoding(response.headers().asHttpHeaders())
+        .map(
+            algorithm ->
+                response
+                    .mutate()
+                    .headers(h -> h.remove(CONTENT_ENCODING))
+                    .headers(h -> h.remove(CONTENT_LENGTH))
+                    .body(
+                        body ->
+                            compression.decompress(
+                                body,
+                                algorithm,
+                                DefaultDataBufferFactory.sharedInstance,
+                                "response",
+                                Long.MAX_VALUE))
+                    .build())
+        .orElse(response);
+  }
+
+  private static Mono<Void> decompressRequest(
+      HttpCompression compression, long maxSize, ServerWebExchange exchange, WebFilterChain chain) {
+    var request = exchange.getRequest();
+    var encoding = request.getHeaders().getFirst(CONTENT_ENCODING);
+    if (encoding == null || encoding.equalsIgnoreCase(CompressionAlgorithm.NONE.encoding())) {
+      return chain.filter(exchange);
+    }
+    var algorithm = CompressionAlgorithm.fromEncoding(encoding);
+    if (algorithm.isEmpty()) {
+      log.debug("Unsupported request content encoding: {}", encoding);
+      exchange.getResponse().setStatusCode(HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+      return exchange.getResponse().setComplete();
+    }
+    var headers = new HttpHeaders();
+    headers.putAll(request.getHeaders());
+    headers.remove(CONTENT_ENCODING);
+    headers.remove(CONTENT_LENGTH);
+    var decompressed =
+        new ServerHttpRequestDecorator(request) {
+          @Override
+          public HttpHeaders getHeaders() {
+            return headers;
+          }
+
+          @Override
+          public Flux<DataBuffer> getBody() {
+            return compression
+                .decompress(
+                    super.getBody(),
+                    algorithm.get(),
+                    exchange.getResponse().bufferFactory(),
+                    "request",
+                    maxSize)
+                .onErrorMap(
+                    DataBufferLimitException.class,
+                    e -> new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage()));
+          }
+        };
+    return chain.filter(exchange.mutate().request(decompressed).build());
+  }
+
+  private static Optional<CompressionAlgorithm> contentEncoding(HttpHeaders headers) {
+    return Optional.ofNullable(headers.getFirst(CONTENT_ENCODING))
+        .flatMap(CompressionAlgorithm::fromEncoding)
+        .filter(a -> a != CompressionAlgorithm.NONE);
+  }
+}
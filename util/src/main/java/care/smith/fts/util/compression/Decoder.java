@@ -0,0 +1,20 @@
+package care.smith.fts.util.compression;
+
+import java.io.IOException;
+
+/**
+ * Decompresses a body pushed chunk by chunk, without blocking. Each call returns the output that is
+ * complete so far, input that does not yet form a full unit is kept until the next chunk.
+ */
+interface Decoder {
+
+  byte[] decode(byte[] input) throws IOException;
+
+  /**
+   * @return the remaining output
+   * @throws java.io.EOFException if the body ended within a compressed frame
+   */
+  byte[] finish() throws IOException;
+
+  void close();
+}
@@ -0,0 +1,178 @@
+package care.smith.fts.util.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decodes gzip members (RFC 1952) with an {@link Inflater}. Like {@link
+ * java.util.zip.GZIPInputStream}, concatenated members are decoded one after another.
+ */
+class GzipDecoder implements Decoder {
+  private static final int BUFFER_SIZE = 8192;
+  private static final int HEADER_SIZE = 10;
+  private static final int TRAILER_SIZE = 8;
+  private static final int FHCRC = 2;
+  private static final int FEXTRA = 4;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+
+  private enum State {
+    HEADER,
+    DATA,
+    TRAILER
+  }
+
+  private final Inflater inflater = new Inflater(true);
+  private final CRC32 crc = new CRC32();
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+
+  private State state = State.HEADER;
+  private boolean member;
+  /* Header or trailer bytes that arrived before the rest of them */
+  private byte[] pending = new byte[0];
+
+  @Override
+  public byte[] decode(byte[] chunk) throws ZipException {
+    var input = concat(pending, chunk);
+    var out = new ByteArrayOutputStream(BUFFER_SIZE);
+    var pos = 0;
+    while (pos < input.length) {
+      switch (state) {
+        case HEADER -> {
+          var size = headerSize(input, pos);
+          if (size < 0) {
+            return keep(input, pos, out);
+          }
+          pos += size;
+          inflater.reset();
+          crc.reset();
+          member = true;
+          state = State.DATA;
+        }
+        case DATA -> {
+          inflater.setInput(input, pos, input.length - pos);
+          inflate(out);
+          if (!inflater.finished()) {
+            return keep(input, input.length, out);
+          }
+          pos = input.length - inflater.getRemaining();
+          state = State.TRAILER;
+        }
+        case TRAILER -> {
+          if (input.length - pos < TRAILER_SIZE) {
+            return keep(input, pos, out);
+          }
+          checkTrailer(input, pos);
+          pos += TRAILER_SIZE;
+          state = State.HEADER;
+        }
+      }
+    }
+    return keep(input, pos, out);
+  }
+
+  @Override
+  public byte[] finish() throws EOFException {
+    if (!member || state != State.HEADER || pending.length > 0) {
+      throw new EOFException("Unexpected end of gzip body");
+    }
+    return new byte[0];
+  }
+
+  @Override
+  public void close() {
+    inflater.end();
+  }
+
+  private void inflate(ByteArrayOutputStream out) throws ZipException {
+    try {
+      int n;
+      while ((n = inflater.inflate(buffer)) > 0) {
+        crc.update(buffer, 0, n);
+        out.write(buffer, 0, n);
+      }
+      if (inflater.needsDictionary()) {
+        throw new ZipException("Deflate dictionaries are not supported");
+      }
+    } catch (DataFormatException e) {
+      throw new ZipException(e.getMessage());
+    }
+  }
+
+  private void checkTrailer(byte[] input, int pos) throws ZipException {
+    if (uint32(input, pos) != crc.getValue()) {
+      throw new ZipException("Corrupt gzip trailer: CRC mismatch");
+    }
+    if (uint32(input, pos + 4) != (inflater.getBytesWritten() & 0xffffffffL)) {
+      throw new ZipException("Corrupt gzip trailer: size mismatch");
+    }
+  }
+
+  /**
+   * @return the size of the member header starting at <code>pos</code>, -1 if it is incomplete
+   */
+  private static int headerSize(byte[] input, int pos) throws ZipException {
+    if (input.length - pos < HEADER_SIZE) {
+      return -1;
+    }
+    if ((input[pos] & 0xff) != 0x1f || (input[pos + 1] & 0xff) != 0x8b) {
+      throw new ZipException("Not in GZIP format");
+    }
+    if (input[pos + 2] != 8) {
+      throw new ZipException("Unsupported compression method");
+    }
+    var flags = input[pos + 3] & 0xff;
+    var end = pos + HEADER_SIZE;
+    if ((flags & FEXTRA) != 0) {
+      if (input.length - end < 2) {
+        return -1;
+      }
+      end += 2 + ((input[end] & 0xff) | (input[end + 1] & 0xff) << 8);
+    }
+    if ((flags & FNAME) != 0 && (end = skipZeroTerminated(input, end)) < 0) {
+      return -1;
+    }
+    if ((flags & FCOMMENT) != 0 && (end = skipZeroTerminated(input, end)) < 0) {
+      return -1;
+    }
+    if ((flags & FHCRC) != 0) {
+      end += 2;
+    }
+    return end > input.length ? -1 : end - pos;
+  }
+
+  private static int skipZeroTerminated(byte[] input, int pos) {
+    for (var i = pos; i < input.length; i++) {
+      if (input[i] == 0) {
+        return i + 1;
+      }
+    }
+    return -1;
+  }
+
+  private static long uint32(byte[] input, int pos) {
+    return (input[pos] & 0xffL)
+        | (input[pos + 1] & 0xffL) << 8
+        | (input[pos + 2] & 0xffL) << 16
+        | (input[pos + 3] & 0xffL) << 24;
+  }
+
+  private byte[] keep(byte[] input, int pos, ByteArrayOutputStream out) {
+    pending = Arrays.copyOfRange(input, pos, input.length);
+    return out.toByteArray();
+  }
+
+  private static byte[] concat(byte[] a, byte[] b) {
+    if (a.length == 0) {
+      return b;
+    }
+    var bytes = Arrays.copyOf(a, a.length + b.length);
+    System.arraycopy(b, 0, bytes, a.length, b.length);
+    return bytes;
+  }
+}
@@ -0,0 +1,163 @@
+package care.smith.fts.util.compression;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Compresses and decompresses streamed bodies as the buffers arrive, without blocking. The bytes
+ * before and after compression are counted per algorithm and direction.
+ */
+public class HttpCompression {
+  private static final int BUFFER_SIZE = 8192;
+
+  private final MeterRegistry meterRegistry;
+
+  public HttpCompression(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  public Flux<DataBuffer> compress(
+      Publisher<? extends DataBuffer> body,
+      CompressionAlgorithm algorithm,
+      int level,
+      DataBufferFactory bufferFactory,
+      String direction) {
+    var uncompressed = counter("compression.uncompressed.bytes", algorithm, direction);
+    var compressed = counter("compression.compressed.bytes", algorithm, direction);
+    return Flux.using(
+            () -> new Compressor(algorithm, level),
+            compressor ->
+                Flux.from(body)
+                    .doOnNext(b -> uncompressed.increment(b.readableByteCount()))
+                    .map(compressor::write)
+                    .concatWith(Mono.fromCallable(compressor::finish)),
+            Compressor::close)
+        .filter(bytes -> bytes.length > 0)
+        .doOnNext(bytes -> compressed.increment(bytes.length))
+        .map(bufferFactory::wrap);
+  }
+
+  /**
+   * Decompresses the buffers as they arrive.
+   *
+   * @param maxSize bytes the decompressed body may have, exceeding it fails the body with a {@link
+   *     DataBufferLimitException}
+   */
+  public Flux<DataBuffer> decompress(
+      Publisher<? extends DataBuffer> body,
+      CompressionAlgorithm algorithm,
+      DataBufferFactory bufferFactory,
+      String direction,
+      long maxSize) {
+    var uncompressed = counter("compression.uncompressed.bytes", algorithm, direction);
+    var compressed = counter("compression.compressed.bytes", algorithm, direction);
+    return Flux.using(
+            () -> new Decompressor(algorithm.decoder(), maxSize),
+            decompressor ->
+                Flux.from(body)
+                    .doOnNext(b -> compressed.increment(b.readableByteCount()))
+                    .map(decompressor::write)
+                    .concatWith(Mono.fromCallable(decompressor::finish)),
+            Decompressor::close)
+        .filter(bytes -> bytes.length > 0)
+        .doOnNext(bytes -> uncompressed.increment(bytes.length))
+        .map(bufferFactory::wrap);
+  }
+
+  private Counter counter(String name, CompressionAlgorithm algorithm, String direction) {
+    return Counter.builder(name)
+        .baseUnit("bytes")
+        .tag("algorithm", algorithm.encoding())
+        .tag("direction", direction)
+        .register(meterRegistry);
+  }
+
+  /** Decodes each written buffer and counts the decompressed bytes against the limit. */
+  private static class Decompressor {
+    private final Decoder decoder;
+    private final long maxSize;
+    private long size;
+
+    Decompressor(Decoder decoder, long maxSize) {
+      this.decoder = decoder;
+      this.maxSize = maxSize;
+    }
+
+    byte[] write(DataBuffer buffer) {
+      var bytes = new byte[buffer.readableByteCount()];
+      buffer.read(bytes);
+      DataBufferUtils.release(buffer);
+      try {
+        return limit(decoder.decode(bytes));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    byte[] finish() throws IOException {
+      return limit(decoder.finish());
+    }
+
+    void close() {
+      decoder.close();
+    }
+
+    private byte[] limit(byte[] bytes) {
+      size += bytes.length;
+      if (size > maxSize) {
+        throw new DataBufferLimitException(
+            "Decompressed body exceeds the limit of %d bytes".formatted(maxSize));
+      }
+      return bytes;
+    }
+  }
+
+  /** Collects the compressed output of each written buffer. */
+  private static class Compressor {
+    private final ByteArrayOutputStream sink = new ByteArrayOutputStream(BUFFER_SIZE);
+    private final OutputStream out;
+
+    Compressor(CompressionAlgorithm algorithm, int level) throws IOException {
+      this.out = algorithm.compress(sink, level);
+    }
+
+    byte[] write(DataBuffer buffer) {
+      try (var in = buffer.asInputStream(true)) {
+        in.transferTo(out);
+        return drain();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    byte[] finish() throws IOException {
+      out.close();
+      return drain();
+    }
+
+    void close() {
+      try {
+        out.close();
+      } catch (IOException ignored) {
+        // the compressed output is discarded
+      }
+    }
+
+    private byte[] drain() {
+      var bytes = sink.toByteArray();
+      sink.reset();
+      return bytes;
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package care.smith.fts.util.compression;
+
+import com.github.luben.zstd.ZstdDecompressCtx;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes zstd frames with a streaming {@link ZstdDecompressCtx}. The context requires direct
+ * buffers, the input is copied into a direct buffer that grows with the largest chunk.
+ */
+class ZstdDecoder implements Decoder {
+  private static final int BUFFER_SIZE = 8192;
+
+  private final ZstdDecompressCtx ctx = new ZstdDecompressCtx();
+  private final ByteBuffer output = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private final byte[] copy = new byte[BUFFER_SIZE];
+
+  private ByteBuffer input = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private boolean frameComplete;
+  private boolean started;
+
+  @Override
+  public byte[] decode(byte[] chunk) {
+    if (chunk.length == 0) {
+      return chunk;
+    }
+    if (input.capacity() < chunk.length) {
+      input = ByteBuffer.allocateDirect(chunk.length);
+    }
+    input.clear();
+    input.put(chunk).flip();
+    started = true;
+
+    var out = new ByteArrayOutputStream(BUFFER_SIZE);
+    boolean full;
+    do {
+      output.clear();
+      frameComplete = ctx.decompressDirectByteBufferStream(output, input);
+      full = !output.hasRemaining();
+      output.flip();
+      while (output.hasRemaining()) {
+        var n = Math.min(output.remaining(), copy.length);
+        output.get(copy, 0, n);
+        out.write(copy, 0, n);
+      }
+    } while (input.hasRemaining() || full);
+    return out.toByteArray();
+  }
+
+  @Override
+  public byte[] finish() throws EOFException {
+    if (!started || !frameComplete) {
+      throw new EOFException("Unexpected end of zstd body");
+    }
+    return new byte[0];
+  }
+
+  @Override
+  public void close() {
+    ctx.close();
+  }
+}
@@ -0,0 +1,77 @@
+package care.smith.fts.util.deidentifhir;
+
+import de.ume.deidentifhir.util.IDReplacementProvider;
+import de.ume.deidentifhir.util.IdentifierValueReplacementProvider;
+import de.ume.deidentifhir.util.ShiftDateProvider;
+import java.util.function.Supplier;
+
+/**
+ * Per-invocation state of a Deidentifhir instance that is built once and reused for every bundle.
+ * The handlers of the registry are bound to this context, which delegates to the providers of the
+ * deidentification running on the current thread.
+ */
+public class DeidentifhirContext
+    implements IDReplacementProvider, IdentifierValueReplacementProvider, ShiftDateProvider {
+  private final ThreadLocal<Providers> current = new ThreadLocal<>();
+
+  /** Runs the action with the given providers bound to the current thread. */
+  public <T> T withProviders(Providers providers, Supplier<T> action) {
+    var previous = current.get();
+    current.set(providers);
+    try {
+      return action.get();
+    } finally {
+      if (previous != null) {
+        current.set(previous);
+      } else {
+        current.remove();
+      }
+    }
+  }
+
+  @Override
+  public String getIDReplacement(String resourceType, String id) {
+    return providers().ids().getIDReplacement(resourceType, id);
+  }
+
+  @Override
+  public String getValueReplacement(String system, String value) {
+    return providers().values().getValueReplacement(system, value);
+  }
+
+  @Override
+  public Long getDateShiftingValueInMillis(String key) {
+    var dateShift = providers().dateShift();
+    if (dateShift == null) {
+      throw new IllegalStateException("No date shift provider bound");
+    }
+    return dateShift.getDateShiftingValueInMillis(key);
+  }
+
+  private Providers providers() {
+    var providers = current.get();
+    if (providers == null) {
+      throw new IllegalStateException("Deidentifhir is used outside of its context");
+    }
+    return providers;
+  }
+
+  /**
+   * @param dateShift may be {@code null} if the registry does not shift dates
+   */
+  public record Providers(
+      IDReplacementProvider ids,
+      IdentifierValueReplacementProvider values,
+      ShiftDateProvider dateShift) {
+
+    public static <P extends IDReplacementProvider & IdentifierValueReplacementProvider>
+        Providers of(P provider) {
+      return new Providers(provider, provider, null);
+    }
+
+    public static <P extends IDReplacementProvider & IdentifierValueReplacementProvider>
+        Providers of(P provider, ShiftDateProvider dateShift) {
+      return new Providers(provider, provider, dateShift);
+    }
+  }
+}
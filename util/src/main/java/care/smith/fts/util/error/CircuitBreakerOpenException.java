@@ -0,0 +1,8 @@
+package care.smith.fts.util.error;
+
+public class CircuitBreakerOpenException extends RuntimeException {
+
+  public CircuitBreakerOpenException(String target) {
+    super("Circuit breaker of %s is open".formatted(target));
+  }
+}
@@ -6,7 +6,7 @@ import java.time.Duration;
 import java.util.Set;
 
 public record PseudonymizeRequest(
-    @NotNull(groups = PseudonymizeRequest.class) String patientId,
-    @NotNull(groups = PseudonymizeRequest.class) Set<String> ids,
-    @NotBlank(groups = PseudonymizeRequest.class) String domain,
-    @NotNull(groups = PseudonymizeRequest.class) Duration dateShift) {}
+    @NotNull String patientId,
+    @NotNull Set<String> ids,
+    @NotBlank String domain,
+    @NotNull Duration dateShift) {}
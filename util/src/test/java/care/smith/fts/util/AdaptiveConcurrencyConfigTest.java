@@ -0,0 +1,148 @@
+package care.smith.fts.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static reactor.test.StepVerifier.create;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class AdaptiveConcurrencyConfigTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private WebClient client(AdaptiveConcurrencyConfig config, HttpStatus status) {
+    var builder =
+        WebClient.builder().exchangeFunction(r -> Mono.just(ClientResponse.create(status).build()));
+    config.adaptiveConcurrencyWebClientCustomizer(meterRegistry).customize(builder);
+    return builder.build();
+  }
+
+  private double gauge(String name, String host) {
+    return meterRegistry.get(name).tag("host", host).gauge().value();
+  }
+
+  @Test
+  void limitIsPublishedPerHost() {
+    var client = client(new AdaptiveConcurrencyConfig(), HttpStatus.OK);
+
+    create(client.get().uri("http://hds:8080/fhir").retrieve().toBodilessEntity())
+        .expectNextCount(1)
+        .verifyComplete();
+    create(client.get().uri("https://tca/api").retrieve().toBodilessEntity())
+        .expectNextCount(1)
+        .verifyComplete();
+
+    assertThat(gauge("http.client.concurrency.limit", "hds:8080")).isEqualTo(16);
+    assertThat(gauge("http.client.concurrency.limit", "tca")).isEqualTo(16);
+    assertThat(gauge("http.client.concurrency.inFlight", "hds:8080")).isZero();
+    assertThat(gauge("http.client.concurrency.waiting", "hds:8080")).isZero();
+  }
+
+  @Test
+  void requestIsInFlightUntilBodyIsConsumed() {
+    var body = Sinks.many().unicast().<DataBuffer>onBackpressureBuffer();
+    var builder =
+        WebClient.builder()
+            .exchangeFunction(
+                r -> Mono.just(ClientResponse.create(HttpStatus.OK).body(body.asFlux()).build()));
+    new AdaptiveConcurrencyConfig()
+        .adaptiveConcurrencyWebClientCustomizer(meterRegistry)
+        .customize(builder);
+    var client = builder.build();
+
+    create(client.get().uri("http://hds/fhir").retrieve().bodyToMono(String.class))
+        .then(() -> assertThat(gauge("http.client.concurrency.inFlight", "hds")).isEqualTo(1))
+        .then(
+            () -> {
+              body.tryEmitNext(DefaultDataBufferFactory.sharedInstance.wrap("body".getBytes()));
+              body.tryEmitComplete();
+            })
+        .expectNext("body")
+        .verifyComplete();
+
+    assertThat(gauge("http.client.concurrency.inFlight", "hds")).isZero();
+  }
+
+  @Test
+  void eventStreamIsNotInFlight() {
+    var events = Sinks.many().unicast().<DataBuffer>onBackpressureBuffer();
+    var builder =
+        WebClient.builder()
+            .exchangeFunction(
+                r ->
+                    Mono.just(
+                        ClientResponse.create(HttpStatus.OK)
+                            .header("Content-Type", MediaType.TEXT_EVENT_STREAM_VALUE)
+                            .body(events.asFlux())
+                            .build()));
+    new AdaptiveConcurrencyConfig()
+        .adaptiveConcurrencyWebClientCustomizer(meterRegistry)
+        .customize(builder);
+    var client = builder.build();
+
+    create(client.get().uri("http://rda/events").retrieve().bodyToFlux(String.class))
+        .then(
+            () ->
+                events.tryEmitNext(
+                    DefaultDataBufferFactory.sharedInstance.wrap("data:event\n\n".getBytes())))
+        .expectNext("event")
+        .then(() -> assertThat(gauge("http.client.concurrency.inFlight", "rda")).isZero())
+        .then(events::tryEmitComplete)
+        .verifyComplete();
+  }
+
+  @Test
+  void serviceUnavailableDecreasesLimit() {
+    var client = client(new AdaptiveConcurrencyConfig(), HttpStatus.SERVICE_UNAVAILABLE);
+
+    create(client.get().uri("http://hds/fhir").retrieve().toBodilessEntity())
+        .expectError(WebClientResponseException.ServiceUnavailable.class)
+        .verify();
+
+    assertThat(gauge("http.client.concurrency.limit", "hds")).isEqualTo(12);
+  }
+
+  @Test
+  void tooManyRequestsDecreasesLimit() {
+    var client = client(new AdaptiveConcurrencyConfig(), HttpStatus.TOO_MANY_REQUESTS);
+
+    create(client.get().uri("http://hds/fhir").retrieve().toBodilessEntity())
+        .expectError(WebClientResponseException.TooManyRequests.class)
+        .verify();
+
+    assertThat(gauge("http.client.concurrency.limit", "hds")).isEqualTo(12);
+  }
+
+  @Test
+  void clientErrorDoesNotChangeLimit() {
+    var client = client(new AdaptiveConcurrencyConfig(), HttpStatus.NOT_FOUND);
+
+    create(client.get().uri("http://hds/fhir").retrieve().toBodilessEntity())
+        .expectError(WebClientResponseException.NotFound.class)
+        .verify();
+
+    assertThat(gauge("http.client.concurrency.limit", "hds")).isEqualTo(16);
+  }
+
+  @Test
+  void disabledLimitsNothing() {
+    var config = new AdaptiveConcurrencyConfig();
+    config.setEnabled(false);
+    var client = client(config, HttpStatus.OK);
+
+    create(client.get().uri("http://hds/fhir").retrieve().toBodilessEntity())
+        .expectNextCount(1)
+        .verifyComplete();
+
+    assertThat(meterRegistry.find("http.client.concurrency.limit").gauges()).isEmpty();
+  }
+}
@@ -0,0 +1,187 @@
+package care.smith.fts.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+class AdaptiveConcurrencyLimiterTest {
+
+  private final AtomicLong clock = new AtomicLong();
+
+  private static AdaptiveConcurrencyConfig config(int initialLimit, int window) {
+    var config = new AdaptiveConcurrencyConfig();
+    config.setInitialLimit(initialLimit);
+    config.setWindow(window);
+    return config;
+  }
+
+  private AdaptiveConcurrencyLimiter limiter(AdaptiveConcurrencyConfig config) {
+    return new AdaptiveConcurrencyLimiter(config, clock::get);
+  }
+
+  /* The result of a call is whether the server is overloaded */
+  private static Mono<Boolean> call(AdaptiveConcurrencyLimiter limiter, Mono<Boolean> result) {
+    return limiter.limit(result, overloaded -> overloaded, e -> e instanceof TimeoutException);
+  }
+
+  @Test
+  void invalidLimitsThrow() {
+    var config = config(16, 50);
+    config.setMinLimit(0);
+    assertThatThrownBy(() -> new AdaptiveConcurrencyLimiter(config))
+        .isInstanceOf(IllegalArgumentException.class);
+
+    config.setMinLimit(8);
+    config.setMaxLimit(4);
+    assertThatThrownBy(() -> new AdaptiveConcurrencyLimiter(config))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void initialLimitIsClamped() {
+    var config = config(1000, 50);
+    config.setMaxLimit(100);
+    assertThat(limiter(config).limit()).isEqualTo(100);
+  }
+
+  @Test
+  void callsBeyondLimitWait() {
+    var limiter = limiter(config(1, 50));
+    var first = Sinks.<Boolean>one();
+
+    call(limiter, first.asMono()).subscribe();
+    var second = call(limiter, Mono.just(false)).subscribe();
+    assertThat(limiter.inFlight()).isEqualTo(1);
+    assertThat(limiter.waiting()).isEqualTo(1);
+
+    first.tryEmitValue(false);
+    assertThat(limiter.waiting()).isZero();
+    assertThat(limiter.inFlight()).isZero();
+    assertThat(second.isDisposed()).isTrue();
+  }
+
+  @Test
+  void limitGrowsWhileUsed() {
+    var limiter = new AdaptiveConcurrencyLimiter(config(2, 10_000));
+
+    var calls =
+        Flux.range(0, 200)
+            .flatMap(i -> call(limiter, Mono.delay(Duration.ofMillis(1)).thenReturn(false)), 64);
+
+    StepVerifier.create(calls).expectNextCount(200).verifyComplete();
+    assertThat(limiter.limit()).isGreaterThan(2);
+    assertThat(limiter.inFlight()).isZero();
+  }
+
+  @Test
+  void limitDoesNotGrowWhileUnused() {
+    var limiter = limiter(config(4, 10_000));
+
+    for (int i = 0; i < 100; i++) {
+      StepVerifier.create(call(limiter, Mono.just(false))).expectNext(false).verifyComplete();
+    }
+    assertThat(limiter.limit()).isEqualTo(4);
+  }
+
+  @Test
+  void overloadDecreasesLimitOncePerRoundTrip() {
+    var config = config(16, 50);
+    config.setBackoffRatio(0.5);
+    var limiter = limiter(config);
+    var first = Sinks.<Boolean>one();
+    var second = Sinks.<Boolean>one();
+
+    call(limiter, first.asMono()).subscribe();
+    call(limiter, second.asMono()).subscribe();
+    clock.set(10);
+    first.tryEmitValue(true);
+    second.tryEmitValue(true);
+    assertThat(limiter.limit()).isEqualTo(8);
+
+    call(limiter, Mono.just(true)).subscribe();
+    assertThat(limiter.limit()).isEqualTo(4);
+  }
+
+  @Test
+  void limitNeverDropsBelowMinimum() {
+    var config = config(2, 50);
+    config.setMinLimit(2);
+    var limiter = limiter(config);
+
+    for (int i = 0; i < 10; i++) {
+      clock.incrementAndGet();
+      call(limiter, Mono.just(true)).subscribe();
+    }
+    assertThat(limiter.limit()).isEqualTo(2);
+  }
+
+  @Test
+  void timeoutDecreasesLimit() {
+    var limiter = limiter(config(16, 50));
+
+    StepVerifier.create(call(limiter, Mono.error(new TimeoutException())))
+        .expectError(TimeoutException.class)
+        .verify();
+    assertThat(limiter.limit()).isEqualTo(12);
+    assertThat(limiter.inFlight()).isZero();
+  }
+
+  @Test
+  void otherErrorsDoNotChangeLimit() {
+    var limiter = limiter(config(16, 50));
+
+    StepVerifier.create(call(limiter, Mono.error(new IllegalStateException())))
+        .expectError(IllegalStateException.class)
+        .verify();
+    assertThat(limiter.limit()).isEqualTo(16);
+    assertThat(limiter.inFlight()).isZero();
+  }
+
+  @Test
+  void risingLatencyDecreasesLimit() {
+    var limiter = limiter(config(16, 2));
+
+    respondAfter(limiter, 10);
+    respondAfter(limiter, 10);
+    assertThat(limiter.limit()).isEqualTo(16);
+
+    respondAfter(limiter, 15);
+    respondAfter(limiter, 15);
+    assertThat(limiter.limit()).isEqualTo(16);
+
+    respondAfter(limiter, 50);
+    respondAfter(limiter, 50);
+    assertThat(limiter.limit()).isEqualTo(12);
+  }
+
+  private void respondAfter(AdaptiveConcurrencyLimiter limiter, long latency) {
+    var response = Sinks.<Boolean>one();
+    call(limiter, response.asMono()).subscribe();
+    clock.addAndGet(latency);
+    response.tryEmitValue(false);
+  }
+
+  @Test
+  void releasesPermitOnCancel() {
+    var limiter = limiter(config(1, 50));
+    var never = Sinks.<Boolean>one();
+
+    var running = call(limiter, never.asMono()).subscribe();
+    var waiting = call(limiter, Mono.just(false)).subscribe();
+    assertThat(limiter.waiting()).isEqualTo(1);
+
+    waiting.dispose();
+    assertThat(limiter.waiting()).isZero();
+    running.dispose();
+    assertThat(limiter.inFlight()).isZero();
+    assertThat(limiter.limit()).isEqualTo(1);
+  }
+}
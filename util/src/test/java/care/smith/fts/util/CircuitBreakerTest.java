@@ -0,0 +1,121 @@
+package care.smith.fts.util;
+
+import static care.smith.fts.util.CircuitBreaker.Outcome.FAILURE;
+import static care.smith.fts.util.CircuitBreaker.Outcome.IGNORED;
+import static care.smith.fts.util.CircuitBreaker.Outcome.SUCCESS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import care.smith.fts.util.CircuitBreaker.State;
+import care.smith.fts.util.RetryConfig.CircuitBreakerConfig;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+
+  private final AtomicLong clock = new AtomicLong();
+  private final CircuitBreaker breaker =
+      new CircuitBreaker(
+          new CircuitBreakerConfig(0.5, 4, Duration.ofSeconds(10), Duration.ofSeconds(30)),
+          clock::get);
+
+  private void call(CircuitBreaker.Outcome outcome) {
+    breaker.record(breaker.tryAcquire(), outcome);
+  }
+
+  private void open() {
+    for (int i = 0; i < 4; i++) {
+      call(FAILURE);
+    }
+    assertThat(breaker.state()).isEqualTo(State.OPEN);
+  }
+
+  @Test
+  void staysClosedBelowMinimumRequests() {
+    for (int i = 0; i < 3; i++) {
+      call(FAILURE);
+    }
+    assertThat(breaker.state()).isEqualTo(State.CLOSED);
+  }
+
+  @Test
+  void staysClosedBelowThreshold() {
+    call(FAILURE);
+    for (int i = 0; i < 4; i++) {
+      call(SUCCESS);
+    }
+    assertThat(breaker.state()).isEqualTo(State.CLOSED);
+  }
+
+  @Test
+  void ignoredOutcomesAreNotCounted() {
+    for (int i = 0; i < 10; i++) {
+      call(IGNORED);
+    }
+    call(FAILURE);
+    assertThat(breaker.state()).isEqualTo(State.CLOSED);
+  }
+
+  @Test
+  void windowResetsCounts() {
+    for (int i = 0; i < 3; i++) {
+      call(FAILURE);
+    }
+    clock.addAndGet(Duration.ofSeconds(10).toNanos());
+    call(FAILURE);
+    assertThat(breaker.state()).isEqualTo(State.CLOSED);
+  }
+
+  @Test
+  void openRejectsUntilOpenDurationPassed() {
+    open();
+    assertThat(breaker.tryAcquire()).isNegative();
+
+    clock.addAndGet(Duration.ofSeconds(30).toNanos());
+    var probe = breaker.tryAcquire();
+    assertThat(probe).isNotNegative();
+    assertThat(breaker.state()).isEqualTo(State.HALF_OPEN);
+    assertThat(breaker.tryAcquire()).isNegative();
+  }
+
+  @Test
+  void successfulProbeCloses() {
+    open();
+    clock.addAndGet(Duration.ofSeconds(30).toNanos());
+    breaker.record(breaker.tryAcquire(), SUCCESS);
+
+    assertThat(breaker.state()).isEqualTo(State.CLOSED);
+    assertThat(breaker.tryAcquire()).isNotNegative();
+  }
+
+  @Test
+  void failedProbeOpensAgain() {
+    open();
+    clock.addAndGet(Duration.ofSeconds(30).toNanos());
+    breaker.record(breaker.tryAcquire(), FAILURE);
+
+    assertThat(breaker.state()).isEqualTo(State.OPEN);
+    assertThat(breaker.tryAcquire()).isNegative();
+  }
+
+  @Test
+  void ignoredProbeAllowsNextProbe() {
+    open();
+    clock.addAndGet(Duration.ofSeconds(30).toNanos());
+    breaker.record(breaker.tryAcquire(), IGNORED);
+
+    assertThat(breaker.state()).isEqualTo(State.HALF_OPEN);
+    assertThat(breaker.tryAcquire()).isNotNegative();
+  }
+
+  @Test
+  void outcomesOfEarlierGenerationsAreIgnored() {
+    var stale = breaker.tryAcquire();
+    open();
+    clock.addAndGet(Duration.ofSeconds(30).toNanos());
+    breaker.tryAcquire();
+
+    breaker.record(stale, SUCCESS);
+    assertThat(breaker.state()).isEqualTo(State.HALF_OPEN);
+  }
+}
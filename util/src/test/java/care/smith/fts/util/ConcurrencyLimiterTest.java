@@ -0,0 +1,87 @@
+package care.smith.fts.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+class ConcurrencyLimiterTest {
+
+  @Test
+  void nonPositiveLimitThrows() {
+    assertThatThrownBy(() -> new ConcurrencyLimiter(0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void limitsConcurrentSubscriptions() {
+    var limiter = new ConcurrencyLimiter(2);
+    var active = new AtomicInteger();
+    var maxActive = new AtomicInteger();
+
+    var work =
+        Flux.range(0, 20)
+            .flatMap(
+                i ->
+                    limiter.limit(
+                        Mono.delay(Duration.ofMillis(5))
+                            .doOnSubscribe(
+                                s ->
+                                    maxActive.accumulateAndGet(active.incrementAndGet(), Math::max))
+                            .doOnTerminate(active::decrementAndGet)));
+
+    StepVerifier.create(work).expectNextCount(20).verifyComplete();
+    assertThat(maxActive.get()).isEqualTo(2);
+    assertThat(limiter.inFlight()).isZero();
+  }
+
+  @Test
+  void releasesPermitOnError() {
+    var limiter = new ConcurrencyLimiter(1);
+
+    StepVerifier.create(limiter.limit(Mono.error(new IllegalStateException())))
+        .expectError(IllegalStateException.class)
+        .verify();
+    StepVerifier.create(limiter.limit(Mono.just(1))).expectNext(1).verifyComplete();
+    assertThat(limiter.inFlight()).isZero();
+  }
+
+  @Test
+  void releasesPermitOnCancel() {
+    var limiter = new ConcurrencyLimiter(1);
+    var never = Sinks.<Integer>one();
+
+    var running = limiter.limit(never.asMono()).subscribe();
+    assertThat(limiter.inFlight()).isEqualTo(1);
+
+    var waiting = limiter.limit(Mono.just(1)).subscribe();
+    assertThat(limiter.waiting()).isEqualTo(1);
+
+    waiting.dispose();
+    assertThat(limiter.waiting()).isZero();
+    running.dispose();
+    assertThat(limiter.inFlight()).isZero();
+  }
+
+  @Test
+  void limitsFlux() {
+    var limiter = new ConcurrencyLimiter(1);
+    var first = Sinks.many().unicast().<Integer>onBackpressureBuffer();
+
+    var received = new AtomicInteger();
+    limiter.limit(first.asFlux()).subscribe(i -> received.incrementAndGet());
+    limiter.limit(Flux.just(1, 2)).subscribe(i -> received.incrementAndGet());
+
+    first.tryEmitNext(0);
+    assertThat(received.get()).isEqualTo(1);
+    first.tryEmitComplete();
+    assertThat(received.get()).isEqualTo(3);
+    assertThat(limiter.inFlight()).isZero();
+  }
+}
@@ -5,12 +5,17 @@ import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
 import static org.assertj.core.api.Assertions.assertThat;
 import static reactor.test.StepVerifier.create;
 
+import ca.uhn.fhir.parser.DataFormatException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Observation;
 import org.hl7.fhir.r4.model.Patient;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.core.ResolvableType;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.core.io.buffer.DefaultDataBuffer;
 import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.MediaType;
@@ -55,8 +60,8 @@ class FhirDecoderTest {
     DefaultDataBuffer buffer =
         bufferFactory.wrap(
             """
-            {"resourceType":"Patient","id":"123"}
-            """
+                {"resourceType":"Patient","id":"123"}
+                """
                 .getBytes(StandardCharsets.UTF_8));
     Flux<DataBuffer> input = Flux.just(buffer);
     Flux<Patient> resultFlux =
@@ -76,14 +81,155 @@ class FhirDecoderTest {
     DefaultDataBuffer buffer =
         bufferFactory.wrap(
             """
-                {"resourceType":"Patient","id":"123"}
-                """
+            {"resourceType":"Patient","id":"123"}
+            """
                 .getBytes(StandardCharsets.UTF_8));
     Patient result =
         (Patient) decoder.decode(buffer, resolvableType, MediaType.APPLICATION_JSON, null);
     assertThat(result.getId()).isEqualTo(PATIENT_ID);
   }
 
+  @Test
+  void decodeBundleEntriesFromChunks() {
+    var json =
+        """
+        {"resourceType":"Bundle","type":"searchset","total":3,
+         "link":[{"relation":"next","url":"http://hds/next"}],
+         "entry":[
+          {"resource":{"resourceType":"Patient","id":"1"}},
+          {"resource":{"resourceType":"Observation","id":"2","status":"final",
+            "code":{"text":"x"},"valueQuantity":{"value":1.50}}},
+          {"fullUrl":"http://hds/Patient/3","resource":{"resourceType":"Patient","id":"3"}}]}
+        """;
+
+    create(decodeBundle(chunks(json, 7)))
+        .assertNext(
+            b -> {
+              assertThat(b.getTotal()).isEqualTo(3);
+              assertThat(b.getLink("next").getUrl()).isEqualTo("http://hds/next");
+              assertThat(b.getEntry()).hasSize(1);
+              assertThat(b.getEntryFirstRep().getResource().getIdPart()).isEqualTo("1");
+            })
+        .assertNext(
+            b -> {
+              assertThat(b.getLink("next").getUrl()).isEqualTo("http://hds/next");
+              var observation = (Observation) b.getEntryFirstRep().getResource();
+              assertThat(observation.getValueQuantity().getValueElement().getValueAsString())
+                  .isEqualTo("1.50");
+            })
+        .assertNext(
+            b -> {
+              assertThat(b.getEntryFirstRep().getFullUrl()).isEqualTo("http://hds/Patient/3");
+              assertThat(b.getEntryFirstRep().getResource().getIdPart()).isEqualTo("3");
+            })
+        .verifyComplete();
+  }
+
+  @Test
+  void decodeBundleWithoutEntries() {
+    var json =
+        """
+        {"resourceType":"Bundle","type":"searchset","total":0,"entry":[]}
+        """;
+
+    create(decodeBundle(chunks(json, 5)))
+        .assertNext(
+            b -> {
+              assertThat(b.getTotal()).isZero();
+              assertThat(b.getEntry()).isEmpty();
+            })
+        .verifyComplete();
+  }
+
+  @Test
+  void decodeBundleWithElementsAfterEntries() {
+    var json =
+        """
+        {"entry":[{"resource":{"resourceType":"Patient","id":"1"}}],
+         "resourceType":"Bundle","type":"searchset","total":1}
+        """;
+
+    create(decodeBundle(chunks(json, 16)))
+        .assertNext(b -> assertThat(b.getEntry()).hasSize(1))
+        .assertNext(
+            b -> {
+              assertThat(b.getTotal()).isEqualTo(1);
+              assertThat(b.getEntry()).isEmpty();
+            })
+        .verifyComplete();
+  }
+
+  @Test
+  void decodeIncompleteBundleErrors() {
+    var json =
+        """
+        {"resourceType":"Bundle","entry":[{"resource":{"resourceType":"Patient","id":"1"}}
+        """;
+
+    create(decodeBundle(chunks(json, 16)))
+        .expectNextCount(1)
+        .expectError(DataFormatException.class)
+        .verify();
+  }
+
+  @Test
+  void decodeEmptyBundleStream() {
+    create(decodeBundle(Flux.empty())).verifyComplete();
+  }
+
+  @Test
+  void mergedBundleEntriesEqualJoinedBundle() {
+    var json =
+        """
+        {"resourceType":"Bundle","type":"searchset",
+         "entry":[{"resource":{"resourceType":"Patient","id":"1"}},
+                  {"resource":{"resourceType":"Patient","id":"2"}}]}
+        """;
+
+    var merged = decodeBundle(chunks(json, 3)).reduce(FhirUtils::mergeEntries);
+    var joined =
+        decoder
+            .decodeToMono(
+                chunks(json, 3), ResolvableType.forClass(Bundle.class), APPLICATION_FHIR_JSON, null)
+            .cast(Bundle.class);
+
+    create(Mono.zip(merged, joined))
+        .assertNext(t -> assertThat(t.getT1().equalsDeep(t.getT2())).isTrue())
+        .verifyComplete();
+  }
+
+  private Flux<Bundle> decodeBundle(Flux<DataBuffer> input) {
+    return decoder.decodeEntries(input);
+  }
+
+  private Flux<DataBuffer> chunks(String json, int size) {
+    var bytes = json.getBytes(StandardCharsets.UTF_8);
+    return Flux.range(0, (bytes.length + size - 1) / size)
+        .map(i -> Arrays.copyOfRange(bytes, i * size, Math.min(bytes.length, (i + 1) * size)))
+        .map(bufferFactory::wrap);
+  }
+
+  @Test
+  void decodeBundleToFluxKeepsWholeBundle() {
+    var json =
+        """
+        {"resourceType":"Bundle","entry":[{"resource":{"resourceType":"Patient","id":"1"}},
+                                          {"resource":{"resourceType":"Patient","id":"2"}}]}
+        """;
+
+    create(
+            DataBufferUtils.join(chunks(json, 8))
+                .flatMapMany(
+                    b ->
+                        decoder.decode(
+                            Flux.just(b),
+                            ResolvableType.forClass(Bundle.class),
+                            APPLICATION_FHIR_JSON,
+                            null)))
+        .assertNext(b -> assertThat(((Bundle) b).getEntry()).hasSize(2))
+        .verifyComplete();
+  }
+
   @Test
   void canDecode() {
     ResolvableType resolvableType = ResolvableType.forClass(Patient.class);
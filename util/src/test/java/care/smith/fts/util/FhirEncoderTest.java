@@ -6,6 +6,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static reactor.test.StepVerifier.create;
 
@@ -14,7 +16,9 @@ import ca.uhn.fhir.parser.JsonParser;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.stream.IntStream;
 import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.Patient;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -23,6 +27,7 @@ import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.MediaType;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 class FhirEncoderTest {
@@ -97,6 +102,122 @@ class FhirEncoderTest {
     assertThat(encodedValue).isNull();
   }
 
+  @Test
+  void encodeValueWritesUtf8() {
+    var patient = new Patient();
+    patient.addName().setFamily("Müller").addGiven("Zoë");
+
+    var dataBuffer =
+        encoder.encodeValue(
+            patient,
+            new DefaultDataBufferFactory(),
+            ResolvableType.forClass(Patient.class),
+            APPLICATION_FHIR_JSON,
+            null);
+
+    assertThat(encodedString(dataBuffer))
+        .isEqualTo(FhirUtils.fctx.newJsonParser().encodeResourceToString(patient));
+  }
+
+  @Test
+  void encodeValueUsesSizeOfLastEncode() {
+    var patient = new Patient();
+    patient.addName().setFamily("Smith").addGiven("John");
+    var bufferFactory = spy(new DefaultDataBufferFactory());
+    var type = ResolvableType.forClass(Patient.class);
+
+    assertThat(encoder.sizeHint(Patient.class)).isEqualTo(FhirEncoder.DEFAULT_SIZE_HINT);
+    var size =
+        encoder
+            .encodeValue(patient, bufferFactory, type, APPLICATION_FHIR_JSON, null)
+            .readableByteCount();
+    assertThat(encoder.sizeHint(Patient.class)).isEqualTo(size);
+
+    encoder.encodeValue(patient, bufferFactory, type, APPLICATION_FHIR_JSON, null);
+    verify(bufferFactory).allocateBuffer(size);
+  }
+
+  @Test
+  void sizeHintIsCappedAndDecays() {
+    var factory = new DefaultDataBufferFactory();
+    var type = ResolvableType.forClass(Bundle.class);
+    var large = bundleOf(20_000);
+
+    encoder.encodeValue(large, factory, type, APPLICATION_FHIR_JSON, null);
+    assertThat(encoder.sizeHint(Bundle.class)).isEqualTo(FhirEncoder.MAX_SIZE_HINT);
+
+    var small = bundleOf(1);
+    for (int i = 0; i < 50; i++) {
+      encoder.encodeValue(small, factory, type, APPLICATION_FHIR_JSON, null);
+    }
+    assertThat(encoder.sizeHint(Bundle.class)).isLessThan(FhirEncoder.DEFAULT_SIZE_HINT);
+  }
+
+  @Test
+  void bundleInFluxIsEncodedEntryByEntry() {
+    var bundle = bundleOf(3).setType(Bundle.BundleType.TRANSACTION);
+    bundle.setId("bundle-1");
+
+    var buffers =
+        encoder.encode(
+            Flux.just(bundle),
+            new DefaultDataBufferFactory(),
+            ResolvableType.forClass(Bundle.class),
+            APPLICATION_FHIR_JSON,
+            null);
+
+    create(DataBufferUtils.join(buffers).map(this::encodedString))
+        .expectNext(FhirUtils.fctx.newJsonParser().encodeResourceToString(bundle))
+        .verifyComplete();
+    create(buffers, 0)
+        .thenRequest(2)
+        .expectNextCount(2)
+        .thenRequest(3)
+        .expectNextCount(3)
+        .verifyComplete();
+  }
+
+  @Test
+  void bundleWithoutEntriesInFluxIsEncoded() {
+    var bundle = new Bundle().setType(Bundle.BundleType.TRANSACTION);
+
+    create(
+            encoder
+                .encode(
+                    Flux.just(bundle),
+                    new DefaultDataBufferFactory(),
+                    ResolvableType.forClass(Bundle.class),
+                    APPLICATION_FHIR_JSON,
+                    null)
+                .map(this::encodedString))
+        .expectNext(FhirUtils.fctx.newJsonParser().encodeResourceToString(bundle))
+        .verifyComplete();
+  }
+
+  private static Bundle bundleOf(int patients) {
+    return IntStream.range(0, patients)
+        .mapToObj(i -> new Patient().setId("patient-" + i))
+        .collect(FhirUtils.toBundle());
+  }
+
+  @Test
+  void encodeLargeResourceIntoSingleBuffer() {
+    var bundle =
+        IntStream.range(0, 2000)
+            .mapToObj(i -> new Patient().setId("patient-" + i))
+            .collect(FhirUtils.toBundle());
+
+    create(
+            encoder.encode(
+                Mono.just(bundle),
+                new DefaultDataBufferFactory(),
+                ResolvableType.forClass(Bundle.class),
+                APPLICATION_FHIR_JSON,
+                null))
+        .assertNext(b -> assertThat(b.readableByteCount()).isGreaterThan(64 * 1024))
+        .verifyComplete();
+  }
+
   String encodedString(DataBuffer dataBuffer) {
     return DataBufferUtils.join(Mono.just(dataBuffer))
         .map(
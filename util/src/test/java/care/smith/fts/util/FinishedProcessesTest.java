@@ -0,0 +1,69 @@
+package care.smith.fts.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import care.smith.fts.util.FinishedProcesses.Summary;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class FinishedProcessesTest {
+
+  enum Phase {
+    RUNNING,
+    COMPLETED,
+    ERROR
+  }
+
+  private static TransferProcessRetention retention(Duration ttl, int maxFinished) {
+    var retention = new TransferProcessRetention();
+    retention.setTtl(ttl);
+    retention.setMaxFinished(maxFinished);
+    return retention;
+  }
+
+  @Test
+  void summaryIsKept() {
+    var finished = new FinishedProcesses<>(Phase.class, new TransferProcessRetention());
+    finished.add("a", Phase.COMPLETED, 3, 1);
+    finished.add("b", Phase.ERROR, 0, 2);
+
+    assertThat(finished.get("a")).contains(new Summary<>(Phase.COMPLETED, 3L, 1L));
+    assertThat(finished.get("b")).contains(new Summary<>(Phase.ERROR, 0L, 2L));
+    assertThat(finished.get("c")).isEmpty();
+  }
+
+  @Test
+  void oldestSummaryIsDroppedWhenFull() {
+    var finished = new FinishedProcesses<>(Phase.class, retention(Duration.ofHours(1), 2));
+    finished.add("a", Phase.COMPLETED, 1, 0);
+    finished.add("b", Phase.COMPLETED, 2, 0);
+    finished.add("c", Phase.COMPLETED, 3, 0);
+
+    assertThat(finished.get("a")).isEmpty();
+    assertThat(finished.get("b")).isPresent();
+    assertThat(finished.get("c")).isPresent();
+    assertThat(finished.size()).isEqualTo(2);
+  }
+
+  @Test
+  void addingAgainUpdatesSummary() {
+    var finished = new FinishedProcesses<>(Phase.class, retention(Duration.ofHours(1), 2));
+    finished.add("a", Phase.ERROR, 1, 0);
+    finished.add("a", Phase.COMPLETED, 2, 0);
+    finished.add("b", Phase.COMPLETED, 3, 0);
+
+    assertThat(finished.get("a")).contains(new Summary<>(Phase.COMPLETED, 2L, 0L));
+    assertThat(finished.size()).isEqualTo(2);
+  }
+
+  @Test
+  void summaryExpires() throws InterruptedException {
+    var finished = new FinishedProcesses<>(Phase.class, retention(Duration.ofMillis(50), 10));
+    finished.add("a", Phase.COMPLETED, 1, 0);
+    assertThat(finished.get("a")).isPresent();
+
+    Thread.sleep(100);
+    assertThat(finished.get("a")).isEmpty();
+    assertThat(finished.size()).isZero();
+  }
+}
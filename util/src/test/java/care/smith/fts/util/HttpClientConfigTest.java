@@ -42,6 +42,23 @@ public class HttpClientConfigTest {
     assertThat(om.readValue(config, HttpClientConfig.class)).isNotNull();
   }
 
+  @Test
+  public void compressionIsOptIn() throws JsonProcessingException {
+    ObjectMapper om = new ObjectMapper(new YAMLFactory());
+
+    assertThat(om.readValue("baseUrl: http://localhost", HttpClientConfig.class).compression())
+        .isFalse();
+    assertThat(
+            om.readValue(
+                    """
+                    baseUrl: http://localhost
+                    compression: true
+                    """,
+                    HttpClientConfig.class)
+                .compression())
+        .isTrue();
+  }
+
   @Test
   public void clientCreated() {
     HttpClientConfig config = new HttpClientConfig("http://localhost");
@@ -0,0 +1,103 @@
+package care.smith.fts.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static reactor.test.StepVerifier.create;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class MicroBatcherTest {
+
+  @Test
+  void fullBatchIsFlushedImmediately() {
+    var batches = new CopyOnWriteArrayList<List<Integer>>();
+    var batcher =
+        new MicroBatcher<Integer, String>(
+            3,
+            Duration.ofMinutes(1),
+            requests -> {
+              batches.add(requests);
+              return Mono.just(requests.stream().map(i -> "r" + i).toList());
+            });
+
+    create(Flux.range(0, 6).flatMapSequential(batcher::submit))
+        .expectNext("r0", "r1", "r2", "r3", "r4", "r5")
+        .verifyComplete();
+    assertThat(batches).containsExactly(List.of(0, 1, 2), List.of(3, 4, 5));
+  }
+
+  @Test
+  void partialBatchIsFlushedAfterMaxWait() {
+    var batcher =
+        new MicroBatcher<Integer, String>(
+            100,
+            Duration.ofMillis(50),
+            requests -> Mono.just(requests.stream().map(i -> "r" + i).toList()));
+
+    create(batcher.submit(1)).expectNext("r1").verifyComplete();
+  }
+
+  @Test
+  void batchErrorIsPropagatedToAllRequests() {
+    var batcher =
+        new MicroBatcher<Integer, String>(
+            2, Duration.ofMillis(50), requests -> Mono.error(new IllegalStateException()));
+
+    create(Flux.range(0, 2).flatMap(batcher::submit))
+        .expectError(IllegalStateException.class)
+        .verify();
+  }
+
+  @Test
+  void wrongNumberOfResponsesErrors() {
+    var batcher =
+        new MicroBatcher<Integer, String>(
+            1, Duration.ofMillis(50), requests -> Mono.just(List.of()));
+
+    create(batcher.submit(1)).expectError(IllegalStateException.class).verify();
+  }
+
+  @Test
+  void emptyBatchResponseErrors() {
+    var batcher =
+        new MicroBatcher<Integer, String>(1, Duration.ofMillis(50), requests -> Mono.empty());
+
+    create(batcher.submit(1)).expectError(IllegalStateException.class).verify();
+  }
+
+  @Test
+  void batcherSurvivesFailedBatch() {
+    var calls = new CopyOnWriteArrayList<List<Integer>>();
+    var batcher =
+        new MicroBatcher<Integer, Integer>(
+            1,
+            Duration.ofMillis(50),
+            requests -> {
+              calls.add(requests);
+              return calls.size() == 1
+                  ? Mono.error(new IllegalStateException())
+                  : Mono.just(requests);
+            });
+
+    create(batcher.submit(1)).expectError(IllegalStateException.class).verify();
+    create(batcher.submit(2)).expectNext(2).verifyComplete();
+  }
+
+  @Test
+  void disposeFlushesPendingRequestsAndRejectsNewOnes() {
+    var batcher =
+        new MicroBatcher<Integer, Integer>(
+            100, Duration.ofMinutes(1), requests -> Mono.just(requests));
+
+    var pending = batcher.submit(1).toFuture();
+    batcher.dispose();
+
+    assertThat(batcher.isDisposed()).isTrue();
+    assertThat(pending).succeedsWithin(Duration.ofSeconds(1)).isEqualTo(1);
+    create(batcher.submit(2)).expectError(IllegalStateException.class).verify();
+  }
+}
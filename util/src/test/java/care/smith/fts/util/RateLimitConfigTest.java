@@ -0,0 +1,141 @@
+package care.smith.fts.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import care.smith.fts.util.RateLimitConfig.Limit;
+import care.smith.fts.util.RateLimitConfig.Schedule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class RateLimitConfigTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private WebClient client(RateLimitConfig config) {
+    var builder =
+        WebClient.builder()
+            .exchangeFunction(r -> Mono.just(ClientResponse.create(HttpStatus.OK).build()));
+    config.rateLimitWebClientCustomizer(meterRegistry).customize(builder);
+    return builder.build();
+  }
+
+  private static RateLimitConfig config(Limit... limits) {
+    var config = new RateLimitConfig();
+    config.setLimits(List.of(limits));
+    return config;
+  }
+
+  private static Mono<?> get(WebClient client, String uri) {
+    return client.get().uri(uri).retrieve().toBodilessEntity();
+  }
+
+  private long throttled(String host) {
+    return meterRegistry
+        .get("http.client.rateLimit.delay")
+        .tag("host", host)
+        .tag("kind", "requests")
+        .timer()
+        .count();
+  }
+
+  @Test
+  void nonPositiveRatesAreRejected() {
+    assertThatThrownBy(() -> new Limit("hds", 0.0, null, null, null))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new Limit("hds", null, DataSize.ofBytes(0), null, null))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new Schedule(null, null, null, -1.0, null))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new Schedule(null, null, null, null, DataSize.ofBytes(0)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void limitAppliesToItsHostOnly() {
+    var client = client(config(new Limit("hds", 1.0, null, null, null)));
+
+    StepVerifier.withVirtualTime(
+            () -> get(client, "http://hds/fhir").then(get(client, "http://hds:8080/fhir")))
+        .thenAwait(Duration.ofSeconds(1))
+        .expectNextCount(1)
+        .verifyComplete();
+    assertThat(throttled("hds")).isEqualTo(1);
+
+    StepVerifier.create(get(client, "http://tca/api").then(get(client, "http://tca/api")))
+        .expectNextCount(1)
+        .verifyComplete();
+    assertThat(throttled("hds")).isEqualTo(1);
+  }
+
+  @Test
+  void limitPerPortTakesPrecedence() {
+    var client =
+        client(
+            config(
+                new Limit("hds", 1.0, null, null, null),
+                new Limit("hds:8080", 1000.0, null, null, null)));
+
+    StepVerifier.create(
+            get(client, "http://hds:8080/fhir").then(get(client, "http://hds:8080/fhir")))
+        .expectNextCount(1)
+        .verifyComplete();
+    assertThat(throttled("hds:8080")).isZero();
+  }
+
+  @Test
+  void noLimitsThrottleNothing() {
+    var client = client(new RateLimitConfig());
+
+    StepVerifier.create(get(client, "http://hds/fhir").then(get(client, "http://hds/fhir")))
+        .expectNextCount(1)
+        .verifyComplete();
+    assertThat(meterRegistry.find("http.client.rateLimit.delay").timers()).isEmpty();
+  }
+
+  @Test
+  void bindsFromProperties() {
+    var properties =
+        Map.of(
+            "http.client.rate-limit.limits[0].host", "hds:8080",
+            "http.client.rate-limit.limits[0].requests-per-second", "50",
+            "http.client.rate-limit.limits[0].bytes-per-second", "10MB",
+            "http.client.rate-limit.limits[0].schedules[0].days", "MONDAY,FRIDAY",
+            "http.client.rate-limit.limits[0].schedules[0].from", "08:00",
+            "http.client.rate-limit.limits[0].schedules[0].to", "18:00",
+            "http.client.rate-limit.limits[0].schedules[0].requests-per-second", "10");
+    var binder =
+        new Binder(
+            List.of(new MapConfigurationPropertySource(properties)),
+            null,
+            ApplicationConversionService.getSharedInstance());
+
+    var config = binder.bind("http.client.rate-limit", RateLimitConfig.class).get();
+
+    var limit = config.getLimits().get(0);
+    assertThat(limit.host()).isEqualTo("hds:8080");
+    assertThat(limit.requestsPerSecond()).isEqualTo(50.0);
+    assertThat(limit.bytesPerSecond()).isEqualTo(DataSize.ofMegabytes(10));
+    assertThat(limit.burst()).isEqualTo(Duration.ofSeconds(1));
+    var schedule = limit.schedules().get(0);
+    assertThat(schedule.days()).containsExactlyInAnyOrder(DayOfWeek.MONDAY, DayOfWeek.FRIDAY);
+    assertThat(schedule.from()).isEqualTo(LocalTime.of(8, 0));
+    assertThat(schedule.to()).isEqualTo(LocalTime.of(18, 0));
+    assertThat(schedule.requestsPerSecond()).isEqualTo(10.0);
+    assertThat(schedule.bytesPerSecond()).isNull();
+  }
+}
@@ -0,0 +1,189 @@
+package care.smith.fts.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import care.smith.fts.util.RateLimitConfig.Limit;
+import care.smith.fts.util.RateLimitConfig.Schedule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class RateLimiterTest {
+
+  // Monday
+  private final MutableClock clock = new MutableClock(Instant.parse("2024-01-01T10:00:00Z"));
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private RateLimiter limiter(Limit limit) {
+    return new RateLimiter(limit, meterRegistry, clock);
+  }
+
+  private static Limit limit(Double requestsPerSecond, DataSize bytesPerSecond, Schedule... s) {
+    return new Limit("hds", requestsPerSecond, bytesPerSecond, null, List.of(s));
+  }
+
+  @Test
+  void burstIsAvailableImmediately() {
+    var limiter = limiter(limit(10.0, null));
+    for (int i = 0; i < 10; i++) {
+      assertThat(limiter.reserveRequest()).isZero();
+    }
+    assertThat(limiter.reserveRequest()).isEqualTo(Duration.ofMillis(100));
+    assertThat(limiter.reserveRequest()).isEqualTo(Duration.ofMillis(200));
+  }
+
+  @Test
+  void tokensRefillOverTime() {
+    var limiter = limiter(limit(10.0, null));
+    for (int i = 0; i < 10; i++) {
+      limiter.reserveRequest();
+    }
+    clock.advance(Duration.ofMillis(500));
+    for (int i = 0; i < 5; i++) {
+      assertThat(limiter.reserveRequest()).isZero();
+    }
+    assertThat(limiter.reserveRequest()).isPositive();
+  }
+
+  @Test
+  void tokensAreCappedByBurst() {
+    var limiter = limiter(limit(10.0, null));
+    clock.advance(Duration.ofMinutes(1));
+    for (int i = 0; i < 10; i++) {
+      assertThat(limiter.reserveRequest()).isZero();
+    }
+    assertThat(limiter.reserveRequest()).isPositive();
+  }
+
+  @Test
+  void bytesAreLimited() {
+    var limiter = limiter(limit(null, DataSize.ofKilobytes(1)));
+    assertThat(limiter.reserveBytes(1024)).isZero();
+    assertThat(limiter.reserveBytes(512)).isEqualTo(Duration.ofMillis(500));
+    assertThat(limiter.reserveRequest()).isZero();
+  }
+
+  @Test
+  void unlimitedNeverDelays() {
+    var limiter = limiter(limit(null, null));
+    for (int i = 0; i < 1000; i++) {
+      assertThat(limiter.reserveRequest()).isZero();
+      assertThat(limiter.reserveBytes(1 << 20)).isZero();
+    }
+  }
+
+  @Test
+  void scheduleOverridesRate() {
+    var workingHours =
+        new Schedule(Set.of(DayOfWeek.MONDAY), LocalTime.of(8, 0), LocalTime.of(18, 0), 1.0, null);
+    var limiter = limiter(limit(100.0, null, workingHours));
+
+    assertThat(limiter.reserveRequest()).isZero();
+    assertThat(limiter.reserveRequest()).isEqualTo(Duration.ofSeconds(1));
+
+    clock.advance(Duration.ofHours(8));
+    for (int i = 0; i < 100; i++) {
+      assertThat(limiter.reserveRequest()).isZero();
+    }
+  }
+
+  @Test
+  void scheduleInheritsUnsetRates() {
+    var schedule = new Schedule(null, null, null, 1.0, null);
+    var limiter = limiter(limit(100.0, DataSize.ofBytes(100), schedule));
+
+    assertThat(limiter.reserveBytes(100)).isZero();
+    assertThat(limiter.reserveBytes(50)).isEqualTo(Duration.ofMillis(500));
+  }
+
+  @Test
+  void scheduleSpansMidnight() {
+    var night = new Schedule(null, LocalTime.of(22, 0), LocalTime.of(6, 0), null, null);
+
+    assertThat(night.appliesAt(LocalDateTime.parse("2024-01-01T23:00"))).isTrue();
+    assertThat(night.appliesAt(LocalDateTime.parse("2024-01-01T05:59"))).isTrue();
+    assertThat(night.appliesAt(LocalDateTime.parse("2024-01-01T06:00"))).isFalse();
+    assertThat(night.appliesAt(LocalDateTime.parse("2024-01-01T12:00"))).isFalse();
+  }
+
+  @Test
+  void scheduleAppliesOnItsDaysOnly() {
+    var weekend =
+        new Schedule(
+            Set.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY), LocalTime.of(8, 0), null, null, null);
+
+    assertThat(weekend.appliesAt(LocalDateTime.parse("2024-01-06T09:00"))).isTrue();
+    assertThat(weekend.appliesAt(LocalDateTime.parse("2024-01-08T09:00"))).isFalse();
+  }
+
+  @Test
+  void delayIsRecorded() {
+    var limiter = limiter(limit(1.0, null));
+    var client =
+        WebClient.builder()
+            .exchangeFunction(r -> Mono.just(ClientResponse.create(HttpStatus.OK).build()))
+            .filter(limiter)
+            .build();
+
+    StepVerifier.withVirtualTime(
+            () ->
+                client
+                    .get()
+                    .uri("http://hds/fhir")
+                    .retrieve()
+                    .toBodilessEntity()
+                    .then(client.get().uri("http://hds/fhir").retrieve().toBodilessEntity()))
+        .expectSubscription()
+        .expectNoEvent(Duration.ofMillis(999))
+        .thenAwait(Duration.ofMillis(1))
+        .expectNextCount(1)
+        .verifyComplete();
+
+    var timer = meterRegistry.get("http.client.rateLimit.delay").tag("kind", "requests").timer();
+    assertThat(timer.count()).isEqualTo(1);
+    assertThat(timer.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(1000);
+  }
+
+  private static final class MutableClock extends Clock {
+    private Instant now;
+
+    private MutableClock(Instant now) {
+      this.now = now;
+    }
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package care.smith.fts.util;
+
+import static care.smith.fts.util.auth.HttpClientAuthMethod.AuthMethod.NONE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import care.smith.fts.util.RetryConfig.CircuitBreakerConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+class RetryPoliciesTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final RetryPolicies policies = new RetryPolicies(meterRegistry);
+
+  @Test
+  void clientsOfSameServerSharePolicy() {
+    var retry =
+        new RetryConfig(
+            null, null, null, null, null, new CircuitBreakerConfig(null, null, null, null));
+    var fhir = policies.of(new HttpClientConfig("http://hds:8080/fhir", NONE, null, retry));
+    var other = policies.of(new HttpClientConfig("http://hds:8080/other", NONE, null, retry));
+
+    assertThat(other).isSameAs(fhir);
+    assertThat(meterRegistry.find("http.client.circuitBreaker.state").gauges()).hasSize(1);
+  }
+
+  @Test
+  void firstConfigOfServerApplies() {
+    var first = policies.of(new HttpClientConfig("http://hds:8080/fhir"));
+    var second =
+        policies.of(
+            new HttpClientConfig(
+                "http://hds:8080/fhir",
+                NONE,
+                null,
+                new RetryConfig(0, null, null, null, null, null)));
+
+    assertThat(second).isSameAs(first);
+    assertThat(second.config()).isEqualTo(new RetryConfig());
+  }
+
+  @Test
+  void serversHaveTheirOwnPolicy() {
+    var hds = policies.of(new HttpClientConfig("http://hds:8080/fhir"));
+    var tca = policies.of(new HttpClientConfig("http://tca:8080/api"));
+
+    assertThat(tca).isNotSameAs(hds);
+    assertThat(policies.of(new HttpClientConfig("http://hds:8081/fhir"))).isNotSameAs(hds);
+  }
+}
@@ -0,0 +1,140 @@
+package care.smith.fts.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import care.smith.fts.util.CircuitBreaker.State;
+import care.smith.fts.util.RetryConfig.BudgetConfig;
+import care.smith.fts.util.RetryConfig.CircuitBreakerConfig;
+import care.smith.fts.util.error.CircuitBreakerOpenException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class RetryPolicyTest {
+
+  private static final ClientRequest REQUEST =
+      ClientRequest.create(HttpMethod.GET, URI.create("http://localhost:8080/fhir")).build();
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final AtomicLong clock = new AtomicLong();
+
+  private RetryPolicy policy(BudgetConfig budget, CircuitBreakerConfig circuitBreaker) {
+    var config =
+        new RetryConfig(3, Duration.ofMillis(1), Duration.ofMillis(1), 0.0, budget, circuitBreaker);
+    return new RetryPolicy("http://localhost:8080/fhir", config, meterRegistry, clock::get);
+  }
+
+  private static ExchangeFunction respond(HttpStatus status) {
+    return request -> Mono.just(ClientResponse.create(status).build());
+  }
+
+  private static Mono<Object> failing() {
+    return Mono.error(WebClientResponseException.create(503, "", null, new byte[0], null));
+  }
+
+  @Test
+  void retriesAreLimitedByBudget() {
+    var policy = policy(new BudgetConfig(0.0, 2, Duration.ofSeconds(10)), null);
+    var attempts = new AtomicInteger();
+
+    StepVerifier.create(
+            failing()
+                .doOnSubscribe(s -> attempts.incrementAndGet())
+                .retryWhen(policy.retry("test")))
+        .expectError(WebClientResponseException.ServiceUnavailable.class)
+        .verify();
+    assertThat(attempts).hasValue(3);
+    assertThat(
+            meterRegistry
+                .counter("http.client.retries.rejected", "target", "localhost:8080")
+                .count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void budgetGrowsWithRequests() {
+    var policy = policy(new BudgetConfig(0.25, 0, Duration.ofSeconds(10)), null);
+    var filter = policy.filter();
+    for (int i = 0; i < 8; i++) {
+      filter.filter(REQUEST, respond(HttpStatus.OK)).block();
+    }
+    var attempts = new AtomicInteger();
+
+    StepVerifier.create(
+            failing()
+                .doOnSubscribe(s -> attempts.incrementAndGet())
+                .retryWhen(policy.retry("test")))
+        .expectError()
+        .verify();
+    assertThat(attempts).hasValue(3);
+  }
+
+  @Test
+  void budgetIsResetAfterWindow() {
+    var policy = policy(new BudgetConfig(0.0, 1, Duration.ofSeconds(10)), null);
+    var attempts = new AtomicInteger();
+    var request = failing().doOnSubscribe(s -> attempts.incrementAndGet());
+
+    StepVerifier.create(request.retryWhen(policy.retry("test"))).expectError().verify();
+    clock.addAndGet(Duration.ofSeconds(10).toNanos());
+    StepVerifier.create(request.retryWhen(policy.retry("test"))).expectError().verify();
+
+    assertThat(attempts).hasValue(4);
+  }
+
+  @Test
+  void openCircuitBreakerRejectsRequests() {
+    var policy =
+        policy(
+            null, new CircuitBreakerConfig(0.5, 2, Duration.ofSeconds(10), Duration.ofSeconds(30)));
+    var filter = policy.filter();
+    var sent = new AtomicInteger();
+    ExchangeFunction unavailable =
+        request -> {
+          sent.incrementAndGet();
+          return Mono.just(ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build());
+        };
+
+    filter.filter(REQUEST, unavailable).block();
+    filter.filter(REQUEST, unavailable).block();
+    assertThat(policy.circuitBreakerState()).isEqualTo(State.OPEN);
+
+    StepVerifier.create(filter.filter(REQUEST, unavailable))
+        .expectError(CircuitBreakerOpenException.class)
+        .verify();
+    assertThat(sent).hasValue(2);
+    assertThat(
+            meterRegistry
+                .counter("http.client.requests.rejected", "target", "localhost:8080")
+                .count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void circuitBreakerClosesAfterSuccessfulProbe() {
+    var policy =
+        policy(
+            null, new CircuitBreakerConfig(0.5, 1, Duration.ofSeconds(10), Duration.ofSeconds(30)));
+    var filter = policy.filter();
+
+    filter.filter(REQUEST, respond(HttpStatus.TOO_MANY_REQUESTS)).block();
+    assertThat(policy.circuitBreakerState()).isEqualTo(State.OPEN);
+
+    clock.addAndGet(Duration.ofSeconds(30).toNanos());
+    StepVerifier.create(filter.filter(REQUEST, respond(HttpStatus.OK)))
+        .expectNextCount(1)
+        .verifyComplete();
+    assertThat(policy.circuitBreakerState()).isEqualTo(State.CLOSED);
+  }
+}
@@ -0,0 +1,148 @@
+package care.smith.fts.util;
+
+import static care.smith.fts.util.RetryStrategies.delay;
+import static care.smith.fts.util.RetryStrategies.retryAfter;
+import static care.smith.fts.util.RetryStrategies.retryStrategy;
+import static java.time.format.DateTimeFormatter.RFC_1123_DATE_TIME;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class RetryStrategiesTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private static WebClientResponseException error(int status, String retryAfter) {
+    var headers = new HttpHeaders();
+    if (retryAfter != null) {
+      headers.set(RETRY_AFTER, retryAfter);
+    }
+    return WebClientResponseException.create(status, "", headers, new byte[0], null);
+  }
+
+  private static RetryConfig config(int maxRetries, double jitter) {
+    return new RetryConfig(
+        maxRetries, Duration.ofSeconds(1), Duration.ofSeconds(30), jitter, null, null);
+  }
+
+  @Test
+  void retryAfterInSeconds() {
+    assertThat(retryAfter(error(503, "7"))).hasValue(Duration.ofSeconds(7));
+  }
+
+  @Test
+  void retryAfterAsDate() {
+    var date = ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(60).format(RFC_1123_DATE_TIME);
+    assertThat(retryAfter(error(429, date)))
+        .hasValueSatisfying(
+            d -> assertThat(d).isBetween(Duration.ofSeconds(55), Duration.ofSeconds(60)));
+  }
+
+  @Test
+  void retryAfterInThePastIsZero() {
+    var date = ZonedDateTime.now(ZoneOffset.UTC).minusSeconds(60).format(RFC_1123_DATE_TIME);
+    assertThat(retryAfter(error(503, date))).hasValue(Duration.ZERO);
+  }
+
+  @Test
+  void invalidOrMissingRetryAfterIsEmpty() {
+    assertThat(retryAfter(error(503, "soon"))).isEmpty();
+    assertThat(retryAfter(error(503, null))).isEmpty();
+    assertThat(retryAfter(new IllegalStateException())).isEmpty();
+  }
+
+  @Test
+  void delayIsCappedByMaxBackoff() {
+    assertThat(delay(config(3, 0), 0, error(503, "3600"))).isEqualTo(Duration.ofSeconds(30));
+    assertThat(delay(config(3, 0), 10, error(503, null))).isEqualTo(Duration.ofSeconds(30));
+  }
+
+  @Test
+  void backoffDoublesWithoutJitter() {
+    var config = config(3, 0);
+    assertThat(delay(config, 0, error(503, null))).isEqualTo(Duration.ofSeconds(1));
+    assertThat(delay(config, 1, error(503, null))).isEqualTo(Duration.ofSeconds(2));
+    assertThat(delay(config, 2, error(503, null))).isEqualTo(Duration.ofSeconds(4));
+  }
+
+  @Test
+  void jitterStaysInBounds() {
+    var config = config(3, 0.5);
+    for (int i = 0; i < 100; i++) {
+      assertThat(delay(config, 2, error(503, null)))
+          .isBetween(Duration.ofSeconds(2), Duration.ofSeconds(6));
+    }
+  }
+
+  @Test
+  void retriesUntilExhausted() {
+    var attempts = new AtomicInteger();
+    var request =
+        Mono.defer(() -> Mono.error(error(503, "1")))
+            .doOnSubscribe(s -> attempts.incrementAndGet());
+
+    StepVerifier.withVirtualTime(
+            () -> request.retryWhen(retryStrategy(meterRegistry, "test", config(2, 0), () -> true)))
+        .thenAwait(Duration.ofSeconds(2))
+        .expectErrorMatches(Exceptions::isRetryExhausted)
+        .verify();
+    assertThat(attempts).hasValue(3);
+    assertThat(
+            meterRegistry.counter("http.client.requests.retries", "request_name", "test").count())
+        .isEqualTo(2);
+  }
+
+  @Test
+  void tooManyRequestsIsRetried() {
+    var attempts = new AtomicInteger();
+    var request =
+        Mono.defer(
+            () -> attempts.incrementAndGet() == 1 ? Mono.error(error(429, "5")) : Mono.just("ok"));
+
+    StepVerifier.withVirtualTime(
+            () -> request.retryWhen(retryStrategy(meterRegistry, "test", config(2, 0), () -> true)))
+        .expectSubscription()
+        .expectNoEvent(Duration.ofSeconds(5))
+        .expectNext("ok")
+        .verifyComplete();
+  }
+
+  @Test
+  void clientErrorsAreNotRetried() {
+    var attempts = new AtomicInteger();
+    var request =
+        Mono.defer(() -> Mono.error(error(404, null)))
+            .doOnSubscribe(s -> attempts.incrementAndGet());
+
+    StepVerifier.create(
+            request.retryWhen(retryStrategy(meterRegistry, "test", config(2, 0), () -> true)))
+        .expectError(WebClientResponseException.NotFound.class)
+        .verify();
+    assertThat(attempts).hasValue(1);
+  }
+
+  @Test
+  void exhaustedBudgetFailsWithOriginalError() {
+    var attempts = new AtomicInteger();
+    var request =
+        Mono.defer(() -> Mono.error(error(503, null)))
+            .doOnSubscribe(s -> attempts.incrementAndGet());
+
+    StepVerifier.create(
+            request.retryWhen(retryStrategy(meterRegistry, "test", config(2, 0), () -> false)))
+        .expectError(WebClientResponseException.ServiceUnavailable.class)
+        .verify();
+    assertThat(attempts).hasValue(1);
+  }
+}
@@ -0,0 +1,84 @@
+package care.smith.fts.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static reactor.test.StepVerifier.create;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class TransferProcessMetricsTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final TransferProcessMetrics metrics = new TransferProcessMetrics(meterRegistry);
+
+  @Test
+  void activeStageIsCounted() {
+    var stage = metrics.stage("project", "send", Mono.delay(Duration.ofMillis(100)));
+
+    create(stage)
+        .then(() -> assertThat(active("send")).isEqualTo(1))
+        .expectNextCount(1)
+        .verifyComplete();
+    assertThat(active("send")).isZero();
+    assertThat(stageCount("send")).isEqualTo(1);
+  }
+
+  @Test
+  void failedStageIsMeasured() {
+    create(metrics.stage("project", "send", Mono.error(new IllegalStateException())))
+        .expectError()
+        .verify();
+
+    assertThat(active("send")).isZero();
+    assertThat(stageCount("send")).isEqualTo(1);
+  }
+
+  @Test
+  void untilFirstStopsAtFirstElement() {
+    var flux = metrics.untilFirst("project", "selectCohort", Flux.just(1, 2, 3));
+
+    create(flux)
+        .expectNext(1)
+        .then(() -> assertThat(active("selectCohort")).isZero())
+        .expectNext(2, 3)
+        .verifyComplete();
+    assertThat(stageCount("selectCohort")).isEqualTo(1);
+  }
+
+  @Test
+  void distributionsAreTaggedWithProject() {
+    metrics.bundle("project", "selectData", 3);
+    metrics.patientResources("project", 7);
+
+    assertThat(
+            meterRegistry
+                .get("transferProcess.bundle.entries")
+                .tag("project", "project")
+                .summary()
+                .totalAmount())
+        .isEqualTo(3);
+    assertThat(
+            meterRegistry
+                .get("transferProcess.patient.resources")
+                .tag("project", "project")
+                .summary()
+                .totalAmount())
+        .isEqualTo(7);
+  }
+
+  private double active(String stage) {
+    return meterRegistry.get("transferProcess.stage.active").tag("stage", stage).gauge().value();
+  }
+
+  private long stageCount(String stage) {
+    return meterRegistry
+        .get("transferProcess.stage")
+        .tag("project", "project")
+        .tag("stage", stage)
+        .timer()
+        .count();
+  }
+}
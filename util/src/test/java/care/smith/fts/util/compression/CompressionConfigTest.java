@@ -0,0 +1,237 @@
+package care.smith.fts.util.compression;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpHeaders.ACCEPT_ENCODING;
+import static org.springframework.http.HttpHeaders.CONTENT_ENCODING;
+import static reactor.test.StepVerifier.create;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.mock.http.client.reactive.MockClientHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class CompressionConfigTest {
+
+  private static final String BODY = "{\"resourceType\":\"Bundle\"}";
+  private static final DefaultDataBufferFactory bufferFactory =
+      DefaultDataBufferFactory.sharedInstance;
+
+  private final HttpCompression compression = new HttpCompression(new SimpleMeterRegistry());
+
+  @Test
+  void requestBodyIsCompressed() {
+    var config = new CompressionConfig();
+    config.setAlgorithm(CompressionAlgorithm.GZIP);
+    var sent = new AtomicReference<ClientRequest>();
+    var written = new MockClientHttpRequest(HttpMethod.POST, URI.create("http://localhost"));
+    var client =
+        WebClient.builder()
+            .filter(config.compressionFilter(compression))
+            .apply(b -> CompressionConfig.customize(b, true))
+            .exchangeFunction(
+                req -> {
+                  sent.set(req);
+                  return req.body()
+                      .insert(written, new TestContext())
+                      .then(Mono.just(ClientResponse.create(HttpStatus.OK).build()));
+                })
+            .build();
+
+    create(client.post().uri("http://localhost").bodyValue(BODY).retrieve().toBodilessEntity())
+        .expectNextCount(1)
+        .verifyComplete();
+
+    assertThat(sent.get().headers().getFirst(CONTENT_ENCODING)).isEqualTo("gzip");
+    assertThat(sent.get().headers().getFirst(ACCEPT_ENCODING)).isEqualTo("zstd, gzip");
+    var decompressed =
+        compression.decompress(
+            written.getBody(), CompressionAlgorithm.GZIP, bufferFactory, "test", Long.MAX_VALUE);
+    create(DataBufferUtils.join(decompressed).map(b -> b.toString(UTF_8)))
+        .expectNext(BODY)
+        .verifyComplete();
+  }
+
+  @Test
+  void getRequestIsNotCompressed() {
+    var config = new CompressionConfig();
+    config.setAlgorithm(CompressionAlgorithm.ZSTD);
+    var sent = new AtomicReference<ClientRequest>();
+    var client =
+        WebClient.builder()
+            .filter(config.compressionFilter(compression))
+            .apply(b -> CompressionConfig.customize(b, true))
+            .exchangeFunction(
+                req -> {
+                  sent.set(req);
+                  return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+                })
+            .build();
+
+    create(client.get().uri("http://localhost").retrieve().toBodilessEntity())
+        .expectNextCount(1)
+        .verifyComplete();
+
+    assertThat(sent.get().headers().containsKey(CONTENT_ENCODING)).isFalse();
+  }
+
+  @Test
+  void clientWithoutCompressionIsNotCompressed() {
+    var config = new CompressionConfig();
+    config.setAlgorithm(CompressionAlgorithm.GZIP);
+    var sent = new AtomicReference<ClientRequest>();
+    var client =
+        WebClient.builder()
+            .filter(config.compressionFilter(compression))
+            .apply(b -> CompressionConfig.customize(b, false))
+            .exchangeFunction(
+                req -> {
+                  sent.set(req);
+                  return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+                })
+            .build();
+
+    create(client.post().uri("http://localhost").bodyValue(BODY).retrieve().toBodilessEntity())
+        .expectNextCount(1)
+        .verifyComplete();
+
+    assertThat(sent.get().headers().containsKey(CONTENT_ENCODING)).isFalse();
+    assertThat(sent.get().headers().containsKey(ACCEPT_ENCODING)).isFalse();
+  }
+
+  @Test
+  void compressedResponseIsDecompressed() {
+    var config = new CompressionConfig();
+    var compressed =
+        compression.compress(
+            Flux.just(bufferFactory.wrap(BODY.getBytes(UTF_8))),
+            CompressionAlgorithm.ZSTD,
+            3,
+            bufferFactory,
+            "test");
+    var client =
+        WebClient.builder()
+            .filter(config.compressionFilter(compression))
+            .apply(b -> CompressionConfig.customize(b, true))
+            .exchangeFunction(
+                req ->
+                    Mono.just(
+                        ClientResponse.create(HttpStatus.OK)
+                            .header(CONTENT_ENCODING, "zstd")
+                            .body(compressed)
+                            .build()))
+            .build();
+
+    create(client.get().uri("http://localhost").retrieve().bodyToMono(String.class))
+        .expectNext(BODY)
+        .verifyComplete();
+  }
+
+  @Test
+  void compressedRequestIsDecompressed() {
+    var filter = new CompressionConfig().compressedRequestWebFilter(compression);
+    var body =
+        compression.compress(
+            Flux.just(bufferFactory.wrap(BODY.getBytes(UTF_8))),
+            CompressionAlgorithm.GZIP,
+            6,
+            bufferFactory,
+            "test");
+    var exchange =
+        MockServerWebExchange.from(
+            MockServerHttpRequest.post("/").header(CONTENT_ENCODING, "gzip").body(body));
+
+    var received = new AtomicReference<String>();
+    create(
+            filter.filter(
+                exchange,
+                e -> {
+                  assertThat(e.getRequest().getHeaders().containsKey(CONTENT_ENCODING)).isFalse();
+                  return DataBufferUtils.join(e.getRequest().getBody())
+                      .doOnNext(b -> received.set(b.toString(UTF_8)))
+                      .then();
+                }))
+        .verifyComplete();
+
+    assertThat(received).hasValue(BODY);
+  }
+
+  @Test
+  void oversizedRequestIsRejected() {
+    var config = new CompressionConfig();
+    config.setMaxDecompressedRequestSize(DataSize.ofBytes(BODY.length() - 1));
+    var filter = config.compressedRequestWebFilter(compression);
+    var body =
+        compression.compress(
+            Flux.just(bufferFactory.wrap(BODY.getBytes(UTF_8))),
+            CompressionAlgorithm.ZSTD,
+            3,
+            bufferFactory,
+            "test");
+    var exchange =
+        MockServerWebExchange.from(
+            MockServerHttpRequest.post("/").header(CONTENT_ENCODING, "zstd").body(body));
+
+    create(filter.filter(exchange, e -> DataBufferUtils.join(e.getRequest().getBody()).then()))
+        .expectErrorSatisfies(
+            e ->
+                assertThat(e)
+                    .isInstanceOf(ResponseStatusException.class)
+                    .extracting(r -> ((ResponseStatusException) r).getStatusCode())
+                    .isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE))
+        .verify();
+  }
+
+  @Test
+  void unsupportedRequestEncodingIsRejected() {
+    var filter = new CompressionConfig().compressedRequestWebFilter(compression);
+    var exchange =
+        MockServerWebExchange.from(
+            MockServerHttpRequest.post("/").header(CONTENT_ENCODING, "br").body(BODY));
+
+    create(filter.filter(exchange, e -> Mono.error(new AssertionError("must not be called"))))
+        .verifyComplete();
+
+    assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+  }
+
+  private static class TestContext implements BodyInserter.Context {
+    private final ExchangeStrategies strategies = ExchangeStrategies.withDefaults();
+
+    @Override
+    public List<HttpMessageWriter<?>> messageWriters() {
+      return strategies.messageWriters();
+    }
+
+    @Override
+    public Optional<ServerHttpRequest> serverRequest() {
+      return Optional.empty();
+    }
+
+    @Override
+    public Map<String, Object> hints() {
+      return Map.of();
+    }
+  }
+}
@@ -0,0 +1,171 @@
+package care.smith.fts.util.compression;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static reactor.test.StepVerifier.create;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.EOFException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+class HttpCompressionTest {
+
+  private static final DefaultDataBufferFactory bufferFactory =
+      DefaultDataBufferFactory.sharedInstance;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final HttpCompression compression = new HttpCompression(meterRegistry);
+
+  @ParameterizedTest
+  @EnumSource(CompressionAlgorithm.class)
+  void compressedBodyIsDecompressed(CompressionAlgorithm algorithm) {
+    var lines =
+        IntStream.range(0, 1000)
+            .mapToObj("{\"resourceType\":\"Observation\",\"id\":\"obs-%d\"}\n"::formatted)
+            .toList();
+    var body = Flux.fromIterable(lines).map(l -> bufferFactory.wrap(l.getBytes(UTF_8)));
+
+    var compressed =
+        compression.compress(body, algorithm, algorithm.defaultLevel(), bufferFactory, "request");
+    var decompressed =
+        compression.decompress(compressed, algorithm, bufferFactory, "response", Long.MAX_VALUE);
+
+    create(DataBufferUtils.join(decompressed).map(HttpCompressionTest::asString))
+        .assertNext(s -> assertThat(s).isEqualTo(String.join("", lines)))
+        .verifyComplete();
+  }
+
+  @ParameterizedTest
+  @EnumSource(
+      value = CompressionAlgorithm.class,
+      names = {"GZIP", "ZSTD"})
+  void bytesBeforeAndAfterCompressionAreCounted(CompressionAlgorithm algorithm) {
+    var body = Flux.just(bufferFactory.wrap("a".repeat(10_000).getBytes(UTF_8)));
+
+    create(compression.compress(body, algorithm, 1, bufferFactory, "request").then())
+        .verifyComplete();
+
+    var uncompressed =
+        meterRegistry
+            .get("compression.uncompressed.bytes")
+            .tag("algorithm", algorithm.encoding())
+            .counter()
+            .count();
+    var compressed =
+        meterRegistry
+            .get("compression.compressed.bytes")
+            .tag("algorithm", algorithm.encoding())
+            .counter()
+            .count();
+    assertThat(uncompressed).isEqualTo(10_000);
+    assertThat(compressed).isPositive().isLessThan(uncompressed);
+  }
+
+  @ParameterizedTest
+  @EnumSource(
+      value = CompressionAlgorithm.class,
+      names = {"GZIP", "ZSTD"})
+  void bodySplitIntoSmallBuffersIsDecompressed(CompressionAlgorithm algorithm) {
+    var text = "{\"resourceType\":\"Observation\"}\n".repeat(1000);
+    var compressed = compressed(text, algorithm);
+    var chunks =
+        Flux.range(0, (compressed.length + 2) / 3)
+            .map(i -> Arrays.copyOfRange(compressed, i * 3, Math.min(compressed.length, i * 3 + 3)))
+            .map(bufferFactory::wrap);
+
+    var decompressed =
+        compression.decompress(chunks, algorithm, bufferFactory, "response", Long.MAX_VALUE);
+
+    create(DataBufferUtils.join(decompressed).map(HttpCompressionTest::asString))
+        .expectNext(text)
+        .verifyComplete();
+  }
+
+  @ParameterizedTest
+  @EnumSource(CompressionAlgorithm.class)
+  void decompressedSizeIsLimited(CompressionAlgorithm algorithm) {
+    var compressed = compressed("a".repeat(10_000), algorithm);
+
+    var decompressed =
+        compression.decompress(
+            Flux.just(bufferFactory.wrap(compressed)), algorithm, bufferFactory, "request", 9_999);
+
+    create(decompressed.map(HttpCompressionTest::asString))
+        .thenConsumeWhile(s -> true)
+        .expectError(DataBufferLimitException.class)
+        .verify();
+  }
+
+  @ParameterizedTest
+  @EnumSource(
+      value = CompressionAlgorithm.class,
+      names = {"GZIP", "ZSTD"})
+  void truncatedBodyErrors(CompressionAlgorithm algorithm) {
+    var compressed = compressed("a".repeat(10_000), algorithm);
+    var truncated = Arrays.copyOf(compressed, compressed.length - 4);
+
+    var decompressed =
+        compression.decompress(
+            Flux.just(bufferFactory.wrap(truncated)),
+            algorithm,
+            bufferFactory,
+            "response",
+            Long.MAX_VALUE);
+
+    create(decompressed.map(HttpCompressionTest::asString))
+        .thenConsumeWhile(s -> true)
+        .expectError(EOFException.class)
+        .verify();
+  }
+
+  @Test
+  void concatenatedGzipMembersAreDecompressed() {
+    var first = compressed("first ", CompressionAlgorithm.GZIP);
+    var second = compressed("second", CompressionAlgorithm.GZIP);
+
+    var decompressed =
+        compression.decompress(
+            Flux.just(bufferFactory.wrap(first), bufferFactory.wrap(second)),
+            CompressionAlgorithm.GZIP,
+            bufferFactory,
+            "response",
+            Long.MAX_VALUE);
+
+    create(DataBufferUtils.join(decompressed).map(HttpCompressionTest::asString))
+        .expectNext("first second")
+        .verifyComplete();
+  }
+
+  private byte[] compressed(String text, CompressionAlgorithm algorithm) {
+    var body = Flux.just(bufferFactory.wrap(text.getBytes(UTF_8)));
+    var compressed =
+        DataBufferUtils.join(
+                compression.compress(
+                    body, algorithm, algorithm.defaultLevel(), bufferFactory, "request"))
+            .map(
+                b -> {
+                  var bytes = new byte[b.readableByteCount()];
+                  b.read(bytes);
+                  DataBufferUtils.release(b);
+                  return bytes;
+                })
+            .block();
+    assertThat(compressed).isNotNull();
+    return compressed;
+  }
+
+  private static String asString(DataBuffer buffer) {
+    var s = buffer.toString(UTF_8);
+    DataBufferUtils.release(buffer);
+    return s;
+  }
+}
@@ -0,0 +1,75 @@
+package care.smith.fts.util.deidentifhir;
+
+import static care.smith.fts.util.deidentifhir.NamespacingReplacementProvider.withoutNamespacing;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import care.smith.fts.util.deidentifhir.DeidentifhirContext.Providers;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+
+class DeidentifhirContextTest {
+  private final DeidentifhirContext context = new DeidentifhirContext();
+
+  @Test
+  void delegatesToBoundProviders() {
+    var provider = NamespacingReplacementProvider.of(withoutNamespacing(), Map.of("id1", "tid1"));
+
+    var replacement =
+        context.withProviders(
+            Providers.of(provider, key -> 42L),
+            () ->
+                context.getIDReplacement("Patient", "id1")
+                    + context.getValueReplacement("system", "id1")
+                    + context.getDateShiftingValueInMillis("key"));
+
+    assertThat(replacement).isEqualTo("tid1tid142");
+  }
+
+  @Test
+  void unboundContextThrows() {
+    assertThatThrownBy(() -> context.getIDReplacement("Patient", "id1"))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void missingDateShiftProviderThrows() {
+    var provider = NamespacingReplacementProvider.of(withoutNamespacing());
+
+    assertThatThrownBy(
+            () ->
+                context.withProviders(
+                    Providers.of(provider), () -> context.getDateShiftingValueInMillis("key")))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void providersAreUnboundAfterwards() {
+    var provider = NamespacingReplacementProvider.of(withoutNamespacing(), Map.of("id1", "tid1"));
+
+    context.withProviders(Providers.of(provider), () -> context.getIDReplacement("Patient", "id1"));
+
+    assertThatThrownBy(() -> context.getIDReplacement("Patient", "id1"))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void providersAreBoundPerThread() throws Exception {
+    var provider1 = NamespacingReplacementProvider.of(withoutNamespacing(), Map.of("id", "tid1"));
+    var provider2 = NamespacingReplacementProvider.of(withoutNamespacing(), Map.of("id", "tid2"));
+
+    var other =
+        context.withProviders(
+            Providers.of(provider1),
+            () ->
+                CompletableFuture.supplyAsync(
+                        () ->
+                            context.withProviders(
+                                Providers.of(provider2),
+                                () -> context.getIDReplacement("Patient", "id")))
+                    .join());
+
+    assertThat(other).isEqualTo("tid2");
+  }
+}